@@ -0,0 +1,109 @@
+/******************************************************************************
+* Title: Benchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This is the parent class for all benchmarks run by BenchmarkRunner.
+*
+* A benchmark prepares its objects and data in setUp. The runner then calls
+* run repeatedly while timing it. Each call to run performs
+* getOperationsPerCall operations so that very fast operations can be
+* measured without the timing overhead swamping the result.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Benchmark
+//
+
+public abstract class Benchmark extends Object{
+
+    //path to the configuration file used by benchmarks which load settings
+    //from a real configuration -- may be overridden on the command line with
+    //-Dbench.config=<path>
+
+    public static final String DEFAULT_CONFIG =
+       "configurations/24 channels ~ 8 Long ~ 8 Trans ~ 8 Wall.config";
+
+//-----------------------------------------------------------------------------
+// Benchmark::getName
+//
+// Returns the name used to report the benchmark -- usually the class and
+// method being measured.
+//
+
+public abstract String getName();
+
+//-----------------------------------------------------------------------------
+// Benchmark::getOperationsPerCall
+//
+// Returns the number of operations performed by each call to run.
+//
+
+public int getOperationsPerCall()
+{
+
+    return(1);
+
+}//end of Benchmark::getOperationsPerCall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Benchmark::setUp
+//
+// Creates the objects and data used by the benchmark. Called once before any
+// timing begins.
+//
+
+public abstract void setUp() throws Exception;
+
+//-----------------------------------------------------------------------------
+// Benchmark::run
+//
+// Performs getOperationsPerCall operations. A value computed from the results
+// should be returned so the work cannot be optimized away.
+//
+
+public abstract long run() throws Exception;
+
+//-----------------------------------------------------------------------------
+// Benchmark::tearDown
+//
+// Releases any resources such as files. Called once after all timing.
+//
+
+public void tearDown() throws Exception
+{
+
+}//end of Benchmark::tearDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Benchmark::getConfigFilename
+//
+// Returns the path of the configuration file to be used by benchmarks which
+// load settings from a real configuration.
+//
+
+public static String getConfigFilename()
+{
+
+    return(System.getProperty("bench.config", DEFAULT_CONFIG));
+
+}//end of Benchmark::getConfigFilename
+//-----------------------------------------------------------------------------
+
+}//end of class Benchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,486 @@
+/******************************************************************************
+* Title: BenchmarkRunner.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class runs the benchmarks covering the acquisition, trace, and map
+* code paths and saves the results as JSON so they can be compared between
+* releases.
+*
+* Each benchmark is run for a number of warmup iterations to allow the JIT
+* compiler to settle, then for a number of measured iterations. Each
+* iteration calls the benchmark repeatedly for a fixed time. The average time
+* per operation and the number of bytes allocated per operation are reported.
+*
+* The JSON layout follows that used by JMH so the same tools can be used to
+* chart the results.
+*
+* Usage:
+*
+*   java chart.mksystems.benchmark.BenchmarkRunner [options]
+*
+*   -o <file>     JSON results file (default: benchmark-results.json)
+*   -wi <count>   warmup iterations (default: 5)
+*   -i <count>    measured iterations (default: 10)
+*   -t <ms>       time per iteration in milliseconds (default: 1000)
+*   -f <regex>    only run benchmarks with names matching regex
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.mksystems.hardware.AScanPacketBenchmark;
+import chart.mksystems.hardware.IOModuleDispatchBenchmark;
+import chart.mksystems.hardware.PeakPacketBenchmark;
+import chart.mksystems.hardware.WallMapSaveBenchmark;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class BenchmarkRunner
+//
+
+public class BenchmarkRunner extends Object{
+
+    String outputFilename = "benchmark-results.json";
+    int warmupIterations = 5;
+    int measurementIterations = 10;
+    int iterationTime = 1000;
+    Pattern filter = null;
+
+    ArrayList<Benchmark> benchmarks = new ArrayList<>();
+    ArrayList<Result> results = new ArrayList<>();
+
+    //used to measure allocation per operation -- null if the JVM does not
+    //support it
+
+    com.sun.management.ThreadMXBean threadBean = null;
+
+    //values returned by the benchmarks are accumulated here so that the JIT
+    //compiler cannot discard the work
+
+    long sink = 0;
+
+    //z value for a 99.9% confidence interval
+    static final double Z_999 = 3.291;
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::main
+//
+
+public static void main(String[] pArgs)
+{
+
+    BenchmarkRunner runner = new BenchmarkRunner();
+
+    if (!runner.parseArguments(pArgs)) {System.exit(1);}
+
+    runner.init();
+
+    runner.runAll();
+
+    try{
+        runner.saveResults();
+    }
+    catch(IOException e){
+        System.err.println("Could not save results: " + e.getMessage());
+        System.exit(1);
+    }
+
+}//end of BenchmarkRunner::main
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::init
+//
+// Creates the list of benchmarks and prepares the allocation counter.
+//
+
+public void init()
+{
+
+    benchmarks.add(new PeakPacketBenchmark());
+    benchmarks.add(new AScanPacketBenchmark(false));
+    benchmarks.add(new AScanPacketBenchmark(true));
+    benchmarks.add(new TraceDataStoreBenchmark());
+    benchmarks.add(new TraceDataGetNewDataBenchmark());
+    benchmarks.add(new TraceDataHandoffBenchmark());
+    benchmarks.add(new Map2DDataStoreBenchmark());
+    benchmarks.add(
+                new WallMapSaveBenchmark(WallMapSaveBenchmark.STREAM_WRITER));
+    benchmarks.add(new WallMapSaveBenchmark(WallMapSaveBenchmark.FILE_WRITER));
+    benchmarks.add(
+                new WallMapSaveBenchmark(WallMapSaveBenchmark.MEMORY_WRITER));
+    benchmarks.add(new IniFileBenchmark());
+    benchmarks.add(new ThresholdBenchmark());
+    benchmarks.add(new SegmentDataBenchmark(false, false));
+    benchmarks.add(new SegmentDataBenchmark(true, false));
+    benchmarks.add(new SegmentDataBenchmark(false, true));
+    benchmarks.add(new SegmentDataBenchmark(true, true));
+    benchmarks.add(new SegmentCacheBenchmark(false));
+    benchmarks.add(new SegmentCacheBenchmark(true));
+    benchmarks.add(new SegmentIndexBenchmark(false));
+    benchmarks.add(new SegmentIndexBenchmark(true));
+    benchmarks.add(new IOModuleDispatchBenchmark());
+
+    java.lang.management.ThreadMXBean bean =
+                                        ManagementFactory.getThreadMXBean();
+
+    if (bean instanceof com.sun.management.ThreadMXBean){
+        threadBean = (com.sun.management.ThreadMXBean)bean;
+        if (threadBean.isThreadAllocatedMemorySupported()){
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        else {threadBean = null;}
+    }
+
+}//end of BenchmarkRunner::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::parseArguments
+//
+// Returns false if the arguments are invalid.
+//
+
+boolean parseArguments(String[] pArgs)
+{
+
+    try{
+
+        for (int i = 0; i < pArgs.length; i++){
+
+            String arg = pArgs[i];
+
+            if (arg.equals("-o")) {outputFilename = pArgs[++i];}
+            else
+            if (arg.equals("-wi")) {
+                warmupIterations = Integer.parseInt(pArgs[++i]);
+            }
+            else
+            if (arg.equals("-i")) {
+                measurementIterations = Integer.parseInt(pArgs[++i]);
+            }
+            else
+            if (arg.equals("-t")) {iterationTime = Integer.parseInt(pArgs[++i]);}
+            else
+            if (arg.equals("-f")) {filter = Pattern.compile(pArgs[++i]);}
+            else{
+                System.err.println("Unknown option: " + arg);
+                return(false);
+            }
+        }
+
+    }
+    catch(ArrayIndexOutOfBoundsException | NumberFormatException e){
+        System.err.println("Invalid arguments.");
+        return(false);
+    }
+
+    if (measurementIterations < 1) {measurementIterations = 1;}
+
+    return(true);
+
+}//end of BenchmarkRunner::parseArguments
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::runAll
+//
+// Runs each benchmark which matches the filter. A benchmark which fails is
+// reported and skipped.
+//
+
+public void runAll()
+{
+
+    for (Benchmark benchmark : benchmarks){
+
+        if (filter != null && !filter.matcher(benchmark.getName()).find()){
+            continue;
+        }
+
+        System.out.println("# Benchmark: " + benchmark.getName());
+
+        try{
+            benchmark.setUp();
+            results.add(runBenchmark(benchmark));
+        }
+        catch(Exception e){
+            System.out.println("# Failed: " + e);
+        }
+        finally{
+            try {benchmark.tearDown();} catch(Exception e){}
+        }
+
+    }
+
+    System.out.println();
+
+    for (Result r : results){
+        System.out.println(String.format(Locale.US, "%-48s %14.3f +- %10.3f ns/op"
+           + "  %10.1f B/op", r.name, r.score, r.scoreError, r.allocPerOp));
+    }
+
+    //print the sink so the values are used
+    System.out.println("\n(checksum " + sink + ")");
+
+}//end of BenchmarkRunner::runAll
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::runBenchmark
+//
+// Runs the warmup and measured iterations of pBenchmark and returns the
+// result.
+//
+
+Result runBenchmark(Benchmark pBenchmark) throws Exception
+{
+
+    for (int i = 0; i < warmupIterations; i++){
+        double score = runIteration(pBenchmark, null);
+        System.out.println(String.format(Locale.US,
+                            "# Warmup Iteration %3d: %.3f ns/op", i+1, score));
+    }
+
+    Result result = new Result();
+    result.name = pBenchmark.getName();
+    result.rawData = new double[measurementIterations];
+
+    long[] alloc = new long[2];
+    long totalOps = 0, totalBytes = 0;
+
+    for (int i = 0; i < measurementIterations; i++){
+        result.rawData[i] = runIteration(pBenchmark, alloc);
+        totalBytes += alloc[0]; totalOps += alloc[1];
+        System.out.println(String.format(Locale.US,
+                "Iteration %3d: %.3f ns/op", i+1, result.rawData[i]));
+    }
+
+    //compute the mean and the confidence interval
+
+    double sum = 0;
+    for (double d : result.rawData) {sum += d;}
+    result.score = sum / result.rawData.length;
+
+    double variance = 0;
+    for (double d : result.rawData) {
+        variance += (d - result.score) * (d - result.score);
+    }
+
+    if (result.rawData.length > 1){
+        variance /= (result.rawData.length - 1);
+        result.scoreError =
+                Z_999 * Math.sqrt(variance) / Math.sqrt(result.rawData.length);
+    }
+
+    result.allocPerOp = (threadBean == null || totalOps == 0) ?
+                                    Double.NaN : (double)totalBytes / totalOps;
+
+    return(result);
+
+}//end of BenchmarkRunner::runBenchmark
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::runIteration
+//
+// Calls pBenchmark repeatedly for iterationTime milliseconds.
+//
+// Returns the average time per operation in nanoseconds. If pAlloc is not
+// null, the bytes allocated by this thread are returned in pAlloc[0] and the
+// number of operations in pAlloc[1].
+//
+
+double runIteration(Benchmark pBenchmark, long[] pAlloc) throws Exception
+{
+
+    long threadId = Thread.currentThread().getId();
+
+    long startBytes = threadBean != null ?
+                            threadBean.getThreadAllocatedBytes(threadId) : 0;
+
+    long deadline = System.nanoTime() + iterationTime * 1000000L;
+    long calls = 0;
+
+    long start = System.nanoTime(), now;
+
+    //check the clock every few calls to keep the timing overhead low
+
+    do{
+        for (int i = 0; i < 16; i++) {sink += pBenchmark.run();}
+        calls += 16;
+        now = System.nanoTime();
+    }while(now < deadline);
+
+    long ops = calls * pBenchmark.getOperationsPerCall();
+
+    if (pAlloc != null){
+        pAlloc[0] = threadBean != null ?
+              threadBean.getThreadAllocatedBytes(threadId) - startBytes : 0;
+        pAlloc[1] = ops;
+    }
+
+    return((double)(now - start) / ops);
+
+}//end of BenchmarkRunner::runIteration
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::saveResults
+//
+// Writes the results to outputFilename in the JSON layout used by JMH.
+//
+
+public void saveResults() throws IOException
+{
+
+    try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(outputFilename), "UTF-8"))){
+
+        out.write("[\n");
+
+        for (int i = 0; i < results.size(); i++){
+
+            Result r = results.get(i);
+
+            out.write("    {\n");
+            writeField(out, "benchmark", quote(r.name), true);
+            writeField(out, "mode", quote("avgt"), true);
+            writeField(out, "jdkVersion",
+                            quote(System.getProperty("java.version")), true);
+            writeField(out, "vmName",
+                            quote(System.getProperty("java.vm.name")), true);
+            writeField(out, "warmupIterations", "" + warmupIterations, true);
+            writeField(out, "warmupTime", quote(iterationTime + " ms"), true);
+            writeField(out, "measurementIterations",
+                                            "" + measurementIterations, true);
+            writeField(out, "measurementTime",
+                                        quote(iterationTime + " ms"), true);
+
+            out.write("        \"primaryMetric\" : {\n");
+            out.write("            \"score\" : " + number(r.score) + ",\n");
+            out.write("            \"scoreError\" : "
+                                            + number(r.scoreError) + ",\n");
+            out.write("            \"scoreUnit\" : \"ns/op\",\n");
+            out.write("            \"rawData\" : [\n                [\n");
+            for (int j = 0; j < r.rawData.length; j++){
+                out.write("                    " + number(r.rawData[j])
+                                + (j < r.rawData.length - 1 ? ",\n" : "\n"));
+            }
+            out.write("                ]\n            ]\n        },\n");
+
+            out.write("        \"secondaryMetrics\" : {\n");
+            out.write("            \"gc.alloc.rate.norm\" : {\n");
+            out.write("                \"score\" : "
+                                            + number(r.allocPerOp) + ",\n");
+            out.write("                \"scoreUnit\" : \"B/op\"\n");
+            out.write("            }\n        }\n");
+
+            out.write(i < results.size() - 1 ? "    },\n" : "    }\n");
+
+        }
+
+        out.write("]\n");
+
+    }
+
+    System.out.println("Results saved to " + outputFilename);
+
+}//end of BenchmarkRunner::saveResults
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::writeField
+//
+// Writes a "name" : value pair at the indentation used for a result entry.
+//
+
+private void writeField(BufferedWriter pOut, String pName, String pValue,
+                                        boolean pComma) throws IOException
+{
+
+    pOut.write("        \"" + pName + "\" : " + pValue
+                                                + (pComma ? ",\n" : "\n"));
+
+}//end of BenchmarkRunner::writeField
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::quote
+//
+// Returns pValue as a JSON string.
+//
+
+private String quote(String pValue)
+{
+
+    StringBuilder sb = new StringBuilder("\"");
+
+    for (char c : pValue.toCharArray()){
+        if (c == '"' || c == '\\') {sb.append('\\').append(c);}
+        else
+        if (c < 0x20) {sb.append(String.format("\\u%04x", (int)c));}
+        else {sb.append(c);}
+    }
+
+    return(sb.append('"').toString());
+
+}//end of BenchmarkRunner::quote
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BenchmarkRunner::number
+//
+// Returns pValue as a JSON number -- NaN is not allowed in JSON so it is
+// written as the string "NaN" as JMH does.
+//
+
+private String number(double pValue)
+{
+
+    if (Double.isNaN(pValue) || Double.isInfinite(pValue)) {
+        return("\"NaN\"");
+    }
+
+    return(String.format(Locale.US, "%.6f", pValue));
+
+}//end of BenchmarkRunner::number
+//-----------------------------------------------------------------------------
+
+}//end of class BenchmarkRunner
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Result
+//
+// Holds the results for one benchmark.
+//
+
+class Result{
+
+    String name;
+    double score, scoreError, allocPerOp;
+    double[] rawData;
+
+}//end of class Result
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
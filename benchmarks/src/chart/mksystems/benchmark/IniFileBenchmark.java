@@ -0,0 +1,147 @@
+/******************************************************************************
+* Title: IniFileBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures value lookups in an IniFile loaded with a real
+* configuration file. Every section and key in the file is looked up in
+* turn, which resembles the pattern of lookups made while the program loads
+* its configuration.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.mksystems.inifile.IniFile;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IniFileBenchmark
+//
+
+public class IniFileBenchmark extends Benchmark{
+
+    static final String FILE_FORMAT = "UTF-8";
+    static final int OPS_PER_CALL = 64;
+
+    IniFile iniFile;
+    String[] sections;
+    String[] keys;
+    int index = 0;
+
+//-----------------------------------------------------------------------------
+// IniFileBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("IniFile.readString");
+
+}//end of IniFileBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFileBenchmark::getOperationsPerCall
+//
+
+@Override
+public int getOperationsPerCall()
+{
+
+    return(OPS_PER_CALL);
+
+}//end of IniFileBenchmark::getOperationsPerCall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFileBenchmark::setUp
+//
+// Loads the configuration file and makes a list of every section and key
+// pair in it.
+//
+
+@Override
+public void setUp() throws Exception
+{
+
+    String filename = getConfigFilename();
+
+    iniFile = new IniFile(filename, FILE_FORMAT);
+    iniFile.init();
+
+    ArrayList<String> sectionList = new ArrayList<>();
+    ArrayList<String> keyList = new ArrayList<>();
+
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                            new FileInputStream(filename), FILE_FORMAT))){
+
+        String line, section = "";
+
+        while ((line = in.readLine()) != null){
+
+            line = line.trim();
+
+            if (line.startsWith("[") && line.endsWith("]")){
+                section = line.substring(1, line.length() - 1);
+                continue;
+            }
+
+            int equals = line.indexOf('=');
+
+            if (line.startsWith(";") || equals <= 0) {continue;}
+
+            sectionList.add(section);
+            keyList.add(line.substring(0, equals));
+
+        }
+
+    }
+
+    if (keyList.isEmpty()) {throw new Exception("No keys in " + filename);}
+
+    sections = sectionList.toArray(new String[0]);
+    keys = keyList.toArray(new String[0]);
+
+}//end of IniFileBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFileBenchmark::run
+//
+
+@Override
+public long run()
+{
+
+    long length = 0;
+
+    for (int i = 0; i < OPS_PER_CALL; i++){
+
+        length += iniFile.readString(sections[index], keys[index], "").length();
+
+        if (++index == keys.length) {index = 0;}
+
+    }
+
+    return(length);
+
+}//end of IniFileBenchmark::run
+//-----------------------------------------------------------------------------
+
+}//end of class IniFileBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,126 @@
+/******************************************************************************
+* Title: Map2DDataStoreBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures Map2DData.storeDataAtInsertionPoint as used to insert
+* a column of wall data into a 2D map.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.mksystems.stripchart.Map2DData;
+import chart.mksystems.stripchart.PlotterData;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Map2DDataStoreBenchmark
+//
+
+public class Map2DDataStoreBenchmark extends Benchmark{
+
+    static final int BUFFER_SIZE = 4000;
+    static final int MAP_WIDTH = 200;
+    static final int NUMBER_OF_COLUMNS = 64;
+    static final int COLUMNS_PER_POSITION = 2;
+    static final int OPS_PER_CALL = 64;
+
+    Map2DData map2DData;
+    int[][] columns;
+    int columnIndex = 0;
+
+//-----------------------------------------------------------------------------
+// Map2DDataStoreBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("Map2DData.storeDataAtInsertionPoint");
+
+}//end of Map2DDataStoreBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Map2DDataStoreBenchmark::getOperationsPerCall
+//
+
+@Override
+public int getOperationsPerCall()
+{
+
+    return(OPS_PER_CALL);
+
+}//end of Map2DDataStoreBenchmark::getOperationsPerCall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Map2DDataStoreBenchmark::setUp
+//
+// The columns are filled with wall readings varying around a nominal value.
+//
+
+@Override
+public void setUp()
+{
+
+    map2DData = new Map2DData(BUFFER_SIZE, MAP_WIDTH,
+                                    PlotterData.POINT_TO_POINT, PlotterData.MIN);
+    map2DData.init();
+    map2DData.resetAll();
+
+    int[] peaks = SignalData.createPeaks(NUMBER_OF_COLUMNS * MAP_WIDTH, 3);
+
+    columns = new int[NUMBER_OF_COLUMNS][MAP_WIDTH];
+
+    for (int i = 0; i < NUMBER_OF_COLUMNS; i++){
+        for (int j = 0; j < MAP_WIDTH; j++){
+            columns[i][j] = 250 - peaks[i * MAP_WIDTH + j];
+        }
+    }
+
+}//end of Map2DDataStoreBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Map2DDataStoreBenchmark::run
+//
+
+@Override
+public long run()
+{
+
+    long stored = 0;
+
+    for (int i = 0; i < OPS_PER_CALL; i++){
+
+        if (map2DData.storeDataAtInsertionPoint(columns[columnIndex])) {
+            stored++;
+        }
+
+        if (++columnIndex == NUMBER_OF_COLUMNS) {columnIndex = 0;}
+
+        if (columnIndex % COLUMNS_PER_POSITION == 0){
+            map2DData.advanceInsertionPoint();
+        }
+
+    }
+
+    return(stored);
+
+}//end of Map2DDataStoreBenchmark::run
+//-----------------------------------------------------------------------------
+
+}//end of class Map2DDataStoreBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
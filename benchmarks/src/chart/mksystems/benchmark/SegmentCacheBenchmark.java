@@ -0,0 +1,255 @@
+/******************************************************************************
+* Title: SegmentCacheBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures loading a segment into a trace as the Viewer does when
+* the user moves to another segment, either from the segment data file or
+* from a SegmentCache holding the segment.
+*
+* Before measuring, the cache is checked: a segment file which is changed
+* after being cached must be loaded again with the new data, and a segment
+* which is prefetched must be placed in the cache. The benchmark fails if
+* either check fails.
+*
+* One operation is the loading of one segment.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.SegmentCache;
+import chart.mksystems.stripchart.PlotterData;
+import chart.mksystems.stripchart.SegmentDataReader;
+import chart.mksystems.stripchart.SegmentDataWriter;
+import chart.mksystems.stripchart.TraceData;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentCacheBenchmark
+//
+
+public class SegmentCacheBenchmark extends Benchmark{
+
+    static final int BUFFER_SIZE = 10000;
+    static final int SEGMENT_LENGTH = 4000;
+    static final int CHECK_TIMEOUT = 10000;
+
+    boolean cached;
+
+    TraceData traceData;
+    SegmentCache cache;
+
+    File folder;
+    String dataFilename;
+
+//-----------------------------------------------------------------------------
+// SegmentCacheBenchmark::SegmentCacheBenchmark (constructor)
+//
+// If pCached is true, the segment is loaded from the cache, otherwise from
+// the file.
+//
+
+public SegmentCacheBenchmark(boolean pCached)
+{
+
+    cached = pCached;
+
+}//end of SegmentCacheBenchmark::SegmentCacheBenchmark (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCacheBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("Viewer.loadSegment" + (cached ? " (cached)" : " (file)"));
+
+}//end of SegmentCacheBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCacheBenchmark::setUp
+//
+// Saves a segment file, checks the cache, and leaves the segment in the
+// cache for the measurements.
+//
+
+@Override
+public void setUp() throws Exception
+{
+
+    traceData = new TraceData(BUFFER_SIZE, PlotterData.POINT_TO_POINT,
+                                                            PlotterData.MAX);
+    traceData.init();
+
+    folder = Files.createTempDirectory("segment cache").toFile();
+
+    dataFilename = new File(folder, "20 - 0000001.dat").getPath();
+
+    cache = new SegmentCache("UTF-8");
+    cache.init();
+
+    saveSegment(dataFilename, 1, 0);
+    checkLoad(1);
+
+    //change the file; the new data must be loaded
+
+    saveSegment(dataFilename, 2, 2000);
+    checkLoad(2);
+
+    checkPrefetch();
+
+}//end of SegmentCacheBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCacheBenchmark::saveSegment
+//
+// Saves a segment to pFilename in which each value is pValue and sets the
+// modification time of the file pTimeOffset milliseconds ahead so the change
+// is seen even if the file system records times coarsely.
+//
+
+private void saveSegment(String pFilename, int pValue, long pTimeOffset)
+                                                            throws IOException
+{
+
+    traceData.resetAll();
+    traceData.markSegmentStart();
+
+    for (int i = 0; i < SEGMENT_LENGTH; i++){
+        traceData.storeDataAtInsertionPoint(pValue);
+        traceData.advanceInsertionPoint();
+    }
+
+    traceData.markSegmentEnd();
+
+    SegmentDataWriter out = new SegmentDataWriter();
+    traceData.saveSegment(out);
+
+    File file = new File(pFilename);
+
+    long modified = file.lastModified();
+
+    Files.write(file.toPath(), out.getBytes());
+
+    if (pTimeOffset != 0) {file.setLastModified(modified + pTimeOffset);}
+
+}//end of SegmentCacheBenchmark::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCacheBenchmark::checkLoad
+//
+// Loads the segment through the cache and throws an exception if the first
+// value is not pExpected.
+//
+
+private void checkLoad(int pExpected) throws Exception
+{
+
+    traceData.resetAll();
+
+    traceData.loadSegment(cache.openSegmentData(dataFilename), "");
+
+    int value = traceData.getDataBuffer1()[0];
+
+    if (value != pExpected){
+        throw new Exception("Cache returned " + value + " instead of "
+                                                        + pExpected + ".");
+    }
+
+}//end of SegmentCacheBenchmark::checkLoad
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCacheBenchmark::checkPrefetch
+//
+// Prefetches a second segment and waits for it to be placed in the cache.
+//
+
+private void checkPrefetch() throws Exception
+{
+
+    String next = new File(folder, "20 - 0000002.dat").getPath();
+    String nextInfo = new File(folder, "20 - 0000002.info").getPath();
+
+    saveSegment(next, 3, 0);
+
+    cache.prefetch(next, nextInfo);
+
+    long end = System.currentTimeMillis() + CHECK_TIMEOUT;
+
+    while (!cache.isCached(next) || !cache.isCached(nextInfo)){
+        if (System.currentTimeMillis() > end){
+            throw new Exception("Prefetched segment was not cached.");
+        }
+        Thread.sleep(10);
+    }
+
+}//end of SegmentCacheBenchmark::checkPrefetch
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCacheBenchmark::run
+//
+// Loads the segment into the trace.
+//
+
+@Override
+public long run() throws IOException
+{
+
+    traceData.resetAll();
+
+    BufferedReader in = cached ? cache.openSegmentData(dataFilename)
+                        : SegmentDataReader.open(dataFilename, "UTF-8");
+
+    try{
+        return(traceData.loadSegment(in, "").length());
+    }
+    finally{
+        in.close();
+    }
+
+}//end of SegmentCacheBenchmark::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCacheBenchmark::tearDown
+//
+
+@Override
+public void tearDown()
+{
+
+    if (cache != null) {cache.shutDown();}
+
+    if (folder != null){
+        File[] files = folder.listFiles();
+        if (files != null) {for (File f : files) {f.delete();}}
+        folder.delete();
+    }
+
+}//end of SegmentCacheBenchmark::tearDown
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentCacheBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,156 @@
+/******************************************************************************
+* Title: SegmentDataBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures saving and loading the data of a trace for one segment
+* in either the text or the binary segment file format.
+*
+* The trace is filled with 4000 data points -- roughly one 40 foot joint --
+* and the segment start and end are marked as done during an inspection.
+*
+* One operation is saving or loading the data sets and flags of one trace.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.mksystems.stripchart.PlotterData;
+import chart.mksystems.stripchart.SegmentDataReader;
+import chart.mksystems.stripchart.SegmentDataWriter;
+import chart.mksystems.stripchart.TraceData;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentDataBenchmark
+//
+
+public class SegmentDataBenchmark extends Benchmark{
+
+    static final int BUFFER_SIZE = 10000;
+    static final int SEGMENT_LENGTH = 4000;
+
+    boolean binary, load;
+
+    TraceData traceData;
+    String text;
+    byte[] bytes;
+
+//-----------------------------------------------------------------------------
+// SegmentDataBenchmark::SegmentDataBenchmark (constructor)
+//
+// If pBinary is true, the binary format is used, otherwise the text format.
+// If pLoad is true, loading is measured, otherwise saving.
+//
+
+public SegmentDataBenchmark(boolean pBinary, boolean pLoad)
+{
+
+    binary = pBinary; load = pLoad;
+
+}//end of SegmentDataBenchmark::SegmentDataBenchmark (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("TraceData." + (load ? "loadSegment" : "saveSegment")
+                                        + (binary ? " (binary)" : " (text)"));
+
+}//end of SegmentDataBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataBenchmark::setUp
+//
+// Fills a trace with one segment of data and saves it in both formats for
+// use by the load benchmarks.
+//
+
+@Override
+public void setUp() throws IOException
+{
+
+    traceData = new TraceData(BUFFER_SIZE, PlotterData.POINT_TO_POINT,
+                                                            PlotterData.MAX);
+    traceData.init();
+    traceData.resetAll();
+
+    int[] peaks = SignalData.createPeaks(SEGMENT_LENGTH, 9);
+
+    traceData.markSegmentStart();
+
+    for (int i = 0; i < SEGMENT_LENGTH; i++){
+        traceData.storeDataAtInsertionPoint(peaks[i]);
+        traceData.advanceInsertionPoint();
+    }
+
+    traceData.markSegmentEnd();
+
+    StringWriter textOut = new StringWriter();
+    try (BufferedWriter out = new BufferedWriter(textOut)){
+        traceData.saveSegment(out);
+    }
+    text = textOut.toString();
+
+    SegmentDataWriter binaryOut = new SegmentDataWriter();
+    traceData.saveSegment(binaryOut);
+    bytes = binaryOut.getBytes();
+
+}//end of SegmentDataBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataBenchmark::run
+//
+
+@Override
+public long run() throws IOException
+{
+
+    if (load){
+
+        BufferedReader in = binary ? SegmentDataReader.open(bytes)
+                                : new BufferedReader(new StringReader(text));
+
+        return(traceData.loadSegment(in, "").length());
+
+    }
+
+    if (binary){
+        SegmentDataWriter out = new SegmentDataWriter();
+        traceData.saveSegment(out);
+        return(out.getBytes().length);
+    }
+
+    StringWriter textOut = new StringWriter(text.length());
+    BufferedWriter out = new BufferedWriter(textOut);
+    traceData.saveSegment(out);
+    out.flush();
+
+    return(textOut.getBuffer().length());
+
+}//end of SegmentDataBenchmark::run
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentDataBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,276 @@
+/******************************************************************************
+* Title: SegmentIndexBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures finding the next piece with flags in a job, either by
+* loading each segment data file in turn or by reading the segment index of
+* the job.
+*
+* Only the last piece of the job has flags. Before measuring, the index read
+* back from the file is checked against the summaries of the pieces; the
+* benchmark fails if they differ or if either search does not find the last
+* piece.
+*
+* One operation is one search from the first piece.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.SegmentIndex;
+import chart.mksystems.stripchart.PlotterData;
+import chart.mksystems.stripchart.SegmentDataReader;
+import chart.mksystems.stripchart.SegmentDataWriter;
+import chart.mksystems.stripchart.SegmentStats;
+import chart.mksystems.stripchart.TraceData;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentIndexBenchmark
+//
+
+public class SegmentIndexBenchmark extends Benchmark{
+
+    static final int BUFFER_SIZE = 10000;
+    static final int SEGMENT_LENGTH = 4000;
+    static final int NUMBER_OF_PIECES = 20;
+
+    boolean indexed;
+
+    TraceData traceData;
+
+    File folder;
+    String jobPath;
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBenchmark::SegmentIndexBenchmark (constructor)
+//
+// If pIndexed is true, the search uses the segment index, otherwise the
+// segment data files.
+//
+
+public SegmentIndexBenchmark(boolean pIndexed)
+{
+
+    indexed = pIndexed;
+
+}//end of SegmentIndexBenchmark::SegmentIndexBenchmark (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("SegmentIndex.findNext" + (indexed ? " (index)" : " (files)"));
+
+}//end of SegmentIndexBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBenchmark::setUp
+//
+// Saves the segment data files and the index for the job and checks both.
+//
+
+@Override
+public void setUp() throws Exception
+{
+
+    traceData = new TraceData(BUFFER_SIZE, PlotterData.POINT_TO_POINT,
+                                                            PlotterData.MAX);
+    traceData.init();
+
+    folder = Files.createTempDirectory("segment index").toFile();
+
+    jobPath = folder.getPath() + File.separator;
+
+    Random random = new Random(1);
+
+    ArrayList<SegmentIndex.Entry> entries = new ArrayList<>();
+
+    for (int piece = 1; piece <= NUMBER_OF_PIECES; piece++){
+        entries.add(
+                saveSegment(piece, random, piece == NUMBER_OF_PIECES));
+    }
+
+    SegmentIndex.append(jobPath, entries);
+
+    SegmentIndex index = SegmentIndex.read(jobPath);
+
+    for (SegmentIndex.Entry entry : entries){
+
+        SegmentIndex.Entry read = index.getEntry(entry.pieceNumber, false);
+
+        if (read == null || read.getFlagCount() != entry.getFlagCount()
+            || read.charts.get(0).maxValue != entry.charts.get(0).maxValue){
+            throw new Exception("Index entry for piece " + entry.pieceNumber
+                                            + " does not match the piece.");
+        }
+    }
+
+    if (findInIndex() != NUMBER_OF_PIECES
+                                    || findInFiles() != NUMBER_OF_PIECES){
+        throw new Exception("Search did not find the flagged piece.");
+    }
+
+}//end of SegmentIndexBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBenchmark::saveSegment
+//
+// Saves a segment of random values for piece pPiece and returns its index
+// entry. Some positions are flagged if pFlagged is true.
+//
+
+private SegmentIndex.Entry saveSegment(int pPiece, Random pRandom,
+                                        boolean pFlagged) throws IOException
+{
+
+    traceData.resetAll();
+    traceData.markSegmentStart();
+
+    for (int i = 0; i < SEGMENT_LENGTH; i++){
+        traceData.storeDataAtInsertionPoint(pRandom.nextInt(100));
+        if (pFlagged && i % 500 == 0){
+            traceData.storeThresholdAtInsertionPoint(0);
+        }
+        traceData.advanceInsertionPoint();
+    }
+
+    traceData.markSegmentEnd();
+
+    SegmentDataWriter out = new SegmentDataWriter();
+    traceData.saveSegment(out);
+
+    Files.write(new File(getFilename(pPiece)).toPath(), out.getBytes());
+
+    SegmentStats stats = new SegmentStats();
+    traceData.addSegmentStats(stats);
+
+    SegmentIndex.ChartEntry chart = new SegmentIndex.ChartEntry();
+    chart.shortTitle = "Trace";
+    chart.flagCount = stats.flagCount;
+    chart.hasValues = stats.hasValues();
+    chart.minValue = stats.minValue;
+    chart.maxValue = stats.maxValue;
+
+    SegmentIndex.Entry entry = new SegmentIndex.Entry();
+    entry.pieceNumber = pPiece;
+    entry.measuredLength = SEGMENT_LENGTH / 12.0;
+    entry.charts.add(chart);
+
+    return(entry);
+
+}//end of SegmentIndexBenchmark::saveSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBenchmark::getFilename
+//
+
+private String getFilename(int pPiece)
+{
+
+    return(jobPath + String.format("20 - %07d.dat", pPiece));
+
+}//end of SegmentIndexBenchmark::getFilename
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBenchmark::findInIndex
+//
+// Returns the first piece with flags using the index.
+//
+
+private int findInIndex() throws IOException
+{
+
+    return(SegmentIndex.read(jobPath).findNext(
+                                0, false, true, e -> e.getFlagCount() > 0));
+
+}//end of SegmentIndexBenchmark::findInIndex
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBenchmark::findInFiles
+//
+// Returns the first piece with flags by loading each segment data file.
+//
+
+private int findInFiles() throws IOException
+{
+
+    for (int piece = 1; piece <= NUMBER_OF_PIECES; piece++){
+
+        traceData.resetAll();
+
+        try (BufferedReader in =
+                    SegmentDataReader.open(getFilename(piece), "UTF-8")){
+            traceData.loadSegment(in, "");
+        }
+
+        SegmentStats stats = new SegmentStats();
+        traceData.addSegmentStats(stats);
+
+        if (stats.flagCount > 0) {return(piece);}
+
+    }
+
+    return(-1);
+
+}//end of SegmentIndexBenchmark::findInFiles
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBenchmark::run
+//
+
+@Override
+public long run() throws IOException
+{
+
+    return(indexed ? findInIndex() : findInFiles());
+
+}//end of SegmentIndexBenchmark::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBenchmark::tearDown
+//
+
+@Override
+public void tearDown()
+{
+
+    if (folder != null){
+        File[] files = folder.listFiles();
+        if (files != null) {for (File f : files) {f.delete();}}
+        folder.delete();
+    }
+
+}//end of SegmentIndexBenchmark::tearDown
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentIndexBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
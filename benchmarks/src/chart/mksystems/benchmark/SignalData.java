@@ -0,0 +1,65 @@
+/******************************************************************************
+* Title: SignalData.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class creates repeatable data resembling that received from the UT
+* boards for use by the benchmarks.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import java.util.Random;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SignalData
+//
+
+public class SignalData extends Object{
+
+//-----------------------------------------------------------------------------
+// SignalData::createPeaks
+//
+// Returns pCount peak values in the range 0 to 100 percent of screen height.
+// Most values are low level noise with an occasional larger indication, as
+// seen when inspecting typical pipe. The same pSeed always produces the same
+// values.
+//
+
+public static int[] createPeaks(int pCount, long pSeed)
+{
+
+    Random random = new Random(pSeed);
+
+    int[] peaks = new int[pCount];
+
+    for (int i = 0; i < pCount; i++){
+
+        //noise floor of 5 to 20 percent
+        int peak = 5 + random.nextInt(16);
+
+        //roughly one in fifty is an indication of 30 to 100 percent
+        if (random.nextInt(50) == 0) {peak = 30 + random.nextInt(71);}
+
+        peaks[i] = peak;
+
+    }
+
+    return(peaks);
+
+}//end of SignalData::createPeaks
+//-----------------------------------------------------------------------------
+
+}//end of class SignalData
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,133 @@
+/******************************************************************************
+* Title: ThresholdBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures Threshold.checkViolation using the thresholds of the
+* strip charts in a real configuration file.
+*
+* Each peak is checked against the thresholds of its chart until the first
+* violation is found, as done by Hardware.collectAnalogDataMinOrMax.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.mksystems.inifile.IniFile;
+import chart.mksystems.stripchart.Threshold;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ThresholdBenchmark
+//
+
+public class ThresholdBenchmark extends Benchmark{
+
+    static final int OPS_PER_CALL = 4096;
+
+    Threshold[][] thresholds;
+    int[] peaks;
+    int chart = 0;
+
+//-----------------------------------------------------------------------------
+// ThresholdBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("Threshold.checkViolation");
+
+}//end of ThresholdBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ThresholdBenchmark::getOperationsPerCall
+//
+
+@Override
+public int getOperationsPerCall()
+{
+
+    return(OPS_PER_CALL);
+
+}//end of ThresholdBenchmark::getOperationsPerCall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ThresholdBenchmark::setUp
+//
+// Creates the thresholds for each strip chart of the first chart group in
+// the configuration file.
+//
+
+@Override
+public void setUp() throws Exception
+{
+
+    IniFile configFile = new IniFile(getConfigFilename(), "UTF-8");
+    configFile.init();
+
+    int numberOfCharts =
+            configFile.readInt("Chart Group 1", "Number Of Strip Charts", 1);
+
+    thresholds = new Threshold[numberOfCharts][];
+
+    for (int i = 0; i < numberOfCharts; i++){
+
+        int numberOfThresholds = configFile.readInt(
+                "Chart Group 1 Strip Chart " + (i + 1),
+                                                "Number Of Thresholds", 2);
+
+        thresholds[i] = new Threshold[numberOfThresholds];
+
+        for (int j = 0; j < numberOfThresholds; j++){
+            thresholds[i][j] = new Threshold(null, configFile, 0, i, j);
+        }
+
+    }
+
+    peaks = SignalData.createPeaks(OPS_PER_CALL, 4);
+
+}//end of ThresholdBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ThresholdBenchmark::run
+//
+// Checks a buffer of peaks against the thresholds of the next chart.
+//
+
+@Override
+public long run()
+{
+
+    Threshold[] t = thresholds[chart];
+
+    if (++chart == thresholds.length) {chart = 0;}
+
+    long violations = 0;
+
+    for (int i = 0; i < OPS_PER_CALL; i++){
+        for (int j = 0; j < t.length; j++){
+            if (t[j].checkViolation(peaks[i])) {violations += j + 1; break;}
+        }
+    }
+
+    return(violations);
+
+}//end of ThresholdBenchmark::run
+//-----------------------------------------------------------------------------
+
+}//end of class ThresholdBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,120 @@
+/******************************************************************************
+* Title: TraceDataGetNewDataBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures TraceData.getNewData as used by the display thread to
+* retrieve the data inserted into a trace.
+*
+* Each call inserts a block of data and then retrieves all of it, so the time
+* reported includes one insertion and one retrieval for each buffer position
+* just as when the chart is running.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.mksystems.stripchart.PlotterData;
+import chart.mksystems.stripchart.TraceData;
+import chart.mksystems.stripchart.TraceDatum;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class TraceDataGetNewDataBenchmark
+//
+
+public class TraceDataGetNewDataBenchmark extends Benchmark{
+
+    static final int BUFFER_SIZE = 10000;
+    static final int POSITIONS_PER_CALL = 256;
+
+    TraceData traceData;
+    TraceDatum traceDatum;
+    int[] peaks;
+    int peakIndex = 0;
+
+//-----------------------------------------------------------------------------
+// TraceDataGetNewDataBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("TraceData.getNewData");
+
+}//end of TraceDataGetNewDataBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataGetNewDataBenchmark::getOperationsPerCall
+//
+
+@Override
+public int getOperationsPerCall()
+{
+
+    return(POSITIONS_PER_CALL);
+
+}//end of TraceDataGetNewDataBenchmark::getOperationsPerCall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataGetNewDataBenchmark::setUp
+//
+
+@Override
+public void setUp()
+{
+
+    traceData = new TraceData(BUFFER_SIZE, PlotterData.POINT_TO_POINT,
+                                                            PlotterData.MAX);
+    traceData.init();
+    traceData.resetAll();
+
+    traceDatum = new TraceDatum();
+
+    peaks = SignalData.createPeaks(POSITIONS_PER_CALL * 16, 2);
+
+}//end of TraceDataGetNewDataBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataGetNewDataBenchmark::run
+//
+
+@Override
+public long run()
+{
+
+    for (int i = 0; i < POSITIONS_PER_CALL; i++){
+
+        traceData.storeDataAtInsertionPoint(peaks[peakIndex]);
+        traceData.advanceInsertionPoint();
+
+        if (++peakIndex == peaks.length) {peakIndex = 0;}
+
+    }
+
+    long sum = 0;
+
+    while (traceData.getNewData(traceDatum) != PlotterData.NO_NEW_DATA){
+        sum += traceDatum.newData1;
+    }
+
+    return(sum);
+
+}//end of TraceDataGetNewDataBenchmark::run
+//-----------------------------------------------------------------------------
+
+}//end of class TraceDataGetNewDataBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
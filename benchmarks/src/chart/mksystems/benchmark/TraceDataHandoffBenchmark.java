@@ -0,0 +1,280 @@
+/******************************************************************************
+* Title: TraceDataHandoffBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures the hand off of data through TraceData from a producer
+* thread to a consumer thread while both are running at the same time, as
+* the acquisition thread and the display timer do when the chart is running.
+*
+* Each call releases a block of positions to the producer thread, which
+* stores and advances through them, while the calling thread retrieves them
+* with getNewData as fast as they are published. The call ends when the
+* calling thread has retrieved the entire block.
+*
+* Before measuring, the hand off is checked with the producer erasing data at
+* random while the consumer is reading: the values retrieved by the consumer,
+* applied forward and in reverse as a chart would draw them, must match the
+* final contents of the buffer. Every position written is given a unique
+* value so that a missed erasure leaves a stale value behind. The benchmark
+* fails if any value does not match.
+*
+* One operation is the hand off of one position.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.mksystems.stripchart.PlotterData;
+import chart.mksystems.stripchart.TraceData;
+import chart.mksystems.stripchart.TraceDatum;
+import java.util.Random;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class TraceDataHandoffBenchmark
+//
+
+public class TraceDataHandoffBenchmark extends Benchmark{
+
+    static final int BUFFER_SIZE = 10000;
+    static final int POSITIONS_PER_CALL = 4096;
+
+    static final int CHECK_BUFFER_SIZE = 1 << 16;
+    static final int CHECK_RUNS = 20;
+
+    TraceData traceData;
+    TraceDatum traceDatum;
+
+    Thread producer;
+
+    //number of positions released to the producer thread -- written by the
+    //calling thread only
+    volatile long released = 0;
+
+    volatile boolean stopProducer = false;
+
+//-----------------------------------------------------------------------------
+// TraceDataHandoffBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("TraceData.handoff");
+
+}//end of TraceDataHandoffBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataHandoffBenchmark::getOperationsPerCall
+//
+
+@Override
+public int getOperationsPerCall()
+{
+
+    return(POSITIONS_PER_CALL);
+
+}//end of TraceDataHandoffBenchmark::getOperationsPerCall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataHandoffBenchmark::setUp
+//
+// Checks erasure handling and then starts the producer thread used for the
+// measurements.
+//
+
+@Override
+public void setUp() throws Exception
+{
+
+    for (int i = 0; i < CHECK_RUNS; i++) {checkErasures(i);}
+
+    traceData = new TraceData(BUFFER_SIZE, PlotterData.POINT_TO_POINT,
+                                                            PlotterData.MAX);
+    traceData.init();
+    traceData.resetAll();
+
+    traceDatum = new TraceDatum();
+
+    producer = new Thread(this::produce, "TraceData Producer");
+    producer.setDaemon(true);
+    producer.start();
+
+}//end of TraceDataHandoffBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataHandoffBenchmark::produce
+//
+// Stores and advances through each position released by run.
+//
+
+private void produce()
+{
+
+    long produced = 0;
+    int value = 0;
+
+    while (!stopProducer){
+
+        if (produced == released) {Thread.yield(); continue;}
+
+        traceData.storeDataAtInsertionPoint(value++);
+        traceData.advanceInsertionPoint();
+        produced++;
+
+    }
+
+}//end of TraceDataHandoffBenchmark::produce
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataHandoffBenchmark::checkErasures
+//
+// Runs a producer thread which adds data and erases it at random while this
+// thread reads it. The values read are applied to a copy of the buffer, moving
+// forward and backward as directed by getNewData. When the producer is
+// finished and all data has been read, the copy must match the buffer.
+//
+// Throws an exception if the copy does not match.
+//
+
+private void checkErasures(final int pSeed) throws Exception
+{
+
+    final TraceData data = new TraceData(CHECK_BUFFER_SIZE,
+                                PlotterData.POINT_TO_POINT, PlotterData.MAX);
+    data.init();
+    data.resetAll();
+
+    final int limit = CHECK_BUFFER_SIZE - 100;
+
+    Thread eraser = new Thread(() -> {
+
+        Random random = new Random(pSeed);
+        int position = 0, written = 0;
+
+        while (position < limit){
+
+            if (random.nextInt(64) == 0 && position > 50){
+                for (int i = random.nextInt(40); i > 0; i--){
+                    data.eraseDataAtInsertionPoint();
+                    position--;
+                }
+            }
+            else{
+                //each position written gets a value never used before
+                data.storeDataAtInsertionPoint(++written);
+                data.advanceInsertionPoint();
+                position++;
+            }
+
+        }
+
+    }, "TraceData Eraser");
+
+    eraser.start();
+
+    TraceDatum datum = new TraceDatum();
+    int[] plotted = new int[CHECK_BUFFER_SIZE];
+    int position = -1;
+    long reversals = 0;
+
+    while (true){
+
+        boolean finished = !eraser.isAlive();
+
+        int direction;
+
+        while ((direction = data.getNewData(datum))
+                                                != PlotterData.NO_NEW_DATA){
+            if (direction == PlotterData.FORWARD){
+                plotted[++position] = datum.newData1;
+            }
+            else{
+                position--;
+                reversals++;
+            }
+        }
+
+        if (finished) {break;}
+
+    }
+
+    int[] buffer = data.getDataBuffer1();
+
+    //the last position published is one before the insertion point
+    if (position != limit - 1){
+        throw new Exception("Consumer stopped at " + position
+                                        + " instead of " + (limit - 1) + ".");
+    }
+
+    for (int i = 0; i <= position; i++){
+        if (plotted[i] != buffer[i]){
+            throw new Exception("Value at " + i + " is " + plotted[i]
+                            + " instead of " + buffer[i] + " after "
+                            + reversals + " reversals.");
+        }
+    }
+
+}//end of TraceDataHandoffBenchmark::checkErasures
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataHandoffBenchmark::run
+//
+// Releases a block of positions to the producer thread and retrieves them as
+// they are published.
+//
+
+@Override
+public long run()
+{
+
+    released += POSITIONS_PER_CALL;
+
+    long sum = 0;
+    int count = 0;
+
+    while (count < POSITIONS_PER_CALL){
+        if (traceData.getNewData(traceDatum) == PlotterData.FORWARD){
+            sum += traceDatum.newData1;
+            count++;
+        }
+    }
+
+    return(sum);
+
+}//end of TraceDataHandoffBenchmark::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataHandoffBenchmark::tearDown
+//
+
+@Override
+public void tearDown() throws Exception
+{
+
+    stopProducer = true;
+
+    if (producer != null) {producer.join();}
+
+}//end of TraceDataHandoffBenchmark::tearDown
+//-----------------------------------------------------------------------------
+
+}//end of class TraceDataHandoffBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,116 @@
+/******************************************************************************
+* Title: TraceDataStoreBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures TraceData.storeDataAtInsertionPoint as used by
+* Hardware.collectAnalogData to insert peak data into a trace.
+*
+* Several peaks are stored at each buffer position before the insertion point
+* is advanced, as happens when the peak data arrives faster than the encoder
+* moves the trace.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.benchmark;
+
+import chart.mksystems.stripchart.PlotterData;
+import chart.mksystems.stripchart.TraceData;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class TraceDataStoreBenchmark
+//
+
+public class TraceDataStoreBenchmark extends Benchmark{
+
+    static final int BUFFER_SIZE = 10000;
+    static final int PEAKS_PER_POSITION = 8;
+    static final int OPS_PER_CALL = 1024;
+
+    TraceData traceData;
+    int[] peaks;
+    int peakIndex = 0;
+
+//-----------------------------------------------------------------------------
+// TraceDataStoreBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("TraceData.storeDataAtInsertionPoint");
+
+}//end of TraceDataStoreBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataStoreBenchmark::getOperationsPerCall
+//
+
+@Override
+public int getOperationsPerCall()
+{
+
+    return(OPS_PER_CALL);
+
+}//end of TraceDataStoreBenchmark::getOperationsPerCall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataStoreBenchmark::setUp
+//
+
+@Override
+public void setUp()
+{
+
+    traceData = new TraceData(BUFFER_SIZE, PlotterData.POINT_TO_POINT,
+                                                            PlotterData.MAX);
+    traceData.init();
+    traceData.resetAll();
+
+    peaks = SignalData.createPeaks(OPS_PER_CALL * 16, 1);
+
+}//end of TraceDataStoreBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// TraceDataStoreBenchmark::run
+//
+
+@Override
+public long run()
+{
+
+    long stored = 0;
+
+    for (int i = 0; i < OPS_PER_CALL; i++){
+
+        if (traceData.storeDataAtInsertionPoint(peaks[peakIndex])) {stored++;}
+
+        if (++peakIndex == peaks.length) {peakIndex = 0;}
+
+        if (peakIndex % PEAKS_PER_POSITION == 0){
+            traceData.advanceInsertionPoint();
+        }
+
+    }
+
+    return(stored);
+
+}//end of TraceDataStoreBenchmark::run
+//-----------------------------------------------------------------------------
+
+}//end of class TraceDataStoreBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
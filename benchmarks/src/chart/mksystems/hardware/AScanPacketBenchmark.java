@@ -0,0 +1,245 @@
+/******************************************************************************
+* Title: AScanPacketBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures UTBoard.processOneDataPacket decoding AScan packets and
+* averaging them for display, with the largest amount of smoothing and
+* optionally with a 31 tap FIR filter applied on the host.
+*
+* Before measuring, the averaged AScans without filtering are checked against
+* the average of the last data sets computed directly; the benchmark fails if
+* they differ.
+*
+* One operation is the processing of one packet.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import chart.mksystems.benchmark.Benchmark;
+import chart.mksystems.inifile.IniFile;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class AScanPacketBenchmark
+//
+
+public class AScanPacketBenchmark extends Benchmark{
+
+    static final int PACKETS_IN_RECORDING = 64;
+    static final int FILTER_TAPS = 31;
+
+    boolean filtered;
+
+    HardwareVars hdwVs;
+    UTBoard board;
+
+    //the samples sent in each packet of the recording
+    int[][] samples;
+
+//-----------------------------------------------------------------------------
+// AScanPacketBenchmark::AScanPacketBenchmark (constructor)
+//
+// If pFiltered is true, a FIR filter is applied to each AScan on the host.
+//
+
+public AScanPacketBenchmark(boolean pFiltered)
+{
+
+    filtered = pFiltered;
+
+}//end of AScanPacketBenchmark::AScanPacketBenchmark (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AScanPacketBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("UTBoard.processAScanPacket" + (filtered ? " (FIR)" : ""));
+
+}//end of AScanPacketBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AScanPacketBenchmark::setUp
+//
+// Creates a board with one channel from the configuration file, connects it
+// to the recorded byte stream, and checks the averaging.
+//
+
+@Override
+public void setUp() throws Exception
+{
+
+    String configFilename = getConfigFilename();
+
+    IniFile configFile = new IniFile(configFilename, "UTF-8");
+    configFile.init();
+
+    hdwVs = new HardwareVars(); hdwVs.init();
+
+    Channel channel = new Channel(configFile, null, hdwVs.encoderValues, null,
+                                                                    0, null);
+
+    board = new UTBoard(configFilename, "UT Board 1", 0, true, null, hdwVs,
+                                                            "UTF-8", "UTF-8");
+    board.init();
+
+    board.linkLogicalChannel(0, channel, channel.gates, channel.numberOfGates);
+
+    board.byteIn = new DataInputStream(
+                                new RepeatingInputStream(createRecording()));
+
+    board.enablePacketRing(UTBoard.PACKET_RING_SIZE);
+
+    board.setAScanSmoothing(0, UTBoard.ASCAN_FIFO_SIZE);
+
+    checkAverages();
+
+    if (filtered) {board.setAScanFilter(0, createFilter());}
+
+}//end of AScanPacketBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AScanPacketBenchmark::createRecording
+//
+// Returns a series of AScan packets for board channel 0 in the format sent
+// by the UT boards.
+//
+
+byte[] createRecording() throws IOException
+{
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    Random random = new Random(1);
+
+    samples = new int[PACKETS_IN_RECORDING][UTBoard.ASCAN_SAMPLE_SIZE];
+
+    for (int pkt = 0; pkt < PACKETS_IN_RECORDING; pkt++){
+
+        //header, packet id, DSP chip and core
+        out.write(new byte[] {(byte)0xaa, (byte)0x55, (byte)0xbb, (byte)0x66});
+        out.write(UTBoard.GET_ASCAN_CMD); out.write(0); out.write(0);
+
+        //channel, range, interface crossing position
+        out.write(0); out.write(10); out.writeShort(100 + pkt);
+
+        for (int i = 0; i < UTBoard.ASCAN_SAMPLE_SIZE; i++){
+            samples[pkt][i] = random.nextInt(4000) - 2000;
+            out.writeShort(samples[pkt][i]);
+        }
+
+    }
+
+    out.flush();
+
+    return(bytes.toByteArray());
+
+}//end of AScanPacketBenchmark::createRecording
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AScanPacketBenchmark::createFilter
+//
+// Returns the values for a low pass filter in the format returned by
+// Channel.loadFilter.
+//
+
+int[] createFilter()
+{
+
+    int[] values = new int[FILTER_TAPS + 3];
+
+    values[0] = FILTER_TAPS; values[1] = -12; values[2] = 0;
+
+    int center = FILTER_TAPS / 2;
+
+    for (int k = 0; k < FILTER_TAPS; k++){
+        double x = (k - center) * Math.PI / 4;
+        double sinc = (k == center) ? 1 : Math.sin(x) / x;
+        values[k + 3] = (int)Math.round(1024 * sinc);
+    }
+
+    return(values);
+
+}//end of AScanPacketBenchmark::createFilter
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AScanPacketBenchmark::checkAverages
+//
+// Processes enough packets to fill the smoothing FIFO twice and throws an
+// exception if any averaged AScan differs from the average of the last
+// ASCAN_FIFO_SIZE data sets, with data sets not yet received taken as zero.
+//
+
+void checkAverages() throws Exception
+{
+
+    int count = UTBoard.ASCAN_FIFO_SIZE;
+
+    for (int pkt = 0; pkt < count * 2; pkt++){
+
+        board.processOneDataPacket(false, 0);
+
+        for (int i = 0; i < UTBoard.ASCAN_SAMPLE_SIZE; i++){
+
+            int sum = 0;
+
+            for (int p = Math.max(0, pkt - count + 1); p <= pkt; p++){
+                sum += (int)(samples[p % PACKETS_IN_RECORDING][i]
+                                                        * UTBoard.ASCAN_SCALE);
+            }
+
+            if (board.aScan.buffer[i] != sum / count){
+                throw new Exception("AScan sample " + i + " of packet " + pkt
+                    + " is " + board.aScan.buffer[i] + " instead of "
+                    + (sum / count) + ".");
+            }
+
+        }
+
+    }
+
+}//end of AScanPacketBenchmark::checkAverages
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AScanPacketBenchmark::run
+//
+// Processes one packet.
+//
+
+@Override
+public long run()
+{
+
+    return(board.processOneDataPacket(false, 0) + board.aScan.buffer[200]);
+
+}//end of AScanPacketBenchmark::run
+//-----------------------------------------------------------------------------
+
+}//end of class AScanPacketBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
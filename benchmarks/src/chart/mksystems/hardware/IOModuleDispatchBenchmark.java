@@ -0,0 +1,235 @@
+/******************************************************************************
+* Title: IOModuleDispatchBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures the time taken by the acquisition thread to hand a new
+* wall reading for each of the four analog outputs to IOModuleDispatcher
+* while the module, an IOModuleStandIn, takes SLOW_MODULE_DELAY to answer
+* each request.
+*
+* Before measuring, the dispatcher is checked against the stand-in: a burst
+* of values must result in the newest value for each output being received
+* on a single kept-alive connection, and relay commands must be delivered to
+* a stand-in which replies without headers and closes the connection after
+* each reply. The benchmark fails if either check fails.
+*
+* One operation is the submission of one value.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import chart.mksystems.benchmark.Benchmark;
+import java.util.Locale;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IOModuleDispatchBenchmark
+//
+
+public class IOModuleDispatchBenchmark extends Benchmark{
+
+    static final int NUMBER_OF_OUTPUTS = 4;
+    static final int SLOW_MODULE_DELAY = 50;
+    static final int MIN_INTERVAL = 100;
+    static final int CHECK_TIMEOUT = 10000;
+
+    IOModuleStandIn standIn;
+    IOModuleDispatcher dispatcher;
+
+    String[] keys = new String[NUMBER_OF_OUTPUTS];
+    String[] paths = new String[1000];
+
+    int count = 0;
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatchBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("IOModuleDispatcher.submit");
+
+}//end of IOModuleDispatchBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatchBenchmark::getOperationsPerCall
+//
+
+@Override
+public int getOperationsPerCall()
+{
+
+    return(NUMBER_OF_OUTPUTS);
+
+}//end of IOModuleDispatchBenchmark::getOperationsPerCall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatchBenchmark::setUp
+//
+// Starts the stand-in and dispatcher and checks that they work together. The
+// request paths are prepared in advance so only the submission is measured.
+//
+
+@Override
+public void setUp() throws Exception
+{
+
+    for (int i = 0; i < NUMBER_OF_OUTPUTS; i++) {keys[i] = "an" + (i + 1);}
+
+    for (int i = 0; i < paths.length; i++){
+        paths[i] = String.format(Locale.US, "/state.xml?an%dState=%.2f"
+            + "&noReply=1", i % NUMBER_OF_OUTPUTS + 1, 4.0 + (i % 1600) / 100.0);
+    }
+
+    checkRelayCommands();
+
+    standIn = new IOModuleStandIn(SLOW_MODULE_DELAY, false);
+    standIn.init();
+
+    dispatcher = new IOModuleDispatcher("IO Module Benchmark", "127.0.0.1",
+                                            standIn.getPort(), MIN_INTERVAL);
+
+    checkCoalescing();
+
+}//end of IOModuleDispatchBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatchBenchmark::checkCoalescing
+//
+// Submits a burst of values for each output and checks that the stand-in
+// receives the last value for each on one connection.
+//
+
+private void checkCoalescing() throws Exception
+{
+
+    for (int i = 0; i < 100; i++){
+        for (int j = 0; j < NUMBER_OF_OUTPUTS; j++){
+            dispatcher.submit(keys[j], "/state.xml?" + keys[j] + "State="
+                                                + i + "&noReply=1", false);
+        }
+    }
+
+    for (int j = 0; j < NUMBER_OF_OUTPUTS; j++){
+        waitForValue(standIn, keys[j] + "State", "99");
+    }
+
+    if (standIn.getConnectionCount() != 1){
+        throw new Exception("Connection not reused: "
+                                            + standIn.getConnectionCount());
+    }
+
+    if (dispatcher.getCommandsCoalesced() == 0){
+        throw new Exception("No commands were coalesced.");
+    }
+
+}//end of IOModuleDispatchBenchmark::checkCoalescing
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatchBenchmark::checkRelayCommands
+//
+// Sends relay commands one at a time to a stand-in which closes the
+// connection after each reply and checks that each is received.
+//
+
+private void checkRelayCommands() throws Exception
+{
+
+    IOModuleStandIn relay = new IOModuleStandIn(0, true);
+    relay.init();
+
+    IOModuleDispatcher relayDispatcher = new IOModuleDispatcher(
+                "IO Module Benchmark Relay", "127.0.0.1", relay.getPort(), 0);
+
+    try{
+        for (int i = 0; i < 3; i++){
+            relayDispatcher.submit("relay", "/state.xml?relayState=" + i,
+                                                                        true);
+            waitForValue(relay, "relayState", "" + i);
+        }
+    }
+    finally{
+        relayDispatcher.shutDown();
+        relay.shutDown();
+    }
+
+}//end of IOModuleDispatchBenchmark::checkRelayCommands
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatchBenchmark::waitForValue
+//
+// Waits until pStandIn has received pValue for parameter pName. Throws an
+// exception if not received within CHECK_TIMEOUT.
+//
+
+private void waitForValue(IOModuleStandIn pStandIn, String pName,
+                                                String pValue) throws Exception
+{
+
+    long end = System.currentTimeMillis() + CHECK_TIMEOUT;
+
+    while (!pValue.equals(pStandIn.getLastValue(pName))){
+        if (System.currentTimeMillis() > end){
+            throw new Exception("Stand-in did not receive " + pName + "="
+                    + pValue + " (last " + pStandIn.getLastValue(pName) + ")");
+        }
+        Thread.sleep(10);
+    }
+
+}//end of IOModuleDispatchBenchmark::waitForValue
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatchBenchmark::run
+//
+// Submits a new value for each output.
+//
+
+@Override
+public long run()
+{
+
+    for (int i = 0; i < NUMBER_OF_OUTPUTS; i++){
+        dispatcher.submit(keys[i], paths[count], false);
+        if (++count == paths.length) {count = 0;}
+    }
+
+    return(dispatcher.getPendingCount());
+
+}//end of IOModuleDispatchBenchmark::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatchBenchmark::tearDown
+//
+
+@Override
+public void tearDown()
+{
+
+    if (dispatcher != null) {dispatcher.shutDown();}
+    if (standIn != null) {standIn.shutDown();}
+
+}//end of IOModuleDispatchBenchmark::tearDown
+//-----------------------------------------------------------------------------
+
+}//end of class IOModuleDispatchBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,302 @@
+/******************************************************************************
+* Title: IOModuleStandIn.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class stands in for an Ethernet I/O module such as the X-317 Analog
+* Output Module or WebRelay so IOModuleDispatcher can be exercised without
+* hardware. It listens on a local port and answers GET requests for
+* state.xml the way the modules do.
+*
+* Each request can be delayed to simulate a slow module. If headerless
+* replies are selected, the reply is sent without HTTP headers and the
+* connection is closed, as done by the Control by Web modules. Otherwise a
+* reply with a Content-Length header is sent and the connection is kept open.
+* Requests with the noReply=1 parameter receive no reply.
+*
+* The number of requests and connections and the last value received for
+* each parameter are recorded so they can be checked by the caller.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IOModuleStandIn
+//
+
+public class IOModuleStandIn extends Thread{
+
+    static final String REPLY = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                                        + "<datavalues><relaystate>1"
+                                        + "</relaystate></datavalues>";
+
+    ServerSocket serverSocket;
+
+    int responseDelay;
+    boolean headerlessReplies;
+
+    final AtomicLong requestCount = new AtomicLong(0);
+    final AtomicLong connectionCount = new AtomicLong(0);
+
+    final ConcurrentHashMap<String, String> lastValues =
+                                                    new ConcurrentHashMap<>();
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::IOModuleStandIn (constructor)
+//
+// Each request is delayed by pResponseDelay milliseconds. If
+// pHeaderlessReplies is true, replies are sent without headers and the
+// connection is closed after each one.
+//
+
+public IOModuleStandIn(int pResponseDelay, boolean pHeaderlessReplies)
+{
+
+    super("IO Module Stand-In");
+
+    responseDelay = pResponseDelay;
+    headerlessReplies = pHeaderlessReplies;
+
+    setDaemon(true);
+
+}//end of IOModuleStandIn::IOModuleStandIn (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::init
+//
+// Opens the listening socket on a free local port and starts the thread.
+//
+
+public void init() throws IOException
+{
+
+    serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+    start();
+
+}//end of IOModuleStandIn::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::getAddress
+//
+// Returns the address in the form used for "Module IP Address" in the
+// configuration file.
+//
+
+public String getAddress()
+{
+
+    return(serverSocket.getInetAddress().getHostAddress() + ":"
+                                                + serverSocket.getLocalPort());
+
+}//end of IOModuleStandIn::getAddress
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::getPort
+//
+
+public int getPort()
+{
+
+    return(serverSocket.getLocalPort());
+
+}//end of IOModuleStandIn::getPort
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::getRequestCount
+//
+
+public long getRequestCount()
+{
+
+    return(requestCount.get());
+
+}//end of IOModuleStandIn::getRequestCount
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::getConnectionCount
+//
+
+public long getConnectionCount()
+{
+
+    return(connectionCount.get());
+
+}//end of IOModuleStandIn::getConnectionCount
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::getLastValue
+//
+// Returns the last value received for parameter pName, such as "an1State",
+// or null if none has been received.
+//
+
+public String getLastValue(String pName)
+{
+
+    return(lastValues.get(pName));
+
+}//end of IOModuleStandIn::getLastValue
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::shutDown
+//
+
+public void shutDown()
+{
+
+    interrupt();
+
+    try{serverSocket.close();} catch(IOException e){}
+
+}//end of IOModuleStandIn::shutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::run
+//
+// Accepts connections and handles each in a separate thread.
+//
+
+@Override
+public void run()
+{
+
+    while (!isInterrupted()){
+
+        Socket socket;
+
+        try{
+            socket = serverSocket.accept();
+        }
+        catch(IOException e){
+            return;
+        }
+
+        connectionCount.incrementAndGet();
+
+        Thread handler = new Thread(() -> handleConnection(socket),
+                                                    "IO Module Stand-In Conn");
+        handler.setDaemon(true);
+        handler.start();
+
+    }
+
+}//end of IOModuleStandIn::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::handleConnection
+//
+// Answers requests on pSocket until it is closed.
+//
+
+private void handleConnection(Socket pSocket)
+{
+
+    try (Socket socket = pSocket){
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.US_ASCII));
+
+        OutputStream out = socket.getOutputStream();
+
+        String requestLine;
+
+        while ((requestLine = in.readLine()) != null){
+
+            if (requestLine.isEmpty()) {continue;}
+
+            //skip the headers
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {}
+
+            String path = requestLine.split(" ")[1];
+
+            recordValues(path);
+
+            if (responseDelay > 0) {Thread.sleep(responseDelay);}
+
+            requestCount.incrementAndGet();
+
+            if (path.contains("noReply=1")) {continue;}
+
+            byte[] body = REPLY.getBytes(StandardCharsets.US_ASCII);
+
+            if (headerlessReplies){
+                out.write(body);
+                out.flush();
+                return;
+            }
+
+            out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/xml\r\n"
+                + "Content-Length: " + body.length + "\r\n\r\n")
+                                    .getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+
+        }
+
+    }
+    catch(IOException | InterruptedException e){
+        //connection closed by the client or stand-in shut down
+    }
+
+}//end of IOModuleStandIn::handleConnection
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleStandIn::recordValues
+//
+// Stores the value of each parameter in request path pPath.
+//
+
+private void recordValues(String pPath)
+{
+
+    int query = pPath.indexOf('?');
+
+    if (query == -1) {return;}
+
+    for (String param : pPath.substring(query + 1).split("&")){
+        int equals = param.indexOf('=');
+        if (equals > 0){
+            lastValues.put(param.substring(0, equals),
+                                               param.substring(equals + 1));
+        }
+    }
+
+}//end of IOModuleStandIn::recordValues
+//-----------------------------------------------------------------------------
+
+}//end of class IOModuleStandIn
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,284 @@
+/******************************************************************************
+* Title: PeakPacketBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures UTBoard.processOneDataPacket decoding peak data packets
+* and storing the results for the channels and gates.
+*
+* The channels and gates are created from a real configuration file and
+* grouped four to a board as they would be in a chassis. Each board is fed
+* an endless byte stream which repeats a recording of peak data packets. If
+* the system property bench.utRecording names a file of bytes captured from a
+* UT board's socket, either raw or a capture file written by StreamCapture,
+* that recording is used for every board; otherwise a
+* recording is built to match the channel and gate setup of each board in
+* the same format as sent by the UT boards.
+*
+* One operation is the processing of one packet.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import chart.mksystems.benchmark.Benchmark;
+import chart.mksystems.benchmark.SignalData;
+import chart.mksystems.inifile.IniFile;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class PeakPacketBenchmark
+//
+
+public class PeakPacketBenchmark extends Benchmark{
+
+    static final int PACKETS_IN_RECORDING = 256;
+
+    HardwareVars hdwVs;
+    Channel[] channels;
+    PeakStore peakStore;
+    UTBoard[] boards;
+
+//-----------------------------------------------------------------------------
+// PeakPacketBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("UTBoard.processOneDataPacket");
+
+}//end of PeakPacketBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakPacketBenchmark::getOperationsPerCall
+//
+
+@Override
+public int getOperationsPerCall()
+{
+
+    return(boards.length);
+
+}//end of PeakPacketBenchmark::getOperationsPerCall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakPacketBenchmark::setUp
+//
+// Creates the channels from the configuration file, links them to the boards
+// and connects each board to its recorded byte stream.
+//
+
+@Override
+public void setUp() throws Exception
+{
+
+    String configFilename = getConfigFilename();
+
+    IniFile configFile = new IniFile(configFilename, "UTF-8");
+    configFile.init();
+
+    hdwVs = new HardwareVars(); hdwVs.init();
+
+    int numberOfChannels =
+        configFile.readInt("Hardware", "Number of Analog Channels", 4);
+
+    channels = new Channel[numberOfChannels];
+
+    for (int i = 0; i < numberOfChannels; i++){
+        channels[i] = new Channel(configFile, null, hdwVs.encoderValues, null,
+                                                                    i, null);
+    }
+
+    peakStore = new PeakStore(channels);
+
+    String recordingFilename = System.getProperty("bench.utRecording");
+
+    byte[] recording = null;
+
+    if (recordingFilename != null
+                    && recordingFilename.endsWith(StreamCapture.EXTENSION)){
+        recording = ReplaySimulator.readReceivedBytes(recordingFilename);
+    }
+    else if (recordingFilename != null){
+        recording = Files.readAllBytes(Paths.get(recordingFilename));
+    }
+
+    int numberOfBoards =
+                    (numberOfChannels + UTBoard.NUMBER_OF_BOARD_CHANNELS - 1)
+                                            / UTBoard.NUMBER_OF_BOARD_CHANNELS;
+
+    boards = new UTBoard[numberOfBoards];
+
+    for (int b = 0; b < numberOfBoards; b++){
+
+        UTBoard board = new UTBoard(configFilename, "UT Board " + (b + 1), b,
+                                        true, null, hdwVs, "UTF-8", "UTF-8");
+        board.init();
+
+        for (int bc = 0; bc < UTBoard.NUMBER_OF_BOARD_CHANNELS; bc++){
+
+            int ch = b * UTBoard.NUMBER_OF_BOARD_CHANNELS + bc;
+
+            if (ch >= numberOfChannels) {break;}
+
+            linkChannel(board, bc, channels[ch]);
+
+        }
+
+        byte[] boardRecording =
+                        recording != null ? recording : createRecording(board);
+
+        board.byteIn = new DataInputStream(
+                                    new RepeatingInputStream(boardRecording));
+
+        board.enablePacketRing(UTBoard.PACKET_RING_SIZE);
+
+        boards[b] = board;
+
+    }
+
+}//end of PeakPacketBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakPacketBenchmark::linkChannel
+//
+// Links pChannel to board channel pBoardChannel of pBoard as done by
+// Channel.initialize, without sending any settings to the remote.
+//
+
+void linkChannel(UTBoard pBoard, int pBoardChannel, Channel pChannel)
+{
+
+    pBoard.linkLogicalChannel(pBoardChannel, pChannel, pChannel.gates,
+                                                    pChannel.numberOfGates);
+
+    boolean wallStart = false, wallEnd = false;
+
+    for (int i = 0; i < pChannel.numberOfGates; i++){
+        if (pChannel.gates[i].getWallStart()) {wallStart = true;}
+        if (pChannel.gates[i].getWallEnd()) {wallEnd = true;}
+    }
+
+    pBoard.setWallChannelFlag(pBoardChannel, wallStart && wallEnd);
+
+}//end of PeakPacketBenchmark::linkChannel
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakPacketBenchmark::createRecording
+//
+// Returns a series of four channel peak data packets in the format sent by
+// the UT boards, matching the gate and wall setup of pBoard's channels.
+//
+
+byte[] createRecording(UTBoard pBoard) throws IOException
+{
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    int[] peaks = SignalData.createPeaks(4096, pBoard.boardIndex + 5);
+    int p = 0;
+
+    for (int pkt = 0; pkt < PACKETS_IN_RECORDING; pkt++){
+
+        //header, packet id, DSP chip and core
+        out.write(new byte[] {(byte)0xaa, (byte)0x55, (byte)0xbb, (byte)0x66});
+        out.write(UTBoard.GET_PEAK_DATA4_CMD); out.write(0); out.write(0);
+
+        //packet count, status, encoder 1, encoder 2
+        out.write(pkt & 0xff); out.write(0);
+        out.writeInt(pkt * 10); out.writeInt(pkt * 7);
+
+        for (int bc = 0; bc < UTBoard.NUMBER_OF_BOARD_CHANNELS; bc++){
+
+            UTBoard.BoardChannel bdCh = pBoard.bdChs[bc];
+
+            //boards with unused channels return -1 for those channels
+            if (bdCh.logicalChannel == null){
+                out.write(-1); out.write(0);
+                continue;
+            }
+
+            out.write(bc); out.write(bdCh.numberOfGates);
+
+            for (int g = 0; g < bdCh.numberOfGates; g++){
+
+                out.writeShort(UTBoard.HIT_COUNT_MET);
+                out.writeShort(peaks[p]);
+                out.writeShort(0x8000 + 200 + peaks[p]); //flight time
+                out.writeShort(pkt % 12);                //clock position
+
+                if (++p == peaks.length) {p = 0;}
+
+            }
+
+            if (bdCh.isWallChannel){
+
+                int wall = 300 + peaks[p] / 4;
+
+                out.writeShort(wall);       //max wall
+                out.writeShort(0); out.writeShort(1); //unused fractions
+                out.writeShort(0); out.writeShort(1);
+                out.writeShort(pkt % 12);   //max wall clock position
+                out.writeShort(wall - 10);  //min wall
+                out.writeShort(0); out.writeShort(1); //unused fractions
+                out.writeShort(0); out.writeShort(1);
+                out.writeShort(pkt % 12);   //min wall clock position
+
+            }
+
+        }
+
+    }
+
+    out.flush();
+
+    return(bytes.toByteArray());
+
+}//end of PeakPacketBenchmark::createRecording
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakPacketBenchmark::run
+//
+// Processes one packet from each board.
+//
+
+@Override
+public long run()
+{
+
+    long result = 0;
+
+    for (UTBoard board : boards){
+        result += board.processOneDataPacket(false, 0);
+    }
+
+    return(result);
+
+}//end of PeakPacketBenchmark::run
+//-----------------------------------------------------------------------------
+
+}//end of class PeakPacketBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
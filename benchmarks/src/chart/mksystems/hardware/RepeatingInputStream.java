@@ -0,0 +1,113 @@
+/******************************************************************************
+* Title: RepeatingInputStream.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class is used by the packet benchmarks in place of a board's socket
+* stream. It returns the bytes of a recording over and over.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.io.InputStream;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class RepeatingInputStream
+//
+// An endless InputStream which returns the bytes of a recording over and
+// over. Used in place of a board's socket stream.
+//
+
+public class RepeatingInputStream extends InputStream{
+
+    byte[] recording;
+    int position = 0;
+
+//-----------------------------------------------------------------------------
+// RepeatingInputStream::RepeatingInputStream (constructor)
+//
+
+public RepeatingInputStream(byte[] pRecording)
+{
+
+    recording = pRecording;
+
+}//end of RepeatingInputStream::RepeatingInputStream (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// RepeatingInputStream::available
+//
+// There are always bytes available -- the length of the recording is returned
+// as a typical socket would not report more than its buffer holds.
+//
+
+@Override
+public int available()
+{
+
+    return(recording.length);
+
+}//end of RepeatingInputStream::available
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// RepeatingInputStream::read
+//
+
+@Override
+public int read()
+{
+
+    int b = recording[position] & 0xff;
+
+    if (++position == recording.length) {position = 0;}
+
+    return(b);
+
+}//end of RepeatingInputStream::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// RepeatingInputStream::read
+//
+// Copies up to pLength bytes, wrapping back to the start of the recording as
+// many times as needed.
+//
+
+@Override
+public int read(byte[] pBuffer, int pOffset, int pLength)
+{
+
+    int count = 0;
+
+    while (count < pLength){
+
+        int n = Math.min(pLength - count, recording.length - position);
+
+        System.arraycopy(recording, position, pBuffer, pOffset + count, n);
+
+        count += n; position += n;
+
+        if (position == recording.length) {position = 0;}
+
+    }
+
+    return(count);
+
+}//end of RepeatingInputStream::read
+//-----------------------------------------------------------------------------
+
+}//end of class RepeatingInputStream
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
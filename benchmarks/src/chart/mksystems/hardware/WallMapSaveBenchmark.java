@@ -0,0 +1,303 @@
+/******************************************************************************
+* Title: WallMapSaveBenchmark.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class measures WallMapDataSaverTuboBinary writing the wall map for one
+* joint in Tubo binary format using one of its writers:
+*
+*   saveToStream    the original writer, one value at a time
+*   saveToFile      the memory mapped file writer
+*   createFileData  the in-memory writer used by the background piece saver
+*
+* The map data buffers of four mapping boards are filled with wall readings
+* separated by TDC control codes as recorded during an inspection.
+*
+* Before measuring saveToFile or createFileData, their output is compared
+* with that of saveToStream for the same data and the benchmark fails if the
+* two differ in any way.
+*
+* One operation is the saving of one complete file.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import chart.mksystems.benchmark.Benchmark;
+import chart.mksystems.benchmark.SignalData;
+import chart.mksystems.settings.Settings;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class WallMapSaveBenchmark
+//
+
+public class WallMapSaveBenchmark extends Benchmark{
+
+    static final int NUMBER_OF_BOARDS = 4;
+    static final int NUMBER_OF_REVOLUTIONS = 400;
+    static final int SAMPLES_PER_REVOLUTION = 300;
+
+    public static final int STREAM_WRITER = 0;
+    public static final int FILE_WRITER = 1;
+    public static final int MEMORY_WRITER = 2;
+
+    static final String[] WRITER_NAMES =
+                            {"saveToStream", "saveToFile", "createFileData"};
+
+    int writer;
+
+    File tempDir;
+    String filename;
+
+    HardwareVars hdwVs;
+    MapSourceBoard[] mapSourceBoards;
+    WallMapDataSaverTuboBinary saver;
+
+//-----------------------------------------------------------------------------
+// WallMapSaveBenchmark::WallMapSaveBenchmark (constructor)
+//
+// pWriter selects the writer to be measured: STREAM_WRITER, FILE_WRITER, or
+// MEMORY_WRITER.
+//
+
+public WallMapSaveBenchmark(int pWriter)
+{
+
+    writer = pWriter;
+
+}//end of WallMapSaveBenchmark::WallMapSaveBenchmark (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapSaveBenchmark::getName
+//
+
+@Override
+public String getName()
+{
+
+    return("WallMapDataSaverTuboBinary." + WRITER_NAMES[writer]);
+
+}//end of WallMapSaveBenchmark::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapSaveBenchmark::setUp
+//
+
+@Override
+public void setUp() throws Exception
+{
+
+    tempDir = Files.createTempDirectory("wallMapBenchmark").toFile();
+    filename = new File(tempDir, "Benchmark Joint.dat").getPath();
+
+    if (writer != STREAM_WRITER) {verifyOutput();}
+
+    saver = createSaver();
+
+}//end of WallMapSaveBenchmark::setUp
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapSaveBenchmark::verifyOutput
+//
+// Throws an exception if the output of the writer being measured differs
+// from that of saveToStream. Each writer is given its own copy of the data
+// as saving repairs missing TDC codes in the data buffers.
+//
+
+void verifyOutput() throws IOException
+{
+
+    ByteArrayOutputStream reference = new ByteArrayOutputStream();
+    createSaver().saveToStream(reference);
+
+    byte[] expected = reference.toByteArray();
+    byte[] actual = save(createSaver());
+
+    if (!Arrays.equals(expected, actual)){
+        throw new IllegalStateException(WRITER_NAMES[writer]
+                       + " output differs from saveToStream output ("
+                       + actual.length + " vs " + expected.length + " bytes)");
+    }
+
+}//end of WallMapSaveBenchmark::verifyOutput
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapSaveBenchmark::createSaver
+//
+// Returns a saver for four mapping boards filled with map data.
+//
+
+WallMapDataSaverTuboBinary createSaver()
+{
+
+    Settings settings = new Settings(null, null);
+    settings.currentJobPrimaryPath = tempDir.getPath() + File.separator;
+    settings.currentJobName = "Benchmark";
+    settings.jobFileFormat = "UTF-8";
+    settings.nominalWall = 0.250;
+    settings.awayFromHome = "Away From Home";
+    settings.inspectionDirectionDescription = settings.awayFromHome;
+
+    hdwVs = new HardwareVars(); hdwVs.init();
+
+    //head 1 down and up positions -- these determine the distance inspected
+    EncoderValues encoderValues = hdwVs.encoderValues;
+    encoderValues.setEncoder2InchesPerCount(0.01);
+    encoderValues.encoderPosAtHead1DownSignal = 1000;
+    encoderValues.encoderPosAtHead1UpSignal =
+                        1000 + NUMBER_OF_REVOLUTIONS * SAMPLES_PER_REVOLUTION;
+
+    mapSourceBoards = new MapSourceBoard[NUMBER_OF_BOARDS];
+
+    for (int b = 0; b < NUMBER_OF_BOARDS; b++){
+
+        UTBoard board = new UTBoard(getConfigFilename(), "UT Board " + (b+1),
+                                b, true, null, hdwVs, "UTF-8", "UTF-8");
+        board.init();
+
+        board.headForMapDataSensor = 1;
+        board.dataBuffer = createMapData(b);
+
+        mapSourceBoards[b] = new MapSourceBoard();
+        mapSourceBoards[b].init(board);
+
+    }
+
+    WallMapDataSaverTuboBinary lSaver = new WallMapDataSaverTuboBinary(
+     settings, WallMapDataSaver.TUBO_BINARY_FORMAT, NUMBER_OF_BOARDS, false);
+    lSaver.init(mapSourceBoards, encoderValues);
+
+    return(lSaver);
+
+}//end of WallMapSaveBenchmark::createSaver
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapSaveBenchmark::createMapData
+//
+// Returns a map data buffer holding NUMBER_OF_REVOLUTIONS revolutions of
+// wall readings, each preceded by a TDC control code and the whole followed
+// by a stop code. The number of samples in each revolution varies slightly
+// between revolutions and boards as it does in practice, and the second board
+// occasionally misses a TDC code so the repair code is exercised.
+//
+
+short[] createMapData(int pBoard)
+{
+
+    int[] peaks = SignalData.createPeaks(8192, pBoard + 20);
+    int p = 0;
+
+    short[] buffer = new short[NUMBER_OF_REVOLUTIONS
+                                        * (SAMPLES_PER_REVOLUTION + 10) + 2];
+    int index = 0;
+
+    for (int rev = 0; rev < NUMBER_OF_REVOLUTIONS; rev++){
+
+        if (pBoard != 1 || rev % 97 != 50){
+            buffer[index++] = (short)UTBoard.MAP_CONTROL_CODE_FLAG;
+        }
+
+        int samples = SAMPLES_PER_REVOLUTION - 5 + ((rev + pBoard) % 10);
+
+        for (int i = 0; i < samples; i++){
+            buffer[index++] = (short)(300 - peaks[p]);
+            if (++p == peaks.length) {p = 0;}
+        }
+
+    }
+
+    buffer[index] = (short)(UTBoard.MAP_CONTROL_CODE_FLAG
+                                                | UTBoard.MAP_STOP_CODE_FLAG);
+
+    return(buffer);
+
+}//end of WallMapSaveBenchmark::createMapData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapSaveBenchmark::run
+//
+
+@Override
+public long run() throws IOException
+{
+
+    return(save(saver).length);
+
+}//end of WallMapSaveBenchmark::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapSaveBenchmark::save
+//
+// Saves the map with pSaver using the writer being measured and returns the
+// file contents.
+//
+
+byte[] save(WallMapDataSaverTuboBinary pSaver) throws IOException
+{
+
+    switch (writer){
+
+        case STREAM_WRITER:
+            pSaver.saveToStream(new FileOutputStream(filename));
+            break;
+
+        case FILE_WRITER:
+            pSaver.saveToFile(filename);
+            break;
+
+        default:
+            return(pSaver.createFileData());
+
+    }
+
+    return(Files.readAllBytes(new File(filename).toPath()));
+
+}//end of WallMapSaveBenchmark::save
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapSaveBenchmark::tearDown
+//
+// Deletes the files created by the benchmark.
+//
+
+@Override
+public void tearDown()
+{
+
+    if (tempDir == null) {return;}
+
+    File[] files = tempDir.listFiles();
+
+    if (files != null) {for (File f : files) {f.delete();}}
+
+    tempDir.delete();
+
+}//end of WallMapSaveBenchmark::tearDown
+//-----------------------------------------------------------------------------
+
+}//end of class WallMapSaveBenchmark
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
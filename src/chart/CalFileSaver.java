@@ -228,8 +228,8 @@ protected void saveFile(String pJobPath, String pDataPath)
 
     hardware.saveCalFile(calFile, pJobPath, pDataPath);
 
-    //force save buffer to disk
-    calFile.save();
+    //always write the file as the user has asked for it to be saved
+    calFile.forceSave();
 
 }//end of MainWindow::saveFile
 //-----------------------------------------------------------------------------
@@ -647,7 +647,7 @@ static void saveSettingsHelper(String pJobPath, String pJobName,
     settingsFile.writeInt(
               "General", "Next Calibration Piece Number", pNextCalPieceNumber);
 
-    settingsFile.save(); //force save
+    settingsFile.save(); //only written if a value has changed
 
 }//end of ControlPanel::saveSettingsHelper
 //-----------------------------------------------------------------------------
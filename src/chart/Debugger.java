@@ -19,6 +19,8 @@
 package chart;
 
 import chart.mksystems.hardware.Hardware;
+import chart.mksystems.metrics.Metrics;
+import chart.mksystems.metrics.MetricsSnapshot;
 import java.awt.*;
 import java.awt.event.*;
 import java.text.DecimalFormat;
@@ -74,6 +76,9 @@ class Debugger extends JDialog implements ActionListener, WindowListener {
     private static final int DSP_REGISTER_BUFFER_ADDR = 0x02ce;
 
     private static final byte DSP_HALTED_FLAG = 0x01;
+
+    //the snapshot shown the last time the metrics were displayed
+    MetricsSnapshot lastMetrics = null;
     
 //-----------------------------------------------------------------------------
 // Debugger::Debugger (constructor)
@@ -428,6 +433,13 @@ public void init()
     b.setToolTipText("Verifies that code in each DSP matches the file.");
     controlPanel.add(b);
 
+    b = new JButton("Metrics");
+    b.setActionCommand("Metrics");
+    b.addActionListener(this);
+    b.setToolTipText(
+            "Displays the data pipeline metrics since the last display.");
+    controlPanel.add(b);
+
     controlPanel.add(Box.createVerticalGlue()); //force components to the top
 
     //add the DSP Control panel to the window
@@ -598,6 +610,12 @@ public void actionPerformed(ActionEvent e)
         return;
     }
 
+    //display the metrics - exit without displaying memory
+    if (e.getActionCommand().equalsIgnoreCase("Metrics")){
+        displayMetrics();
+        return;
+    }
+
     //clear the display - exit without displaying
     if (e.getActionCommand().equalsIgnoreCase("Clear")){
         textArea.setText(null);
@@ -689,6 +707,27 @@ public void actionPerformed(ActionEvent e)
 }//end of Debugger::actionPerformed
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Debugger::displayMetrics
+//
+// Displays the counts, rates, and latencies of the data pipeline for the
+// time since the metrics were last displayed, or since they were started if
+// this is the first display.
+//
+
+void displayMetrics()
+{
+
+    MetricsSnapshot snapshot = Metrics.snapshot();
+
+    textArea.setText(snapshot.getText(lastMetrics));
+    textArea.setCaretPosition(0);
+
+    lastMetrics = snapshot;
+
+}//end of Debugger::displayMetrics
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Debugger::parseUserInputs
 //
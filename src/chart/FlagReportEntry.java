@@ -44,6 +44,9 @@ public class FlagReportEntry{
     
     public boolean isWall = false;
 
+    //index of the flag in the plotter's buffers -- used to sort entries
+    public int dataIndex = 0;
+
     public static final int ASCENDING = 0;
     public static final int DESCENDING = 1;
     
@@ -8,6 +8,18 @@
 * This class displays a dialog window for entering a range of pieces and then
 * prints a flag report for those pieces.
 *
+* The reports for a range of pieces are generated in parallel on a fork/join
+* pool. The pieces are shared amongst several lanes, each of which is a copy
+* of this object with its own chart groups so that it can load and report a
+* piece while the other lanes do the same with other pieces.
+*
+* The flags for a piece are found by scanning the flag buffer of each plotter
+* from start to end; each chart is scanned by a separate task. The linear
+* position of each buffer index, which is the same for every plotter, is
+* computed only once per piece. The entries found are then grouped by
+* position and printed in the same order as when the buffers were scanned one
+* position at a time across all plotters, so the reports are unchanged.
+*
 * Open Source Policy:
 *
 * This source code is Public Domain and free to any interested party.  Any
@@ -32,6 +44,10 @@ import java.awt.event.ActionListener;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.*;
 
 //-----------------------------------------------------------------------------
@@ -57,6 +73,9 @@ public class FlagReportPrinter extends ViewerReporter
 
     JCheckBox calModeCheckBox;
 
+    //if checked, reports are only generated for pieces with flags
+    JCheckBox flaggedOnlyCheckBox;
+
     IniFile jobInfoFile = null;
 
     String reportsPath = "";
@@ -71,6 +90,171 @@ public class FlagReportPrinter extends ViewerReporter
         return filenameOfLastReportGenerated;
     }
 
+    //maximum number of pieces for which reports are generated at once
+    static final int MAX_REPORT_LANES = 4;
+
+    //linear position of each buffer index -- see getLinearPositions
+    double[] linearPositions = new double[0];
+    double linearPositionsPixelsPerInch = 0;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ChartScan
+//
+// Scans the flag buffers of all plotters of a chart and creates a
+// FlagReportEntry for each flag found. This is run as a fork/join task so
+// the charts of a piece can be scanned at the same time.
+//
+// The entries are stored in entries in plotter order, with the entries of
+// each plotter in buffer index order.
+//
+
+class ChartScan extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    StripChart chart;
+    double[] linearPositions;
+    int traceLength;
+
+    ArrayList<FlagReportEntry> entries = new ArrayList<>();
+
+//-----------------------------------------------------------------------------
+// ChartScan::ChartScan (constructor)
+//
+// The first pTraceLength indices of each buffer are scanned. pLinearPositions
+// holds the linear position of each index.
+//
+
+public ChartScan(StripChart pChart, double[] pLinearPositions,
+                                                            int pTraceLength)
+{
+
+    chart = pChart; linearPositions = pLinearPositions;
+    traceLength = pTraceLength;
+
+}//end of ChartScan::ChartScan (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartScan::compute
+//
+
+@Override
+protected void compute()
+{
+
+    for (int l = 0; l < chart.getNumberOfPlotters(); l++){
+        scanPlotter(chart.getPlotter(l));
+    }
+
+}//end of ChartScan::compute
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartScan::scanPlotter
+//
+// Stores an entry for each flag in the flag buffer of pPlotter in entries.
+//
+// If multiple flags from the same flaw trace are located at the same .05 of a
+// foot (or equivalent for metric) and clock position, the first flag is always
+// printed but subsequent flags are not printed if they are the same amplitude
+// as the flag just before.
+//
+// For wall traces, subsequent flags are not shown if they have the same wall
+// value.
+//
+// This method is not perfect as multiple flags with differing amplitudes will
+// all be printed, but a lot of duplication is of the same amplitude.  To solve
+// the problem totally, the grouped flags would need to be preloaded into a
+// buffer and scanned for the highest amplitude amongst the group, which would
+// then be printed.
+//
+
+private void scanPlotter(Plotter pPlotter)
+{
+
+    if (pPlotter.shortTitle.contains("Max")) {
+        return;
+    } //debug mks -- remove this
+
+    int[] flagBuffer = pPlotter.getFlagBuffer();
+    int[] dataBuffer = pPlotter.getDataBuffer1();
+
+    //plotters without flag buffers have nothing to report
+    if (flagBuffer == null || dataBuffer == null) {return;}
+
+    int length = Math.min(traceLength,
+                            Math.min(flagBuffer.length, dataBuffer.length));
+
+    boolean isWall = chart.shortTitle.contains("Wall");
+
+    //the previous flag stored -- used to skip duplicates
+    double prevLinearPos = Double.MIN_VALUE;
+    int prevAmplitude = Integer.MIN_VALUE;
+    int prevClockPos = -1;
+
+    for (int i = 0; i < length; i++){
+
+        int flag = flagBuffer[i];
+
+        //extract the flag threshold -- if greater than 0, then a flag
+        //is set at this position (note that threshold 1 denotes a user
+        //set flag)
+        if ((flag & 0x0000fe00) == 0) {continue;}
+
+        //debug mks -- pixelsPerInch needs to be read from the joint
+        //file, not config file as it may change
+
+        //convert and format the amplitude depending on chart type
+        int amplitude = dataBuffer[i];
+
+        //extract the clock position from the flag
+        int clockPos = flag & 0x1ff;
+
+        double linearPos = linearPositions[i];
+
+        //if the Report All Flags option is off, don't print duplicate flags:
+        //if the flag is in the same linear and clock position as the
+        //previous flag printed for this trace and has the same amplitude, then
+        //the flag is not printed (see notes in function header)
+        if (!settings.reportAllFlags && linearPos == prevLinearPos
+                                         && amplitude == prevAmplitude
+                                         && clockPos == prevClockPos){
+            continue;
+        }
+
+        prevLinearPos = linearPos;
+        prevAmplitude = amplitude;
+        prevClockPos = clockPos;
+
+        int groupSortValue = amplitude;
+        int sortOrder = FlagReportEntry.DESCENDING;
+
+        if (isWall) {
+            //force wall group to the bottom of list and sort ascending
+            //value first
+            groupSortValue = -1000 - amplitude;
+            sortOrder = FlagReportEntry.ASCENDING;
+        }
+
+        FlagReportEntry entry = new FlagReportEntry(linearPos, clockPos,
+         chart.shortTitle, pPlotter.shortTitle, amplitude, groupSortValue,
+                sortOrder, isWall);
+
+        entry.dataIndex = i;
+
+        entries.add(entry);
+
+    }//for (int i = 0; i < length; i++)
+
+}//end of ChartScan::scanPlotter
+//-----------------------------------------------------------------------------
+
+}//end of class ChartScan
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // FlagReportPrinter::FlagReportPrinter (constructor)
 //
@@ -108,6 +292,54 @@ public FlagReportPrinter(JFrame pFrame, Settings pSettings, JobInfo pJobInfo,
 }//end of FlagReportPrinter::FlagReportPrinter (constructor)
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// FlagReportPrinter::FlagReportPrinter (constructor)
+//
+// Creates a lane for generating reports in parallel with pSource. The lane
+// uses the same settings as pSource but has no dialog window.
+//
+// See createLane.
+//
+
+private FlagReportPrinter(FlagReportPrinter pSource)
+{
+
+    super(pSource.settings, pSource.jobInfo, pSource.jobPrimaryPath,
+                        pSource.jobBackupPath, pSource.currentJobName);
+
+    hardware = pSource.hardware; reportsPath = pSource.reportsPath;
+    printClockColumn = pSource.printClockColumn;
+
+    pieceToPrint = pSource.pieceToPrint; isCalPiece = pSource.isCalSelected();
+
+    mainFrame = pSource.mainFrame;
+
+}//end of FlagReportPrinter::FlagReportPrinter (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// FlagReportPrinter::createLane
+//
+// Creates and returns a copy of this object, with its own chart groups, for
+// generating reports in parallel with this object.
+//
+
+private FlagReportPrinter createLane()
+{
+
+    FlagReportPrinter lane = new FlagReportPrinter(this);
+
+    lane.init();
+
+    lane.configure();
+
+    lane.loadJobInfo();
+
+    return(lane);
+
+}//end of FlagReportPrinter::createLane
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // FlagReportPrinter::init
 //
@@ -216,6 +448,18 @@ public void setUpForUserEntry(JPanel pPanel)
                                                     + pieceDescriptionPluralLC);
     pPanel.add(calModeCheckBox);
 
+    //add the flagged pieces selection box -- pieces without flags are skipped
+    //by checking the segment index so they do not need to be loaded
+
+    flaggedOnlyCheckBox = new JCheckBox(
+                            "Only " + pieceDescriptionPluralLC + " with flags");
+    flaggedOnlyCheckBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+    flaggedOnlyCheckBox.setSelected(false);
+    flaggedOnlyCheckBox.setToolTipText(
+            "Check this box to skip " + pieceDescriptionPluralLC
+                                                    + " which have no flags");
+    pPanel.add(flaggedOnlyCheckBox);
+
     //panel to hold the Print and Cancel buttons
 
     JPanel panel3;
@@ -451,6 +695,11 @@ String loadSegment(boolean pQuietMode)
 //
 // Begins the report process.
 //
+// The reports are generated by up to MAX_REPORT_LANES lanes at the same time,
+// each taking the next piece in the range when it finishes the previous one.
+// This object is the first lane. Errors are displayed and hard copies are
+// printed in piece order after all of the reports have been generated.
+//
 
 public void startPrint()
 {
@@ -462,31 +711,153 @@ public void startPrint()
     //don't print if the path could not be created
     if (lReportsPath.isEmpty()) {return;}
 
-    //print a report for each piece in the range
+    int numberOfPieces = endPiece - startPiece + 1;
+
+    if (numberOfPieces < 1) {return;}
 
-    for (int i = startPiece; i <= endPiece; i++){
+    int numberOfProcessors = Runtime.getRuntime().availableProcessors();
 
-        printReportForPiece(lReportsPath, i);
+    int numberOfLanes = Math.min(numberOfPieces,
+                                Math.min(MAX_REPORT_LANES, numberOfProcessors));
+
+    final String[] results = new String[numberOfPieces];
+    final AtomicInteger nextPiece = new AtomicInteger(startPiece);
+    final int firstPiece = startPiece, lastPiece = endPiece;
+
+    final SegmentIndex index = getFlaggedOnlyIndex();
+
+    ForkJoinPool pool = new ForkJoinPool(numberOfProcessors);
+
+    ArrayList<FlagReportPrinter> lanes = new ArrayList<>(numberOfLanes);
+    ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(numberOfLanes);
+
+    try{
+
+        //each lane is started as soon as it is created
+
+        for (int i = 0; i < numberOfLanes; i++){
+
+            final FlagReportPrinter lane = (i == 0) ? this : createLane();
+
+            lanes.add(lane);
+
+            tasks.add(pool.submit(() -> lane.printReportsForPieces(
+            lReportsPath, nextPiece, firstPiece, lastPiece, index, results)));
+
+        }
+
+        for (ForkJoinTask<?> task : tasks) {task.join();}
+
+    }
+    finally{
+
+        pool.shutdown();
+
+        //release the piece info windows of the lanes other than this one
+        for (FlagReportPrinter lane : lanes){
+            if (lane != this) {lane.pieceIDInfo.dispose();}
+        }
+
+    }
+
+    for (String result : results){
+
+        if (result.startsWith("Error")){
+            displayErrorMessage("Could not create report file.");
+            continue;
+        }
+
+        //no report if the piece could not be loaded
+        if (result.isEmpty()) {continue;}
+
+        filenameOfLastReportGenerated = result;
+
+        if(printHardCopy){ generateHardCopy(); }
 
     }
 
 }//end of FlagReportPrinter::startPrint
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// FlagReportPrinter::printReportsForPieces
+//
+// Generates reports for pieces taken in turn from pNextPiece until it passes
+// pLastPiece. The result for each piece is stored in pResults at the index of
+// the piece less pFirstPiece -- see printReportForPiece.
+//
+// If pIndex is not null, pieces which are in the index without any flags are
+// skipped and their result is an empty string.
+//
+// Several lanes call this at the same time, sharing pNextPiece, pIndex, and
+// pResults.
+//
+
+private void printReportsForPieces(String pReportsPrimaryPath,
+                    AtomicInteger pNextPiece, int pFirstPiece, int pLastPiece,
+                    SegmentIndex pIndex, String[] pResults)
+{
+
+    int piece;
+
+    while ((piece = pNextPiece.getAndIncrement()) <= pLastPiece){
+
+        if (pIndex != null){
+            SegmentIndex.Entry entry = pIndex.getEntry(piece, isCalSelected());
+            if (entry != null && entry.getFlagCount() == 0){
+                pResults[piece - pFirstPiece] = "";
+                continue;
+            }
+        }
+
+        pResults[piece - pFirstPiece] =
+                            printReportForPiece(pReportsPrimaryPath, piece);
+
+    }
+
+}//end of FlagReportPrinter::printReportsForPieces
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// FlagReportPrinter::getFlaggedOnlyIndex
+//
+// Returns the segment index of the job if reports are only to be generated
+// for pieces with flags, null otherwise. Returns null if the index cannot be
+// read, in which case reports are generated for all pieces.
+//
+
+private SegmentIndex getFlaggedOnlyIndex()
+{
+
+    if (flaggedOnlyCheckBox == null || !flaggedOnlyCheckBox.isSelected()){
+        return(null);
+    }
+
+    try{
+        return(SegmentIndex.read(jobPrimaryPath));
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 838");
+        return(null);
+    }
+
+}//end of FlagReportPrinter::getFlaggedOnlyIndex
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // FlagReportPrinter::printReportForPiece
 //
-// Generates and prints a report for pPiece.
+// Generates a report for pPiece.
 //
-// If printReport is true, the report is printed after the text file is
-// generated.
+// No messages are displayed as this may be called from any thread. Returns
+// the report filename if the report was generated, an empty string if the
+// piece could not be loaded or has no traces, or a string starting with
+// "Error" if the report file could not be created.
 //
 
-public void printReportForPiece(String pReportsPrimaryPath, int pPiece)
+public String printReportForPiece(String pReportsPrimaryPath, int pPiece)
 {
-    
-    ArrayList<FlagReportEntry> flagReportEntries = new ArrayList<>(50);
-    
+
     //Prepend "Cal" to cal joint reports.  Prepend is used over append so that
     //the files are sorted by group when listed in alphabetical order.
 
@@ -495,20 +866,18 @@ public void printReportForPiece(String pReportsPrimaryPath, int pPiece)
     String fileName = pReportsPrimaryPath +
                 prefix + decimalFormats[0].format(pPiece) + " Flag Report.txt";
 
-    PrintWriter file = null;
+    PrintWriter file;
 
     try{
         file = new PrintWriter(new FileWriter(fileName, false));
     }
     catch(IOException e){
 
-        //if file cannot be opened, just display an error message
+        //if file cannot be opened, the caller displays an error message
         //no messages will be written to the file -- this is not a super
         //critical error and should happen rarely
 
-        displayErrorMessage("Could not create report file.");
-        if (file != null) {file.close();}
-        return;
+        return("Error: Could not create report file.");
 
     }
 
@@ -526,15 +895,9 @@ public void printReportForPiece(String pReportsPrimaryPath, int pPiece)
         file.println("");
         file.println("Error - no file found or file is corrupted.");
         file.close();
-        return;
+        return("");
     }
 
-    //prepare for printing
-    resetTracePreviousFlagVariables();
-
-    //report is printed in linear order, so use outer loop as the trace position
-    //index and call each trace with the index
-
     //use the length of the first trace in the first chart in the first group
     //as all traces should be the same length -- check first to make sure that
     //there is at least one trace and bail out if not
@@ -542,172 +905,165 @@ public void printReportForPiece(String pReportsPrimaryPath, int pPiece)
     if( (numberOfChartGroups == 0)
          || (chartGroups[0].getNumberOfStripCharts() == 0)
             || (chartGroups[0].getStripChart(0).getNumberOfPlotters() == 0)){
-        return;
+        file.close();
+        return("");
     }
 
     int traceLength =
         chartGroups[0].getStripChart(0).getPlotter(0).getDataBufferWidth();
 
-    double prevLinearPos = Double.MIN_VALUE;
-    
-    for (int i = 0; i < traceLength; i++){
-        for (int j = 0; j < numberOfChartGroups; j++){
-            ChartGroup cGroup = chartGroups[j];
-            for (int k = 0; k < cGroup.getNumberOfStripCharts(); k++){
-                StripChart chart = cGroup.getStripChart(k);
-                
-                if (!chart.getIsReportable()){ continue; }
-                
-                for (int l = 0; l < chart.getNumberOfPlotters(); l++){
-
-                    //convert index to decimal feet
-                    double linearPos = i / hdwVs.pixelsPerInch / 12.0;
-                    linearPos = roundToDot05(linearPos);
-
-                    //print all flags stored for each .05 feet
-                    if(linearPos != prevLinearPos){
-                        
-                       // test code for flag report sorting 
-                       // if(!flagReportEntries.isEmpty()){
-                       //     debugMKS(flagReportEntries); //remove this
-                       // }
-                            
-                        prevLinearPos = linearPos;
-                        printFlagReportEntriesInList(file, flagReportEntries);
-                        flagReportEntries.clear();
-                    }
-                    
-                    //store all flags for each .05 feet
-                    storeFlagForPlotter(chart, chart.getPlotter(l), i,
-                                                  linearPos, flagReportEntries);
-                
-                }//for (int l = 0; l < chart.getNumberOfTraces()
-            }//for (int k = 0; k < numberOfStripCharts;...
-        }//for (int j = 0; j < numberOfChartGroups;...
-    }//for (int i = 0; i < traceLength...
+    ArrayList<FlagReportEntry> flagReportEntries = scanForFlags(traceLength);
 
-    file.close();
+    printFlagReportEntriesByPosition(file, flagReportEntries, traceLength);
 
-    filenameOfLastReportGenerated = fileName;
+    file.close();
 
-    if(printHardCopy){ generateHardCopy(); }
+    return(fileName);
 
 }//end of FlagReportPrinter::printReportForPiece
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// FlagReportPrinter::roundToDot05
+// FlagReportPrinter::scanForFlags
 //
-// Rounds pValue to the nearest .05 value:
+// Scans the first pTraceLength indices of the flag buffers of all plotters in
+// all reportable charts. The charts are scanned in parallel, each by a
+// ChartScan task.
 //
-//  *0,*1,*2,*3,*4 rounds to *0
-//  *5,*6,*7,*8,*9 rounds to *5
+// Returns entries for all flags found sorted by buffer index; entries at the
+// same index are in chart and plotter order.
 //
 
-private double roundToDot05(double pValue)
+private ArrayList<FlagReportEntry> scanForFlags(int pTraceLength)
 {
 
-    pValue = pValue * 10;
-    
-    double fractionalPart = pValue % 1;
-    double integralPart = pValue - fractionalPart;
-    
-    if (fractionalPart >= 0.0 && fractionalPart < 0.5){
-        fractionalPart = 0.0;
-    }else
-    {
-        fractionalPart = 0.5;
+    double[] positions = getLinearPositions(pTraceLength);
+
+    ArrayList<ChartScan> scans = new ArrayList<>();
+
+    for (int j = 0; j < numberOfChartGroups; j++){
+        ChartGroup cGroup = chartGroups[j];
+        for (int k = 0; k < cGroup.getNumberOfStripCharts(); k++){
+            StripChart chart = cGroup.getStripChart(k);
+            if (chart.getIsReportable()){
+                scans.add(new ChartScan(chart, positions, pTraceLength));
+            }
+        }
     }
 
-    return((integralPart + fractionalPart) / 10);
-    
-}//end of FlagReportPrinter::roundToDotO5
+    ForkJoinTask.invokeAll(scans);
+
+    ArrayList<FlagReportEntry> entries = new ArrayList<>();
+
+    for (ChartScan scan : scans) {entries.addAll(scan.entries);}
+
+    //the sort is stable, so entries at the same index remain in chart and
+    //plotter order
+    entries.sort((a, b) -> Integer.compare(a.dataIndex, b.dataIndex));
+
+    return(entries);
+
+}//end of FlagReportPrinter::scanForFlags
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// FlagReportPrinter::storeFlagForPlotter
-//
-// Stores the flag at buffer index pDataIndex for plotter pPlotter in an
-// ArrayList
+// FlagReportPrinter::getLinearPositions
 //
-// If multiple flags from the same flaw trace are located at the same .05 of a
-// foot (or equivalent for metric) and clock position, the first flag is always
-// printed but subsequent flags are not printed if they are the same amplitude
-// as the flag just before.
+// Returns an array holding the linear position in decimal feet, rounded to
+// the nearest .05, of each of the first pTraceLength buffer indices. The
+// array is only recalculated if the length or pixels per inch has changed.
 //
-// For wall traces, subsequent flags are not shown if they have the same wall
-// value.
+
+private double[] getLinearPositions(int pTraceLength)
+{
+
+    if (linearPositions.length == pTraceLength
+                && linearPositionsPixelsPerInch == hdwVs.pixelsPerInch){
+        return(linearPositions);
+    }
+
+    double[] positions = new double[pTraceLength];
+
+    for (int i = 0; i < pTraceLength; i++){
+        //convert index to decimal feet
+        positions[i] = roundToDot05(i / hdwVs.pixelsPerInch / 12.0);
+    }
+
+    linearPositions = positions;
+    linearPositionsPixelsPerInch = hdwVs.pixelsPerInch;
+
+    return(linearPositions);
+
+}//end of FlagReportPrinter::getLinearPositions
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// FlagReportPrinter::printFlagReportEntriesByPosition
 //
-// This method is not perfect as multiple flags with differing amplitudes will
-// all be printed, but a lot of duplication is of the same amplitude.  To solve
-// the problem totally, the grouped flags would need to be preloaded into a
-// buffer and scanned for the highest amplitude amongst the group, which would
-// then be printed.
+// Prints the entries in pEntries, which must be sorted by buffer index, in
+// groups of entries at the same .05 foot position. Each group is printed by
+// printFlagReportEntriesInList.
 //
-// For the multiple flag checks, the formatted string version of some of the
-// values are used for comparison as this takes into account round off.  This
-// does make it convoluted to use comparison to find the worst case if that
-// option is ever implemented as string must be converted to double first.
+// The group at the position of the last of the pTraceLength indices is not
+// printed; reports have always ended with the group before it.
 //
 
-public void storeFlagForPlotter(StripChart pChart, Plotter pPlotter,
-                                int pDataIndex, double pLinearPos, 
-                                ArrayList<FlagReportEntry>pFlagReportEntries)
+private void printFlagReportEntriesByPosition(PrintWriter pFile,
+                        ArrayList<FlagReportEntry> pEntries, int pTraceLength)
 {
 
-    if (pPlotter.shortTitle.contains("Max")) { 
-        return;
-    } //debug mks -- remove this
-    
-    int amplitude, clockPos;
+    if (pEntries.isEmpty()) {return;}
 
-    //extract the flag threshold -- if greater than 0, then a flag
-    //is set at this position (note that threshold 1 denotes a user
-    //set flag)
-    if (((pPlotter.getFlagBuffer()[pDataIndex] & 0x0000fe00) >> 9) > 0){
+    double lastLinearPos = linearPositions[pTraceLength - 1];
 
-        //debug mks -- pixelsPerInch needs to be read from the joint
-        //file, not config file as it may change
+    ArrayList<FlagReportEntry> group = new ArrayList<>(50);
 
-        //convert and format the amplitude depending on chart type
-        amplitude = pPlotter.getDataBuffer1()[pDataIndex];
+    for (FlagReportEntry entry : pEntries){
 
-        //extract the clock position from the flag
-        clockPos = pPlotter.getFlagBuffer()[pDataIndex] & 0x1ff;
+        if (entry.linearPos == lastLinearPos) {break;}
 
-        //if the Report All Flags option is off, don't print duplicate flags:
-        //if the flag is in the same linear and clock position as the
-        //previous flag printed for this trace and has the same amplitude, then
-        //the flag is not printed (see notes in function header)
-        if (!settings.reportAllFlags && pLinearPos == pPlotter.prevLinearPos
-                                     && amplitude == pPlotter.prevAmplitude
-                                     && clockPos == pPlotter.prevClockPos){
-            return;
+        //print all flags stored for each .05 feet
+        if (!group.isEmpty() && entry.linearPos != group.get(0).linearPos){
+            printFlagReportEntriesInList(pFile, group);
+            group.clear();
         }
 
-        pPlotter.prevLinearPos = pLinearPos;
-        pPlotter.prevAmplitude = amplitude;
-        pPlotter.prevClockPos = clockPos;
+        group.add(entry);
 
-        boolean isWall = false;
-        int groupSortValue = amplitude;
-        int sortOrder = FlagReportEntry.DESCENDING;
-        
-        if (pChart.shortTitle.contains("Wall")) {
-            //force wall group to the bottom of list and sort ascending
-            //value first
-            isWall = true;
-            groupSortValue = -1000 - amplitude; 
-            sortOrder = FlagReportEntry.ASCENDING;
-        }
+    }
 
-        pFlagReportEntries.add(new FlagReportEntry(pLinearPos, clockPos,
-         pChart.shortTitle, pPlotter.shortTitle, amplitude, groupSortValue,
-                sortOrder, isWall ));
-        
-    }//if (((pTrace.flagBuffer[pDataIndex] & 0x0000fe00) >> 9) > 0)
+    printFlagReportEntriesInList(pFile, group);
+
+}//end of FlagReportPrinter::printFlagReportEntriesByPosition
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// FlagReportPrinter::roundToDot05
+//
+// Rounds pValue to the nearest .05 value:
+//
+//  *0,*1,*2,*3,*4 rounds to *0
+//  *5,*6,*7,*8,*9 rounds to *5
+//
 
-}//end of FlagReportPrinter::storeFlagForChart
+private double roundToDot05(double pValue)
+{
+
+    pValue = pValue * 10;
+    
+    double fractionalPart = pValue % 1;
+    double integralPart = pValue - fractionalPart;
+    
+    if (fractionalPart >= 0.0 && fractionalPart < 0.5){
+        fractionalPart = 0.0;
+    }else
+    {
+        fractionalPart = 0.5;
+    }
+
+    return((integralPart + fractionalPart) / 10);
+    
+}//end of FlagReportPrinter::roundToDotO5
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -859,36 +1215,6 @@ private void printFlagReportEntry(PrintWriter pFile, FlagReportEntry pEntry)
 }//end of FlagReportPrinter::printFlagReportEntry
 //-----------------------------------------------------------------------------
 
-//-----------------------------------------------------------------------------
-// FlagReportPrinter::resetTracePreviousFlagVariables
-//
-// Resets all the variables used to store the previous flag printed before
-// the report is printed.  These variables are used to prevent duplicate flags
-// from being printed.
-//
-
-public void resetTracePreviousFlagVariables()
-{
-
-    for (int j = 0; j < numberOfChartGroups; j++){
-        ChartGroup cGroup = chartGroups[j];
-        for (int k = 0; k < cGroup.getNumberOfStripCharts(); k++){
-            StripChart chart = cGroup.getStripChart(k);
-            for (int l = 0; l < chart.getNumberOfPlotters(); l++){
-
-                Plotter plotter = chart.getPlotter(l);
-                plotter.prevLinearPos = Double.MIN_VALUE;
-                plotter.prevAmplitude = Integer.MIN_VALUE;
-                plotter.prevClockPos = -1;
-
-            }//for (int l = 0; l < chart.getNumberOfTraces()
-        }//for (int k = 0; k < numberOfStripCharts;...
-    }//for (int j = 0; j < numberOfChartGroups;...
-
-}//end of FlagReportPrinter::resetTracePreviousFlagVariables
-//-----------------------------------------------------------------------------
-
-
 //-----------------------------------------------------------------------------
 // FlagReportPrinter::debugMKS
 //
@@ -26,9 +26,11 @@ import chart.mksystems.hardware.EncoderCalValues;
 import chart.mksystems.hardware.Hardware;
 import chart.mksystems.inifile.IniFile;
 import chart.mksystems.menu.MainMenu;
+import chart.mksystems.metrics.MetricsLogger;
 import chart.mksystems.settings.Link;
 import chart.mksystems.settings.Settings;
 import chart.mksystems.stripchart.ChartGroup;
+import chart.mksystems.stripchart.SegmentDataWriter;
 import chart.mksystems.tools.MultipleInstancePreventer;
 import chart.mksystems.tools.SwissArmyKnife;
 import java.awt.event.ActionEvent;
@@ -156,6 +158,9 @@ public void run() {
 
             hardware.sendDataChangesToRemotes();
 
+            //send the messages queued for each board during this cycle
+            hardware.flushOutboundMessages();
+
             waitSleep(10);
 
         }//while
@@ -223,6 +228,8 @@ class MainWindow implements WindowListener, ActionListener, ChangeListener,
     Log logWindow;
     JobInfo jobInfo;
     PieceInfo pieceIDInfo;
+    PieceSaver pieceSaver;
+    MetricsLogger metricsLogger = null;
     Debugger debugger;
     UTCalibrator calWindow;
     Monitor monitorWindow;
@@ -360,6 +367,18 @@ public void init()
     mainThread.hardware = hardware;
     if(!settings.viewerMode) { mainThread.start(); }
 
+    //create and start a thread to write the files for each finished piece
+    pieceSaver = new PieceSaver();
+    pieceSaver.init();
+    pieceSaver.start();
+
+    //create and start a thread to log the pipeline metrics if enabled
+    if (!settings.viewerMode && !settings.metricsPath.isEmpty()){
+        metricsLogger = new MetricsLogger(settings.metricsPath,
+                settings.metricsLogInterval, settings.metricsFilesToKeep);
+        metricsLogger.start();
+    }
+
     //Create and start a timer which will handle updating the displays.
     mainTimer = new Timer(10, this);
     mainTimer.setActionCommand("Timer");
@@ -424,6 +443,15 @@ private void loadMainStaticSettings()
     settings.mapFilesPath = SwissArmyKnife.formatPath(configFile.readString(
                            "Main Configuration", "Map Files Path", ""));
 
+    settings.metricsPath = SwissArmyKnife.formatPath(configFile.readString(
+                                    "Main Configuration", "Metrics Path", ""));
+
+    settings.metricsLogInterval = configFile.readInt(
+                    "Main Configuration", "Metrics Log Interval Seconds", 10);
+
+    settings.metricsFilesToKeep = configFile.readInt(
+                        "Main Configuration", "Metrics Files To Keep", 30);
+
     settings.establishPLCComLink = configFile.readBoolean(
              "PLC Communication", "Establish PLC Communications Link", false);
 
@@ -509,7 +537,7 @@ private void saveMainStaticSettings()
     configFile.writeString("Main Configuration", "Backup Data Path",
                                                       settings.backupDataPath);
 
-    //force save
+    //only written if a value has changed
     configFile.save();
 
 }//end of MainWindow::saveMainStaticSettings
@@ -685,7 +713,7 @@ private void saveMainSettings()
     configFile.writeInt("Main Configuration", 
       "Calibrator Window Alternate Location Y", settings.calWindowAltLocationY);
         
-    //force save
+    //only written if a value has changed
     configFile.save();
 
 }//end of MainWindow::saveMainSettings
@@ -1085,8 +1113,16 @@ boolean segmentStarted()
 // before the next segment start has been marked so that the end points
 // of the data to be saved are known.
 //
+// A summary of the piece is appended to the segment index of the job so that
+// the piece can be found by the Viewer and reports without loading its files.
+//
+// The contents of all files are prepared immediately, but the files are
+// written by pieceSaver in the background so the next piece can be started
+// without waiting. The job is returned so the caller can set a completion
+// handler and submit it to pieceSaver.
+//
 
-private void saveSegment() throws IOException
+private PieceSaveJob saveSegment() throws IOException
 {
 
     String segmentFilename;
@@ -1119,8 +1155,15 @@ private void saveSegment() throws IOException
         lastPieceInspected = controlPanel.nextCalPieceNumber;
     }
 
-    saveSegmentHelper(settings.currentJobPrimaryPath + segmentFilename);
-    saveSegmentHelper(settings.currentJobBackupPath + segmentFilename);
+    PieceSaveJob job = new PieceSaveJob(segmentFilename);
+
+    //the segment data is prepared once and the same bytes written to both
+    //the primary and backup folders
+
+    byte[] segmentData = createSegmentData();
+
+    job.addFile(settings.currentJobPrimaryPath + segmentFilename, segmentData);
+    job.addFile(settings.currentJobBackupPath + segmentFilename, segmentData);
 
 
     //save the info file for each segment
@@ -1133,8 +1176,10 @@ private void saveSegment() throws IOException
         segmentFilename = "30 - " + pieceNumber + ".cal info";
     }
 
-    saveSegmentInfoHelper(settings.currentJobPrimaryPath + segmentFilename);
-    saveSegmentInfoHelper(settings.currentJobBackupPath + segmentFilename);
+    byte[] infoData = createSegmentInfoData();
+
+    job.addFile(settings.currentJobPrimaryPath + segmentFilename, infoData);
+    job.addFile(settings.currentJobBackupPath + segmentFilename, infoData);
 
     //save data buffers handled by any boards
 
@@ -1146,38 +1191,51 @@ private void saveSegment() throws IOException
     }
 
     //save map file copies if mapping is active
-    saveMap(segmentFilename);
-    
+    saveMap(job, segmentFilename);
+
+    //add a summary of the piece to the segment index in each folder -- it is
+    //appended after the piece's files in that folder have been written
+
+    byte[] indexRecord = SegmentIndex.getRecordBytes(
+            SegmentIndex.createEntry(settings.pieceNumberToBeSaved,
+                        controlPanel.calMode, hardware.hdwVs.measuredLength,
+                        hardware.hdwVs.minWall, settings.chartGroups,
+                        settings.numberOfChartGroups));
+
+    job.addAppend(
+            settings.currentJobPrimaryPath + SegmentIndex.FILENAME, indexRecord);
+    job.addAppend(
+            settings.currentJobBackupPath + SegmentIndex.FILENAME, indexRecord);
+
+    return(job);
+
 }//end of MainWindow::saveSegment
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// MainWindow::saveSegmentHelper
+// MainWindow::createSegmentData
+//
+// Returns the data for a segment in the binary segment file format. See
+// SegmentDataWriter for details of the format.
+//
+// The text portions of the file are arranged exactly as in the text format
+// used by earlier versions, so segment files can be converted back to text
+// with SegmentFileConverter.
 //
-// Saves the data for a segment to the specified file.  See the saveSegment
-// function for more info.
+// Returns null on error.
 //
 
-private void saveSegmentHelper(String pFilename)
+private byte[] createSegmentData()
 {
 
-    //create a buffered writer stream
-
-    FileOutputStream fileOutputStream = null;
-    OutputStreamWriter outputStreamWriter = null;
-    BufferedWriter out = null;
+    SegmentDataWriter out = new SegmentDataWriter();
 
     try{
 
-        fileOutputStream = new FileOutputStream(pFilename);
-        outputStreamWriter = new OutputStreamWriter(fileOutputStream,
-                                                       settings.jobFileFormat);
-        out = new BufferedWriter(outputStreamWriter);
-
-        //write the header information - this portion can be read by the iniFile
-        //class which will only read up to the "[Header End]" tag - this allows
-        //simple parsing of the header information while ignoring the data
-        //stream which  follows the header
+        //write the header information - in text files this portion can be
+        //read by the iniFile class which will only read up to the
+        //"[Header End]" tag; in binary files it is at the start of the text
+        //section and is read by the Viewer in the same manner as before
 
         out.write("[Header Start]"); out.newLine();
         out.newLine();
@@ -1193,27 +1251,23 @@ private void saveSegmentHelper(String pFilename)
         for (int i = 0; i < settings.numberOfChartGroups; i++) {
             settings.chartGroups[i].saveSegment(out);
         }
+
+        return(out.getBytes());
+
     }
     catch(IOException e){
         logSevere(e.getMessage() + " - Error: 1127");
-    }
-    finally{
-        try{if (out != null) {out.close();}}
-        catch(IOException e){}
-        try{if (outputStreamWriter != null) {outputStreamWriter.close();}}
-        catch(IOException e){}
-        try{if (fileOutputStream != null) {fileOutputStream.close();}}
-        catch(IOException e){}
+        return(null);
     }
 
-}//end of MainWindow::saveSegmentHelper
+}//end of MainWindow::createSegmentData
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// MainWindow::saveSegmentInfoHelper
+// MainWindow::createSegmentInfoData
 //
-// Saves the non-inspection data for a segment to the specified file.  See the
-// saveSegment function for more info.
+// Returns the non-inspection data for a segment as the contents of the info
+// file.  See the saveSegment function for more info.
 //
 // Each piece saved has a *.dat file containing the graph data and a *.info
 // file containing info such as joint number, id number, heat number, lot
@@ -1224,20 +1278,22 @@ private void saveSegmentHelper(String pFilename)
 //
 // Data which might need to be modified later is stored in the *.info file.
 //
+// Returns null on error.
+//
 
-private void saveSegmentInfoHelper(String pFilename)
+private byte[] createSegmentInfoData()
 {
 
     //create a buffered writer stream
 
-    FileOutputStream fileOutputStream = null;
+    ByteArrayOutputStream byteArrayOutputStream = null;
     OutputStreamWriter outputStreamWriter = null;
     BufferedWriter out = null;
 
     try{
 
-        fileOutputStream = new FileOutputStream(pFilename);
-        outputStreamWriter = new OutputStreamWriter(fileOutputStream,
+        byteArrayOutputStream = new ByteArrayOutputStream(4096);
+        outputStreamWriter = new OutputStreamWriter(byteArrayOutputStream,
                                                        settings.jobFileFormat);
         out = new BufferedWriter(outputStreamWriter);
 
@@ -1265,20 +1321,23 @@ private void saveSegmentInfoHelper(String pFilename)
         //allow the pieceInfo object to save its data to the file
         pieceIDInfo.saveDataToStream(out);
 
+        out.flush();
+
+        return(byteArrayOutputStream.toByteArray());
+
     }
     catch(IOException e){
         logSevere(e.getMessage() + " - Error: 1199");
+        return(null);
     }
     finally{
         try{if (out != null) {out.close();}}
         catch(IOException e){}
         try{if (outputStreamWriter != null) {outputStreamWriter.close();}}
         catch(IOException e){}
-        try{if (fileOutputStream != null) {fileOutputStream.close();}}
-        catch(IOException e){}
     }
 
-}//end of MainWindow::saveSegmentInfoHelper
+}//end of MainWindow::createSegmentInfoData
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -1292,17 +1351,30 @@ private void saveSegmentInfoHelper(String pFilename)
 // This third copy in a separate directory is meant to be accessed by outside
 // programs, thus eliminating the need to browse through the main data fiiles.
 //
+// The map data is collected from the boards once and the copies are added
+// to pJob to be written by pieceSaver. If the map was saved incrementally
+// during the inspection, the copies are made from that file instead.
+//
 
-private void saveMap(String pSegmentFilename)
+private void saveMap(PieceSaveJob pJob, String pSegmentFilename)
 {
-    
-    hardware.saveAllMapDataSetsToTextFile(
-        settings.currentJobPrimaryPath + pSegmentFilename,
-        settings.jobFileFormat, settings.inspectionDirectionDescription);
 
-    hardware.saveAllMapDataSetsToTextFile(
-        settings.currentJobBackupPath + pSegmentFilename,
-        settings.jobFileFormat, settings.inspectionDirectionDescription);
+    File mapFile = hardware.finishIncrementalMapFile(
+                                     settings.inspectionDirectionDescription);
+
+    if (mapFile != null){
+        saveMapFromFile(pJob, pSegmentFilename, mapFile);
+        return;
+    }
+
+    byte[] mapData = hardware.createAllMapDataSetsFileData(
+                                     settings.inspectionDirectionDescription);
+
+    if (mapData == null) {return;}
+
+    pJob.addFile(settings.currentJobPrimaryPath + pSegmentFilename, mapData);
+
+    pJob.addFile(settings.currentJobBackupPath + pSegmentFilename, mapData);
 
     String lMapsPath = SwissArmyKnife.createFolderForSpecifiedFileType(
         settings.mapFilesPath, settings.currentJobPrimaryPath, 
@@ -1310,15 +1382,42 @@ private void saveMap(String pSegmentFilename)
        
     if (!lMapsPath.equals("")){
 
-        hardware.saveAllMapDataSetsToTextFile(
-            lMapsPath + pSegmentFilename,
-            settings.jobFileFormat, settings.inspectionDirectionDescription);
-        
+        pJob.addFile(lMapsPath + pSegmentFilename, mapData);
+
     }
     
 }//end of MainWindow::saveMap
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MainWindow::saveMapFromFile
+//
+// Adds copies of map file pMapFile saved during the inspection to pJob. The
+// copies are saved in the same folders as by saveMap. pMapFile is deleted by
+// pieceSaver when the job is finished.
+//
+
+private void saveMapFromFile(PieceSaveJob pJob, String pSegmentFilename,
+                                                                File pMapFile)
+{
+
+    pJob.addFile(settings.currentJobPrimaryPath + pSegmentFilename, pMapFile);
+
+    pJob.addFile(settings.currentJobBackupPath + pSegmentFilename, pMapFile);
+
+    String lMapsPath = SwissArmyKnife.createFolderForSpecifiedFileType(
+        settings.mapFilesPath, settings.currentJobPrimaryPath,
+            settings.currentJobName," ~ Maps", mainFrame);
+
+    if (!lMapsPath.equals("")){
+
+        pJob.addFile(lMapsPath + pSegmentFilename, pMapFile);
+
+    }
+
+}//end of MainWindow::saveMapFromFile
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // MainWindow::handleSizeChanges
 //
@@ -1546,6 +1645,8 @@ public void actionPerformed(ActionEvent e)
                 settings.currentJobName, true, xfer);
         jobValidator.init();
 
+        rebuildSegmentIndex();
+
         displayInfoMessage(
                         "The repair is complete.  Click OK to reload the job.");
 
@@ -1795,13 +1896,27 @@ public void processFinishedPiece() throws IOException
         updatePrevMinWallDisplay();
 
         //if data paths are good, save the data for the segment
-        if(isConfigGoodA()) {saveSegment();}
+        PieceSaveJob saveJob = null;
+        if(isConfigGoodA()) {saveJob = saveSegment();}
 
         //increment the next piece or next cal piece number
         controlPanel.incrementPieceNumber();
 
-        if(settings.autoPrintFlagReports){
-            printFlagReportForLastPieceInspected();
+        //the files are written in the background -- the flag report is
+        //generated from the files so it must wait until they are written
+
+        boolean printReport = settings.autoPrintFlagReports;
+        int piece = lastPieceInspected;
+        boolean isCal = isLastPieceInspectedACal;
+
+        if (saveJob != null){
+            PieceSaveJob job = saveJob;
+            job.completionHandler =
+                        () -> handlePieceSaved(job, printReport, piece, isCal);
+            pieceSaver.submit(job);
+        }
+        else if(printReport){
+            printFlagReport(piece, isCal);
         }
 
     }
@@ -1809,6 +1924,63 @@ public void processFinishedPiece() throws IOException
 }//end of MainWindow::processFinishedPiece
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MainWindow::handlePieceSaved
+//
+// Called in the GUI thread by pieceSaver when all files for a piece have been
+// written. Any errors are logged and displayed. If pPrintFlagReport is true,
+// the flag report for the piece is printed.
+//
+
+private void handlePieceSaved(PieceSaveJob pJob, boolean pPrintFlagReport,
+                                            int pPieceNumber, boolean pIsCal)
+{
+
+    if (!pJob.isSuccessful()){
+
+        for (String error : pJob.errors){
+            logSevere(error + " - Error: 1127");
+        }
+
+        displayErrorMessage("Error saving " + pJob.description + " :\n"
+                                                    + pJob.errors.get(0));
+
+    }
+
+    if (pPrintFlagReport) {printFlagReport(pPieceNumber, pIsCal);}
+
+}//end of MainWindow::handlePieceSaved
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MainWindow::rebuildSegmentIndex
+//
+// Recreates the segment index of the job from the segment data files. This
+// is used to create the index for jobs inspected before the index was added
+// or to replace an index which has been damaged. Each piece must be loaded,
+// so this may take some time for large jobs.
+//
+
+private void rebuildSegmentIndex()
+{
+
+    SegmentIndexBuilder builder = new SegmentIndexBuilder(settings, jobInfo,
+                settings.currentJobPrimaryPath, settings.currentJobBackupPath,
+                settings.currentJobName);
+    builder.init();
+    builder.configure();
+
+    try{
+        builder.update(true);
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 1956");
+        displayErrorMessage("Could not rebuild the segment index.");
+    }
+
+}//end of MainWindow::rebuildSegmentIndex
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // MainWindow::prepareForNextPiece
 //
@@ -2383,7 +2555,8 @@ public void processMainTimerEvent()
 
     if (settings.exitProgram) {
 
-        if (settings.fileSaver != null) {return;} //wait until saving is done
+        //wait until saving is done
+        if (settings.fileSaver != null || pieceSaver.isBusy()) {return;}
 
         exitProgram();
 
@@ -2719,6 +2892,10 @@ private void exitProgram()
     //stop calling this timer during shutdown
     mainTimer.stop();
 
+    pieceSaver.shutDown();
+
+    if (metricsLogger != null) {metricsLogger.shutDown();}
+
     // stop the main execution thread
     // wait until the main thread dies before shutting down
     // If the thread is in hardware.connect, it will miss the interrupt
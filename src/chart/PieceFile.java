@@ -0,0 +1,64 @@
+/******************************************************************************
+* Title: PieceFile.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the name and contents of one file of a PieceSaveJob.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart;
+
+import java.io.File;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class PieceFile
+//
+// The name and contents of one file to be saved. The contents are either
+// held in data or copied from source. If append is true, data is appended to
+// the file rather than replacing it.
+//
+
+public class PieceFile{
+
+    String filename;
+    byte[] data;
+    File source;
+    boolean append = false;
+
+//-----------------------------------------------------------------------------
+// PieceFile::PieceFile (constructor)
+//
+
+PieceFile(String pFilename, byte[] pData)
+{
+
+    filename = pFilename; data = pData;
+
+}//end of PieceFile::PieceFile (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceFile::PieceFile (constructor)
+//
+
+PieceFile(String pFilename, File pSource)
+{
+
+    filename = pFilename; source = pSource;
+
+}//end of PieceFile::PieceFile (constructor)
+//-----------------------------------------------------------------------------
+
+}//end of class PieceFile
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -472,6 +472,23 @@ public void loadData(String pFilename)
         return;
     }
 
+    loadData(pFilename, jobInfoFile);
+
+}//end of PieceInfo::loadData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceInfo::loadData
+//
+// Loads data into the form from pInfoFile, which has already been loaded from
+// pFilename. The values are only read from pInfoFile.
+//
+
+public void loadData(String pFilename, IniFile pInfoFile)
+{
+
+    filename = pFilename;
+
     String section = "Identifying Information";
 
     //load all items which have been defined
@@ -481,7 +498,7 @@ public void loadData(String pFilename)
 
             //use the label text as the key, the value is the text in the box
             items[i].textField.setText(
-                      jobInfoFile.readString(section, items[i].labelText, ""));
+                      pInfoFile.readString(section, items[i].labelText, ""));
 
             }
     }// for (int i=0; i < NUMBER_OF_ITEMS; i++)
@@ -0,0 +1,164 @@
+/******************************************************************************
+* Title: PieceSaveJob.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the files to be written for one finished piece. It is
+* filled by the main timer and passed to a PieceSaver to be written.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class PieceSaveJob
+//
+// Holds the contents of all files to be written for one piece.
+//
+
+public class PieceSaveJob{
+
+    String description;
+
+    ArrayList<PieceFile> files = new ArrayList<>();
+
+    //source files to be deleted when the job is finished
+    ArrayList<File> sourceFiles = new ArrayList<>();
+
+    List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+    Runnable completionHandler = null;
+
+//-----------------------------------------------------------------------------
+// PieceSaveJob::PieceSaveJob (constructor)
+//
+// pDescription is used in error messages to identify the piece.
+//
+
+PieceSaveJob(String pDescription)
+{
+
+    description = pDescription;
+
+}//end of PieceSaveJob::PieceSaveJob (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaveJob::addFile
+//
+// Adds file pFilename with contents pData to the job. If pData is null, the
+// file is not added -- this occurs if the data could not be prepared, in
+// which case the error has already been logged.
+//
+
+void addFile(String pFilename, byte[] pData)
+{
+
+    if (pData == null) {return;}
+
+    files.add(new PieceFile(pFilename, pData));
+
+}//end of PieceSaveJob::addFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaveJob::addFile
+//
+// Adds file pFilename which is to be a copy of pSource. pSource is deleted
+// when the job is finished, so the same source may be added for several
+// copies but must not be used elsewhere.
+//
+
+void addFile(String pFilename, File pSource)
+{
+
+    if (pSource == null) {return;}
+
+    files.add(new PieceFile(pFilename, pSource));
+
+    if (!sourceFiles.contains(pSource)) {sourceFiles.add(pSource);}
+
+}//end of PieceSaveJob::addFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaveJob::addAppend
+//
+// Adds pData to be appended to file pFilename. The data is appended after
+// the files added before it for the same folder have been written. If pData
+// is null, nothing is added.
+//
+
+void addAppend(String pFilename, byte[] pData)
+{
+
+    if (pData == null) {return;}
+
+    PieceFile file = new PieceFile(pFilename, pData);
+
+    file.append = true;
+
+    files.add(file);
+
+}//end of PieceSaveJob::addAppend
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaveJob::deleteSourceFiles
+//
+// Deletes all source files added to the job.
+//
+
+void deleteSourceFiles()
+{
+
+    for (File source : sourceFiles) {source.delete();}
+
+    sourceFiles.clear();
+
+}//end of PieceSaveJob::deleteSourceFiles
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaveJob::addError
+//
+
+void addError(String pMessage)
+{
+
+    errors.add(pMessage);
+
+}//end of PieceSaveJob::addError
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaveJob::isSuccessful
+//
+// Returns true if all files were written without error.
+//
+
+boolean isSuccessful()
+{
+
+    return(errors.isEmpty());
+
+}//end of PieceSaveJob::isSuccessful
+//-----------------------------------------------------------------------------
+
+}//end of class PieceSaveJob
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,432 @@
+/******************************************************************************
+* Title: PieceSaver.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* Writes the files for each finished piece using background threads so that
+* the main timer, which runs in the GUI thread, is not held up while the
+* segment, info, and map files are written to the primary and backup folders.
+*
+* When a piece is finished, the main timer prepares the contents of all the
+* files as byte arrays -- this takes a snapshot of the chart and map buffers
+* so the next piece can begin immediately. The files are then passed to this
+* class in a PieceSaveJob and written while the next piece is inspected.
+*
+* Jobs are placed in a bounded queue and handled one at a time in the order
+* they were submitted. The copies of a job in each folder are written in
+* parallel. Each file is first written to a temporary file which is flushed
+* to the disk and then renamed to the final name, so a file is never left
+* partially written if power is lost or the program is terminated.
+*
+* When all files for a job have been written, the job's completion handler is
+* invoked in the GUI thread. The handler can check for errors with
+* PieceSaveJob.isSuccessful.
+*
+* If the queue is full, submit waits until there is room. This only happens
+* if the disks cannot keep up with the inspection rate.
+*
+* A file's contents may instead be supplied as a source file, such as a map
+* file which was saved during the inspection. Each copy is then copied from
+* the source file and the source file is deleted when the job is finished.
+*
+* Contents may also be appended to a file, such as the job's segment index,
+* rather than replacing it. See appendFile.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart;
+
+import chart.mksystems.metrics.Histogram;
+import chart.mksystems.metrics.Metrics;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class PieceSaver
+//
+// See notes at top of page.
+//
+
+public class PieceSaver extends Thread{
+
+    //maximum number of pieces waiting to be saved
+    static final int QUEUE_CAPACITY = 4;
+
+    //one writer for each of the primary, backup, and map folders
+    static final int NUMBER_OF_WRITERS = 3;
+
+    static final String TEMP_FILE_SUFFIX = " ~ saving";
+
+    ArrayBlockingQueue<PieceSaveJob> queue;
+    ExecutorService writers;
+
+    //number of jobs submitted which have not been completed
+    AtomicInteger jobsPending = new AtomicInteger(0);
+
+    //time taken to write all files for each job
+    Histogram saveTimer = Metrics.timer("Piece save time");
+
+//-----------------------------------------------------------------------------
+// PieceSaver::PieceSaver (constructor)
+//
+
+public PieceSaver()
+{
+
+    super("Piece Saver");
+
+    //don't prevent the program from exiting; the main timer waits for all
+    //jobs to be finished before exiting
+
+    setDaemon(true);
+
+}//end of PieceSaver::PieceSaver (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::init
+//
+// Initializes new objects. Should be called immediately after instantiation.
+//
+
+public void init()
+{
+
+    queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    writers = Executors.newFixedThreadPool(NUMBER_OF_WRITERS, (Runnable r) -> {
+        Thread t = new Thread(r, "Piece Saver Writer");
+        t.setDaemon(true);
+        return(t);
+    });
+
+    Metrics.gauge("Piece saves pending", jobsPending::get);
+
+}//end of PieceSaver::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::submit
+//
+// Adds pJob to the queue of jobs to be saved. If the queue is full, waits
+// until there is room.
+//
+
+public void submit(PieceSaveJob pJob)
+{
+
+    jobsPending.incrementAndGet();
+
+    try{
+        if (!queue.offer(pJob)){
+            logSevere("Piece save queue is full - waiting for disk.");
+            queue.put(pJob);
+        }
+    }
+    catch(InterruptedException e){
+        jobsPending.decrementAndGet();
+        Thread.currentThread().interrupt();
+        logSevere("Piece save of " + pJob.description + " was cancelled.");
+    }
+
+}//end of PieceSaver::submit
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::isBusy
+//
+// Returns true if any jobs are waiting or being saved.
+//
+
+public boolean isBusy()
+{
+
+    return(jobsPending.get() > 0);
+
+}//end of PieceSaver::isBusy
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::shutDown
+//
+// Stops the thread and the writers. Any jobs still in the queue are
+// discarded, so isBusy should be checked first.
+//
+
+public void shutDown()
+{
+
+    interrupt();
+
+    writers.shutdown();
+
+}//end of PieceSaver::shutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::run
+//
+// Saves each job in the queue in turn and then passes it back to the GUI
+// thread.
+//
+
+@Override
+public void run()
+{
+
+    while (!isInterrupted()){
+
+        PieceSaveJob job;
+
+        try{
+            job = queue.take();
+        }
+        catch(InterruptedException e){
+            return;
+        }
+
+        long startTime = System.nanoTime();
+
+        saveJob(job);
+
+        saveTimer.recordSince(startTime);
+
+        if (job.completionHandler != null){
+            javax.swing.SwingUtilities.invokeLater(job.completionHandler);
+        }
+
+        jobsPending.decrementAndGet();
+
+    }
+
+}//end of PieceSaver::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::saveJob
+//
+// Writes all files for pJob. The files are grouped by folder and each group
+// is written by a separate writer thread so that the primary and backup
+// copies, which are usually on different drives, are written in parallel.
+//
+
+private void saveJob(PieceSaveJob pJob)
+{
+
+    LinkedHashMap<String, List<PieceFile>> folders = new LinkedHashMap<>();
+
+    for (PieceFile file : pJob.files){
+        String folder = new File(file.filename).getAbsoluteFile().getParent();
+        List<PieceFile> list = folders.get(folder);
+        if (list == null){
+            list = new ArrayList<>();
+            folders.put(folder, list);
+        }
+        list.add(file);
+    }
+
+    List<Callable<Object>> tasks = new ArrayList<>();
+
+    for (List<PieceFile> list : folders.values()){
+        tasks.add(() -> {
+            for (PieceFile file : list){
+                try{
+                    if (file.source != null){
+                        copyFile(file.filename, file.source);
+                    }
+                    else
+                    if (file.append){
+                        appendFile(file.filename, file.data);
+                    }
+                    else{
+                        writeFile(file.filename, file.data);
+                    }
+                }
+                catch(IOException e){
+                    pJob.addError(file.filename + " : " + e.getMessage());
+                }
+            }
+            return(null);
+        });
+    }
+
+    try{
+        writers.invokeAll(tasks);
+    }
+    catch(InterruptedException e){
+        pJob.addError("Save of " + pJob.description + " was interrupted.");
+        interrupt();
+    }
+
+    pJob.deleteSourceFiles();
+
+}//end of PieceSaver::saveJob
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::writeFile (static)
+//
+// Writes pData to file pFilename. The data is written to a temporary file
+// which is forced to the disk before being renamed to pFilename so that the
+// file is either completely written or not changed at all.
+//
+
+static void writeFile(String pFilename, byte[] pData) throws IOException
+{
+
+    Path target = new File(pFilename).toPath();
+    Path temp = new File(pFilename + TEMP_FILE_SUFFIX).toPath();
+
+    try (FileOutputStream out = new FileOutputStream(temp.toFile())){
+        out.write(pData);
+        out.getChannel().force(true);
+    }
+    catch(IOException e){
+        Files.deleteIfExists(temp);
+        throw e;
+    }
+
+    try{
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                                               StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch(AtomicMoveNotSupportedException e){
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}//end of PieceSaver::writeFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::copyFile (static)
+//
+// Copies pSource to file pFilename. As with writeFile, the copy is made to a
+// temporary file which is forced to the disk before being renamed.
+//
+
+static void copyFile(String pFilename, File pSource) throws IOException
+{
+
+    Path target = new File(pFilename).toPath();
+    Path temp = new File(pFilename + TEMP_FILE_SUFFIX).toPath();
+
+    try (FileOutputStream out = new FileOutputStream(temp.toFile());
+         FileChannel in = FileChannel.open(pSource.toPath(),
+                                                   StandardOpenOption.READ)){
+
+        long size = in.size();
+        long position = 0;
+
+        while (position < size){
+            position += in.transferTo(position, size - position,
+                                                            out.getChannel());
+        }
+
+        out.getChannel().force(true);
+    }
+    catch(IOException e){
+        Files.deleteIfExists(temp);
+        throw e;
+    }
+
+    try{
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                                               StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch(AtomicMoveNotSupportedException e){
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+}//end of PieceSaver::copyFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::appendFile (static)
+//
+// Appends pData to the end of file pFilename, creating the file if it does
+// not exist. The data is added with a single write in append mode and forced
+// to the disk, so it is never mixed with data appended by another writer.
+//
+// pData should be one or more complete lines. If a previous append was cut
+// short by a loss of power so that the file does not end with a line
+// terminator, a line terminator is written first so that the partial line is
+// not joined to the new data -- readers of the file should ignore the
+// partial line.
+//
+
+static void appendFile(String pFilename, byte[] pData) throws IOException
+{
+
+    File file = new File(pFilename);
+
+    boolean terminated = true;
+
+    if (file.length() > 0){
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")){
+            in.seek(in.length() - 1);
+            terminated = in.read() == '\n';
+        }
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(pData.length + 1);
+    if (!terminated) {buffer.put((byte)'\n');}
+    buffer.put(pData);
+    buffer.flip();
+
+    try (FileChannel out = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)){
+
+        while (buffer.hasRemaining()) {out.write(buffer);}
+
+        out.force(true);
+
+    }
+
+}//end of PieceSaver::appendFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PieceSaver::logSevere
+//
+// Logs pMessage with level SEVERE using the Java logger.
+//
+
+void logSevere(String pMessage)
+{
+
+    Logger.getLogger(getClass().getName()).log(Level.SEVERE, pMessage);
+
+}//end of PieceSaver::logSevere
+//-----------------------------------------------------------------------------
+
+}//end of class PieceSaver
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,450 @@
+/******************************************************************************
+* Title: SegmentCache.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the decoded contents of recently viewed segment data and
+* info files so that the Viewer can display a segment again without reading
+* and decoding its files.
+*
+* Each file is cached under its full path, which identifies the job, the
+* piece number, and whether it is a calibration piece. When a file is
+* requested, its modification time and length are compared with those found
+* when it was decoded; if either has changed, the file is decoded again.
+*
+* Binary segment data files are cached in decoded form. Text segment data
+* files, as saved by earlier versions, are cached as text and are still
+* parsed each time they are loaded. Info files are cached as loaded IniFile
+* objects.
+*
+* The cache is limited by the approximate memory used by the decoded files,
+* a fraction of the maximum heap size, and by the number of files. When a
+* limit is exceeded, the least recently used files are discarded.
+*
+* Files can be decoded ahead of time on a background thread by prefetch so
+* that the segments next to the one being viewed are ready when the user
+* moves to them. Only the most recent prefetch requests are kept if they
+* arrive faster than they can be handled. If a file is requested while it is
+* being decoded by the background thread, the request waits for that to
+* finish rather than decoding the file again.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart;
+
+import chart.mksystems.inifile.IniFile;
+import chart.mksystems.stripchart.SegmentDataReader;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentCache
+//
+// See notes at top of page.
+//
+
+public class SegmentCache extends Object{
+
+    //the cache may use up to this fraction of the maximum heap size...
+    static final int HEAP_DIVISOR = 8;
+    //...but never more than this
+    static final long MAX_MEMORY = 256L * 1024 * 1024;
+
+    static final int MAX_FILES = 64;
+
+    //maximum number of prefetch requests waiting to be handled
+    static final int PREFETCH_QUEUE_CAPACITY = 4;
+
+    String fileFormat;
+
+    long memoryLimit;
+    long memoryUsed = 0;
+
+    //kept in access order so the first file is the least recently used
+    LinkedHashMap<String, CachedFile> files =
+                                        new LinkedHashMap<>(16, 0.75f, true);
+
+    //files being decoded
+    HashMap<String, FutureTask<CachedFile>> pending = new HashMap<>();
+
+    ThreadPoolExecutor prefetcher;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class CachedFile
+//
+// Holds the decoded contents of a file along with the modification time and
+// length of the file when it was decoded.
+//
+// Only one of segmentData, text, or info is set.
+//
+
+static class CachedFile {
+
+    String filename;
+    long lastModified, length;
+
+    SegmentDataReader segmentData;
+    String text;
+    IniFile info;
+
+    //approximate memory used by the decoded contents
+    long size;
+
+//-----------------------------------------------------------------------------
+// CachedFile::CachedFile (constructor)
+//
+
+CachedFile(String pFilename, long pLastModified, long pLength)
+{
+
+    filename = pFilename; lastModified = pLastModified; length = pLength;
+
+}//end of CachedFile::CachedFile (constructor)
+//-----------------------------------------------------------------------------
+
+}//end of class CachedFile
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::SegmentCache (constructor)
+//
+// Text files are read in format pFileFormat.
+//
+
+public SegmentCache(String pFileFormat)
+{
+
+    fileFormat = pFileFormat;
+
+}//end of SegmentCache::SegmentCache (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::init
+//
+// Initializes new objects. Should be called immediately after instantiation.
+//
+
+public void init()
+{
+
+    memoryLimit = Math.min(MAX_MEMORY,
+                            Runtime.getRuntime().maxMemory() / HEAP_DIVISOR);
+
+    //when the queue is full, the oldest request is discarded as the user has
+    //probably moved on from the segment it was for
+
+    prefetcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(PREFETCH_QUEUE_CAPACITY),
+        (Runnable r) -> {
+            Thread t = new Thread(r, "Segment Prefetch");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return(t);
+        },
+        new ThreadPoolExecutor.DiscardOldestPolicy());
+
+}//end of SegmentCache::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::openSegmentData
+//
+// Returns a reader for segment data file pFilename, positioned at the start
+// of the file. The file is decoded only if it is not in the cache or has
+// changed since it was cached.
+//
+// Throws FileNotFoundException if the file does not exist and IOException if
+// it cannot be read.
+//
+
+public BufferedReader openSegmentData(String pFilename) throws IOException
+{
+
+    CachedFile cached = get(pFilename, false);
+
+    if (cached.segmentData != null) {return(cached.segmentData.reopen());}
+
+    return(new BufferedReader(new StringReader(cached.text)));
+
+}//end of SegmentCache::openSegmentData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::getInfo
+//
+// Returns the loaded contents of info file pFilename. The file is loaded
+// only if it is not in the cache or has changed since it was cached.
+//
+// The returned object is shared and must not be modified.
+//
+
+public IniFile getInfo(String pFilename) throws IOException
+{
+
+    return(get(pFilename, true).info);
+
+}//end of SegmentCache::getInfo
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::prefetch
+//
+// Decodes segment data file pDataFilename and its info file pInfoFilename on
+// the background thread so they will be ready when requested. Nothing is
+// done if the data file does not exist.
+//
+
+public void prefetch(final String pDataFilename, final String pInfoFilename)
+{
+
+    if (prefetcher == null || prefetcher.isShutdown()) {return;}
+
+    prefetcher.execute(() -> {
+
+        if (!new File(pDataFilename).exists()) {return;}
+
+        try{
+            get(pDataFilename, false);
+            get(pInfoFilename, true);
+        }
+        catch(IOException e){
+            //the error will be reported if the segment is viewed
+        }
+
+    });
+
+}//end of SegmentCache::prefetch
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::get
+//
+// Returns the cached contents of pFilename, decoding the file if it is not in
+// the cache or has changed. If pIsInfo is true, the file is loaded as an
+// info file, otherwise as a segment data file.
+//
+// If the file is already being decoded by another thread, waits for that
+// thread to finish.
+//
+
+private CachedFile get(final String pFilename, final boolean pIsInfo)
+                                                            throws IOException
+{
+
+    File file = new File(pFilename);
+
+    final long lastModified = file.lastModified();
+    final long length = file.length();
+
+    FutureTask<CachedFile> task;
+    boolean decodeHere = false;
+
+    synchronized(this){
+
+        CachedFile cached = files.get(pFilename);
+
+        if (cached != null){
+            if (cached.lastModified == lastModified
+                                                && cached.length == length){
+                return(cached);
+            }
+            remove(pFilename);
+        }
+
+        task = pending.get(pFilename);
+
+        if (task == null){
+            task = new FutureTask<>(
+                        () -> decode(pFilename, pIsInfo, lastModified, length));
+            pending.put(pFilename, task);
+            decodeHere = true;
+        }
+
+    }
+
+    if (decodeHere) {task.run();}
+
+    CachedFile decoded;
+
+    try{
+        decoded = task.get();
+    }
+    catch(ExecutionException e){
+        if (e.getCause() instanceof IOException){
+            throw (IOException)e.getCause();
+        }
+        throw new IOException(e.getCause());
+    }
+    catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while loading " + pFilename);
+    }
+    finally{
+        if (decodeHere){
+            synchronized(this) {pending.remove(pFilename);}
+        }
+    }
+
+    if (decodeHere){
+        synchronized(this) {store(decoded);}
+    }
+
+    return(decoded);
+
+}//end of SegmentCache::get
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::decode
+//
+// Reads and decodes pFilename. pLastModified and pLength are the values for
+// the file found before it was read.
+//
+
+private CachedFile decode(String pFilename, boolean pIsInfo,
+                            long pLastModified, long pLength) throws IOException
+{
+
+    CachedFile cached = new CachedFile(pFilename, pLastModified, pLength);
+
+    if (pIsInfo){
+        cached.info = new IniFile(pFilename, fileFormat);
+        cached.info.init();
+        cached.size = pLength * 2;
+    }
+    else
+    if (SegmentDataReader.isSegmentData(pFilename)){
+        cached.segmentData = SegmentDataReader.open(
+                            Files.readAllBytes(new File(pFilename).toPath()));
+        cached.size = cached.segmentData.getSizeInMemory();
+    }
+    else{
+        cached.text = new String(
+            Files.readAllBytes(new File(pFilename).toPath()), fileFormat);
+        cached.size = cached.text.length() * 2L;
+    }
+
+    return(cached);
+
+}//end of SegmentCache::decode
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::store
+//
+// Adds pFile to the cache and discards the least recently used files until
+// the cache is within its limits. pFile itself is always kept.
+//
+// The caller must hold the lock on this object.
+//
+
+private void store(CachedFile pFile)
+{
+
+    remove(pFile.filename);
+
+    files.put(pFile.filename, pFile);
+    memoryUsed += pFile.size;
+
+    Iterator<CachedFile> iter = files.values().iterator();
+
+    while ((memoryUsed > memoryLimit || files.size() > MAX_FILES)
+                                                        && files.size() > 1){
+        CachedFile eldest = iter.next();
+        iter.remove();
+        memoryUsed -= eldest.size;
+    }
+
+}//end of SegmentCache::store
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::remove
+//
+// Removes pFilename from the cache if present.
+//
+// The caller must hold the lock on this object.
+//
+
+private void remove(String pFilename)
+{
+
+    CachedFile cached = files.remove(pFilename);
+
+    if (cached != null) {memoryUsed -= cached.size;}
+
+}//end of SegmentCache::remove
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::clear
+//
+// Discards all cached files.
+//
+
+public synchronized void clear()
+{
+
+    files.clear();
+    memoryUsed = 0;
+
+}//end of SegmentCache::clear
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::isCached
+//
+// Returns true if pFilename is in the cache. The file is not checked for
+// changes.
+//
+
+public synchronized boolean isCached(String pFilename)
+{
+
+    return(files.containsKey(pFilename));
+
+}//end of SegmentCache::isCached
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentCache::shutDown
+//
+// Stops the background thread and discards all cached files.
+//
+
+public void shutDown()
+{
+
+    if (prefetcher != null) {prefetcher.shutdownNow();}
+
+    clear();
+
+}//end of SegmentCache::shutDown
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentCache
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
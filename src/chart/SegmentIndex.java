@@ -0,0 +1,529 @@
+/******************************************************************************
+* Title: SegmentIndex.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class handles the segment index of a job: a file in the job folder
+* which holds a summary of each piece saved so that pieces can be found by
+* their contents without loading their segment data files.
+*
+* For each piece, the index holds the measured length and the minimum wall,
+* and for each chart, the number of flags and the smallest and largest
+* values in the units stored in the chart data. The flaw amplitudes are thus
+* the largest values of the flaw charts.
+*
+* The file is text, one piece per line, so that it can be appended to as each
+* piece is saved. If a piece is saved again, the later line supersedes the
+* earlier one. Each line ends with a checksum; lines which are incomplete or
+* do not match their checksum, such as one cut short by a loss of power, are
+* ignored.
+*
+* Line format (fields separated by tabs):
+*
+*   record version, D or C for inspection or calibration piece, piece number,
+*   measured length, minimum wall (-1 if none), number of charts,
+*   then for each chart: short title, flag count, smallest value, largest value
+*       (the values are - if the chart has no data),
+*   checksum
+*
+* The file is always written in UTF-8 regardless of the job file format.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart;
+
+import chart.mksystems.stripchart.ChartGroup;
+import chart.mksystems.stripchart.SegmentStats;
+import chart.mksystems.stripchart.StripChart;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentIndex
+//
+// See notes at top of page.
+//
+
+public class SegmentIndex extends Object{
+
+    public static final String FILENAME = "10 - Segment Index.txt";
+
+    static final String RECORD_VERSION = "1";
+    static final String SEPARATOR = "\t";
+
+    //number of fields before the chart fields and in each chart
+    static final int PIECE_FIELDS = 6;
+    static final int CHART_FIELDS = 4;
+
+    //indexed by piece number
+    TreeMap<Integer, Entry> pieces = new TreeMap<>();
+    TreeMap<Integer, Entry> calPieces = new TreeMap<>();
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ChartEntry
+//
+// Holds the summary of one chart of a piece.
+//
+
+public static class ChartEntry {
+
+    public String shortTitle;
+    public int flagCount;
+    public boolean hasValues;
+    public int minValue, maxValue;
+
+}//end of class ChartEntry
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Entry
+//
+// Holds the summary of one piece.
+//
+
+public static class Entry {
+
+    public int pieceNumber;
+    public boolean isCal;
+    public double measuredLength;
+
+    //in inches, -1 if there is no wall chart
+    public double minWall = -1;
+
+    public ArrayList<ChartEntry> charts = new ArrayList<>();
+
+//-----------------------------------------------------------------------------
+// Entry::getFlagCount
+//
+// Returns the number of flags in all charts.
+//
+
+public int getFlagCount()
+{
+
+    int count = 0;
+
+    for (ChartEntry chart : charts) {count += chart.flagCount;}
+
+    return(count);
+
+}//end of Entry::getFlagCount
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Entry::getChart
+//
+// Returns the entry for the chart with short title pShortTitle or null if
+// there is none.
+//
+
+public ChartEntry getChart(String pShortTitle)
+{
+
+    for (ChartEntry chart : charts){
+        if (chart.shortTitle.equals(pShortTitle)) {return(chart);}
+    }
+
+    return(null);
+
+}//end of Entry::getChart
+//-----------------------------------------------------------------------------
+
+}//end of class Entry
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::createEntry (static)
+//
+// Returns an entry for piece pPieceNumber, which is a calibration piece if
+// pIsCal is true, containing the summary of the last segment of each chart in
+// the first pNumberOfChartGroups of pChartGroups.
+//
+// pMinWall should be in inches or -1 if there is no wall chart.
+//
+
+public static Entry createEntry(int pPieceNumber, boolean pIsCal,
+                        double pMeasuredLength, double pMinWall,
+                        ChartGroup[] pChartGroups, int pNumberOfChartGroups)
+{
+
+    Entry entry = new Entry();
+
+    entry.pieceNumber = pPieceNumber; entry.isCal = pIsCal;
+    entry.measuredLength = pMeasuredLength; entry.minWall = pMinWall;
+
+    for (int i = 0; i < pNumberOfChartGroups; i++){
+
+        ChartGroup group = pChartGroups[i];
+
+        for (int j = 0; j < group.getNumberOfStripCharts(); j++){
+
+            StripChart stripChart = group.getStripChart(j);
+            SegmentStats stats = stripChart.getSegmentStats();
+
+            ChartEntry chart = new ChartEntry();
+            chart.shortTitle = stripChart.shortTitle;
+            chart.flagCount = stats.flagCount;
+            chart.hasValues = stats.hasValues();
+            chart.minValue = stats.minValue;
+            chart.maxValue = stats.maxValue;
+
+            entry.charts.add(chart);
+
+        }
+    }
+
+    return(entry);
+
+}//end of SegmentIndex::createEntry
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::read (static)
+//
+// Returns the index loaded from the file in job folder pJobPath. If the file
+// does not exist, the returned index is empty.
+//
+
+public static SegmentIndex read(String pJobPath) throws IOException
+{
+
+    SegmentIndex index = new SegmentIndex();
+
+    File file = new File(pJobPath + FILENAME);
+
+    //if the file does not exist, no pieces have been indexed
+    if (!file.exists()) {return(index);}
+
+    //a reader is used rather than Files.newBufferedReader so that a partial
+    //character at the end of a partial line does not cause an exception
+
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(file), StandardCharsets.UTF_8))){
+
+        String line;
+
+        while ((line = in.readLine()) != null){
+            Entry entry = parseRecord(line);
+            if (entry != null) {index.add(entry);}
+        }
+
+    }
+
+    return(index);
+
+}//end of SegmentIndex::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::exists (static)
+//
+// Returns true if the index file exists in job folder pJobPath.
+//
+
+public static boolean exists(String pJobPath)
+{
+
+    return(new File(pJobPath + FILENAME).exists());
+
+}//end of SegmentIndex::exists
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::add
+//
+// Adds pEntry to the index, replacing any entry for the same piece.
+//
+
+public void add(Entry pEntry)
+{
+
+    getPieces(pEntry.isCal).put(pEntry.pieceNumber, pEntry);
+
+}//end of SegmentIndex::add
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getEntry
+//
+// Returns the entry for piece pPieceNumber, a calibration piece if pIsCal is
+// true, or null if the piece is not in the index.
+//
+
+public Entry getEntry(int pPieceNumber, boolean pIsCal)
+{
+
+    return(getPieces(pIsCal).get(pPieceNumber));
+
+}//end of SegmentIndex::getEntry
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getEntries
+//
+// Returns the entries for all inspection pieces or, if pIsCal is true, all
+// calibration pieces in piece number order.
+//
+
+public Collection<Entry> getEntries(boolean pIsCal)
+{
+
+    return(getPieces(pIsCal).values());
+
+}//end of SegmentIndex::getEntries
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::findNext
+//
+// Returns the number of the first piece after pPieceNumber, or before it if
+// pForward is false, for which pTest is true. Only calibration pieces are
+// searched if pIsCal is true, only inspection pieces otherwise.
+//
+// Returns -1 if no piece is found.
+//
+
+public int findNext(int pPieceNumber, boolean pIsCal, boolean pForward,
+                                                    Predicate<Entry> pTest)
+{
+
+    TreeMap<Integer, Entry> map = getPieces(pIsCal);
+
+    Map<Integer, Entry> range = pForward ?
+                        map.tailMap(pPieceNumber, false) :
+                        map.headMap(pPieceNumber, false).descendingMap();
+
+    for (Entry entry : range.values()){
+        if (pTest.test(entry)) {return(entry.pieceNumber);}
+    }
+
+    return(-1);
+
+}//end of SegmentIndex::findNext
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::write
+//
+// Replaces the index file in job folder pJobPath with the entries of this
+// index. The file is written completely before it replaces the old file.
+//
+
+public void write(String pJobPath) throws IOException
+{
+
+    StringBuilder text = new StringBuilder();
+
+    for (Entry entry : pieces.values()) {text.append(formatRecord(entry));}
+    for (Entry entry : calPieces.values()) {text.append(formatRecord(entry));}
+
+    PieceSaver.writeFile(pJobPath + FILENAME,
+                            text.toString().getBytes(StandardCharsets.UTF_8));
+
+}//end of SegmentIndex::write
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::append (static)
+//
+// Appends pEntries to the index file in job folder pJobPath.
+//
+
+public static void append(String pJobPath, Collection<Entry> pEntries)
+                                                            throws IOException
+{
+
+    if (pEntries.isEmpty()) {return;}
+
+    StringBuilder text = new StringBuilder();
+
+    for (Entry entry : pEntries) {text.append(formatRecord(entry));}
+
+    PieceSaver.appendFile(pJobPath + FILENAME,
+                            text.toString().getBytes(StandardCharsets.UTF_8));
+
+}//end of SegmentIndex::append
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getRecordBytes (static)
+//
+// Returns the line for pEntry in the index file as bytes to be appended to
+// the file.
+//
+
+public static byte[] getRecordBytes(Entry pEntry)
+{
+
+    return(formatRecord(pEntry).getBytes(StandardCharsets.UTF_8));
+
+}//end of SegmentIndex::getRecordBytes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::formatRecord (static)
+//
+// Returns the line for pEntry in the index file, including the line
+// terminator. See notes at the top of the page for the format.
+//
+
+static String formatRecord(Entry pEntry)
+{
+
+    StringBuilder line = new StringBuilder();
+
+    line.append(RECORD_VERSION);
+    line.append(SEPARATOR).append(pEntry.isCal ? "C" : "D");
+    line.append(SEPARATOR).append(pEntry.pieceNumber);
+    line.append(SEPARATOR).append(pEntry.measuredLength);
+    line.append(SEPARATOR).append(pEntry.minWall);
+    line.append(SEPARATOR).append(pEntry.charts.size());
+
+    for (ChartEntry chart : pEntry.charts){
+        //the title cannot contain the characters used to separate fields
+        line.append(SEPARATOR).append(
+                                chart.shortTitle.replaceAll("[\\t\\r\\n]", " "));
+        line.append(SEPARATOR).append(chart.flagCount);
+        line.append(SEPARATOR).append(
+                            chart.hasValues ? "" + chart.minValue : "-");
+        line.append(SEPARATOR).append(
+                            chart.hasValues ? "" + chart.maxValue : "-");
+    }
+
+    String checksum = getChecksum(line);
+
+    line.append(SEPARATOR).append(checksum);
+
+    line.append("\n");
+
+    return(line.toString());
+
+}//end of SegmentIndex::formatRecord
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::parseRecord (static)
+//
+// Returns the entry for line pLine from the index file or null if the line
+// is not a valid record.
+//
+
+static Entry parseRecord(String pLine)
+{
+
+    int end = pLine.lastIndexOf(SEPARATOR);
+
+    if (end < 0) {return(null);}
+
+    //ignore lines which are incomplete or have been altered
+
+    String text = pLine.substring(0, end);
+
+    if (!pLine.substring(end + 1).equals(getChecksum(text))) {return(null);}
+
+    String[] fields = text.split(SEPARATOR, -1);
+
+    if (fields.length < PIECE_FIELDS
+                        || !fields[0].equals(RECORD_VERSION)) {return(null);}
+
+    try{
+
+        Entry entry = new Entry();
+
+        entry.isCal = fields[1].equals("C");
+        entry.pieceNumber = Integer.parseInt(fields[2]);
+        entry.measuredLength = Double.parseDouble(fields[3]);
+        entry.minWall = Double.parseDouble(fields[4]);
+
+        int numberOfCharts = Integer.parseInt(fields[5]);
+
+        if (fields.length != PIECE_FIELDS + numberOfCharts * CHART_FIELDS){
+            return(null);
+        }
+
+        for (int i = PIECE_FIELDS; i < fields.length; i += CHART_FIELDS){
+
+            ChartEntry chart = new ChartEntry();
+
+            chart.shortTitle = fields[i];
+            chart.flagCount = Integer.parseInt(fields[i + 1]);
+            chart.hasValues = !fields[i + 2].equals("-");
+
+            if (chart.hasValues){
+                chart.minValue = Integer.parseInt(fields[i + 2]);
+                chart.maxValue = Integer.parseInt(fields[i + 3]);
+            }
+
+            entry.charts.add(chart);
+
+        }
+
+        return(entry);
+
+    }
+    catch(NumberFormatException e){
+        return(null);
+    }
+
+}//end of SegmentIndex::parseRecord
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getChecksum (static)
+//
+// Returns the checksum of pText as a hex string.
+//
+
+static String getChecksum(CharSequence pText)
+{
+
+    CRC32 crc = new CRC32();
+
+    crc.update(pText.toString().getBytes(StandardCharsets.UTF_8));
+
+    return(Long.toHexString(crc.getValue()));
+
+}//end of SegmentIndex::getChecksum
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndex::getPieces
+//
+// Returns the map for calibration pieces if pIsCal is true, for inspection
+// pieces otherwise.
+//
+
+private TreeMap<Integer, Entry> getPieces(boolean pIsCal)
+{
+
+    return(pIsCal ? calPieces : pieces);
+
+}//end of SegmentIndex::getPieces
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentIndex
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,237 @@
+/******************************************************************************
+* Title: SegmentIndexBuilder.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class creates the segment index of a job from the segment data files
+* in the primary job folder. See SegmentIndex for details of the index.
+*
+* The index is normally added to as each piece is saved. This class is used
+* to create the index for jobs which were inspected before the index existed
+* and to add any pieces which are missing from the index.
+*
+* Each piece which is to be added is loaded into chart groups created for the
+* job in the same manner as for the Viewer, so this is much slower than using
+* the index.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart;
+
+import chart.mksystems.settings.Settings;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentIndexBuilder
+//
+// See notes at top of page.
+//
+
+public class SegmentIndexBuilder extends ViewerReporter{
+
+    boolean calMode = false;
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBuilder::SegmentIndexBuilder (constructor)
+//
+
+public SegmentIndexBuilder(Settings pSettings, JobInfo pJobInfo,
+        String pJobPrimaryPath, String pJobBackupPath, String pCurrentJobName)
+{
+
+    super(
+         pSettings, pJobInfo, pJobPrimaryPath, pJobBackupPath, pCurrentJobName);
+
+}//end of SegmentIndexBuilder::SegmentIndexBuilder (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBuilder::init
+//
+// Initializes new objects. Should be called immediately after instantiation.
+//
+// The piece info is not used for the index, so the piece info window is not
+// created.
+//
+
+@Override
+public void init()
+{
+
+}//end of SegmentIndexBuilder::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBuilder::update
+//
+// Adds each piece in the primary job folder which is not in the index to the
+// index in the primary and backup job folders. If pRebuild is true, all
+// pieces are added and the index files are replaced.
+//
+// Pieces which cannot be loaded are not added.
+//
+// Returns the number of pieces added.
+//
+
+public int update(boolean pRebuild) throws IOException
+{
+
+    SegmentIndex index =
+            pRebuild ? new SegmentIndex() : SegmentIndex.read(jobPrimaryPath);
+
+    ArrayList<SegmentIndex.Entry> added = new ArrayList<>();
+
+    for (int i = 0; i < 2; i++){
+
+        calMode = (i == 1);
+
+        for (int piece : listPieces(jobPrimaryPath, calMode)){
+
+            if (index.getEntry(piece, calMode) != null) {continue;}
+
+            SegmentIndex.Entry entry = summarizePiece(piece);
+
+            if (entry != null) {index.add(entry); added.add(entry);}
+
+        }
+    }
+
+    calMode = false;
+
+    //the backup folder may not be available
+    boolean backupExists = new File(jobBackupPath).isDirectory();
+
+    if (pRebuild){
+        index.write(jobPrimaryPath);
+        if (backupExists) {index.write(jobBackupPath);}
+    }
+    else{
+        SegmentIndex.append(jobPrimaryPath, added);
+        if (backupExists) {SegmentIndex.append(jobBackupPath, added);}
+    }
+
+    return(added.size());
+
+}//end of SegmentIndexBuilder::update
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBuilder::listPieces (static)
+//
+// Returns the numbers of all pieces in job folder pJobPath in ascending
+// order. Calibration pieces are listed if pIsCal is true, inspection pieces
+// otherwise.
+//
+
+static ArrayList<Integer> listPieces(String pJobPath, boolean pIsCal)
+{
+
+    final String prefix = pIsCal ? "30 - " : "20 - ";
+    final String ext = pIsCal ? ".cal" : ".dat";
+
+    //map files have the same prefix and extension but end with " map"
+
+    String[] files = new File(pJobPath).list((File dir, String name) ->
+            name.startsWith(prefix) && name.endsWith(ext)
+                                            && !name.endsWith(" map" + ext));
+
+    ArrayList<Integer> pieces = new ArrayList<>();
+
+    if (files == null) {return(pieces);}
+
+    for (String name : files){
+        try{
+            pieces.add(Integer.valueOf(name.substring(
+                            prefix.length(), name.length() - ext.length())));
+        }
+        catch(NumberFormatException e){
+            //ignore files which are not named for a piece
+        }
+    }
+
+    Collections.sort(pieces);
+
+    return(pieces);
+
+}//end of SegmentIndexBuilder::listPieces
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBuilder::summarizePiece
+//
+// Loads piece pPiece and returns its index entry. Returns null if the piece
+// cannot be loaded.
+//
+
+SegmentIndex.Entry summarizePiece(int pPiece)
+{
+
+    currentSegmentNumber = pPiece;
+
+    //the length is only changed if found in the file
+    hdwVs.measuredLength = 0;
+
+    String result = loadSegment(true);
+
+    if (result.startsWith("Error")) {return(null);}
+
+    //use the min wall of the first chart group with a wall chart as is done
+    //when the piece is saved
+
+    hdwVs.minWall = -1;
+
+    for (int i = 0; i < numberOfChartGroups; i++){
+        if (!chartGroups[i].getWallMinOrMaxText(true, hdwVs).isEmpty()){
+            break;
+        }
+    }
+
+    return(SegmentIndex.createEntry(pPiece, calMode, hdwVs.measuredLength,
+                            hdwVs.minWall, chartGroups, numberOfChartGroups));
+
+}//end of SegmentIndexBuilder::summarizePiece
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBuilder::loadInfoHelper
+//
+// The piece info is not used for the index, so it is not loaded.
+//
+
+@Override
+void loadInfoHelper(String pFilename)
+{
+
+}//end of SegmentIndexBuilder::loadInfoHelper
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentIndexBuilder::isCalSelected
+//
+// Returns true if calibration pieces are being loaded.
+//
+
+@Override
+public boolean isCalSelected()
+{
+
+    return(calMode);
+
+}//end of SegmentIndexBuilder::isCalSelected
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentIndexBuilder
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
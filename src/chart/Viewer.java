@@ -40,6 +40,7 @@ import java.awt.geom.AffineTransform;
 import java.awt.print.*;
 import java.io.*;
 import java.util.*;
+import java.util.function.Predicate;
 import javax.print.attribute.HashPrintRequestAttributeSet;
 import javax.print.attribute.standard.MediaPrintableArea;
 import javax.print.attribute.standard.MediaSizeName;
@@ -71,6 +72,7 @@ public class Viewer extends ViewerReporter implements WindowListener,
 
     PrintRange printRange, printCalsRange;
 
+    SegmentCache segmentCache;
 
 //-----------------------------------------------------------------------------
 // Viewer::Viewer (constructor)
@@ -122,6 +124,11 @@ public void init()
     //create a list to hold the segment file names
     segmentList = new ArrayList<>();
 
+    //holds recently viewed and adjacent segments so they can be displayed
+    //without loading them from disk again
+    segmentCache = new SegmentCache(settings.jobFileFormat);
+    segmentCache.init();
+
     //change the layout manager
     BoxLayout boxLayout = new BoxLayout(
                                  mainFrame.getContentPane(), BoxLayout.Y_AXIS);
@@ -1426,9 +1433,113 @@ public void actionPerformed(ActionEvent e)
         pieceIDInfo.setVisible(true);
     }
 
+    if ("Find Next Flagged".equals(e.getActionCommand())){
+        findNextSegment((SegmentIndex.Entry entry) -> entry.getFlagCount() > 0,
+                        "No more " + settings.pieceDescriptionPluralLC
+                                                        + " with flags found.");
+    }
+
+    if ("Find Next Thin Wall".equals(e.getActionCommand())){
+
+        String text = controlPanel.wallBelowEntry.getText().trim();
+        double limit;
+
+        try{
+            limit = Double.valueOf(text);
+        }
+        catch(NumberFormatException nfe){
+            displayErrorMessage("Illegal entry.");
+            return;
+        }
+
+        findNextSegment((SegmentIndex.Entry entry) ->
+                                    entry.minWall >= 0 && entry.minWall < limit,
+                        "No more " + settings.pieceDescriptionPluralLC
+                                    + " with wall below " + text + " found.");
+
+    }
+
 }//end of Viewer::actionPerformed
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Viewer::findNextSegment
+//
+// Loads the first segment after the current one for which pTest is true
+// using the segment index of the job. Displays pNotFoundMessage if there is
+// no such segment.
+//
+
+void findNextSegment(Predicate<SegmentIndex.Entry> pTest,
+                                                    String pNotFoundMessage)
+{
+
+    SegmentIndex index = getSegmentIndex();
+
+    if (index == null) {return;}
+
+    int segNumber = index.findNext(
+                        currentSegmentNumber, isCalSelected(), true, pTest);
+
+    if (segNumber == -1){
+        displayErrorMessage(pNotFoundMessage);
+        return;
+    }
+
+    currentSegmentNumber = segNumber;
+
+    loadSegment(false);
+
+}//end of Viewer::findNextSegment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Viewer::getSegmentIndex
+//
+// Returns the segment index of the job. If any pieces of the type being
+// viewed are missing from the index, as for jobs inspected before the index
+// was added, they are loaded and added to the index first.
+//
+// Displays an error message and returns null on error.
+//
+
+SegmentIndex getSegmentIndex()
+{
+
+    try{
+
+        SegmentIndex index = SegmentIndex.read(jobPrimaryPath);
+
+        boolean isCal = isCalSelected();
+
+        for (int piece :
+                    SegmentIndexBuilder.listPieces(jobPrimaryPath, isCal)){
+
+            if (index.getEntry(piece, isCal) == null){
+
+                SegmentIndexBuilder builder = new SegmentIndexBuilder(settings,
+                    jobInfo, jobPrimaryPath, jobBackupPath, currentJobName);
+                builder.init();
+                builder.configure();
+                builder.update(false);
+
+                return(SegmentIndex.read(jobPrimaryPath));
+
+            }
+        }
+
+        return(index);
+
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 1535");
+        displayErrorMessage("Could not read the segment index.");
+        return(null);
+    }
+
+}//end of Viewer::getSegmentIndex
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Viewer::displayPrintRangeWindow
 //
@@ -1628,11 +1739,76 @@ String loadSegment(boolean pQuietMode)
 
     printRunnable.unPauseThread(); //release the print thread if it is waiting
 
+    prefetchAdjacentSegments();
+
     return(result);
 
 }//end of Viewer::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Viewer::prefetchAdjacentSegments
+//
+// Starts loading the segments before and after the current segment into the
+// cache in the background so they can be displayed immediately if the user
+// moves to them. The next segment is loaded first as it is the most likely
+// to be viewed.
+//
+
+void prefetchAdjacentSegments()
+{
+
+    int next = currentSegmentNumber + 1, previous = currentSegmentNumber - 1;
+
+    segmentCache.prefetch(getSegmentFilename(next, false),
+                                            getSegmentFilename(next, true));
+
+    if (previous >= 1){
+        segmentCache.prefetch(getSegmentFilename(previous, false),
+                                        getSegmentFilename(previous, true));
+    }
+
+}//end of Viewer::prefetchAdjacentSegments
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Viewer::openSegmentData
+//
+// Returns a reader for segment data file pFilename from the cache, which
+// loads the file if necessary.
+//
+
+@Override
+BufferedReader openSegmentData(String pFilename) throws IOException
+{
+
+    return(segmentCache.openSegmentData(pFilename));
+
+}//end of Viewer::openSegmentData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Viewer::loadInfoHelper
+//
+// Loads the info for a segment from the cache, which loads the file if
+// necessary.
+//
+
+@Override
+void loadInfoHelper(String pFilename)
+{
+
+    try{
+        pieceIDInfo.loadData(pFilename, segmentCache.getInfo(pFilename));
+    }
+    catch(IOException e){
+        //let the parent try and report the error
+        super.loadInfoHelper(pFilename);
+    }
+
+}//end of Viewer::loadInfoHelper
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Viewer::windowClosing
 //
@@ -1655,6 +1831,8 @@ public void windowClosing(WindowEvent e)
     //kill the thread
     printThread.interrupt();
 
+    segmentCache.shutDown();
+
 }//end of Viewer::windowClosing
 //-----------------------------------------------------------------------------
 
@@ -1710,6 +1888,8 @@ class ViewerControlPanel extends JPanel implements ActionListener
     JComboBox <String>paperSizeSelector;
     JComboBox <String>printWidthSelector;
     JButton load, list;
+    JButton findFlagged, findThinWall;
+    JTextField wallBelowEntry;
 
 //-----------------------------------------------------------------------------
 // ViewerControlPanel::ViewerControlPanel (constructor)
@@ -1956,6 +2136,36 @@ private void configure(/*IniFile pConfigFile*/)
 
     add(gotoPanel);
 
+    //add a panel allowing user to jump to the next file of interest -- these
+    //use the segment index so the files are not loaded to search them
+
+    JPanel findPanel = new JPanel();
+    findPanel.setBorder(BorderFactory.createTitledBorder("Find"));
+    findPanel.setLayout(new BoxLayout(findPanel, BoxLayout.X_AXIS));
+
+    findFlagged = new JButton("Flagged");
+    findFlagged.setActionCommand("Find Next Flagged");
+    findFlagged.addActionListener(actionListener);
+    findFlagged.setToolTipText("Load the next " + settings.pieceDescriptionLC
+                                                            + " with flags.");
+    findPanel.add(findFlagged);
+
+    findPanel.add(Box.createRigidArea(new Dimension(3,0)));
+
+    findThinWall = new JButton("Wall Below");
+    findThinWall.setActionCommand("Find Next Thin Wall");
+    findThinWall.addActionListener(actionListener);
+    findThinWall.setToolTipText("Load the next " + settings.pieceDescriptionLC
+                        + " with minimum wall below the value in the box.");
+    findPanel.add(findThinWall);
+
+    wallBelowEntry = new JTextField("");
+    wallBelowEntry.setToolTipText("Enter the wall thickness to search for.");
+    Viewer.setSizes(wallBelowEntry, 50, 22);
+    findPanel.add(wallBelowEntry);
+
+    add(findPanel);
+
 }//end of ViewerControlPanel::configure
 //-----------------------------------------------------------------------------
 
@@ -1981,6 +2191,7 @@ public void setEnabledButtonsThreadSafe(final boolean pState)
         printWidthSelector.setEnabled(pState);
         calModeCheckBox.setEnabled(pState);
         load.setEnabled(pState); list.setEnabled(pState);
+        findFlagged.setEnabled(pState); findThinWall.setEnabled(pState);
     });
 
 }//end of ViewerControlPanel::setEnabledButtonsThreadSafe
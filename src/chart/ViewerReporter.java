@@ -24,6 +24,7 @@ import chart.mksystems.hardware.TraceValueCalculator;
 import chart.mksystems.inifile.IniFile;
 import chart.mksystems.settings.Settings;
 import chart.mksystems.stripchart.ChartGroup;
+import chart.mksystems.stripchart.SegmentDataReader;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -350,31 +351,17 @@ void resetChartGroups()
 String loadSegment(boolean pQuietMode)
 {
 
-    String segmentFilename;
-
     //reset the charts
     resetChartGroups();
 
-    //inspected pieces are saved with the prefix 20 while calibration pieces are
-    //saved with the prefix 30 - this forces them to be grouped together and
-    //controls the order in which the types are listed when the folder is viewed
-    //in alphabetical order in an explorer window
-
-    String prefix, ext, infoExt;
-
-    prefix = isCalSelected() ? "30 - " : "20 - ";
-    ext = isCalSelected() ? ".cal" : ".dat";
-    infoExt = isCalSelected() ? ".cal info" : ".info";
-
-    segmentFilename = prefix +
-                            decimalFormats[0].format(currentSegmentNumber);
+    String ext = isCalSelected() ? ".cal" : ".dat";
 
     //load the cal file first so its settings can be overridden by any
     //settings in the data file which might have been different at the time
     //the data file was saved
     loadCalFile(); //load calibration settings needed for viewing
 
-    String fullPath = jobPrimaryPath + segmentFilename + ext;
+    String fullPath = getSegmentFilename(currentSegmentNumber, false);
 
     fileCreationTimeStamp = getFileCreationDateTimeString(fullPath);
 
@@ -387,19 +374,51 @@ String loadSegment(boolean pQuietMode)
         }
 
     //load piece info
-    loadInfoHelper(jobPrimaryPath + segmentFilename + infoExt);
+    loadInfoHelper(getSegmentFilename(currentSegmentNumber, true));
 
     return(ext);
 
 }//end of ViewerReporter::loadSegment
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ViewerReporter::getSegmentFilename
+//
+// Returns the full path of the data file for segment pSegmentNumber in the
+// primary job folder, or of its info file if pInfo is true. The calibration
+// or inspection file is returned depending on isCalSelected.
+//
+
+String getSegmentFilename(int pSegmentNumber, boolean pInfo)
+{
+
+    //inspected pieces are saved with the prefix 20 while calibration pieces are
+    //saved with the prefix 30 - this forces them to be grouped together and
+    //controls the order in which the types are listed when the folder is viewed
+    //in alphabetical order in an explorer window
+
+    String prefix, ext;
+
+    prefix = isCalSelected() ? "30 - " : "20 - ";
+
+    if (pInfo) {ext = isCalSelected() ? ".cal info" : ".info";}
+    else {ext = isCalSelected() ? ".cal" : ".dat";}
+
+    return(jobPrimaryPath + prefix
+                        + decimalFormats[0].format(pSegmentNumber) + ext);
+
+}//end of ViewerReporter::getSegmentFilename
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ViewerReporter::loadSegmentHelper
 //
 // Loads the data for a segment from the specified file.  See the loadSegment
 // function for more info.
 //
+// The file may be in the binary format or the text format used by earlier
+// versions.
+//
 // If there is no error, returns empty String ""
 // ON error, returns the appropriate error message
 //
@@ -407,19 +426,11 @@ String loadSegment(boolean pQuietMode)
 private String loadSegmentHelper(String pFilename)
 {
 
-    //create a buffered writer stream
-
-    FileInputStream fileInputStream = null;
-    InputStreamReader inputStreamReader = null;
     BufferedReader in = null;
 
     try{
 
-        fileInputStream = new FileInputStream(pFilename);
-        inputStreamReader = new InputStreamReader(fileInputStream,
-                                                       settings.jobFileFormat);
-
-        in = new BufferedReader(inputStreamReader);
+        in = openSegmentData(pFilename);
 
         processHeader(in); //handle the header section
 
@@ -443,10 +454,6 @@ private String loadSegmentHelper(String pFilename)
     finally{
         try{if (in != null) {in.close();}}
         catch(IOException e){}
-        try{if (inputStreamReader != null) {inputStreamReader.close();}}
-        catch(IOException e){}
-        try{if (fileInputStream != null) {fileInputStream.close();}}
-        catch(IOException e){}
         }
 
     return("");
@@ -454,6 +461,21 @@ private String loadSegmentHelper(String pFilename)
 }//end of ViewerReporter::loadSegmentHelper
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ViewerReporter::openSegmentData
+//
+// Returns a reader for segment data file pFilename. Subclasses may override
+// this to supply the data from elsewhere, such as a cache.
+//
+
+BufferedReader openSegmentData(String pFilename) throws IOException
+{
+
+    return(SegmentDataReader.open(pFilename, settings.jobFileFormat));
+
+}//end of ViewerReporter::openSegmentData
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ViewerReporter::getFileCreationDateTimeString
 //
@@ -493,8 +515,10 @@ private String getFileCreationDateTimeString(String pFilename)
 // Loads the info for a segment from the specified file.  See the loadSegment
 // function for more info.
 //
+// Subclasses may override this to supply the info from elsewhere.
+//
 
-private void loadInfoHelper(String pFilename)
+void loadInfoHelper(String pFilename)
 {
 
     pieceIDInfo.loadData(pFilename);
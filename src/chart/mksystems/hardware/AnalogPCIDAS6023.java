@@ -26,6 +26,7 @@ import chart.mksystems.stripchart.Threshold;
 import chart.mksystems.stripchart.Trace;
 import chart.mksystems.stripchart.TraceData;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -457,6 +458,21 @@ public Channel[] getChannels()
 }//end of AnalogPCIDAS6023::getChannels
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// AnalogPCIDAS6023::getPeakStore
+//
+// Returns the store holding the peak data for all gates.
+//
+
+@Override
+public PeakStore getPeakStore()
+{
+
+    return null;
+
+}//end of AnalogPCIDAS6023::getPeakStore
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // AnalogPCIDAS6023::getGate
 //
@@ -748,6 +764,19 @@ public synchronized void sendDataChangesToRemotes()
 }//end of AnalogPCIDAS6023::sendDataChangesToRemotes
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// AnalogPCIDAS6023:flushOutboundMessages
+//
+// Sends any messages queued for the remotes.
+//
+
+@Override
+public void flushOutboundMessages()
+{
+
+}//end of AnalogPCIDAS6023::flushOutboundMessages
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // AnalogPCIDAS6023::setAllChannelsDataChangedTrue
 //
@@ -985,6 +1014,38 @@ public void saveAllMapDataSetsToFile(
 }//end of AnalogPCIDAS6023::saveAllMapDataSetsToFile
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// AnalogPCIDAS6023::createAllMapDataSetsFileData
+//
+// Returns the contents of the map file which would be saved by
+// saveAllMapDataSetsToFile or null if there is no map.
+//
+
+@Override
+public byte[] createAllMapDataSetsFileData(
+                                       String pInspectionDirectionDescription)
+{
+
+    return(null);
+
+}//end of AnalogPCIDAS6023::createAllMapDataSetsFileData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// AnalogPCIDAS6023::finishIncrementalMapFile
+//
+// Returns the map file saved during the inspection or null if there is none.
+//
+
+@Override
+public File finishIncrementalMapFile(String pInspectionDirectionDescription)
+{
+
+    return(null);
+
+}//end of AnalogPCIDAS6023::finishIncrementalMapFile
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // AnalogPCIDAS6023::recordStartLocation
 //
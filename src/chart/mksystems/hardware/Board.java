@@ -22,10 +22,13 @@ package chart.mksystems.hardware;
 import chart.Log;
 import chart.ThreadSafeLogger;
 import chart.mksystems.inifile.IniFile;
+import chart.mksystems.metrics.Histogram;
+import chart.mksystems.metrics.Metrics;
 import chart.mksystems.stripchart.Map2D;
 import chart.mksystems.stripchart.Map2DData;
 import java.io.*;
 import java.net.*;
+import java.nio.channels.SocketChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.*;
@@ -99,6 +102,52 @@ public abstract class Board extends Object implements Runnable{
     DataOutputStream byteOut = null;
     DataInputStream byteIn = null;
 
+    //if an ingest engine is set, incoming bytes are read from the socket by
+    //the engine's thread and buffered in ingestStream
+    PacketIngestEngine ingestEngine = null;
+    IngestInputStream ingestStream = null;
+    SocketChannel socketChannel = null;
+    static int INGEST_BUFFER_SIZE = 65536;
+
+    //if enabled, byteIn reads from this ring which pulls the socket data in
+    //bulk and allows packets to be decoded in place
+    PacketRing packetRing = null;
+
+    //if a capture folder is set, all bytes received and sent through the
+    //socket are recorded there; if a replay folder is set, a simulated board
+    //plays back the capture for the board found there instead
+    String captureFolder = "";
+    String replayFolder = "";
+    boolean replayAtOriginalTiming = true;
+    StreamCapture capture = null;
+
+    //while batching or coalescing, packets are collected in batchBuffer by
+    //sendBytes and sent together by flushBatch, endBatch, or flushOutbound --
+    //sendLock keeps the packets sent by different threads whole and in order
+    final Object sendLock = new Object();
+    boolean batching = false;
+    boolean coalescing = false;
+    byte[] batchBuffer = null;
+    int batchLength = 0;
+    int batchMessages = 0;
+    static final int BATCH_BUFFER_SIZE = 16384;
+    Histogram bytesPerFlush = null, messagesPerFlush = null;
+
+    //if true, startCoalescing queues the packets until the next flush
+    boolean coalescingEnabled = true;
+
+    //options applied by openSocket -- a buffer size of 0 leaves the system
+    //default in place
+    boolean tcpNoDelay = true;
+    int socketReceiveBufferSize = 0;
+    int socketSendBufferSize = 0;
+
+    //if started, this thread reads and decodes all packets from the remote --
+    //other threads must then not call processOneDataPacket
+    volatile Thread readerThread = null;
+    volatile boolean readerActive = false;
+    static final int EVENT_RING_SIZE = 256;
+
     int TIMEOUT = 50;
     int timeOutProcess = 0; //use this one in the packet process functions
 
@@ -139,6 +188,26 @@ public Board(JTextArea pLog)
 void configure(IniFile pConfigFile)
 {
 
+    captureFolder = pConfigFile.readString(
+                            "Hardware", "Board Stream Capture Folder", "");
+
+    replayFolder = pConfigFile.readString(
+                            "Hardware", "Board Stream Replay Folder", "");
+
+    replayAtOriginalTiming = pConfigFile.readBoolean(
+                    "Hardware", "Replay Board Streams At Original Timing", true);
+
+    coalescingEnabled = pConfigFile.readBoolean(
+                    "Hardware", "Coalesce Messages To Boards", true);
+
+    tcpNoDelay = pConfigFile.readBoolean(
+                    "Hardware", "Board Socket TCP No Delay", true);
+
+    socketReceiveBufferSize = pConfigFile.readInt(
+                    "Hardware", "Board Socket Receive Buffer Size", 0);
+
+    socketSendBufferSize = pConfigFile.readInt(
+                    "Hardware", "Board Socket Send Buffer Size", 0);
 
 }//end of Board::configure
 //-----------------------------------------------------------------------------
@@ -257,65 +326,493 @@ public void setIPAddr(InetAddress pIPAddr)
 }//end of Board::setIPAddr
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Board::setIngestEngine
+//
+// Sets the engine used to read incoming data from the remote. If never set,
+// the socket's stream is polled directly as before.
+//
+// Must be called before connect.
+//
+
+public void setIngestEngine(PacketIngestEngine pIngestEngine)
+{
+
+    ingestEngine = pIngestEngine;
+
+}//end of Board::setIngestEngine
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::openSocket
+//
+// Opens a socket to pAddr on pPort. If an ingest engine is in use, the socket
+// is opened through a SocketChannel so that it can be handled by the engine's
+// Selector.
+//
+// The socket options are set before connecting as the receive buffer size
+// must be known when the connection is made for larger sizes to be used.
+//
+
+Socket openSocket(InetAddress pAddr, int pPort) throws IOException
+{
+
+    Socket s;
+
+    if (ingestEngine == null) {s = new Socket();}
+    else{
+        socketChannel = SocketChannel.open();
+        s = socketChannel.socket();
+    }
+
+    setSocketOptions(s);
+
+    s.connect(new InetSocketAddress(pAddr, pPort));
+
+    return(s);
+
+}//end of Board::openSocket
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::setSocketOptions
+//
+// Applies the socket options loaded from the config file to pSocket.
+//
+// TCP_NODELAY is set by default so that the packets sent by flushOutbound
+// are not held back waiting for the remote to acknowledge earlier packets --
+// the small packets are already combined by the coalescing.
+//
+
+void setSocketOptions(Socket pSocket) throws SocketException
+{
+
+    pSocket.setTcpNoDelay(tcpNoDelay);
+
+    if (socketReceiveBufferSize > 0){
+        pSocket.setReceiveBufferSize(socketReceiveBufferSize);
+    }
+
+    if (socketSendBufferSize > 0){
+        pSocket.setSendBufferSize(socketSendBufferSize);
+    }
+
+}//end of Board::setSocketOptions
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::openStreams
+//
+// Creates the text and byte streams used to communicate through socket.
+//
+// If an ingest engine is in use, the input streams read from an
+// IngestInputStream filled by the engine. Sockets opened with a SocketChannel
+// are registered with the engine's Selector while others, such as the
+// simulators, are serviced by an adapter thread.
+//
+// The socket's SoTimeout should be set before calling as it is also used as
+// the read timeout of the IngestInputStream.
+//
+// If a capture folder is set, the lowest level streams are wrapped so that
+// every byte received and sent is recorded.
+//
+
+void openStreams() throws IOException
+{
+
+    if (!captureFolder.isEmpty()){
+        capture = StreamCapture.open(captureFolder, boardName);
+        if (capture == null){
+            logger.logMessage("Could not capture " + boardName + ".\n");
+        }
+    }
+
+    if (ingestEngine == null){
+
+        InputStream inStream = socket.getInputStream();
+        OutputStream outStream = socket.getOutputStream();
+
+        if (capture != null){
+            inStream = capture.wrapInput(inStream);
+            outStream = capture.wrapOutput(outStream);
+        }
+
+        out = new PrintWriter(outStream, true);
+
+        in = new BufferedReader(new InputStreamReader(inStream));
+
+        byteOut = new DataOutputStream(outStream);
+        byteIn = new DataInputStream(inStream);
+
+        return;
+
+    }
+
+    ingestStream =
+            new IngestInputStream(INGEST_BUFFER_SIZE, socket.getSoTimeout());
+
+    OutputStream outStream;
+
+    if (socketChannel != null){
+        ingestEngine.registerChannel(socketChannel, ingestStream);
+        outStream = new ChannelOutputStream(socketChannel);
+    }
+    else{
+        ingestEngine.registerStream(socket.getInputStream(), ingestStream,
+                                                                ipAddrS);
+        outStream = socket.getOutputStream();
+    }
+
+    InputStream inStream = ingestStream;
+
+    if (capture != null){
+        inStream = capture.wrapInput(inStream);
+        outStream = capture.wrapOutput(outStream);
+    }
+
+    out = new PrintWriter(outStream, true);
+
+    in = new BufferedReader(new InputStreamReader(inStream));
+
+    byteOut = new DataOutputStream(outStream);
+    byteIn = new DataInputStream(inStream);
+
+}//end of Board::openStreams
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::closeCapture
+//
+// Closes the capture file if capturing.
+//
+
+void closeCapture()
+{
+
+    if (capture != null) {capture.close();}
+
+}//end of Board::closeCapture
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::isReplaying
+//
+// Returns true if a replay folder is set so that the simulated board should
+// play back a capture rather than simulate data.
+//
+
+boolean isReplaying()
+{
+
+    return(!replayFolder.isEmpty());
+
+}//end of Board::isReplaying
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::createReplaySimulator
+//
+// Returns a simulator which plays back the latest capture for this board in
+// the replay folder to be used in place of a socket connected to pAddr on
+// pPort.
+//
+// Throws IOException if there is no capture for the board or it cannot be
+// read.
+//
+
+Simulator createReplaySimulator(InetAddress pAddr, int pPort)
+                                                            throws IOException
+{
+
+    String filename = StreamCapture.findLatest(replayFolder, boardName);
+
+    if (filename == null){
+        throw new FileNotFoundException(
+                "No capture for " + boardName + " in " + replayFolder);
+    }
+
+    logger.logMessage("Replaying " + filename + "...\n");
+
+    ReplaySimulator replay = new ReplaySimulator(
+                            pAddr, pPort, filename, replayAtOriginalTiming);
+    replay.init();
+
+    return(replay);
+
+}//end of Board::createReplaySimulator
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::enablePacketRing
+//
+// Inserts a PacketRing of pCapacity bytes between the socket stream and the
+// byteIn and in streams. The ring reads the socket in bulk and allows the
+// packet handlers to decode data in place through a PacketView.
+//
+// Should be called after openStreams and after the greeting message from the
+// remote has been read.
+//
+
+void enablePacketRing(int pCapacity)
+{
+
+    packetRing = new PacketRing(byteIn, ingestStream, pCapacity);
+
+    byteIn = new DataInputStream(packetRing);
+
+    in = new BufferedReader(new InputStreamReader(packetRing));
+
+}//end of Board::enablePacketRing
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Board::sendBytes
 //
 // Sends a variable number of bytes (one or more) to the remote device,
 // prepending a valid header and appending the appropriate checksum.
 //
+// The header, bytes, and checksum are sent with a single write. While
+// batching or coalescing, the packet is instead queued to be sent with the
+// other queued packets.
+//
 
 void sendBytes(byte... pBytes)
+{
+
+    synchronized(sendLock){
+
+        if (batching || coalescing) {batchBytes(pBytes); return;}
+
+        writeBuffer(outBuffer, putPacket(outBuffer, 0, pBytes));
+
+    }
+
+}//end of Board::sendBytes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::putPacket
+//
+// Stores a packet containing pBytes in pBuffer starting at pOffset, with the
+// same header and checksum as added by sendBytes, so that several packets can
+// be sent to the remote with one call to sendBuffer.
+//
+// Returns the offset following the packet.
+//
+
+int putPacket(byte[] pBuffer, int pOffset, byte... pBytes)
 {
 
     int checksum = 0;
 
-    sendHeader(); //send the packet header
+    pBuffer[pOffset++] = (byte)0xaa; pBuffer[pOffset++] = (byte)0x55;
+    pBuffer[pOffset++] = (byte)0xbb; pBuffer[pOffset++] = (byte)0x66;
 
     for(int i=0; i<pBytes.length; i++){
-        outBuffer[i] = pBytes[i];
+        pBuffer[pOffset++] = pBytes[i];
         checksum += pBytes[i];
     }
 
-    //calculate checksum and put at end of buffer
-    outBuffer[pBytes.length] = (byte)(0x100 - (byte)(checksum & 0xff));
+    pBuffer[pOffset++] = (byte)(0x100 - (byte)(checksum & 0xff));
+
+    return(pOffset);
+
+}//end of Board::putPacket
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::sendBuffer
+//
+// Sends the first pLength bytes of pBuffer, which holds packets stored by
+// putPacket, to the remote with a single write. Any packets already queued
+// are sent first so that the order is kept.
+//
+
+void sendBuffer(byte[] pBuffer, int pLength)
+{
+
+    synchronized(sendLock){
+
+        flushBatch();
+
+        writeBuffer(pBuffer, pLength);
 
-    //send packet to remote
-    if (byteOut != null) {
-        try{
-              byteOut.write(outBuffer, 0 /*offset*/, pBytes.length + 1);
-              byteOut.flush();
-        }
-        catch (IOException e) {
-            logSevere(e.getMessage() + " - Error: 422");
-        }
     }
 
-}//end of Board::sendBytes
+}//end of Board::sendBuffer
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// Board::sendHeader
+// Board::writeBuffer
 //
-// Sends a valid packet header without flushing.
+// Writes the first pLength bytes of pBuffer to the remote and flushes the
+// stream. Must be called while holding sendLock.
 //
 
-void sendHeader()
+private void writeBuffer(byte[] pBuffer, int pLength)
 {
 
-    outBuffer[0] = (byte)0xaa; outBuffer[1] = (byte)0x55;
-    outBuffer[2] = (byte)0xbb; outBuffer[3] = (byte)0x66;
+    if (byteOut == null || pLength == 0) {return;}
 
-    //send packet to remote
-    if (byteOut != null) {
-        try{
-            byteOut.write(outBuffer, 0 /*offset*/, 4);
-        }
-        catch (IOException e){
-            logSevere(e.getMessage() + " - Error: 569");
+    try{
+        byteOut.write(pBuffer, 0 /*offset*/, pLength);
+        byteOut.flush();
+    }
+    catch (IOException e) {
+        logSevere(e.getMessage() + " - Error: 662");
+    }
+
+}//end of Board::writeBuffer
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::beginBatch
+//
+// Starts collecting the packets passed to sendBytes so that they are sent to
+// the remote together by endBatch rather than each with its own write. If
+// the batch buffer fills, the packets collected so far are sent.
+//
+// Only use when sending: a request for data made while batching will not be
+// sent until the batch is flushed, so its response cannot be waited for.
+//
+
+void beginBatch()
+{
+
+    synchronized(sendLock){
+
+        if (batchBuffer == null) {batchBuffer = new byte[BATCH_BUFFER_SIZE];}
+
+        batching = true;
+
+    }
+
+}//end of Board::beginBatch
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::batchBytes
+//
+// Adds a packet containing pBytes to the batch, first sending the batch if
+// there is not room for the packet.
+//
+// Must be called while holding sendLock.
+//
+
+private void batchBytes(byte... pBytes)
+{
+
+    //header + bytes + checksum
+    if (batchLength + pBytes.length + 5 > batchBuffer.length) {flushBatch();}
+
+    batchLength = putPacket(batchBuffer, batchLength, pBytes);
+
+    batchMessages++;
+
+}//end of Board::batchBytes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::flushBatch
+//
+// Sends the packets collected since the batch was begun or last flushed and
+// records the number of bytes and packets sent.
+//
+
+void flushBatch()
+{
+
+    synchronized(sendLock){
+
+        if (batchLength == 0) {return;}
+
+        if (bytesPerFlush == null){
+            bytesPerFlush = Metrics.histogram(boardName + " bytes per flush");
+            messagesPerFlush =
+                        Metrics.histogram(boardName + " messages per flush");
         }
+
+        writeBuffer(batchBuffer, batchLength);
+
+        bytesPerFlush.record(batchLength);
+        messagesPerFlush.record(batchMessages);
+
+        batchLength = 0; batchMessages = 0;
+
+    }
+
+}//end of Board::flushBatch
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::endBatch
+//
+// Sends the packets collected and returns sendBytes to sending each packet
+// immediately, or to coalescing them if that has been started.
+//
+
+void endBatch()
+{
+
+    synchronized(sendLock){
+
+        if (!batching) {return;}
+
+        flushBatch();
+
+        batching = false;
+
     }
 
-}//end of Board::sendHeader
+}//end of Board::endBatch
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::startCoalescing
+//
+// Starts queueing all packets passed to sendBytes so that those sent during
+// each cycle of the main thread are sent to the remote with one write by
+// flushOutbound at the end of the cycle rather than each with its own. Has
+// no effect if coalescing is disabled in the config file.
+//
+// The queue is also flushed when it fills and before any wait for a response
+// from the remote through processDataPackets or the getRemote... methods.
+// Any other code which waits for a response to a packet it has sent must call
+// flushOutbound first. waitSleep does not flush as it is also used by the
+// reader thread, which must not send the main thread's partial cycle.
+//
+// Should be called after the board has been set up; the setup sends files
+// and requests in ways which expect each packet to be sent immediately.
+//
+
+public void startCoalescing()
+{
+
+    if (!coalescingEnabled) {return;}
+
+    synchronized(sendLock){
+
+        if (batchBuffer == null) {batchBuffer = new byte[BATCH_BUFFER_SIZE];}
+
+        coalescing = true;
+
+    }
+
+}//end of Board::startCoalescing
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::flushOutbound
+//
+// Sends any packets queued by sendBytes while batching or coalescing.
+//
+
+public void flushOutbound()
+{
+
+    flushBatch();
+
+}//end of Board::flushOutbound
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -331,6 +828,12 @@ boolean waitForNumberOfBytes(int pNumBytes)
 {
 
     try{
+        if (packetRing != null){
+            return(packetRing.waitForBytes(pNumBytes, TIMEOUT * 10));
+        }
+        if (ingestStream != null){
+            return(ingestStream.waitForBytes(pNumBytes, TIMEOUT * 10));
+        }
         timeOutProcess = 0;
         while(timeOutProcess++ < TIMEOUT){
             if (byteIn.available() >= pNumBytes) {return(true);}
@@ -362,10 +865,19 @@ public int readBytes(int pNumBytes)
 {
 
     try{
-        timeOutProcess = 0;
-        while(timeOutProcess++ < TIMEOUT){
-            if (byteIn.available() >= pNumBytes) {break;}
-            waitSleep(10);
+        if (packetRing != null){
+            packetRing.waitForBytes(pNumBytes, TIMEOUT * 10);
+        }
+        else
+        if (ingestStream != null){
+            ingestStream.waitForBytes(pNumBytes, TIMEOUT * 10);
+        }
+        else{
+            timeOutProcess = 0;
+            while(timeOutProcess++ < TIMEOUT){
+                if (byteIn.available() >= pNumBytes) {break;}
+                waitSleep(10);
+            }
         }
         if (byteIn.available() >= pNumBytes){
             return byteIn.read(inBuffer, 0, pNumBytes);
@@ -406,6 +918,8 @@ byte getRemoteData(byte pCommand, boolean pForceProcessDataPackets)
 
     sendBytes(pCommand); //request the data from the remote
 
+    flushOutbound(); //the request must not wait in the queue
+
     //force waiting for and processing of receive packets
     if (pForceProcessDataPackets) {processDataPackets(true, TIMEOUT);}
 
@@ -429,6 +943,8 @@ byte getRemoteAddressedData(byte pCommand, byte pSendData)
 
     sendBytes(pCommand, pSendData);
 
+    flushOutbound(); //the request must not wait in the queue
+
     int IN_BUFFER_SIZE = 2;
     byte[] inBuf;
     inBuf = new byte[IN_BUFFER_SIZE];
@@ -521,6 +1037,10 @@ public int processDataPackets(boolean pWaitForPkt, int pTimeOut)
 
     //wip mks -- is the above true? explain better or change the functionality
     
+    //any request waiting in the outbound queue must be sent before its
+    //response can be received
+    flushOutbound();
+
     if (pWaitForPkt) {
         return processOneDataPacket(pWaitForPkt, pTimeOut);
     }
@@ -533,6 +1053,74 @@ public int processDataPackets(boolean pWaitForPkt, int pTimeOut)
 }//end of Board::processDataPackets
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Board::startReaderThread
+//
+// Starts a thread which continuously reads and decodes the packets from the
+// remote. Packets containing inspection data are passed to the data
+// collection thread as events via a lock-free queue.
+//
+// Should only be called after the board has been connected and initialized
+// as any other thread attempting to process packets afterwards will be
+// ignored.
+//
+
+public void startReaderThread()
+{
+
+    if (readerThread != null) {return;}
+
+    readerActive = true;
+
+    Thread thread = new Thread(() -> {
+
+        while (readerActive){
+            //returns -1 if nothing was received within the time out
+            processOneDataPacket(true, TIMEOUT);
+        }
+
+    }, boardName + " Reader");
+
+    thread.setDaemon(true);
+
+    readerThread = thread;
+
+    thread.start();
+
+}//end of Board::startReaderThread
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::stopReaderThread
+//
+// Signals the reader thread to exit.
+//
+
+void stopReaderThread()
+{
+
+    readerActive = false;
+
+}//end of Board::stopReaderThread
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Board::isPacketThread
+//
+// Returns true if the current thread is allowed to read packets from the
+// remote. If a reader thread has been started, only it may do so.
+//
+
+boolean isPacketThread()
+{
+
+    Thread reader = readerThread;
+
+    return(reader == null || reader == Thread.currentThread());
+
+}//end of Board::isPacketThread
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Board::processOneDataPacket
 //
@@ -723,6 +1311,7 @@ void installNewRabbitFirmware(String pBoardType, String pFilename,
     try {
 
         sendBytes(pS.loadFirmwareCmd); //send command to initiate loading
+        flushOutbound();
 
         logger.logMessage(pBoardType + " " + ipAddrS +
                                          " loading Rabbit firmware..." + "\n");
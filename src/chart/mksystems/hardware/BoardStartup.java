@@ -0,0 +1,183 @@
+/******************************************************************************
+* Title: BoardStartup.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class tracks the progress of a UT board through the startup sequence:
+*
+*   discovered -> connected -> FPGA loaded -> DSP loaded -> DSP running
+*                                                    -> channels configured
+*
+* Each stage is entered when the remote reports that the step is complete,
+* such as the status flag showing the FPGA is loaded or every DSP core
+* answering a status request, rather than after a fixed delay.
+*
+* A board only moves forward one stage at a time, so a board which fails a
+* step stays at the last stage it completed and the remaining steps are not
+* credited to it even if the startup continues.
+*
+* The time taken to reach each stage is recorded so that the board which is
+* holding up a restart can be seen in the log. The times are also recorded to
+* the startup timers in Metrics.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import chart.mksystems.metrics.Metrics;
+import java.util.Locale;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class BoardStartup
+//
+// See notes at top of page.
+//
+
+public class BoardStartup extends Object{
+
+    public enum Stage {
+
+        NOT_DISCOVERED("not discovered"),
+        DISCOVERED("discovered"),
+        CONNECTED("connected"),
+        FPGA_LOADED("FPGA loaded"),
+        DSP_LOADED("DSP loaded"),
+        DSP_RUNNING("DSP running"),
+        CHANNELS_CONFIGURED("channels configured");
+
+        final String label;
+
+        Stage(String pLabel) {label = pLabel;}
+
+        @Override
+        public String toString() {return(label);}
+
+    }//end of enum Stage
+
+    private Stage stage = Stage.NOT_DISCOVERED;
+
+    //time from System.nanoTime at which each stage was entered
+    private final long[] stageTimes = new long[Stage.values().length];
+
+//-----------------------------------------------------------------------------
+// BoardStartup::start
+//
+// Begins a new startup sequence at time pStartTime, read from
+// System.nanoTime, from which the time to discovery is measured.
+//
+
+public synchronized void start(long pStartTime)
+{
+
+    stage = Stage.NOT_DISCOVERED;
+
+    stageTimes[Stage.NOT_DISCOVERED.ordinal()] = pStartTime;
+
+}//end of BoardStartup::start
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BoardStartup::advance
+//
+// Enters stage pStage if it follows the current stage and records the time
+// taken to reach it. Returns true if the stage was entered.
+//
+// A stage which does not follow the current stage is ignored, so a board
+// which has failed an earlier step does not advance.
+//
+
+public synchronized boolean advance(Stage pStage)
+{
+
+    if (pStage.ordinal() != stage.ordinal() + 1) {return(false);}
+
+    long now = System.nanoTime();
+
+    stageTimes[pStage.ordinal()] = now;
+
+    Metrics.timer("UT startup " + pStage + " time").record(
+                                    now - stageTimes[stage.ordinal()]);
+
+    stage = pStage;
+
+    return(true);
+
+}//end of BoardStartup::advance
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BoardStartup::getStage
+//
+
+public synchronized Stage getStage()
+{
+
+    return(stage);
+
+}//end of BoardStartup::getStage
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BoardStartup::getStageSeconds
+//
+// Returns the seconds taken to reach pStage from the previous stage, or -1
+// if pStage has not been reached.
+//
+
+public synchronized double getStageSeconds(Stage pStage)
+{
+
+    if (pStage == Stage.NOT_DISCOVERED || pStage.compareTo(stage) > 0) {
+        return(-1);
+    }
+
+    return((stageTimes[pStage.ordinal()] - stageTimes[pStage.ordinal() - 1])
+                                                                        / 1e9);
+
+}//end of BoardStartup::getStageSeconds
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// BoardStartup::getSummary
+//
+// Returns the seconds taken to reach each stage, followed by the stage the
+// board stopped at if it did not complete the sequence.
+//
+
+public synchronized String getSummary()
+{
+
+    StringBuilder summary = new StringBuilder();
+
+    for (Stage s : Stage.values()){
+
+        if (s == Stage.NOT_DISCOVERED || s.compareTo(stage) > 0) {continue;}
+
+        if (summary.length() > 0) {summary.append(", ");}
+
+        summary.append(s).append(String.format(Locale.ROOT, " %.1f s",
+                                                        getStageSeconds(s)));
+    }
+
+    if (stage != Stage.CHANNELS_CONFIGURED){
+        if (summary.length() > 0) {summary.append(", ");}
+        summary.append("stopped at ").append(stage);
+    }
+
+    return(summary.toString());
+
+}//end of BoardStartup::getSummary
+//-----------------------------------------------------------------------------
+
+}//end of class BoardStartup
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
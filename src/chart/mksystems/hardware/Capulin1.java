@@ -39,6 +39,11 @@ import java.net.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.*;
@@ -69,6 +74,7 @@ public class Capulin1 extends Object implements HardwareLink, MessageLink{
     WallMapDataSaver wallMapDataSaver = null;
 
     int wallMapFileFormat;
+    boolean saveWallMapIncrementally;
 
     ThreadSafeLogger logger;
 
@@ -91,6 +97,11 @@ public class Capulin1 extends Object implements HardwareLink, MessageLink{
     ControlBoard[] controlBoards;
     int numberOfControlBoards;
 
+    boolean usePacketIngestEngine;
+    PacketIngestEngine ingestEngine = null;
+
+    boolean useBoardReaderThreads;
+
     EthernetIOModule [] ioModules;
     int numberOfIOModules;
 
@@ -103,6 +114,9 @@ public class Capulin1 extends Object implements HardwareLink, MessageLink{
     boolean simulationMode = false;
 
     Channel[] channels;
+    //channels with changes to be sent by sendDataChangesToRemotes
+    final ArrayList<Channel> changedChannels = new ArrayList<>();
+    PeakStore peakStore;
     public int numberOfChannels;
 
     UTBoard[] utBoards;
@@ -118,6 +132,9 @@ public class Capulin1 extends Object implements HardwareLink, MessageLink{
 
     static int RUNTIME_PACKET_SIZE = 50;
 
+    //the most boards which have their channels set up at the same time
+    static final int MAX_CHANNEL_SETUP_THREADS = 16;
+
     byte[] pktBuffer;
 
     int opMode = Hardware.STOPPED;
@@ -225,6 +242,12 @@ private void configure(IniFile pConfigFile)
     //if any simulation is active, set the simulate flag true
     if (simulateControlBoards || simulateUTBoards) {simulate = true;}
 
+    usePacketIngestEngine =
+          pConfigFile.readBoolean("Hardware", "Use Packet Ingest Engine", false);
+
+    useBoardReaderThreads =
+          pConfigFile.readBoolean("Hardware", "Use Board Reader Threads", false);
+
     numberOfUTBoards =
                      pConfigFile.readInt("Hardware", "Number of UT Boards", 1);
 
@@ -259,9 +282,15 @@ private void configure(IniFile pConfigFile)
 
     parseWallMapFileFormat(value);
 
+    saveWallMapIncrementally = pConfigFile.readBoolean(
+                        "Data Output", "Save Wall Map Incrementally", false);
+
     //create and set up the markers
     configureMarkers(pConfigFile);
     
+    //create the engine which reads incoming data for all boards
+    configurePacketIngestEngine();
+
     //create and set up the Control boards
     configureControlBoards();
 
@@ -274,9 +303,38 @@ private void configure(IniFile pConfigFile)
     //create and setup the channels
     configureChannels();
 
+    //assign each gate a slot in the store for peak data
+    peakStore = new PeakStore(channels);
+
 }//end of Capulin1::configure
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Capulin1::configurePacketIngestEngine
+//
+// If enabled in the config file, creates the engine which reads incoming
+// data from all the boards' sockets using a single thread. If not enabled or
+// the engine cannot be started, each board polls its own socket.
+//
+
+private void configurePacketIngestEngine()
+{
+
+    if (!usePacketIngestEngine) {return;}
+
+    ingestEngine = new PacketIngestEngine();
+
+    try{
+        ingestEngine.init();
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 289");
+        ingestEngine = null;
+    }
+
+}//end of Capulin1::configurePacketIngestEngine
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Capulin1::parseListToHeadTypes
 //
@@ -424,7 +482,12 @@ public void createWallMapDataSaver()
     //they will then be in mapSourceBoards array in order of their map channel
 
     for (int i = 0; i < mapSourceBoards.length; i++){
-        mapSourceBoards[i].init(findBoardByMapChannel(i));
+        UTBoard board = findBoardByMapChannel(i);
+        //when saved incrementally, the buffer only holds the unsaved data
+        if (saveWallMapIncrementally && board != null){
+            board.useIncrementalDataBuffer();
+        }
+        mapSourceBoards[i].init(board);
     }
 
     //currently, the system only handles a single mapping channel per board
@@ -440,6 +503,10 @@ public void createWallMapDataSaver()
     wallMapDataSaver.init(mapSourceBoards, 
                                 controlBoards[0].getEncoderValuesObject());
 
+    //if enabled, save the map during the inspection so less work remains
+    //when the piece is finished
+    if (saveWallMapIncrementally) {wallMapDataSaver.startStreaming();}
+
 }//end of Capulin1::createWallMapDataSaver
 //-----------------------------------------------------------------------------
 
@@ -489,9 +556,71 @@ public void connect() throws InterruptedException
     //create object to save map data collected by remotes
     createWallMapDataSaver();
 
+    //if enabled, each board now reads its own packets
+    if (useBoardReaderThreads) {startBoardReaderThreads();}
+
+    //the messages to each board are now queued and sent once per cycle
+    startOutboundCoalescing();
+
 }//end of Capulin1::connect
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Capulin1::startOutboundCoalescing
+//
+// Starts queueing the messages to each board so that all those sent during a
+// cycle of the "Main Thread" are sent with one write by
+// flushOutboundMessages.
+//
+// Must be called after all boards have been initialized as the setup expects
+// each message to be sent immediately.
+//
+
+private void startOutboundCoalescing()
+{
+
+    for (int i = 0; i < numberOfControlBoards; i++) {
+        if (controlBoards[i] != null) {controlBoards[i].startCoalescing();}
+    }
+
+    for (int i = 0; i < numberOfUTBoards; i++) {
+        if (utBoards[i] != null) {utBoards[i].startCoalescing();}
+    }
+
+}//end of Capulin1::startOutboundCoalescing
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Capulin1::startBoardReaderThreads
+//
+// Starts a reader thread for each connected board. Each thread decodes the
+// packets from its board and queues the peak and encoder data. The queues are
+// drained by prepareAnalogData and prepareControlData in board order so the
+// order in which data from different boards is applied does not depend on
+// thread timing.
+//
+// Must be called after all boards have been initialized as only the reader
+// threads may process packets once they are started.
+//
+
+private void startBoardReaderThreads()
+{
+
+    for (int i = 0; i < numberOfControlBoards; i++) {
+        if (controlBoards[i] != null) {controlBoards[i].startReaderThread();}
+    }
+
+    for (int i = 0; i < numberOfUTBoards; i++) {
+        if (utBoards[i] != null && utBoards[i].isEnabled()) {
+            utBoards[i].startReaderThread();
+        }
+    }
+
+    logger.logMessage("Board reader threads started...\n");
+
+}//end of Capulin1::startBoardReaderThreads
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Capulin1::connectControlBoards
 //
@@ -573,7 +702,8 @@ public void connectControlBoard(NetworkInterface pNetworkInterface)
             return;
         }
 
-        waitSleep(1000); //sleep to delay between broadcasts
+        //the responses are read as they arrive -- receive waits up to the
+        //socket time out for each one so no delay is needed here
 
         //debug mks NOTE NOTE NOTE
         // The original intent of this code was to send the broadcast
@@ -692,6 +822,15 @@ public synchronized void connectUTBoards(NetworkInterface pNetworkInterface)
 
     UTSimulator.instanceCounter = 0; //reset simulated board counter
 
+    //the time taken by each board to reach each startup stage is measured
+    //from the start of the roll call
+
+    long startTime = System.nanoTime();
+
+    for (int i = 0; i < numberOfUTBoards; i++) {
+        utBoards[i].startup.start(startTime);
+    }
+
     // because the UTSimulator class does not currently simulate the FPGA load,
     // the response string is set to show that the FPGA is already loaded so
     // that no attempt is made to perform the load -- the string is passed to
@@ -760,7 +899,8 @@ public synchronized void connectUTBoards(NetworkInterface pNetworkInterface)
             return;
         }
 
-        waitSleep(1000); //sleep to delay between broadcasts
+        //the responses are read as they arrive -- receive waits up to the
+        //socket time out for each one so no delay is needed here
 
         //check for response packets from the remotes
         try{
@@ -802,6 +942,9 @@ public synchronized void connectUTBoards(NetworkInterface pNetworkInterface)
                         //store the ip address in the unused object
                         utBoards[i].setIPAddr(inPacket.getAddress());
 
+                        utBoards[i].startup.advance(
+                                            BoardStartup.Stage.DISCOVERED);
+
                         //count unique IP address responses
                         responseCount++;
 
@@ -915,11 +1058,12 @@ public synchronized void connectUTBoards(NetworkInterface pNetworkInterface)
 
     }//for (int i = 0;...
 
-    //initialize each UT board
+    //initialize each UT board -- no delay is needed afterwards as each board
+    //has already waited for all of its DSP cores to answer status requests
+    //before reporting that it is ready, and the remotes process the
+    //channel settings in order after the board settings
     initializeUTBoards();
 
-    waitSleep(3000); //sleep for a bit to allow DSPs to start up
-
     logger.logMessage("All UT boards initialized...\n");
 
     //set up each channel
@@ -935,6 +1079,9 @@ public synchronized void connectUTBoards(NetworkInterface pNetworkInterface)
     linkIOModuleAnalogOutputsToChannels();    
     
     logger.logMessage("All channels initialized...\n");
+
+    logStartupTimes();
+
     logger.logMessage("All UT boards ready.\n");
 
 }//end of Capulin1::connectUTBoards
@@ -1146,16 +1293,91 @@ public void verifyAllDSPCode2()
 // Sets up each channel with various settings.
 //
 
-public void initializeChannels()
+public void initializeChannels() throws InterruptedException
 {
 
+    //group the channels by board -- the settings for the channels of each
+    //board are sent together and their Acks checked together on one thread
+    //while the boards are set up at the same time, so the time taken is about
+    //that for the slowest board rather than for all channels in turn
+
+    LinkedHashMap<UTBoard, ArrayList<Channel>> groups = new LinkedHashMap<>();
+
     for (int i = 0; i < numberOfChannels; i++) {
-        channels[i].initialize();
+
+        //channels without a board have nothing to send, so just set them up
+        if (channels[i].utBoard == null){
+            channels[i].initialize();
+            continue;
+        }
+
+        groups.computeIfAbsent(channels[i].utBoard, b -> new ArrayList<>())
+                                                            .add(channels[i]);
+    }
+
+    if (groups.isEmpty()) {return;}
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(groups.size(), MAX_CHANNEL_SETUP_THREADS),
+                (Runnable r) -> {
+                    Thread t = new Thread(r, "Channel Setup");
+                    t.setDaemon(true);
+                    return(t);
+                });
+
+    try{
+
+        ArrayList<Future<?>> results = new ArrayList<>();
+
+        groups.forEach((board, boardChannels) ->
+            results.add(executor.submit(() -> {
+                board.initializeChannels(boardChannels);
+                board.startup.advance(BoardStartup.Stage.CHANNELS_CONFIGURED);
+            })));
+
+        for (Future<?> result : results){
+            try{
+                result.get();
+            }
+            catch(ExecutionException e){
+                logSevere(e.getCause() + " - Error: 1303");
+            }
+        }
+
+    }
+    finally{
+        executor.shutdownNow();
     }
 
 }//end of Capulin1::initializeChannels
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Capulin1::logStartupTimes
+//
+// Logs the time taken by each UT board to reach each startup stage so that
+// any board which is slow to start or which did not complete the startup can
+// be seen.
+//
+
+private void logStartupTimes()
+{
+
+    logger.logMessage("UT board startup times:\n");
+
+    for (int i = 0; i < numberOfUTBoards; i++) {
+
+        UTBoard board = utBoards[i];
+
+        String name = board.ready ? board.chassisSlotAddr : "#" + i;
+
+        logger.logMessage("  UT " + name + "  "
+                                    + board.startup.getSummary() + "\n");
+    }
+
+}//end of Capulin1::logStartupTimes
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Capulin1:sendDataChangesToRemotes
 //
@@ -1184,9 +1406,7 @@ public void sendDataChangesToRemotes()
 
     //handle data changes in all the channels
 
-    for (Channel channel : channels) {
-        channel.sendDataChangesToRemotes();
-    }
+    sendChannelDataChanges();
 
     //handle data changes in this class
 
@@ -1206,6 +1426,83 @@ public void sendDataChangesToRemotes()
 }//end of Capulin1::sendDataChangesToRemotes
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Capulin1::sendChannelDataChanges
+//
+// Sends the changes in the channels to the remotes. Only channels with
+// changed synced variables are handled. The changes for all such channels
+// attached to each board are sent before waiting for the DSP Acks from that
+// board, so a change applied to many channels at once waits for the Acks
+// once per board rather than once per channel.
+//
+
+private void sendChannelDataChanges()
+{
+
+    changedChannels.clear();
+
+    for (Channel channel : channels) {
+        if (channel.hasDataChanges()) {changedChannels.add(channel);}
+    }
+
+    if (changedChannels.isEmpty()) {return;}
+
+    for (int i = 0; i < numberOfUTBoards; i++) {
+
+        UTBoard board = utBoards[i];
+
+        if (board == null) {continue;}
+
+        boolean sent = false;
+
+        for (Channel channel : changedChannels) {
+
+            if (channel.utBoard != board) {continue;}
+
+            if (!sent) {board.clearDSPMessageAndAckCounters(); sent = true;}
+
+            channel.sendDataChangesToRemotes(false);
+
+        }
+
+        if (sent) {board.confirmDSPAcks();}
+
+    }
+
+    //channels without a board send nothing, but their changes are handled in
+    //the same way so that they are kept until a board is attached
+
+    for (Channel channel : changedChannels) {
+        if (channel.utBoard == null) {channel.sendDataChangesToRemotes(false);}
+    }
+
+}//end of Capulin1::sendChannelDataChanges
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Capulin1::flushOutboundMessages
+//
+// Sends the messages queued for each board since the last flush.
+//
+// This method should only be invoked by the "Main Thread" at the end of each
+// cycle.
+//
+
+@Override
+public void flushOutboundMessages()
+{
+
+    for (int i = 0; i < numberOfControlBoards; i++) {
+        if (controlBoards[i] != null) {controlBoards[i].flushOutbound();}
+    }
+
+    for (int i = 0; i < numberOfUTBoards; i++) {
+        if (utBoards[i] != null) {utBoards[i].flushOutbound();}
+    }
+
+}//end of Capulin1::flushOutboundMessages
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Capulin1::setAllChannelsDataChangedTrue
 //
@@ -1347,6 +1644,14 @@ public void shutDown()
         }
     }
 
+    if (ingestEngine != null) {ingestEngine.shutDown();}
+
+    if (ioModules != null){
+        for(EthernetIOModule ioModule : ioModules){
+            if (ioModule != null) {ioModule.shutDown();}
+        }
+    }
+
 }//end of Capulin1::shutDown
 //-----------------------------------------------------------------------------
 
@@ -1579,6 +1884,9 @@ private void invokeScanMode()
 
     prepareRemotesForNextRun(); //prepare UTBoards, Control Boards, etc.
 
+    //maps are not saved in scan mode
+    setWallMapStreamingActive(false);
+
     //enable data storage in UTBoard objects
     setDataBufferIsEnabled(true);
     
@@ -1627,6 +1935,9 @@ private void invokeInspectMode()
 
     prepareRemotesForNextRun(); //prepare UTBoards, Control Boards, etc.
 
+    //begin saving the map for the new run if incremental saving is enabled
+    setWallMapStreamingActive(saveWallMapIncrementally);
+
     //ignore the Inspect status flags until a new packet is received
     controlBoards[0].setNewInspectPacketReady(false);
 
@@ -1655,6 +1966,9 @@ private void invokeStopMode()
     //set mode for Boards to advance map plotters they control
     setMapAdvanceModes(Board.ADVANCE_NEVER);
 
+    //discard any partially saved map
+    setWallMapStreamingActive(false);
+
     //disable async sending of wall map data packets by the UTBoards
     enableWallMapPackets(false);
  
@@ -1670,6 +1984,22 @@ private void invokeStopMode()
 }//end of Capulin1::invokeStopMode
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Capulin1::setWallMapStreamingActive
+//
+// Enables or disables saving of the wall map during the inspection.
+//
+
+private void setWallMapStreamingActive(boolean pState)
+{
+
+    if (wallMapDataSaver != null) {
+        wallMapDataSaver.setStreamingActive(pState);
+    }
+
+}//end of Capulin1::setWallMapStreamingActive
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Capulin1::prepareRemotesForNextRun
 //
@@ -2180,6 +2510,21 @@ public Channel[] getChannels()
 }//end of Capulin1::getChannels
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Capulin1::getPeakStore
+//
+// Returns the store holding the peak data for all gates.
+//
+
+@Override
+public PeakStore getPeakStore()
+{
+
+    return peakStore;
+
+}//end of Capulin1::getPeakStore
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Capulin1::getGate
 //
@@ -2344,6 +2689,7 @@ private void configureControlBoards()
                     i, RUNTIME_PACKET_SIZE, simulateControlBoards, log,
                                                                 mainFileFormat);
             controlBoards[i].init();
+            controlBoards[i].setIngestEngine(ingestEngine);
 
         }
 
@@ -2437,6 +2783,7 @@ private void configureUTBoards()
                   "UT "+ (i+1), i, simulateUTBoards, log, hdwVs, jobFileFormat,
                                                                mainFileFormat);
             utBoards[i].init();
+            utBoards[i].setIngestEngine(ingestEngine);
         }
 
     }//if (numberOfUTBoards > 0)
@@ -3301,6 +3648,59 @@ public void saveAllMapDataSetsToFile(
 }//end of Capulin1::saveAllMapDataSetsToFile
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Capulin1::createAllMapDataSetsFileData
+//
+// Returns the contents of the map file which would be saved by
+// saveAllMapDataSetsToFile or null if there is no map.
+//
+// The data is collected from the boards immediately so the file can be
+// written by another thread while the boards collect the next piece.
+//
+
+@Override
+public byte[] createAllMapDataSetsFileData(
+                                       String pInspectionDirectionDescription)
+{
+
+    //update values in Settings object for others to access
+    settings.nominalWall = hdwVs.nominalWall;
+    settings.measuredPieceLength = hdwVs.measuredLength;
+    settings.inspectionDirectionDescription = pInspectionDirectionDescription;
+
+    if (wallMapDataSaver == null) {return(null);}
+
+    return(wallMapDataSaver.createFileData());
+
+}//end of Capulin1::createAllMapDataSetsFileData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Capulin1::finishIncrementalMapFile
+//
+// Completes the map file saved during the inspection and returns it. The
+// caller must delete the file when done.
+//
+// Returns null if the map was not saved incrementally, in which case
+// createAllMapDataSetsFileData should be used.
+//
+
+@Override
+public File finishIncrementalMapFile(String pInspectionDirectionDescription)
+{
+
+    //update values in Settings object for others to access
+    settings.nominalWall = hdwVs.nominalWall;
+    settings.measuredPieceLength = hdwVs.measuredLength;
+    settings.inspectionDirectionDescription = pInspectionDirectionDescription;
+
+    if (wallMapDataSaver == null) {return(null);}
+
+    return(wallMapDataSaver.finishStreaming());
+
+}//end of Capulin1::finishIncrementalMapFile
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Capulin1::calculateMapOffsetDelays
 //
@@ -69,6 +69,9 @@ public class Channel extends Object{
 
     public boolean freezeScopeWhenNotInFocus;
 
+    //if true, the first signal filter is also applied to the AScan by the host
+    boolean filterAScanOnHost;
+
     AnalogOutputController analogOutputController;
     int analogOutputControllerChannel;
     
@@ -85,6 +88,9 @@ public class Channel extends Object{
     private boolean channelMasked;
 
     boolean enabled; //overrides mode -- channel always off if false
+
+    PeakStore peakStore; //holds the peak data for the gates
+    int peakStoreIndex;  //this channel's index in the peak store
     SyncedInteger mode;
     public int previousMode;
     boolean interfaceTracking = false;
@@ -154,6 +160,29 @@ public class Channel extends Object{
     static final int MAX_NUM_COEFFICIENTS = 31;
 
     static final int NUM_FILTERS = 2;
+
+    //change groups of the synced variables -- each group is sent to the
+    //remotes by one of the send methods; see assignChangeGroups
+
+    static final int DSP_CONTROL_FLAGS_CHANGE = 0;
+    static final int SOFTWARE_GAIN_CHANGE = 1;
+    static final int HARDWARE_GAIN_CHANGE = 2;
+    static final int DC_OFFSET_CHANGE = 3;
+    static final int ASCAN_SMOOTHING_CHANGE = 4;
+    static final int MODE_CHANGE = 5;
+    static final int HARDWARE_DELAY_FPGA_CHANGE = 6;
+    static final int SOFTWARE_DELAY_CHANGE = 7;
+    static final int RANGE_CHANGE = 8;
+    static final int GATE_POSITION_CHANGE = 9;
+    static final int GATE_FLAGS_CHANGE = 10;
+    static final int GATE_HIT_MISS_CHANGE = 11;
+    static final int GATE_SIG_PROC_TUNING_CHANGE = 12;
+    static final int DAC_GATE_POSITION_CHANGE = 13;
+    static final int DAC_GATE_FLAGS_CHANGE = 14;
+    static final int FILTER_CHANGE = 15; //one group for each filter
+    static final int NUM_CHANGE_GROUPS = FILTER_CHANGE + NUM_FILTERS;
+
+    private final boolean[] changedGroups = new boolean[NUM_CHANGE_GROUPS];
     
 //-----------------------------------------------------------------------------
 // Channel::Channel (constructor)
@@ -215,9 +244,64 @@ public Channel(IniFile pConfigFile, Settings pSettings,
     //read the configuration file and create/setup the charting/control elements
     configure(configFile);
 
+    assignChangeGroups();
+
 }//end of Channel::Channel (constructor)
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Channel::assignChangeGroups
+//
+// Assigns each synced variable sent to the remotes to the change group of the
+// method which sends it so that sendDataChangesToRemotes only calls the
+// methods for the groups which have changes.
+//
+// Must be called after the gates have been created.
+//
+
+private void assignChangeGroups()
+{
+
+    dspControlFlags.setChangeGroup(DSP_CONTROL_FLAGS_CHANGE);
+    softwareGain.setChangeGroup(SOFTWARE_GAIN_CHANGE);
+    hardwareGain1.setChangeGroup(HARDWARE_GAIN_CHANGE);
+    hardwareGain2.setChangeGroup(HARDWARE_GAIN_CHANGE);
+    dcOffset.setChangeGroup(DC_OFFSET_CHANGE);
+    aScanSmoothing.setChangeGroup(ASCAN_SMOOTHING_CHANGE);
+    mode.setChangeGroup(MODE_CHANGE);
+
+    for(int i=0; i<NUM_FILTERS; i++){
+        filters.get(i).setChangeGroup(FILTER_CHANGE + i);
+    }
+
+    hardwareDelayFPGA.setChangeGroup(HARDWARE_DELAY_FPGA_CHANGE);
+    softwareDelay.setChangeGroup(SOFTWARE_DELAY_CHANGE);
+    hardwareDelayDSP.setChangeGroup(SOFTWARE_DELAY_CHANGE);
+    hardwareRange.setChangeGroup(RANGE_CHANGE);
+    aScanScale.setChangeGroup(RANGE_CHANGE);
+
+    for (int i = 0; i < numberOfGates; i++){
+        gates[i].gateStart.setChangeGroup(GATE_POSITION_CHANGE);
+        gates[i].gateWidth.setChangeGroup(GATE_POSITION_CHANGE);
+        gates[i].gateLevel.setChangeGroup(GATE_POSITION_CHANGE);
+        gates[i].gateFlags.setChangeGroup(GATE_FLAGS_CHANGE);
+        gates[i].gateHitCount.setChangeGroup(GATE_HIT_MISS_CHANGE);
+        gates[i].gateMissCount.setChangeGroup(GATE_HIT_MISS_CHANGE);
+        gates[i].sigProcTuning1.setChangeGroup(GATE_SIG_PROC_TUNING_CHANGE);
+        gates[i].sigProcTuning2.setChangeGroup(GATE_SIG_PROC_TUNING_CHANGE);
+        gates[i].sigProcTuning3.setChangeGroup(GATE_SIG_PROC_TUNING_CHANGE);
+    }
+
+    for (int i = 0; i < numberOfDACGates; i++){
+        dacGates[i].gateStart.setChangeGroup(DAC_GATE_POSITION_CHANGE);
+        dacGates[i].gateWidth.setChangeGroup(DAC_GATE_POSITION_CHANGE);
+        dacGates[i].gainForRemote.setChangeGroup(DAC_GATE_POSITION_CHANGE);
+        dacGates[i].gateFlags.setChangeGroup(DAC_GATE_FLAGS_CHANGE);
+    }
+
+}//end of Channel::assignChangeGroups
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Channel:initialize
 //
@@ -225,6 +309,24 @@ public Channel(IniFile pConfigFile, Settings pSettings,
 //
 
 public void initialize()
+{
+
+    initialize(true);
+
+}//end of Channel::initialize
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Channel:initialize
+//
+// Prepares the channel for operation.
+//
+// If pWaitForAcks is false, the DSP acknowledgements for the settings sent are
+// not waited for or checked; the caller must do so. See
+// UTBoard.initializeChannels.
+//
+
+public void initialize(boolean pWaitForAcks)
 {
 
     //create various decimal formats
@@ -313,13 +415,13 @@ public void initialize()
     setRange(aScanRange, true);
 
     //send all the changes made above to the remotes
-    sendDataChangesToRemotes();
+    sendDataChangesToRemotes(pWaitForAcks);
 
     //enable sample processing after all values initialized
     lDSPControlFlags |= UTBoard.PROCESSING_ENABLED;
     dspControlFlags.setValue(lDSPControlFlags, true);
     //send new flag value to remotes
-    sendDataChangesToRemotes();
+    sendDataChangesToRemotes(pWaitForAcks);
 
 }//end of Channel::initialize
 //-----------------------------------------------------------------------------
@@ -372,6 +474,8 @@ public void setMasked(boolean pMasked)
 
     channelMasked = pMasked;
 
+    updatePeakStore();
+
 }//end of Channel::setMasked
 //-----------------------------------------------------------------------------
 
@@ -834,6 +938,42 @@ public boolean getNewData(int pGate, HardwareVars hdwVs)
 }//end of Channel::getNewData
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Channel::attachPeakStore
+//
+// Sets the peak store which holds the data for this channel's gates and the
+// channel's index in that store. The channel's state is copied to the store.
+//
+
+void attachPeakStore(PeakStore pPeakStore, int pPeakStoreIndex)
+{
+
+    peakStore = pPeakStore; peakStoreIndex = pPeakStoreIndex;
+
+    updatePeakStore();
+
+}//end of Channel::attachPeakStore
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Channel::updatePeakStore
+//
+// Copies the enabled and active state of the channel to the peak store. The
+// channel is active if it is On and Not Masked. Should be called whenever
+// any of those flags are changed.
+//
+
+void updatePeakStore()
+{
+
+    if (peakStore == null) {return;}
+
+    peakStore.setChannelState(peakStoreIndex, enabled,
+                                                channelOn && !channelMasked);
+
+}//end of Channel::updatePeakStore
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Channel::getPeakGate
 //
@@ -2074,6 +2214,8 @@ void setTransducer(boolean pChannelOn, int pPulseBank, int pPulseChannel,
     channelOn =
             pChannelOn; pulseBank = pPulseBank; pulseChannel = pPulseChannel;
 
+    updatePeakStore();
+
     //debug mks channelOn, pulseBank, and pulseChannel need to be synchronized
     //and sendTransducers needs to be called by sendDataChangesToRemotes to
     //avoid thread issues
@@ -2213,6 +2355,13 @@ private void configure(IniFile pConfigFile)
     freezeScopeWhenNotInFocus = pConfigFile.readBoolean(whichChannel, 
                                     "Freeze Scope When Not in Focus", true);
 
+    //The signal filters are sent to the DSPs. If the AScan returned by the
+    //DSP code in use is not filtered, this option can be used to apply the
+    //first filter to the AScan on the host.
+
+    filterAScanOnHost = pConfigFile.readBoolean(whichChannel,
+                                        "Filter AScan On Host", false);
+
     //read the configuration file and create/setup the UT gates
     configureUTGates();
 
@@ -3023,117 +3172,6 @@ public String getGateSigProc(int pGate)
 }//end of Channel::getGateSigProc
 //-----------------------------------------------------------------------------
 
-//-----------------------------------------------------------------------------
-// Channel::isAnyGatePositionChanged
-//
-// Checks if any gate start, width, or level values have been changed.
-//
-
-private boolean isAnyGatePositionChanged()
-{
-
-    for (int i = 0; i < numberOfGates; i++) {
-        if (gates[i].isPositionChanged()) {return(true);}
-    }
-
-   return(false);
-
-}//end of Channel::isAnyGatePositionChanged
-//-----------------------------------------------------------------------------
-
-//-----------------------------------------------------------------------------
-// Channel::isAnyGateSigProcTuningChanged
-//
-// Checks if any gate's signal processing tuning values have changed.
-//
-
-private boolean isAnyGateSigProcTuningChanged()
-{
-
-    for (int i = 0; i < numberOfGates; i++) {
-        if (gates[i].sigProcTuning1.getDataChangedFlag()
-            ||gates[i].sigProcTuning2.getDataChangedFlag()
-            ||gates[i].sigProcTuning3.getDataChangedFlag()) {
-            return(true);}
-    }
-
-   return(false);
-
-}//end of Channel::isAnyGateSigProcTuningChanged
-//-----------------------------------------------------------------------------
-
-//-----------------------------------------------------------------------------
-// Channel::isAnyGateFlagsChanged
-//
-// Checks if any gate flags have changed.
-//
-
-private boolean isAnyGateFlagsChanged()
-{
-
-    for (int i = 0; i < numberOfGates; i++) {
-        if (gates[i].isFlagsChanged()) {return(true);}
-    }
-
-   return(false);
-
-}//end of Channel::isAnyGateFlagsChanged
-//-----------------------------------------------------------------------------
-
-//-----------------------------------------------------------------------------
-// Channel::isAnyDACGatePositionChanged
-//
-// Checks if any DAC gate start, width, or gain values have been changed.
-//
-
-private boolean isAnyDACGatePositionChanged()
-{
-
-    for (int i = 0; i < numberOfDACGates; i++) {
-        if (dacGates[i].isPositionChanged()) {return(true);}
-    }
-
-   return(false);
-
-}//end of Channel::isAnyDACGatePositionChanged
-//-----------------------------------------------------------------------------
-
-//-----------------------------------------------------------------------------
-// Channel::isAnyDACGateFlagsChanged
-//
-// Checks if any DAC gate flags have changed.
-//
-
-private boolean isAnyDACGateFlagsChanged()
-{
-
-    for (int i = 0; i < numberOfDACGates; i++) {
-        if (dacGates[i].isFlagsChanged()) {return(true);}
-    }
-   return(false);
-
-}//end of Channel::isAnyDACGateFlagsChanged
-//-----------------------------------------------------------------------------
-
-//-----------------------------------------------------------------------------
-// Channel::isAnyGateHitMissChanged
-//
-// Checks if any gate Hit/Miss count values have changed.
-//
-
-private boolean isAnyGateHitMissChanged()
-{
-
-    for (int i = 0; i < numberOfGates; i++) {
-        if (gates[i].gateHitCount.getDataChangedFlag()
-            || gates[i].gateMissCount.getDataChangedFlag()) {return(true);}
-    }
-
-   return(false);
-
-}//end of Channel::isAnyGateHitMissChanged
-//-----------------------------------------------------------------------------
-
 //-----------------------------------------------------------------------------
 // Channel::sendGateParameters
 //
@@ -3390,71 +3428,102 @@ public void calculateDACGateTimeLocation(int pDACGate,
 // copied as a lot of data is sent at that time and it is good to verify
 // receipt.
 //
+// If pWaitForAcks is false, the message and Ack counters are not cleared so
+// that the caller can check the Acks for several calls at once.
+//
+// Only the send methods for the change groups of the synced variables queued
+// since the last call are invoked; see assignChangeGroups. Each send method
+// applies the changed values in its group as before. Any value in a collected
+// group which is not applied, such as when the channel has no board, is
+// queued again to be retried on the next call.
+//
 
 public void sendDataChangesToRemotes()
 {
 
-    //do nothing if no data changed for any synced variables
-    if (!syncedVarMgr.getDataChangedMaster()) {return;}
+    sendDataChangesToRemotes(true);
+
+}//end of Channel::sendDataChangesToRemotes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Channel::sendDataChangesToRemotes
+//
+// See notes for the version above.
+//
+
+public void sendDataChangesToRemotes(boolean pWaitForAcks)
+{
+
+    //do nothing if no synced variables have been changed
+    if (!syncedVarMgr.isChangeQueued()) {return;}
 
-    if (utBoard != null) {utBoard.clearDSPMessageAndAckCounters();}
+    boolean[] changed = changedGroups;
 
-    if (dspControlFlags.getDataChangedFlag()) {sendDSPControlFlags();}
+    if (!syncedVarMgr.collectChanges(changed)) {return;}
 
-    if (softwareGain.getDataChangedFlag()) {sendSoftwareGain();}
+    if (utBoard != null && pWaitForAcks) {
+        utBoard.clearDSPMessageAndAckCounters();
+    }
 
-    if (hardwareGain1.getDataChangedFlag()) {sendHardwareGain();}
+    if (changed[DSP_CONTROL_FLAGS_CHANGE]) {sendDSPControlFlags();}
 
-    if (hardwareGain2.getDataChangedFlag()) {sendHardwareGain();}
+    if (changed[SOFTWARE_GAIN_CHANGE]) {sendSoftwareGain();}
 
-    if (dcOffset.getDataChangedFlag()) {sendDCOffset();}    
-    
-    if (aScanSmoothing.getDataChangedFlag()) {sendAScanSmoothing();}
+    if (changed[HARDWARE_GAIN_CHANGE]) {sendHardwareGain();}
+
+    if (changed[DC_OFFSET_CHANGE]) {sendDCOffset();}
+
+    if (changed[ASCAN_SMOOTHING_CHANGE]) {sendAScanSmoothing();}
 
-    if (mode.getDataChangedFlag()) {sendMode();}
+    if (changed[MODE_CHANGE]) {sendMode();}
 
     for(int i=0; i<NUM_FILTERS; i++){
-        if (filters.get(i).getDataChangedFlag()) {sendFilter(i);}
+        if (changed[FILTER_CHANGE + i]) {sendFilter(i);}
     }
-    
-    if (hardwareDelayFPGA.getDataChangedFlag()) {sendHardwareDelayToFPGA();}
 
-    if (softwareDelay.getDataChangedFlag() ||
-                hardwareDelayDSP.getDataChangedFlag()) {sendSoftwareDelay();}
+    if (changed[HARDWARE_DELAY_FPGA_CHANGE]) {sendHardwareDelayToFPGA();}
 
-    if (hardwareRange.getDataChangedFlag() || aScanScale.getDataChangedFlag()) {
-        sendRange();
-    }
+    if (changed[SOFTWARE_DELAY_CHANGE]) {sendSoftwareDelay();}
 
-    if (isAnyGatePositionChanged()) {sendGateParameters();}
+    if (changed[RANGE_CHANGE]) {sendRange();}
 
-    if (isAnyGateFlagsChanged()) {sendGateFlags();}
+    if (changed[GATE_POSITION_CHANGE]) {sendGateParameters();}
 
-    if (isAnyGateHitMissChanged()) {sendGateHitMiss();}
+    if (changed[GATE_FLAGS_CHANGE]) {sendGateFlags();}
 
-    if (isAnyGateSigProcTuningChanged()) {sendGateSigProcTuningValues();}
+    if (changed[GATE_HIT_MISS_CHANGE]) {sendGateHitMiss();}
 
-    if (isAnyDACGatePositionChanged()) {sendDACGateParameters();}
+    if (changed[GATE_SIG_PROC_TUNING_CHANGE]) {sendGateSigProcTuningValues();}
 
-    if (isAnyDACGateFlagsChanged()) {sendDACGateFlags();}
+    if (changed[DAC_GATE_POSITION_CHANGE]) {sendDACGateParameters();}
 
-    if(utBoard == null){ return; }
-    
-    
-    //process packets until expected number of acks received or time out
-    
-    int count = 0;
-    while(!utBoard.checkDSPAckCountVsMessageCount() && count++ < 10){
-        utBoard.waitSleep(30);
-        utBoard.processAllAvailableDataPackets(false);
-    }
+    if (changed[DAC_GATE_FLAGS_CHANGE]) {sendDACGateFlags();}
+
+    syncedVarMgr.releaseChanges();
 
-    //check to see if each message received and ACK
-    utBoard.compareDSPAckCountToMessageCount();
+    if(utBoard == null || !pWaitForAcks){ return; }
+
+    utBoard.confirmDSPAcks();
 
 }//end of Channel::sendDataChangesToRemotes
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Channel::hasDataChanges
+//
+// Returns true if any synced variable has been changed since the changes were
+// last sent by sendDataChangesToRemotes.
+//
+
+public boolean hasDataChanges()
+{
+
+    return(syncedVarMgr.isChangeQueued());
+
+}//end of Channel::hasDataChanges
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Channel::getDACGateStart
 //
@@ -3952,8 +4021,15 @@ public void sendFilter(int pFilterNum)
 {
 
     if (utBoard != null) {
-        utBoard.sendFilter(
-              boardChannel, pFilterNum, filters.get(pFilterNum).applyValues());
+
+        int[] values = filters.get(pFilterNum).applyValues();
+
+        utBoard.sendFilter(boardChannel, pFilterNum, values);
+
+        if (filterAScanOnHost && pFilterNum == 0){
+            utBoard.setAScanFilter(boardChannel, values);
+        }
+
     }
 
 }//end of Channel::sendFilter
@@ -4078,6 +4154,7 @@ public void loadCalFile(IniFile pCalFile)
     previousMode =
             pCalFile.readInt(section, "Previous Signal Mode", mode.getValue());
     channelOn = (mode.getValue() != UTBoard.CHANNEL_OFF);
+    updatePeakStore();
     rejectLevel = pCalFile.readInt(section, "Reject Level", 0);
 
     linearizationEnabled = pCalFile.readBoolean(
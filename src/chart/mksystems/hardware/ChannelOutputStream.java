@@ -0,0 +1,145 @@
+/******************************************************************************
+* Title: ChannelOutputStream.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class writes to a non-blocking SocketChannel for a board whose socket
+* is serviced by the PacketIngestEngine.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ChannelOutputStream
+//
+// Writes to a non-blocking SocketChannel. The socket's own output stream
+// cannot be used once the channel has been switched to non-blocking mode.
+//
+// When the socket's send buffer is full, the writing thread waits on a
+// selector of its own until the channel is writable again. The engine's
+// selector only ever watches for reads.
+//
+
+public class ChannelOutputStream extends OutputStream{
+
+    SocketChannel channel;
+
+    //created the first time the send buffer fills
+    Selector writeSelector = null;
+
+    //the longest time to wait for the channel to become writable before
+    //trying the write again
+    static final int WRITE_WAIT_TIME = 100;
+
+//-----------------------------------------------------------------------------
+// ChannelOutputStream::ChannelOutputStream (constructor)
+//
+
+public ChannelOutputStream(SocketChannel pChannel)
+{
+
+    channel = pChannel;
+
+}//end of ChannelOutputStream::ChannelOutputStream (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChannelOutputStream::write
+//
+
+@Override
+public void write(int pByte) throws IOException
+{
+
+    write(new byte[] {(byte)pByte}, 0, 1);
+
+}//end of ChannelOutputStream::write
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChannelOutputStream::write
+//
+// Writes all pLength bytes, waiting for the channel to become writable
+// whenever the socket's send buffer is full.
+//
+
+@Override
+public synchronized void write(byte[] pBuffer, int pOffset, int pLength)
+                                                            throws IOException
+{
+
+    ByteBuffer bb = ByteBuffer.wrap(pBuffer, pOffset, pLength);
+
+    while (bb.hasRemaining()){
+
+        if (channel.write(bb) == 0) {waitUntilWritable();}
+
+    }
+
+}//end of ChannelOutputStream::write
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChannelOutputStream::waitUntilWritable
+//
+// Blocks until the channel can accept more bytes or WRITE_WAIT_TIME has
+// passed. The channel is registered with writeSelector the first time this
+// is called.
+//
+
+private void waitUntilWritable() throws IOException
+{
+
+    if (!channel.isOpen()){
+        close();
+        throw new IOException("Channel closed");
+    }
+
+    if (writeSelector == null){
+        writeSelector = Selector.open();
+        channel.register(writeSelector, SelectionKey.OP_WRITE);
+    }
+
+    writeSelector.select(WRITE_WAIT_TIME);
+
+    writeSelector.selectedKeys().clear();
+
+}//end of ChannelOutputStream::waitUntilWritable
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChannelOutputStream::close
+//
+// Releases the write selector. The channel itself is closed by the owning
+// board.
+//
+
+@Override
+public synchronized void close() throws IOException
+{
+
+    if (writeSelector != null) {writeSelector.close(); writeSelector = null;}
+
+}//end of ChannelOutputStream::close
+//-----------------------------------------------------------------------------
+
+}//end of class ChannelOutputStream
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
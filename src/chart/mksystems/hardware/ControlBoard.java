@@ -53,6 +53,11 @@ public class ControlBoard extends Board implements MessageLink,
 
     boolean newInspectPacketReady = false;
 
+    //Inspect packets are decoded into this event unless a reader thread is
+    //running, in which case the events are passed through inspectEventRing
+    InspectEvent inspectEvent = new InspectEvent();
+    SPSCRing<InspectEvent> inspectEventRing = null;
+
     int encoder1, prevEncoder1;
     int encoder2, prevEncoder2;
     int encoder1Dir, encoder2Dir;
@@ -386,7 +391,10 @@ public synchronized void connect()
                                                     ipAddr.toString() + "\n");
 
         if (!simulate) {
-            socket = new Socket(ipAddr, 23);
+            socket = openSocket(ipAddr, 23);
+        }
+        else if (isReplaying()) {
+            socket = createReplaySimulator(ipAddr, 23);
         }
         else {
 
@@ -406,12 +414,7 @@ public synchronized void connect()
         //wait for data - this prevents program lock up when no data is ready
         socket.setSoTimeout(250);
 
-        out = new PrintWriter(socket.getOutputStream(), true);
-
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-        byteOut = new DataOutputStream(socket.getOutputStream());
-        byteIn =  new DataInputStream(socket.getInputStream());
+        openStreams();
 
     }//try
     catch (IOException e) {
@@ -741,6 +744,16 @@ public int processInspectPacket()
     int x = 0, cnt = 0;
     int pktSize = 12;
 
+    InspectEvent event = inspectEvent;
+
+    //if queueing for the collection thread, wait for a free event
+    if (inspectEventRing != null){
+        while ((event = inspectEventRing.claim()) == null){
+            if (!readerActive) {return(0);}
+            waitSleep(1);
+        }
+    }
+
     try{
         timeOutProcess = 0;
         while(timeOutProcess++ < TIMEOUT){
@@ -751,7 +764,7 @@ public int processInspectPacket()
             cnt = byteIn.read(inBuffer, 0, pktSize);
         }
 
-        inspectPacketCount = (int)((inBuffer[x++]<<8) & 0xff00)
+        event.packetCount = (int)((inBuffer[x++]<<8) & 0xff00)
                                                  + (int)(inBuffer[x++] & 0xff);
 
         // combine four bytes each to make the encoder counts
@@ -770,101 +783,128 @@ public int processInspectPacket()
         encoder2Count |= (inBuffer[x++] << 8)  & 0x0000ff00;
         encoder2Count |= (inBuffer[x++])       & 0x000000ff;
 
-        //transfer to the class variables in one move -- this will be an atomic
-        //copy so it is safe for other threads to access those variables
-        encoder1 = encoder1Count; encoder2 = encoder2Count;
+        event.encoder1 = encoder1Count; event.encoder2 = encoder2Count;
 
-        //flag if encoder count was increased or decreased
-        //a no change case should not occur since packets are sent when there
-        //has been a change of encoder count
+        //the status of the Control board input ports
+        event.processControlFlags = inBuffer[x++];
+        event.controlPortE = inBuffer[x++];
 
-        if (encoder1 > prevEncoder1) {
-            encoder1Dir = EncoderHandler.INCREASING;
-        }
-        else {
-            encoder1Dir = EncoderHandler.DECREASING;
-        }
+        if (inspectEventRing != null) {inspectEventRing.publish();}
+        else {applyInspectData(event);}
 
-        //flag if encoder count was increased or decreased
-        if (encoder2 > prevEncoder2) {
-            encoder2Dir = EncoderHandler.INCREASING;
-        }
-        else {
-            encoder2Dir = EncoderHandler.DECREASING;
-        }
+        return(cnt);
 
-        //update the previous encoder values for use next time
-        prevEncoder1 = encoder1; prevEncoder2 = encoder2;
+    }// try
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 518");
+    }
 
-        //transfer the status of the Control board input ports
-        processControlFlags = inBuffer[x++];
-        controlPortE = inBuffer[x++];
+    return(0);
 
-        //control flags are active high
+}//end of ControlBoard::processInspectPacket
+//-----------------------------------------------------------------------------
 
-        if ((processControlFlags & ON_PIPE_CTRL) != 0) {
-            onPipeFlag = true;
-        }
-        else {
-            onPipeFlag = false;
-        }
+//-----------------------------------------------------------------------------
+// ControlBoard::applyInspectData
+//
+// Applies the encoder counts and input port states decoded from an Inspect
+// packet.
+//
+// If a reader thread is running, this is called by the data collection
+// thread as it drains the queued events.
+//
 
-        if ((processControlFlags & HEAD1_DOWN_CTRL) != 0) {
-            head1Down = true;
-        } else {
-            head1Down = false;
-        }
+void applyInspectData(InspectEvent pEvent)
+{
 
-        if ((processControlFlags & HEAD2_DOWN_CTRL) != 0) {
-            head2Down = true;
-        } else {
-            head2Down = false;
-        }
+    inspectPacketCount = pEvent.packetCount;
 
-        if ((processControlFlags & HEAD3_DOWN_CTRL) != 0) {
-            head3Down = true;
-        } else {
-            head3Down = false;
-        }
-                
-        //port E inputs are active low
+    //transfer to the class variables in one move -- this will be an atomic
+    //copy so it is safe for other threads to access those variables
+    encoder1 = pEvent.encoder1; encoder2 = pEvent.encoder2;
 
-        if ((controlPortE & TDC_MASK) == 0) {
-            tdcFlag = true;
-        } else {
-            tdcFlag = false;
-        }
+    //flag if encoder count was increased or decreased
+    //a no change case should not occur since packets are sent when there
+    //has been a change of encoder count
 
-        if ((controlPortA & UNUSED1_MASK) == 0) {
-            unused1Flag = true;
-        } else {
-            unused1Flag = false;
-        }
+    if (encoder1 > prevEncoder1) {
+        encoder1Dir = EncoderHandler.INCREASING;
+    }
+    else {
+        encoder1Dir = EncoderHandler.DECREASING;
+    }
 
-        if ((controlPortA & UNUSED2_MASK) == 0) {
-            unused2Flag = true;
-        } else {
-            unused2Flag = false;
-        }
+    //flag if encoder count was increased or decreased
+    if (encoder2 > prevEncoder2) {
+        encoder2Dir = EncoderHandler.INCREASING;
+    }
+    else {
+        encoder2Dir = EncoderHandler.DECREASING;
+    }
 
-        if ((controlPortE & UNUSED3_MASK) == 0) {
-            unused3Flag = true;
-        } else {
-            unused3Flag = false;
-        }
+    //update the previous encoder values for use next time
+    prevEncoder1 = encoder1; prevEncoder2 = encoder2;
 
-        newInspectPacketReady = true; //signal other objects
+    //transfer the status of the Control board input ports
+    processControlFlags = pEvent.processControlFlags;
+    controlPortE = pEvent.controlPortE;
 
-        return(cnt);
+    //control flags are active high
 
-    }// try
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 518");
+    if ((processControlFlags & ON_PIPE_CTRL) != 0) {
+        onPipeFlag = true;
+    }
+    else {
+        onPipeFlag = false;
     }
 
-    return(0);
+    if ((processControlFlags & HEAD1_DOWN_CTRL) != 0) {
+        head1Down = true;
+    } else {
+        head1Down = false;
+    }
 
-}//end of ControlBoard::processInspectPacket
+    if ((processControlFlags & HEAD2_DOWN_CTRL) != 0) {
+        head2Down = true;
+    } else {
+        head2Down = false;
+    }
+
+    if ((processControlFlags & HEAD3_DOWN_CTRL) != 0) {
+        head3Down = true;
+    } else {
+        head3Down = false;
+    }
+            
+    //port E inputs are active low
+
+    if ((controlPortE & TDC_MASK) == 0) {
+        tdcFlag = true;
+    } else {
+        tdcFlag = false;
+    }
+
+    if ((controlPortA & UNUSED1_MASK) == 0) {
+        unused1Flag = true;
+    } else {
+        unused1Flag = false;
+    }
+
+    if ((controlPortA & UNUSED2_MASK) == 0) {
+        unused2Flag = true;
+    } else {
+        unused2Flag = false;
+    }
+
+    if ((controlPortE & UNUSED3_MASK) == 0) {
+        unused3Flag = true;
+    } else {
+        unused3Flag = false;
+    }
+
+    newInspectPacketReady = true; //signal other objects
+
+}//end of ControlBoard::applyInspectData
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -1126,6 +1166,10 @@ public boolean prepareData()
 public int processDataPacketsUntilEncoderPacket()
 {
 
+    //if the reader thread is handling the packets, apply all queued Inspect
+    //packets in the order received
+    if (inspectEventRing != null) {return(applyQueuedInspectEvents());}
+
     int x = 0;
 
     //this flag will be set true if a Peak Data packet is processed
@@ -1144,6 +1188,50 @@ public int processDataPacketsUntilEncoderPacket()
 }//end of ControlBoard::processDataPacketsUntilEncoderPacket
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ControlBoard::applyQueuedInspectEvents
+//
+// Applies all Inspect packet events queued by the reader thread.
+//
+// Always returns -1 as no Encoder packet is processed, matching
+// processDataPacketsUntilEncoderPacket.
+//
+
+int applyQueuedInspectEvents()
+{
+
+    InspectEvent event;
+
+    while ((event = inspectEventRing.peek()) != null){
+        applyInspectData(event);
+        inspectEventRing.release();
+    }
+
+    return -1;
+
+}//end of ControlBoard::applyQueuedInspectEvents
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ControlBoard::startReaderThread
+//
+// Creates the queue for passing Inspect packet data to the collection thread
+// and starts the reader thread.
+//
+
+@Override
+public void startReaderThread()
+{
+
+    if (byteIn == null || readerThread != null) {return;}
+
+    inspectEventRing = new SPSCRing<>(EVENT_RING_SIZE, InspectEvent::new);
+
+    super.startReaderThread();
+
+}//end of ControlBoard::startReaderThread
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ControlBoard::processOneDataPacket
 //
@@ -1172,11 +1260,16 @@ public int processDataPacketsUntilEncoderPacket()
 public int processOneDataPacket(boolean pWaitForPkt, int pTimeOut)
 {
 
-    if (byteIn == null) {return -1;}  //do nothing if the port is closed
+    //do nothing if the port is closed or another thread is reading packets
+    if (byteIn == null || !isPacketThread()) {return -1;}
 
     try{
 
         //wait a while for a packet if parameter is true
+        if (pWaitForPkt && ingestStream != null){
+            ingestStream.waitForBytes(5, pTimeOut * 10);
+        }
+        else
         if (pWaitForPkt){
             timeOutWFP = 0;
             while(byteIn.available() < 5 && timeOutWFP++ < pTimeOut){
@@ -1300,7 +1393,8 @@ public void reSync()
 public void driveSimulation()
 {
 
-    if (simulate && socket != null) {
+    //a replay simulator runs its own threads and needs no driving
+    if (simulate && socket instanceof ControlSimulator) {
         ((ControlSimulator)socket).processDataPackets(false);
     }
 
@@ -1415,6 +1509,8 @@ public void setNewInspectPacketReady(boolean pValue)
 protected void shutDown()
 {
 
+    stopReaderThread();
+
     //close everything - the order of closing may be important
 
     try{
@@ -1430,6 +1526,8 @@ protected void shutDown()
         logSevere(e.getMessage() + " - Error: 1009");
     }
 
+    closeCapture();
+
 }//end of ControlBoard::shutDown
 //-----------------------------------------------------------------------------
 
@@ -0,0 +1,299 @@
+/******************************************************************************
+* Title: DSPCodeImage.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the words of a DSP code file parsed into contiguous blocks,
+* each with its start address and the checksum which the remote will report
+* for that block once it has been loaded.
+*
+* The same code is loaded into every core of every UT board, so each file is
+* only parsed once. The images are cached by a hash of the file contents so
+* that all boards share one image and a file which is changed between
+* connections is parsed again. An image is never modified after it is
+* created, so it may be used by any number of threads.
+*
+* See UTBoard.loadDSPCode for the file format.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class DSPCodeImage
+//
+// See notes at top of page.
+//
+
+public class DSPCodeImage extends Object{
+
+    static final ConcurrentHashMap<String, DSPCodeImage> cache =
+                                                    new ConcurrentHashMap<>();
+
+    //all words of all blocks, in file order
+    private final short[] words;
+
+    //for each block: index of its first word in words, its address in the
+    //DSP, and the lower word of the sum of its words
+    private final int[] blockStarts;
+    private final int[] blockAddresses;
+    private final int[] blockChecksums;
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::DSPCodeImage (constructor)
+//
+// Parses the DSP code file contents in pText.
+//
+// Any characters other than the control markers, separators, and address
+// flags are treated as hex digits; invalid digits are taken as zero as the
+// code loader has always done. Blocks without any words are ignored.
+//
+
+DSPCodeImage(byte[] pText)
+{
+
+    short[] w = new short[pText.length / 4 + 1];
+    int[] starts = new int[16], addresses = new int[16];
+
+    int wordCount = 0, blockCount = 0;
+    int address = 0, value = 0, place = 3;
+    boolean newBlock = true;
+
+    int i = 0;
+
+    while (i < pText.length) {
+
+        int c = pText[i++] & 0xff;
+
+        if (c == 2) {continue;} //ctrl-B file start marker - skip it
+
+        if (c == 3) {break;} //ctrl-C file end marker - exit
+
+        if (c == '\r' || c == '\n' || c == ',' || c == ' ') {continue;}
+
+        //catch new address flag -- skip the 'A' and read the four digit
+        //address
+
+        if (c == '$') {
+
+            i++;
+
+            address = 0;
+            for (int j = 0; j < 4; j++){
+                address = (address << 4)
+                             + (i < pText.length ? fromHex(pText[i++]) : 0);
+            }
+
+            newBlock = true;
+
+            continue;
+        }
+
+        //add the digit into the word, the first digit is the most significant
+
+        value += fromHex(c) << (place * 4);
+
+        if (place-- > 0) {continue;}
+
+        //fourth digit converted, store the word
+
+        if (newBlock){
+            if (blockCount == starts.length){
+                starts = Arrays.copyOf(starts, blockCount * 2);
+                addresses = Arrays.copyOf(addresses, blockCount * 2);
+            }
+            starts[blockCount] = wordCount;
+            addresses[blockCount] = address;
+            blockCount++;
+            newBlock = false;
+        }
+
+        w[wordCount++] = (short)value;
+
+        place = 3; value = 0; //start over for next word
+
+    }
+
+    words = Arrays.copyOf(w, wordCount);
+    blockStarts = Arrays.copyOf(starts, blockCount + 1);
+    blockStarts[blockCount] = wordCount;
+    blockAddresses = Arrays.copyOf(addresses, blockCount);
+    blockChecksums = new int[blockCount];
+
+    for (int b = 0; b < blockCount; b++){
+        int checksum = 0;
+        for (int j = blockStarts[b]; j < blockStarts[b + 1]; j++){
+            checksum += words[j] & 0xffff;
+        }
+        blockChecksums[b] = checksum & 0xffff;
+    }
+
+}//end of DSPCodeImage::DSPCodeImage (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::load (static)
+//
+// Returns the image of DSP code file pFilename. The file is read each time so
+// that changes are seen, but is only parsed if no image with the same
+// contents is already in the cache.
+//
+
+public static DSPCodeImage load(String pFilename) throws IOException
+{
+
+    byte[] text = Files.readAllBytes(Paths.get(pFilename));
+
+    return(cache.computeIfAbsent(getHash(text), k -> new DSPCodeImage(text)));
+
+}//end of DSPCodeImage::load
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::getHash (static)
+//
+// Returns the SHA-256 hash of pText as a hex string.
+//
+
+static String getHash(byte[] pText) throws IOException
+{
+
+    byte[] digest;
+
+    try{
+        digest = MessageDigest.getInstance("SHA-256").digest(pText);
+    }
+    catch(NoSuchAlgorithmException e){
+        throw new IOException(e.getMessage());
+    }
+
+    StringBuilder hash = new StringBuilder();
+
+    for (byte b : digest) {hash.append(String.format("%02x", b & 0xff));}
+
+    return(hash.toString());
+
+}//end of DSPCodeImage::getHash
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::fromHex (static)
+//
+// Converts a hex character to decimal. Invalid characters return 0.
+//
+
+static int fromHex(int pChar)
+{
+
+    if (pChar >= '0' && pChar <= '9') {return(pChar - '0');}
+    if (pChar >= 'a' && pChar <= 'f') {return(pChar - 'a' + 10);}
+    if (pChar >= 'A' && pChar <= 'F') {return(pChar - 'A' + 10);}
+
+    return(0);
+
+}//end of DSPCodeImage::fromHex
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::getNumberOfBlocks
+//
+
+public int getNumberOfBlocks()
+{
+
+    return(blockAddresses.length);
+
+}//end of DSPCodeImage::getNumberOfBlocks
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::getNumberOfWords
+//
+// Returns the total number of words in all blocks.
+//
+
+public int getNumberOfWords()
+{
+
+    return(words.length);
+
+}//end of DSPCodeImage::getNumberOfWords
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::getBlockAddress
+//
+// Returns the DSP address of the first word of block pBlock.
+//
+
+public int getBlockAddress(int pBlock)
+{
+
+    return(blockAddresses[pBlock]);
+
+}//end of DSPCodeImage::getBlockAddress
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::getBlockLength
+//
+// Returns the number of words in block pBlock.
+//
+
+public int getBlockLength(int pBlock)
+{
+
+    return(blockStarts[pBlock + 1] - blockStarts[pBlock]);
+
+}//end of DSPCodeImage::getBlockLength
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::getBlockChecksum
+//
+// Returns the lower word of the sum of the words in block pBlock, as returned
+// by the remote for the GET_DSP_RAM_BLOCK_CHECKSUM command.
+//
+
+public int getBlockChecksum(int pBlock)
+{
+
+    return(blockChecksums[pBlock]);
+
+}//end of DSPCodeImage::getBlockChecksum
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// DSPCodeImage::getWord
+//
+// Returns word pIndex of block pBlock as an unsigned value.
+//
+
+public int getWord(int pBlock, int pIndex)
+{
+
+    return(words[blockStarts[pBlock] + pIndex] & 0xffff);
+
+}//end of DSPCodeImage::getWord
+//-----------------------------------------------------------------------------
+
+}//end of class DSPCodeImage
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -913,8 +913,8 @@ public void saveCalFileToCalFolder(String pDataPath)
     //save a copy of the data in the opened file
     saveCalFileToOpenFile(calFile);
     
-    //force save buffer to disk
-    calFile.save();
+    //always write the file as the user has asked for it to be saved
+    calFile.forceSave();
 
 }//end of EncoderValues::saveCalFileToCalFolder
 //-----------------------------------------------------------------------------
@@ -10,6 +10,12 @@
 * readings, etc. These modules are accessed via HTML or XTML web protocols --
 * the modules mimic web servers.
 *
+* Commands are sent by an IOModuleDispatcher with its own thread so that a
+* slow or unreachable module does not hold up the calling thread. Sub classes
+* should call createDispatcher after configure and send commands with
+* sendCommand, or with sendUncoalescedCommand for commands such as pulses
+* which must each be sent.
+*
 * Open Source Policy:
 *
 * This source code is Public Domain and free to any interested party.  Any
@@ -22,18 +28,9 @@ package chart.mksystems.hardware;
 //-----------------------------------------------------------------------------
 
 import chart.mksystems.inifile.IniFile;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.ConnectException;
-import java.net.MalformedURLException;
-import java.net.SocketTimeoutException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import net.www.protocol.raw.RawURLConnection;
 import net.www.protocol.raw.RawURLStreamHandlerFactory;
 
 
@@ -65,21 +62,19 @@ public class EthernetIOModule extends Object
     protected int moduleNumber;
     protected String moduleIPAddress;
 
-    protected URL url;
-    protected URLConnection urlConn = null;
-    protected BufferedReader rd = null;
-    protected InputStreamReader isr = null;
-
     static final int RELAY_OFF = 0;
     static final int RELAY_ON = 1;
     static final int RELAY_PULSE = 2;
 
-    boolean recentConnectionMade = false;
-    
     int delayBetweenAccesses; //time delay in ms between consecutive accesses
     
-    static String xmlBaseURL = "";
-    static String xmlBaseURLSuffix = "";
+    //path and parameters of the GET request used to control the module
+    String xmlBasePath = "";
+    String xmlBasePathSuffix = "";
+
+    IOModuleDispatcher dispatcher = null;
+
+    static final int DEFAULT_PORT = 80;
     
 //-----------------------------------------------------------------------------
 // EthernetIOModule::EthernetIOModule (constructor)
@@ -128,144 +123,103 @@ public void init()
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// EthernetIOModule::okayToConnect
-//
-// If too many connections are attempted too rapidly, the system will stutter
-// as the buffer fills or responses are delayed.
-//
-// Connection requests are limited to one every 0.3 seconds. If this function
-// has not been called within the past 0.3 seconds, it returns true to signal
-// that it is okay to connect.
+// EthernetIOModule::createDispatcher
 //
-// If a connection has been made in the last 0.3 seconds, this function returns
-// false to signal that no connection attempt should be made.
+// Creates the dispatcher which sends commands to the module. Must be called
+// after configure as the module's address is required.
 //
-// This function sets a flag and starts a new thread to clear that flag in
-// 0.3 seconds as the control mechanism.
+// The address may include a port number, such as "169.254.1.3:8080".
 //
 
-public boolean okayToConnect()
+void createDispatcher()
 {
 
-    if (recentConnectionMade) { return(false); }
-    
-    recentConnectionMade = true;
-    
-    //start thread to clear the flag after a delay
-    
-    new Thread(() -> {
-        try {Thread.sleep(delayBetweenAccesses);}catch(InterruptedException e){}
-        recentConnectionMade = false;
-    }).start();
+    String host = moduleIPAddress;
+    int port = DEFAULT_PORT;
 
-    return(true); //okay to make a connection
-    
-}//end of EthernetIOModule::okayToConnect
+    int colon = moduleIPAddress.lastIndexOf(':');
+
+    if (colon > 0){
+        host = moduleIPAddress.substring(0, colon);
+        try{
+            port = Integer.parseInt(moduleIPAddress.substring(colon + 1));
+        }
+        catch(NumberFormatException e){
+            logSevere("Bad port in IO Module " + moduleNumber
+                                                    + " address - Error: 213");
+        }
+    }
+
+    dispatcher = new IOModuleDispatcher("IO Module " + moduleNumber,
+                                            host, port, delayBetweenAccesses);
+
+}//end of EthernetIOModule::createDispatcher
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// EthernetIOModule::connectSendGetRequestClose
-//
-// Opens a connection with the module, sends an HTTP GET request to a url,
-// then closes the connection.
-//
-// If pWaitForReply is true, waits for data and returns the received data as a
-// string.
-// 
-// If the connection is not made because a previous access is still in play,
-// returns null.
-//
-// Example URL:
-//      raw:XMLNoHeader//169.254.1.3/state.xml?relayState=1
+// EthernetIOModule::sendCommand
 //
-// The above will send "GET /state.xml?relayState=1 HTTP/1.1" string to
-// host at 169.254.1.3 using a handler which can parse raw text data.
+// Queues a GET request for pPath to be sent to the module and returns
+// immediately. Any command with the same pKey which has not yet been sent is
+// replaced, so pKey should identify the output or relay being controlled.
 //
 
-public String connectSendGetRequestClose(String pNetURL, boolean pWaitForReply)
+void sendCommand(String pKey, String pPath, boolean pWaitForReply)
 {
 
-    if(!okayToConnect()) { return(null); }
-    
-    String result = "";
-
-    StringBuilder sb = null;
-    Object o = null;
-
-    try{
-
-        url = new URL(pNetURL);
-
-        urlConn = url.openConnection();
+    if (dispatcher == null) {return;}
 
-        //allow ten seconds for a connection attempt
-        //(note that 0 actually defaults to about 22 seconds, not infinity
-        // as described in the document for URLConnection class)
-        urlConn.setConnectTimeout(10000);
+    dispatcher.submit(pKey, pPath, pWaitForReply);
 
-        //set amount of time in milliseconds that a read from the socket will
-        //wait for data - this prevents program lock up when no data is ready
-        //or less data than will fill the buffer has been sent
-        urlConn.setReadTimeout(3000);
-
-        //send the URL with the command and state info
-        o = ( urlConn.getContent() );
-        
-        if(!pWaitForReply) { return(""); }
-        
-        isr = new InputStreamReader((InputStream)o);
-        rd = new BufferedReader(isr);
-
-        sb = new StringBuilder();
-        String line;
-
-        while ((line = rd.readLine()) != null){
-            sb.append(line);
-        }
+}//end of EthernetIOModule::sendCommand
+//-----------------------------------------------------------------------------
 
-        result = sb.toString();
+//-----------------------------------------------------------------------------
+// EthernetIOModule::sendUncoalescedCommand
+//
+// Queues a GET request for pPath to be sent to the module and returns
+// immediately. Unlike sendCommand, the command is never replaced by a later
+// one, so it should be used for commands such as a relay pulse.
+//
 
-    }
-    catch(MalformedURLException me){
+void sendUncoalescedCommand(String pPath, boolean pWaitForReply)
+{
 
-        logSevere(me.getMessage() + " - Error: 138");
+    if (dispatcher == null) {return;}
 
-    }//catch
-    catch (SocketTimeoutException e){
+    dispatcher.submitUncoalesced(pPath, pWaitForReply);
 
-        //this is not usually an error -- it will be thrown when the host
-        //has finished sending data -- the calling code can sort out if it was
-        //a true error by whether or not data was received
+}//end of EthernetIOModule::sendUncoalescedCommand
+//-----------------------------------------------------------------------------
 
-        //data will often have been read before the timeout, so return it
+//-----------------------------------------------------------------------------
+// EthernetIOModule::getDispatcher
+//
+// Returns the dispatcher so its counters may be checked. Returns null if it
+// has not been created.
+//
 
-        if (sb != null) {result = sb.toString();}
+public IOModuleDispatcher getDispatcher()
+{
 
-    }
-    catch (ConnectException e){
+    return(dispatcher);
 
-        //this can get thrown when the host has not closed down the connection
-        //from a previous attempt -- wait for 5 seconds before trying again
-        waitSleep(5000);
+}//end of EthernetIOModule::getDispatcher
+//-----------------------------------------------------------------------------
 
-    }
-    catch (IOException e){
-        logSevere(e.getMessage() + " - Error: 161");
-    }//catch
-    finally{
+//-----------------------------------------------------------------------------
+// EthernetIOModule::shutDown
+//
+// Stops the dispatcher thread. Should be called before the object is
+// discarded.
+//
 
-        try{
-            if (rd!=null) {rd.close();}
-            if (isr!=null) {isr.close();}
-            if (o!=null) {((InputStream)o).close();}
-            if (urlConn!=null){((RawURLConnection)urlConn).disconnect();}
-            }
-        catch(IOException e){}
-    }
+public void shutDown()
+{
 
-    return(result);
+    if (dispatcher != null) {dispatcher.shutDown();}
 
-}//end of EthernetIOModule::connectSendGetRequestClose
+}//end of EthernetIOModule::shutDown
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -0,0 +1,201 @@
+/******************************************************************************
+* Title: FIRFilter.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class applies a FIR filter to a block of samples on the host, such as
+* an AScan data set.
+*
+* The filter is created from the values loaded from a file in the filters
+* folder by Channel, which are the same values sent to the DSPs:
+*
+*  value 0 = number of filter coefficients
+*  value 1 = number of bits to shift the output of each convolution,
+*            negative for right shift
+*  value 2 = 0: no preprocessing 1: absolute value preprocessing
+*  value 3~last = FIR filter coefficients
+*
+* Each block is filtered separately with the samples before the block taken
+* as zero. The block is copied after a run of zeros so that every output is a
+* plain sum over a contiguous run of input, and the sum is accumulated one
+* coefficient at a time across the whole block. The inner loops thus have no
+* shifting of a delay line and no index wrapping, which allows the JIT to
+* compile them with vector instructions.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class FIRFilter
+//
+// See notes at top of page.
+//
+
+public class FIRFilter extends Object{
+
+    int[] coefficients;
+    int shift;
+    boolean absoluteValue;
+
+    //sum of the magnitudes of the coefficients, used to check for overflow
+    long coefficientMagnitude;
+
+    //the block being filtered, preceded by coefficients.length - 1 zeros
+    int[] padded;
+
+    int[] sums;
+    long[] longSums;
+
+//-----------------------------------------------------------------------------
+// FIRFilter::FIRFilter (constructor)
+//
+// pCoefficients, pShift, and pAbsoluteValue are as described at the top of
+// the page. Blocks of up to pMaxBlockSize samples can be filtered.
+//
+
+public FIRFilter(int[] pCoefficients, int pShift, boolean pAbsoluteValue,
+                                                            int pMaxBlockSize)
+{
+
+    coefficients = pCoefficients.clone();
+    shift = pShift;
+    absoluteValue = pAbsoluteValue;
+
+    for (int c : coefficients) {coefficientMagnitude += Math.abs((long)c);}
+
+    padded = new int[coefficients.length - 1 + pMaxBlockSize];
+    sums = new int[pMaxBlockSize];
+    longSums = new long[pMaxBlockSize];
+
+}//end of FIRFilter::FIRFilter (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// FIRFilter::create (static)
+//
+// Returns a filter for pValues, which are in the format described at the top
+// of the page, or null if pValues does not contain any coefficients.
+//
+
+public static FIRFilter create(int[] pValues, int pMaxBlockSize)
+{
+
+    if (pValues == null || pValues.length < 4 || pValues[0] < 1
+                                        || pValues[0] > pValues.length - 3){
+        return(null);
+    }
+
+    int[] coefficients = new int[pValues[0]];
+
+    System.arraycopy(pValues, 3, coefficients, 0, coefficients.length);
+
+    return(new FIRFilter(
+                coefficients, pValues[1], pValues[2] == 1, pMaxBlockSize));
+
+}//end of FIRFilter::create
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// FIRFilter::apply
+//
+// Replaces the first pLength samples of pData with the filtered samples.
+//
+// The sums are accumulated as ints if the largest possible sum for the block
+// fits in an int, otherwise as longs.
+//
+
+public void apply(int[] pData, int pLength)
+{
+
+    int taps = coefficients.length;
+    int start = taps - 1;
+
+    int max = 0;
+
+    for (int i = 0; i < pLength; i++){
+        int s = pData[i];
+        if (absoluteValue && s < 0) {s = -s;}
+        padded[start + i] = s;
+        if (s > max) {max = s;} else if (-s > max) {max = -s;}
+    }
+
+    //output i is the sum of coefficient k times the sample k positions
+    //earlier, which is at padded[start + i - k]
+
+    if ((long)max * coefficientMagnitude <= Integer.MAX_VALUE){
+
+        for (int i = 0; i < pLength; i++) {sums[i] = 0;}
+
+        for (int k = 0; k < taps; k++){
+            int c = coefficients[k];
+            int offset = start - k;
+            for (int i = 0; i < pLength; i++){
+                sums[i] += c * padded[offset + i];
+            }
+        }
+
+        for (int i = 0; i < pLength; i++) {pData[i] = applyShift(sums[i]);}
+
+    }
+    else{
+
+        for (int i = 0; i < pLength; i++) {longSums[i] = 0;}
+
+        for (int k = 0; k < taps; k++){
+            long c = coefficients[k];
+            int offset = start - k;
+            for (int i = 0; i < pLength; i++){
+                longSums[i] += c * padded[offset + i];
+            }
+        }
+
+        for (int i = 0; i < pLength; i++){
+            pData[i] = (int)applyShift(longSums[i]);
+        }
+
+    }
+
+}//end of FIRFilter::apply
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// FIRFilter::applyShift
+//
+// Returns pSum shifted by the filter's shift amount.
+//
+
+private long applyShift(long pSum)
+{
+
+    return(shift < 0 ? pSum >> -shift : pSum << shift);
+
+}//end of FIRFilter::applyShift
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// FIRFilter::applyShift
+//
+// Returns pSum shifted by the filter's shift amount.
+//
+
+private int applyShift(int pSum)
+{
+
+    return(shift < 0 ? pSum >> -shift : pSum << shift);
+
+}//end of FIRFilter::applyShift
+//-----------------------------------------------------------------------------
+
+}//end of class FIRFilter
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
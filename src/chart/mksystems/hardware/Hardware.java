@@ -23,6 +23,8 @@ import chart.Log;
 import chart.MessageLink;
 import chart.ThreadSafeLogger;
 import chart.mksystems.inifile.IniFile;
+import chart.mksystems.metrics.Histogram;
+import chart.mksystems.metrics.Metrics;
 import chart.mksystems.settings.Settings;
 import chart.mksystems.stripchart.ChartGroup;
 import chart.mksystems.stripchart.Plotter;
@@ -30,6 +32,7 @@ import chart.mksystems.stripchart.Threshold;
 import chart.mksystems.stripchart.Trace;
 import chart.mksystems.stripchart.TraceData;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -76,6 +79,7 @@ public class Hardware extends Object implements TraceValueCalculator, Runnable,
     private EncoderHandler encoders;
     IniFile configFile;
     HardwareLink analogDriver;
+    PeakStore peakStore;
     HardwareLink digitalDriver;
     JTextArea log;
     int scanRateCounter;
@@ -101,6 +105,8 @@ public class Hardware extends Object implements TraceValueCalculator, Runnable,
     public boolean active = false;
     boolean collectDataEnabled = true;
 
+    Histogram collectDataTimer = Metrics.timer("Collect data cycle");
+
     //variables used by functions - declared here to avoid garbage collection
     int numberOfChannels;
     int numberOfGates;
@@ -305,6 +311,8 @@ private void createAnalogDriver(String pDriverName)
         analogDriver.init();
     }
 
+    if (analogDriver != null) {peakStore = analogDriver.getPeakStore();}
+
 }//end of Hardware::createAnalogDriver
 //-----------------------------------------------------------------------------
 
@@ -427,6 +435,39 @@ public void saveAllMapDataSetsToTextFile(
 }//end of Hardware::saveAllMapDataSetsToFile
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Hardware::createAllMapDataSetsFileData
+//
+// Returns the contents of the map file which would be saved by
+// saveAllMapDataSetsToTextFile or null if mapping is not active.
+//
+
+public byte[] createAllMapDataSetsFileData(
+                                       String pInspectionDirectionDescription)
+{
+
+    return(analogDriver.createAllMapDataSetsFileData(
+                                           pInspectionDirectionDescription));
+
+}//end of Hardware::createAllMapDataSetsFileData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Hardware::finishIncrementalMapFile
+//
+// Returns the map file saved during the inspection or null if the map was
+// not saved incrementally. The caller must delete the file when done.
+//
+
+public File finishIncrementalMapFile(String pInspectionDirectionDescription)
+{
+
+    return(analogDriver.finishIncrementalMapFile(
+                                           pInspectionDirectionDescription));
+
+}//end of Hardware::finishIncrementalMapFile
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Hardware::loadCalFile
 //
@@ -965,6 +1006,8 @@ public void setAllChannelsDataChangedTrue()
 public void collectData()
 {
 
+    long startTime = System.nanoTime();
+
 /*    
     
     //debug mks
@@ -1090,7 +1133,10 @@ public void collectData()
     boolean controlDataAvailable = analogDriver.prepareControlData();
 
     //check if other threads are already accessing data from the remotes
-    if (!collectDataEnabled) {return;}
+    if (!collectDataEnabled) {
+        collectDataTimer.recordSince(startTime);
+        return;
+    }
 
     if (opMode == SCAN || opMode == INSPECT_WITH_TIMER_TRACKING) {
         collectDataForScanOrTimerMode();
@@ -1099,6 +1145,8 @@ public void collectData()
         collectDataForInspectMode();
     }
 
+    collectDataTimer.recordSince(startTime);
+
 }//end of Hardware::collectData
 //-----------------------------------------------------------------------------
 
@@ -1200,6 +1248,10 @@ public void collectDataForInspectMode()
 // Collects analog data from all channels and stores it in the appropriate trace
 // buffers.
 //
+// The data is read from the driver's peak store by stepping through the gate
+// ids, which are in the same order as the channels and their gates. Drivers
+// without a peak store have no analog data to collect.
+//
 // wipmks --
 // Originally, this function only transferred data to the trace buffers if new
 // data was available from analogDriver.getNewData - return to this?
@@ -1208,30 +1260,32 @@ public void collectDataForInspectMode()
 public void collectAnalogData()
 {
 
-    numberOfChannels = analogDriver.getNumberOfChannels();
+    PeakStore ps = peakStore;
+
+    if (ps == null) {return;}
 
-    //scan through all channels and their gates, processing data from any that
+    //scan through all gates of all channels, processing data from any that
     //have new data available
 
-    for (int ch = 0; ch < numberOfChannels; ch++){
+    for (int id = 0; id < ps.numberOfGates; id++){
 
-        if(!analogDriver.getChannels()[ch].isEnabled()) {continue;}
+        int ch = ps.channelOf[id];
 
-        //get the number of gates for the currently selected channel
-        numberOfGates = analogDriver.getNumberOfGates(ch);
+        if(!ps.channelEnabled[ch]) {continue;}
 
-        for (int g = 0; g < numberOfGates; g++){
+        //prepare data for the gate -- inactive channels return data which
+        //will always be overridden by other channels which are active
+        boolean channelActive = ps.channelActive[ch];
 
-            //retrieve data for the gate
-            boolean channelActive = analogDriver.getNewData(ch, g, hdwVs);
+        if (channelActive) {ps.prepareData(id, hdwVs);}
+        else {ps.prepareInactiveData(id);}
 
-            if (hdwVs.gatePtr.tracePtr != null) {
+        if (ps.traces[id] != null) {
 
-                collectAnalogDataMinOrMax(hdwVs.gatePtr, channelActive);
+            collectAnalogDataMinOrMax(ps, id, channelActive);
 
-            }// if (hdwVs.gatePtr.tracePtr != null)
-        }// for (int g = 0; g < numberOfGates; g++)
-    }// for (int ch = 0; ch < numberOfChannels; ch++)
+        }// if (ps.traces[id] != null)
+    }// for (int id = 0; id < ps.numberOfGates; id++)
 
 }//end of Hardware::collectAnalogData
 //-----------------------------------------------------------------------------
@@ -1239,9 +1293,9 @@ public void collectAnalogData()
 //-----------------------------------------------------------------------------
 // Hardware::collectAnalogDataMinOrMax
 //
-// Collects analog data from channel pCh and stores it in the appropriate trace
-// buffers.  This function collects data when configured for a single stream
-// of min or max peaks.
+// Collects analog data for gate pId in peak store pStore and stores it in the
+// appropriate trace buffers.  This function collects data when configured for
+// a single stream of min or max peaks.
 //
 // If chInfo[pCh].nextIndex has not been moved by collectEncoderData since the
 // last data was collected, the new data will be compared with the data already
@@ -1265,20 +1319,21 @@ public void collectAnalogData()
 // more than one position.
 //
 
-void collectAnalogDataMinOrMax(UTGate gatePtr, boolean pChannelActive)
+void collectAnalogDataMinOrMax(PeakStore pStore, int pId,
+                                                        boolean pChannelActive)
 {
 
-    Trace trace = gatePtr.tracePtr;
+    Trace trace = pStore.traces[pId];
     TraceData traceData = trace.traceData;
 
-    //get the clock and data for this channel
-    int clockPos = gatePtr.clockPos;
-    int newData = gatePtr.dataPeak;
+    //get the clock and data for this gate
+    int clockPos = pStore.clockPos[pId];
+    int newData = pStore.dataPeak[pId];
 
     trace.wallThickness = Integer.MAX_VALUE;
 
     //quench signal in masked area
-    if (!trace.flaggingEnabled){ newData = gatePtr.antiPeakValue; }
+    if (!trace.flaggingEnabled){ newData = pStore.antiPeakValue[pId]; }
 
     boolean dataStored = traceData.storeDataAtInsertionPoint(newData);
 
@@ -1294,32 +1349,34 @@ void collectAnalogDataMinOrMax(UTGate gatePtr, boolean pChannelActive)
     if (dataStored && pChannelActive){
 
         //store the hardware channel from which the data was obtained
-        trace.peakChannel = gatePtr.channelIndex;
+        trace.peakChannel = pStore.channelIndex[pId];
 
         //store the wall thickness for display as a number
-        trace.wallThickness = gatePtr.wallThickness;
+        trace.wallThickness = pStore.wallThickness[pId];
 
         traceData.storeClockAtInsertionPoint(clockPos);
 
         //check thresholds and store flag if violation - shift threshold
         //index by 2 as 0 = no flag and 1 = user flag
 
-        for (int j = 0; j < gatePtr.thresholds.length; j++) {
+        Threshold[] thresholds = pStore.thresholds[pId];
+
+        for (int j = 0; j < thresholds.length; j++) {
             if (trace.flaggingEnabled &&
-                                gatePtr.thresholds[j].checkViolation(newData)){
+                                thresholds[j].checkViolation(newData)){
 
                 traceData.storeThresholdAtInsertionPoint(j);
 
                 //store this channel as the most recent flagged for the trace
-                trace.setLastFlagged(gatePtr.channelIndex, clockPos);
-                startMarker(gatePtr, j); //handle marking the violation
+                trace.setLastFlagged(pStore.channelIndex[pId], clockPos);
+                startMarker(pStore.gates[pId], j); //handle marking the violation
                 break; //stop after first threshold violation found
             }
             else{
                 //no flagging, so reset marking system so it can mark again
-                endMarker(gatePtr, j);
+                endMarker(pStore.gates[pId], j);
             }
-        }//for (int j = 0; j < gatePtr.thresholds.length; j++)
+        }//for (int j = 0; j < thresholds.length; j++)
 
     }//if (datastored)...
 
@@ -2265,6 +2322,21 @@ public void sendDataChangesToRemotes()
 }//end of Hardware::sendDataChangesToRemotes
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Hardware:flushOutboundMessages
+//
+// Sends all messages queued for the remotes. Should be called by the
+// "Main Thread" at the end of each cycle.
+//
+
+public void flushOutboundMessages()
+{
+
+    analogDriver.flushOutboundMessages();
+
+}//end of Hardware::flushOutboundMessages
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Hardware:verifyAllDSPCode2
 //
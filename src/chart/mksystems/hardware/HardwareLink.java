@@ -26,6 +26,7 @@ import chart.mksystems.stripchart.Threshold;
 import chart.mksystems.stripchart.Trace;
 import chart.mksystems.stripchart.TraceData;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 
@@ -53,6 +54,8 @@ int getChannelData(int _pChannel, int pSimDataType);
 
 Channel[] getChannels();
 
+PeakStore getPeakStore();
+
 UTGate getGate(int pChannel, int pGate);
 
 void connect() throws InterruptedException;
@@ -120,6 +123,8 @@ public void setState(int pChassis, int pSlot, int pWhich, int pValue);
 
 public void sendDataChangesToRemotes();
 
+public void flushOutboundMessages();
+
 public void setAllChannelsDataChangedTrue();
 
 public void driveSimulation();
@@ -160,6 +165,11 @@ public void saveAllMapDataSetsToFile(
         String pFilename, String pJobFileFormat,
         String pInspectionDirectionDescription);
 
+public byte[] createAllMapDataSetsFileData(
+                                      String pInspectionDirectionDescription);
+
+public File finishIncrementalMapFile(String pInspectionDirectionDescription);
+
 public void recordStartLocation(int pHead, double pPosition);
 
 public void recordStopLocation(int pHead, double pPosition);
@@ -0,0 +1,743 @@
+/******************************************************************************
+* Title: IOModuleDispatcher.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class sends commands to an Ethernet I/O module using its own thread so
+* that the caller is never held up by a slow or unreachable module. Analog
+* outputs are set from the acquisition thread for every wall reading, so a
+* blocking connection there would stall all peak processing.
+*
+* Each command is submitted with a key identifying the output or relay it
+* controls. If a command for the same key is still waiting to be sent, it is
+* replaced by the new one -- only the newest value for each output is sent.
+* The number of waiting commands can therefore never exceed the number of
+* outputs, no matter how slow the module is.
+*
+* Commands which are events rather than values, such as a relay pulse, are
+* submitted with submitUncoalesced and are each sent in turn.
+*
+* A command which fails is sent again once the module can be reached unless
+* a newer command for the same key has been submitted in the meantime.
+*
+* Commands are sent no faster than one every minimum interval. A single
+* connection is kept open and reused for each command as long as the module
+* allows it. If the module closes the connection, a new one is opened and
+* the command is sent again. If the module cannot be reached, the thread
+* waits for an increasing time before trying again while new values continue
+* to replace the waiting ones.
+*
+* Counters are kept for the number of commands submitted, replaced, sent,
+* and failed, and the number of connections opened. isHealthy returns false
+* while the module is failing.
+*
+* The modules from Control by Web often reply without HTTP headers and then
+* close the connection. When a reply is expected but has no Content-Length
+* header, it is read until the module closes the connection or stops sending
+* and the connection is then reopened for the next command.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import chart.mksystems.metrics.Histogram;
+import chart.mksystems.metrics.Metrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IOModuleDispatcher
+//
+// See notes at top of page.
+//
+
+public class IOModuleDispatcher extends Object{
+
+    static final int CONNECT_TIMEOUT = 2000;
+    static final int READ_TIMEOUT = 3000;
+
+    //wait time after the first failure -- doubled for each failure after that
+    //up to MAX_RETRY_DELAY
+    static final int RETRY_DELAY = 250;
+    static final int MAX_RETRY_DELAY = 5000;
+
+    String host;
+    int port;
+    int minInterval;
+
+    //commands waiting to be sent, keyed by output, and the command which
+    //failed and is to be sent again -- access only while synchronized on
+    //pending
+    final LinkedHashMap<String, IOModuleCommand> pending =
+                                                        new LinkedHashMap<>();
+    IOModuleCommand retryCommand = null;
+    boolean drainScheduled = false;
+
+    //used to give each uncoalesced command a key of its own
+    long uncoalescedCount = 0;
+    static final String UNCOALESCED_KEY = "uncoalesced ";
+
+    ExecutorService executor;
+
+    //used only by the executor thread
+    Socket socket = null;
+    OutputStream out = null;
+    InputStream in = null;
+    long lastSendTime = 0;
+
+    final AtomicLong commandsSubmitted = new AtomicLong(0);
+    final AtomicLong commandsCoalesced = new AtomicLong(0);
+    final AtomicLong commandsSent = new AtomicLong(0);
+    final AtomicLong commandsFailed = new AtomicLong(0);
+    final AtomicLong connectionsOpened = new AtomicLong(0);
+
+    volatile int consecutiveFailures = 0;
+    volatile long lastSuccessTime = 0;
+
+    //time taken by each send, including any retry
+    Histogram sendTimer;
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::IOModuleDispatcher (constructor)
+//
+// Commands will be sent to pHost on pPort no faster than one every
+// pMinInterval milliseconds. pName is used to name the thread.
+//
+
+public IOModuleDispatcher(String pName, String pHost, int pPort,
+                                                            int pMinInterval)
+{
+
+    host = pHost; port = pPort; minInterval = pMinInterval;
+
+    executor = Executors.newSingleThreadExecutor((Runnable r) -> {
+        Thread t = new Thread(r, pName);
+        t.setDaemon(true);
+        return(t);
+    });
+
+    sendTimer = Metrics.timer(pName + " send time");
+
+    Metrics.gauge(pName + " commands pending", this::getPendingCount);
+    Metrics.gauge(pName + " commands failed", commandsFailed::get);
+
+}//end of IOModuleDispatcher::IOModuleDispatcher (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::submit
+//
+// Queues a GET request for pPath to be sent to the module. Any command with
+// the same pKey still waiting to be sent is replaced. If pWaitForReply is
+// true, the reply is read before the next command is sent.
+//
+// Returns immediately.
+//
+
+public void submit(String pKey, String pPath, boolean pWaitForReply)
+{
+
+    commandsSubmitted.incrementAndGet();
+
+    synchronized(pending){
+
+        if (pending.remove(pKey) != null) {commandsCoalesced.incrementAndGet();}
+
+        //removed first so the newest command goes to the end of the line
+        pending.put(pKey, new IOModuleCommand(pKey, pPath, pWaitForReply));
+
+        scheduleDrain();
+
+    }
+
+}//end of IOModuleDispatcher::submit
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::submitUncoalesced
+//
+// Queues a GET request for pPath to be sent to the module which is never
+// replaced by a later command. Used for commands such as a relay pulse where
+// each one must be sent. If pWaitForReply is true, the reply is read before
+// the next command is sent.
+//
+// Returns immediately.
+//
+
+public void submitUncoalesced(String pPath, boolean pWaitForReply)
+{
+
+    commandsSubmitted.incrementAndGet();
+
+    synchronized(pending){
+
+        String key = UNCOALESCED_KEY + uncoalescedCount++;
+
+        pending.put(key, new IOModuleCommand(key, pPath, pWaitForReply));
+
+        scheduleDrain();
+
+    }
+
+}//end of IOModuleDispatcher::submitUncoalesced
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::scheduleDrain
+//
+// Starts the executor thread sending the waiting commands if it is not
+// already doing so. Must be called while synchronized on pending.
+//
+
+private void scheduleDrain()
+{
+
+    if (!drainScheduled){
+        drainScheduled = true;
+        executor.execute(this::drain);
+    }
+
+}//end of IOModuleDispatcher::scheduleDrain
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::isPending
+//
+// Returns true if a command for pKey is waiting to be sent.
+//
+
+public boolean isPending(String pKey)
+{
+
+    synchronized(pending){
+        return(pending.containsKey(pKey)
+                    || (retryCommand != null && retryCommand.key.equals(pKey)));
+    }
+
+}//end of IOModuleDispatcher::isPending
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::getPendingCount
+//
+// Returns the number of commands waiting to be sent.
+//
+
+public int getPendingCount()
+{
+
+    synchronized(pending){
+        return(pending.size() + (retryCommand != null ? 1 : 0));
+    }
+
+}//end of IOModuleDispatcher::getPendingCount
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::isHealthy
+//
+// Returns false if the last attempt to send a command failed.
+//
+
+public boolean isHealthy()
+{
+
+    return(consecutiveFailures == 0);
+
+}//end of IOModuleDispatcher::isHealthy
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::getStatus
+//
+// Returns a summary of the counters for display or logging.
+//
+
+public String getStatus()
+{
+
+    return("submitted=" + commandsSubmitted.get()
+            + " coalesced=" + commandsCoalesced.get()
+            + " sent=" + commandsSent.get()
+            + " failed=" + commandsFailed.get()
+            + " connections=" + connectionsOpened.get()
+            + " pending=" + getPendingCount()
+            + " healthy=" + isHealthy());
+
+}//end of IOModuleDispatcher::getStatus
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::getCommandsSubmitted
+//
+
+public long getCommandsSubmitted()
+{
+
+    return(commandsSubmitted.get());
+
+}//end of IOModuleDispatcher::getCommandsSubmitted
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::getCommandsCoalesced
+//
+
+public long getCommandsCoalesced()
+{
+
+    return(commandsCoalesced.get());
+
+}//end of IOModuleDispatcher::getCommandsCoalesced
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::getCommandsSent
+//
+
+public long getCommandsSent()
+{
+
+    return(commandsSent.get());
+
+}//end of IOModuleDispatcher::getCommandsSent
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::getCommandsFailed
+//
+
+public long getCommandsFailed()
+{
+
+    return(commandsFailed.get());
+
+}//end of IOModuleDispatcher::getCommandsFailed
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::getConnectionsOpened
+//
+
+public long getConnectionsOpened()
+{
+
+    return(connectionsOpened.get());
+
+}//end of IOModuleDispatcher::getConnectionsOpened
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::shutDown
+//
+// Stops the thread and closes the connection. Commands still waiting are
+// discarded.
+//
+
+public void shutDown()
+{
+
+    synchronized(pending){
+        pending.clear();
+        retryCommand = null;
+    }
+
+    executor.shutdownNow();
+
+}//end of IOModuleDispatcher::shutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::drain
+//
+// Sends waiting commands until there are none left. Runs in the executor
+// thread.
+//
+// The wait for the minimum interval is made before the next command is
+// taken so that any values submitted during the wait replace it.
+//
+// A command which fails is kept and sent again before any others after the
+// retry delay. It is dropped if a newer command for the same key has been
+// submitted by then.
+//
+
+private void drain()
+{
+
+    while (!Thread.currentThread().isInterrupted()){
+
+        long wait = lastSendTime + minInterval - System.currentTimeMillis();
+
+        if (wait > 0 && !sleep(wait)) {break;}
+
+        IOModuleCommand command;
+
+        synchronized(pending){
+
+            if (retryCommand != null
+                                && pending.containsKey(retryCommand.key)){
+                commandsCoalesced.incrementAndGet();
+                retryCommand = null;
+            }
+
+            if (retryCommand != null){
+                command = retryCommand;
+                retryCommand = null;
+            }
+            else{
+                Iterator<Map.Entry<String, IOModuleCommand>> i =
+                                                pending.entrySet().iterator();
+                if (!i.hasNext()){
+                    drainScheduled = false;
+                    return;
+                }
+                command = i.next().getValue();
+                i.remove();
+            }
+
+        }
+
+        lastSendTime = System.currentTimeMillis();
+
+        long startTime = System.nanoTime();
+
+        try{
+            send(command);
+            sendTimer.recordSince(startTime);
+            commandsSent.incrementAndGet();
+            lastSuccessTime = System.currentTimeMillis();
+            if (consecutiveFailures > 0){
+                logInfo("Connection to I/O module " + host + " restored.");
+            }
+            consecutiveFailures = 0;
+        }
+        catch(IOException e){
+            sendTimer.recordSince(startTime);
+            commandsFailed.incrementAndGet();
+            if (consecutiveFailures == 0){
+                logSevere(e.getMessage() + " - Error: 212");
+            }
+            consecutiveFailures++;
+            synchronized(pending) {retryCommand = command;}
+            int delay = RETRY_DELAY << Math.min(consecutiveFailures - 1, 5);
+            if (!sleep(Math.min(delay, MAX_RETRY_DELAY))) {break;}
+        }
+
+    }
+
+    closeConnection();
+
+}//end of IOModuleDispatcher::drain
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::send
+//
+// Sends pCommand on the open connection, opening one if necessary. If the
+// module has closed the connection since the last command, the send fails
+// and is retried once on a new connection.
+//
+
+private void send(IOModuleCommand pCommand) throws IOException
+{
+
+    byte[] request = ("GET " + pCommand.path + " HTTP/1.1\r\n"
+                        + "Host: " + host + "\r\n"
+                        + "Connection: keep-alive\r\n"
+                        + "\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    for (int attempt = 0; ; attempt++){
+
+        boolean reused = socket != null;
+
+        try{
+            if (socket == null) {openConnection();}
+            discardUnreadReply();
+            out.write(request);
+            out.flush();
+            if (pCommand.waitForReply) {readReply();}
+            return;
+        }
+        catch(IOException e){
+            closeConnection();
+            if (!reused || attempt > 0) {throw e;}
+        }
+
+    }
+
+}//end of IOModuleDispatcher::send
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::openConnection
+//
+
+private void openConnection() throws IOException
+{
+
+    Socket s = new Socket();
+
+    try{
+        s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+        s.setSoTimeout(READ_TIMEOUT);
+        s.setTcpNoDelay(true);
+        s.setKeepAlive(true);
+    }
+    catch(IOException e){
+        try{s.close();} catch(IOException e2){}
+        throw e;
+    }
+
+    socket = s;
+    out = s.getOutputStream();
+    in = s.getInputStream();
+
+    connectionsOpened.incrementAndGet();
+
+}//end of IOModuleDispatcher::openConnection
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::closeConnection
+//
+
+private void closeConnection()
+{
+
+    if (socket != null){
+        try{socket.close();} catch(IOException e){}
+    }
+
+    socket = null; out = null; in = null;
+
+}//end of IOModuleDispatcher::closeConnection
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::discardUnreadReply
+//
+// Discards any reply to a previous command which was not read because no
+// reply was expected, so it is not mistaken for the reply to the next one.
+//
+// Also checks whether the module has closed the connection, as writing to a
+// closed connection often appears to succeed and the command would be lost.
+// Throws an IOException if it has been closed.
+//
+
+private void discardUnreadReply() throws IOException
+{
+
+    int available;
+
+    while ((available = in.available()) > 0) {in.skip(available);}
+
+    socket.setSoTimeout(1);
+
+    try{
+        while (true){
+            if (in.read() == -1){
+                throw new IOException("Connection closed by I/O module.");
+            }
+        }
+    }
+    catch(SocketTimeoutException e){
+        //nothing more to read and the connection is still open
+    }
+    finally{
+        socket.setSoTimeout(READ_TIMEOUT);
+    }
+
+}//end of IOModuleDispatcher::discardUnreadReply
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::readReply
+//
+// Reads the reply to a command and returns it as a string. If the reply has
+// HTTP headers with a Content-Length, the connection is kept open for the
+// next command. Otherwise, the reply is read until the module closes the
+// connection or stops sending, and the connection is closed.
+//
+
+private String readReply() throws IOException
+{
+
+    ByteArrayOutputStream reply = new ByteArrayOutputStream(512);
+
+    int headerEnd = -1;
+    int contentLength = -1;
+    boolean keepOpen = false;
+
+    try{
+
+        int c;
+
+        while ((c = in.read()) != -1){
+
+            reply.write(c);
+
+            if (headerEnd == -1 && c == '\n'){
+                String text = reply.toString("US-ASCII");
+                if (!text.startsWith("HTTP/")) {continue;}
+                if (text.endsWith("\r\n\r\n")){
+                    headerEnd = reply.size();
+                    contentLength = parseContentLength(text);
+                    keepOpen = contentLength >= 0 && !text.toLowerCase()
+                                              .contains("connection: close");
+                }
+            }
+
+            if (headerEnd != -1 && contentLength >= 0
+                                 && reply.size() - headerEnd >= contentLength){
+                break;
+            }
+
+        }
+
+    }
+    catch(SocketTimeoutException e){
+
+        //modules without proper headers often just stop sending -- if any
+        //data was received, this is treated as the end of the reply
+
+        if (reply.size() == 0) {throw e;}
+
+    }
+
+    if (!keepOpen) {closeConnection();}
+
+    return(reply.toString("US-ASCII"));
+
+}//end of IOModuleDispatcher::readReply
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::parseContentLength (static)
+//
+// Returns the value of the Content-Length header in pHeaders or -1 if there
+// is none.
+//
+
+static int parseContentLength(String pHeaders)
+{
+
+    for (String line : pHeaders.split("\r\n")){
+        int colon = line.indexOf(':');
+        if (colon > 0 && line.substring(0, colon).trim()
+                                        .equalsIgnoreCase("Content-Length")){
+            try{
+                return(Integer.parseInt(line.substring(colon + 1).trim()));
+            }
+            catch(NumberFormatException e){
+                return(-1);
+            }
+        }
+    }
+
+    return(-1);
+
+}//end of IOModuleDispatcher::parseContentLength
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::sleep
+//
+// Sleeps for pTime milliseconds. Returns false if interrupted.
+//
+
+private boolean sleep(long pTime)
+{
+
+    try{
+        Thread.sleep(pTime);
+        return(true);
+    }
+    catch(InterruptedException e){
+        Thread.currentThread().interrupt();
+        return(false);
+    }
+
+}//end of IOModuleDispatcher::sleep
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::logSevere
+//
+// Logs pMessage with level SEVERE using the Java logger.
+//
+
+void logSevere(String pMessage)
+{
+
+    Logger.getLogger(getClass().getName()).log(Level.SEVERE, pMessage);
+
+}//end of IOModuleDispatcher::logSevere
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IOModuleDispatcher::logInfo
+//
+// Logs pMessage with level INFO using the Java logger.
+//
+
+void logInfo(String pMessage)
+{
+
+    Logger.getLogger(getClass().getName()).log(Level.INFO, pMessage);
+
+}//end of IOModuleDispatcher::logInfo
+//-----------------------------------------------------------------------------
+
+}//end of class IOModuleDispatcher
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IOModuleCommand
+//
+// A GET request waiting to be sent to a module.
+//
+
+class IOModuleCommand{
+
+    String key;
+    String path;
+    boolean waitForReply;
+
+//-----------------------------------------------------------------------------
+// IOModuleCommand::IOModuleCommand (constructor)
+//
+
+IOModuleCommand(String pKey, String pPath, boolean pWaitForReply)
+{
+
+    key = pKey; path = pPath; waitForReply = pWaitForReply;
+
+}//end of IOModuleCommand::IOModuleCommand (constructor)
+//-----------------------------------------------------------------------------
+
+}//end of class IOModuleCommand
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,466 @@
+/******************************************************************************
+* Title: IngestInputStream.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the bytes received from a single remote board by the
+* PacketIngestEngine and presents them to the board as an InputStream.
+*
+* The engine thread fills the buffer as bytes arrive on the board's socket
+* while the thread processing packets (usually "Main Thread") reads them out.
+* Threads needing a certain number of bytes wait on this object and are woken
+* as soon as the bytes arrive rather than polling and sleeping.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class IngestInputStream
+//
+
+public class IngestInputStream extends InputStream{
+
+    //the buffer is always left in "read" mode -- the data waiting to be read
+    //lies between position() and limit(); new data is appended after limit()
+    //and the buffer is only compacted when there is no room left at the end
+
+    ByteBuffer buffer;
+
+    int readTimeOut;
+
+    boolean closed = false;
+    boolean endOfStream = false;
+
+    //set by the engine when the buffer is full and the engine has stopped
+    //reading from the socket -- cleared when the engine resumes reading
+    volatile boolean readPaused = false;
+
+    PacketIngestEngine engine = null;
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::IngestInputStream (constructor)
+//
+// The buffer will hold pBufferSize bytes. A read will wait up to pReadTimeOut
+// milliseconds for data before throwing SocketTimeoutException; this matches
+// the behavior of a Socket with its SoTimeout set. If pReadTimeOut is zero,
+// reads will wait forever.
+//
+
+public IngestInputStream(int pBufferSize, int pReadTimeOut)
+{
+
+    buffer = ByteBuffer.allocateDirect(pBufferSize);
+    buffer.limit(0);
+
+    readTimeOut = pReadTimeOut;
+
+}//end of IngestInputStream::IngestInputStream (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::fill
+//
+// Reads whatever bytes are available from pChannel into the buffer. Should
+// only be called by the PacketIngestEngine thread when the selector reports
+// the channel as readable.
+//
+// Returns the number of bytes read, 0 if the buffer is full, or -1 if the
+// remote has closed the connection.
+//
+// The readPaused flag is set here while locked so that a reader making room
+// cannot miss it and leave the engine waiting forever.
+//
+
+synchronized int fill(ReadableByteChannel pChannel) throws IOException
+{
+
+    int readPosition = beginFill();
+
+    if (!buffer.hasRemaining()){
+        endFill(readPosition);
+        readPaused = true;
+        return(0);
+    }
+
+    int count = pChannel.read(buffer);
+
+    endFill(readPosition);
+
+    if (count < 0) {endOfStream = true;}
+
+    if (count != 0) {notifyAll();}
+
+    return(count);
+
+}//end of IngestInputStream::fill
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::fill
+//
+// Stores pCount bytes from pBytes starting at pOffset in the buffer. Used to
+// feed the buffer from sources which cannot be selected, such as the pipes
+// used by the Simulator classes.
+//
+// If the buffer is full, waits until the reading thread has made room.
+//
+
+synchronized void fill(byte[] pBytes, int pOffset, int pCount)
+                                                    throws InterruptedException
+{
+
+    while (pCount > 0 && !closed){
+
+        while (isFull() && !closed) {wait();}
+
+        if (closed) {break;}
+
+        int readPosition = beginFill();
+
+        int n = Math.min(pCount, buffer.remaining());
+
+        buffer.put(pBytes, pOffset, n);
+
+        endFill(readPosition);
+
+        pOffset += n; pCount -= n;
+
+        notifyAll();
+
+    }
+
+}//end of IngestInputStream::fill
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::beginFill
+//
+// Switches the buffer so that bytes can be appended after the data waiting
+// to be read. If there is no room left at the end of the buffer, the waiting
+// data is first moved to the start.
+//
+// Returns the read position which must be passed to endFill.
+//
+
+private int beginFill()
+{
+
+    if (buffer.limit() == buffer.capacity() && buffer.position() > 0){
+        buffer.compact();
+        buffer.flip();
+    }
+
+    int readPosition = buffer.position();
+
+    buffer.position(buffer.limit());
+    buffer.limit(buffer.capacity());
+
+    return(readPosition);
+
+}//end of IngestInputStream::beginFill
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::endFill
+//
+// Returns the buffer to read mode after bytes have been appended.
+//
+
+private void endFill(int pReadPosition)
+{
+
+    buffer.limit(buffer.position());
+    buffer.position(pReadPosition);
+
+}//end of IngestInputStream::endFill
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::isFull
+//
+// Returns true if no more bytes can be stored until some have been read.
+//
+
+private boolean isFull()
+{
+
+    return(buffer.remaining() == buffer.capacity());
+
+}//end of IngestInputStream::isFull
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::consumed
+//
+// Called after bytes have been taken from the buffer. If the buffer is now
+// empty it is rewound so the next fill starts at the beginning without any
+// copying. If the buffer was full before the bytes were taken, any stream
+// adapter waiting for room is woken.
+//
+
+private void consumed(boolean pWasFull)
+{
+
+    if (!buffer.hasRemaining()) {buffer.position(0); buffer.limit(0);}
+
+    if (pWasFull) {notifyAll();}
+
+}//end of IngestInputStream::consumed
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::setEndOfStream
+//
+// Flags that the remote has closed the connection and wakes any waiting
+// threads.
+//
+
+synchronized void setEndOfStream()
+{
+
+    endOfStream = true;
+
+    notifyAll();
+
+}//end of IngestInputStream::setEndOfStream
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::waitForBytes
+//
+// Waits until at least pCount bytes are available or pTimeOut milliseconds
+// have passed. If pTimeOut is zero, does not wait at all.
+//
+// Returns true if the bytes are available, false otherwise.
+//
+
+public synchronized boolean waitForBytes(int pCount, int pTimeOut)
+{
+
+    if (buffer.remaining() >= pCount) {return(true);}
+
+    long deadline = System.currentTimeMillis() + pTimeOut;
+
+    long remaining = pTimeOut;
+
+    while (buffer.remaining() < pCount && remaining > 0
+                                                && !closed && !endOfStream){
+
+        try {wait(remaining);} catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            break;
+        }
+
+        remaining = deadline - System.currentTimeMillis();
+
+    }
+
+    return(buffer.remaining() >= pCount);
+
+}//end of IngestInputStream::waitForBytes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::available
+//
+// Returns the number of bytes waiting in the buffer.
+//
+
+@Override
+public synchronized int available() throws IOException
+{
+
+    if (closed) {throw new IOException("Stream closed");}
+
+    return(buffer.remaining());
+
+}//end of IngestInputStream::available
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::read
+//
+// Reads a single byte. See read(byte[], int, int) for details.
+//
+
+@Override
+public int read() throws IOException
+{
+
+    int value;
+
+    synchronized(this){
+
+        if (!waitForData()) {return(-1);}
+
+        boolean wasFull = isFull();
+
+        value = buffer.get() & 0xff;
+
+        consumed(wasFull);
+
+    }
+
+    resumeEngineIfPaused();
+
+    return(value);
+
+}//end of IngestInputStream::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::read
+//
+// Transfers up to pLength bytes into pBuffer starting at pOffset. If no bytes
+// are waiting, blocks until at least one arrives or the read time out passes
+// in which case SocketTimeoutException is thrown as a Socket would.
+//
+// Returns the number of bytes transferred or -1 if the remote has closed the
+// connection and no bytes remain.
+//
+
+@Override
+public int read(byte[] pBuffer, int pOffset, int pLength) throws IOException
+{
+
+    if (pLength == 0) {return(0);}
+
+    int count;
+
+    synchronized(this){
+
+        if (!waitForData()) {return(-1);}
+
+        boolean wasFull = isFull();
+
+        count = Math.min(pLength, buffer.remaining());
+        buffer.get(pBuffer, pOffset, count);
+
+        consumed(wasFull);
+
+    }
+
+    resumeEngineIfPaused();
+
+    return(count);
+
+}//end of IngestInputStream::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::waitForData
+//
+// Waits until at least one byte is available. Must be called while holding
+// the lock on this object.
+//
+// Returns true if a byte is available or false if the remote has closed the
+// connection and no bytes remain. Throws SocketTimeoutException if the read
+// time out passes first.
+//
+
+private boolean waitForData() throws IOException
+{
+
+    if (closed) {throw new IOException("Stream closed");}
+
+    if (buffer.hasRemaining()) {return(true);}
+
+    if (endOfStream) {return(false);}
+
+    if (!waitForBytes(1, readTimeOut == 0 ? Integer.MAX_VALUE : readTimeOut)){
+        if (endOfStream) {return(false);}
+        if (closed) {throw new IOException("Stream closed");}
+        throw new SocketTimeoutException("Read timed out");
+    }
+
+    return(true);
+
+}//end of IngestInputStream::waitForData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::skip
+//
+// Discards up to pCount waiting bytes without blocking.
+//
+// Returns the number of bytes discarded.
+//
+
+@Override
+public long skip(long pCount) throws IOException
+{
+
+    int count;
+
+    synchronized(this){
+
+        if (closed) {throw new IOException("Stream closed");}
+
+        boolean wasFull = isFull();
+
+        count = (int)Math.max(0, Math.min(pCount, buffer.remaining()));
+        buffer.position(buffer.position() + count);
+
+        consumed(wasFull);
+
+    }
+
+    resumeEngineIfPaused();
+
+    return(count);
+
+}//end of IngestInputStream::skip
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::resumeEngineIfPaused
+//
+// If the engine stopped reading from the socket because the buffer was full,
+// asks it to resume now that room has been made.
+//
+
+private void resumeEngineIfPaused()
+{
+
+    if (readPaused && engine != null) {engine.resumeReading(this);}
+
+}//end of IngestInputStream::resumeEngineIfPaused
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IngestInputStream::close
+//
+// Closes the stream and wakes any waiting threads. The socket itself is
+// closed by the owning board.
+//
+
+@Override
+public synchronized void close()
+{
+
+    closed = true;
+
+    notifyAll();
+
+}//end of IngestInputStream::close
+//-----------------------------------------------------------------------------
+
+}//end of class IngestInputStream
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
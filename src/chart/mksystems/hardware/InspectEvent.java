@@ -0,0 +1,39 @@
+/******************************************************************************
+* Title: InspectEvent.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the values decoded from one Inspect packet received from a
+* Control board -- the encoder counts and the state of the input ports.
+*
+* The values are decoded by the thread reading from the board and stored
+* here, then applied by the thread collecting the data. The objects are
+* created once and reused so that no allocation occurs for each packet.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class InspectEvent
+//
+
+public class InspectEvent extends Object{
+
+    int packetCount;
+    int encoder1, encoder2;
+    byte processControlFlags;
+    byte controlPortE;
+
+}//end of class InspectEvent
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -18,6 +18,8 @@
 
 package chart.mksystems.hardware;
 
+import java.util.Arrays;
+
 //-----------------------------------------------------------------------------
 // class MapSourceBoard
 //
@@ -44,6 +46,28 @@ public class MapSourceBoard extends Object{
 
     int sampleIndex = 0;
 
+    //used when the map file is saved incrementally during the inspection --
+    //the positions of the revolution control codes found so far, the number
+    //of revolutions checked for missing TDC codes, and the position up to
+    //which the buffer has been searched
+
+    int streamCodes[] = new int[256];
+    int streamCodeCount = 0;
+    int streamRevsChecked = 0;
+    int streamScanIndex = 0;
+    int streamRunNumber = -1;
+
+    //the stream positions are counted from the start of the run -- once
+    //saved, the data before streamDiscarded is removed from the front of
+    //dataBuffer and the codes before streamCodeBase are removed from the
+    //front of streamCodes; the position of the first code and the number of
+    //the first code with the stop flag set are kept as they are still needed
+
+    int streamDiscarded = 0;
+    int streamCodeBase = 0;
+    int streamFirstCode = -1;
+    int streamStopCode = -1;
+
 //-----------------------------------------------------------------------------
 // MapSourceBoard::MapSourceBoard (constructor)
 //
@@ -88,6 +112,108 @@ public void setUpForSavingData()
 }//end of MapSourceBoard::MapsetUpForSavingData
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// MapSourceBoard::resetStream
+//
+// Prepares for saving a new run incrementally.
+//
+
+void resetStream()
+{
+
+    streamCodeCount = 0;
+    streamRevsChecked = 0;
+    streamScanIndex = 0;
+    streamRunNumber = utBoard.getMapRunNumber();
+
+    streamDiscarded = 0;
+    streamCodeBase = 0;
+    streamFirstCode = -1;
+    streamStopCode = -1;
+
+}//end of MapSourceBoard::resetStream
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MapSourceBoard::insertStreamCode
+//
+// Inserts control code position pPosition as code number pIndex in the list
+// of control codes found while saving incrementally.
+//
+
+void insertStreamCode(int pIndex, int pPosition)
+{
+
+    int stored = streamCodeCount - streamCodeBase;
+
+    if (stored == streamCodes.length){
+        streamCodes = Arrays.copyOf(streamCodes, stored * 2);
+    }
+
+    int index = pIndex - streamCodeBase;
+
+    System.arraycopy(streamCodes, index, streamCodes, index + 1,
+                                                            stored - index);
+
+    streamCodes[index] = pPosition;
+    streamCodeCount++;
+
+    if (pIndex == 0) {streamFirstCode = pPosition;}
+
+}//end of MapSourceBoard::insertStreamCode
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MapSourceBoard::getStreamCode
+//
+// Returns the position in the run of control code number pIndex. The code
+// must not have been removed by dropStreamCodes.
+//
+
+int getStreamCode(int pIndex)
+{
+
+    return(streamCodes[pIndex - streamCodeBase]);
+
+}//end of MapSourceBoard::getStreamCode
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MapSourceBoard::dropStreamCodes
+//
+// Removes the control codes numbered below pIndex from the list.
+//
+
+void dropStreamCodes(int pIndex)
+{
+
+    int count = pIndex - streamCodeBase;
+
+    if (count <= 0) {return;}
+
+    System.arraycopy(streamCodes, count, streamCodes, 0,
+                                    streamCodeCount - streamCodeBase - count);
+
+    streamCodeBase = pIndex;
+
+}//end of MapSourceBoard::dropStreamCodes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MapSourceBoard::toBufferIndex
+//
+// Returns the index in dataBuffer of the value at position pPosition in the
+// run.
+//
+
+int toBufferIndex(int pPosition)
+{
+
+    return(pPosition - streamDiscarded);
+
+}//end of MapSourceBoard::toBufferIndex
+//-----------------------------------------------------------------------------
+
 }//end of class MapSourceBoard
 //-----------------------------------------------------------------------------
 //-----------------------------------------------------------------------------
@@ -0,0 +1,303 @@
+/******************************************************************************
+* Title: PacketIngestEngine.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class uses a single thread and a Selector to read the incoming data
+* from the sockets of all remote boards. The bytes for each board are stored
+* in that board's IngestInputStream where they are parsed by the board's
+* packet handlers as before.
+*
+* Previously, each board polled its socket with available() and slept 10 ms
+* between checks. With the engine, bytes are pulled from the network as soon
+* as they arrive and threads waiting for a packet are woken immediately.
+*
+* Sources which cannot be selected, such as the pipes used by the Simulator
+* classes, are serviced by a small adapter thread for each which feeds the
+* same type of IngestInputStream.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class PacketIngestEngine
+//
+
+public class PacketIngestEngine extends Object implements Runnable{
+
+    Selector selector;
+
+    Thread thread;
+
+    volatile boolean shutDown = false;
+
+    //channels to be registered and streams to be resumed are queued here and
+    //handled by the engine thread as only it may safely change the keys
+
+    ConcurrentLinkedQueue<Runnable> pendingTasks =
+                                            new ConcurrentLinkedQueue<>();
+
+//-----------------------------------------------------------------------------
+// PacketIngestEngine::PacketIngestEngine (constructor)
+//
+
+public PacketIngestEngine()
+{
+
+}//end of PacketIngestEngine::PacketIngestEngine (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketIngestEngine::init
+//
+// Opens the selector and starts the engine thread.
+//
+
+public void init() throws IOException
+{
+
+    selector = Selector.open();
+
+    thread = new Thread(this, "Packet Ingest Engine");
+    thread.setDaemon(true);
+    thread.start();
+
+}//end of PacketIngestEngine::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketIngestEngine::registerChannel
+//
+// Adds pChannel to the set of sockets serviced by the engine. Bytes read from
+// the channel will be stored in pStream.
+//
+// The channel is switched to non-blocking mode -- the board must write to it
+// through a ChannelOutputStream rather than the socket's own stream.
+//
+
+public void registerChannel(SocketChannel pChannel, IngestInputStream pStream)
+                                                            throws IOException
+{
+
+    pChannel.configureBlocking(false);
+
+    pStream.engine = this;
+
+    pendingTasks.add(() -> {
+        try{
+            pChannel.register(selector, SelectionKey.OP_READ, pStream);
+        }
+        catch(IOException e){
+            logSevere(e.getMessage() + " - Error: 92");
+            pStream.setEndOfStream();
+        }
+    });
+
+    selector.wakeup();
+
+}//end of PacketIngestEngine::registerChannel
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketIngestEngine::registerStream
+//
+// Starts an adapter thread which copies all bytes read from pSource into
+// pStream. This is used for sources such as the Simulator pipes which cannot
+// be registered with a Selector.
+//
+
+public void registerStream(InputStream pSource, IngestInputStream pStream,
+                                                                String pName)
+{
+
+    Thread adapter = new Thread(() -> {
+
+        byte[] buf = new byte[pStream.buffer.capacity()];
+
+        while (!shutDown && !pStream.closed){
+
+            try{
+                int count = pSource.read(buf, 0, buf.length);
+                if (count < 0) {pStream.setEndOfStream(); break;}
+                pStream.fill(buf, 0, count);
+            }
+            catch(IOException e){
+                //the source has been closed or the pipe is broken -- nothing
+                //more can be read so release any thread waiting for bytes
+                if (!shutDown && !pStream.closed){
+                    logSevere(e.getMessage() + " - Error: 149");
+                }
+                pStream.setEndOfStream();
+                break;
+            }
+            catch(InterruptedException e){
+                break;
+            }
+        }
+
+    }, pName + " Ingest");
+
+    adapter.setDaemon(true);
+    adapter.start();
+
+}//end of PacketIngestEngine::registerStream
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketIngestEngine::resumeReading
+//
+// Called by an IngestInputStream after room has been made in a buffer which
+// had filled and caused the engine to stop reading from its channel.
+//
+
+void resumeReading(IngestInputStream pStream)
+{
+
+    pendingTasks.add(() -> {
+        for (SelectionKey key : selector.keys()){
+            if (key.attachment() == pStream && key.isValid()){
+                pStream.readPaused = false;
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    });
+
+    selector.wakeup();
+
+}//end of PacketIngestEngine::resumeReading
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketIngestEngine::run
+//
+// Waits for any registered channel to have bytes ready and transfers them to
+// the matching IngestInputStream.
+//
+
+@Override
+public void run()
+{
+
+    while (!shutDown){
+
+        try{
+
+            selector.select();
+
+            Runnable task;
+            while ((task = pendingTasks.poll()) != null) {task.run();}
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+            while (keys.hasNext()){
+
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                if (key.isValid() && key.isReadable()) {readChannel(key);}
+
+            }
+
+        }
+        catch(IOException | CancelledKeyException e){
+            logSevere(e.getMessage() + " - Error: 186");
+        }
+
+    }
+
+    try{selector.close();}catch(IOException e){}
+
+}//end of PacketIngestEngine::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketIngestEngine::readChannel
+//
+// Reads the waiting bytes from the channel of pKey into its stream. If the
+// stream's buffer is full, reading is suspended for that channel until the
+// board has processed some of the data. A read which simply finds no bytes
+// waiting leaves the channel selected.
+//
+
+private void readChannel(SelectionKey pKey)
+{
+
+    IngestInputStream stream = (IngestInputStream)pKey.attachment();
+
+    try{
+
+        int count = stream.fill((SocketChannel)pKey.channel());
+
+        if (count < 0){
+            pKey.cancel();
+            stream.setEndOfStream();
+        }
+        else
+        if (count == 0 && stream.readPaused){
+            pKey.interestOps(0);
+        }
+
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 223");
+        pKey.cancel();
+        stream.setEndOfStream();
+    }
+
+}//end of PacketIngestEngine::readChannel
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketIngestEngine::shutDown
+//
+// Stops the engine thread and the adapter threads. The channels are closed
+// by their owning boards.
+//
+
+public void shutDown()
+{
+
+    shutDown = true;
+
+    if (selector != null) {selector.wakeup();}
+
+}//end of PacketIngestEngine::shutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketIngestEngine::logSevere
+//
+// Logs pMessage with level SEVERE using the Java logger.
+//
+
+void logSevere(String pMessage)
+{
+
+    java.util.logging.Logger.getLogger(getClass().getName()).log(
+                                    java.util.logging.Level.SEVERE, pMessage);
+
+}//end of PacketIngestEngine::logSevere
+//-----------------------------------------------------------------------------
+
+}//end of class PacketIngestEngine
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
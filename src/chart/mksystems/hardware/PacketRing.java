@@ -0,0 +1,395 @@
+/******************************************************************************
+* Title: PacketRing.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class is a circular buffer which sits between a board's socket stream
+* and its packet handlers.
+*
+* Rather than reading from the socket a few bytes at a time, the ring pulls
+* everything waiting in the socket with one or two bulk reads. Packet headers
+* are located by scanning the ring eight bytes at a time and the packet
+* handlers decode their data directly from the ring through a PacketView
+* without copying it to another buffer.
+*
+* The class is also an InputStream so that handlers which have not been
+* converted to use a PacketView can continue to read from it as they did
+* from the socket.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class PacketRing
+//
+
+public class PacketRing extends InputStream{
+
+    //the four header bytes which begin every packet, 0xaa 0x55 0xbb 0x66
+    static final int HEADER = 0xaa55bb66;
+    static final int HEADER_SIZE = 4;
+
+    //used to scan eight bytes at a time for the first header byte
+    static final long FIRST_HEADER_BYTES = 0xaaaaaaaaaaaaaaaaL;
+    static final long LOW_BITS = 0x0101010101010101L;
+    static final long HIGH_BITS = 0x8080808080808080L;
+
+    InputStream source;
+    IngestInputStream ingestStream;
+
+    ByteBuffer buffer;
+    byte[] ring;
+    int capacity, mask;
+
+    int head = 0;   //index of the next byte to be read
+    int count = 0;  //number of bytes waiting in the ring
+
+    PacketView view;
+
+//-----------------------------------------------------------------------------
+// PacketRing::PacketRing (constructor)
+//
+// The ring will be filled from pSource. If pSource is fed by a
+// PacketIngestEngine, pIngestStream should be the engine's stream so that
+// waits can be woken as soon as data arrives; otherwise it should be null.
+//
+// pCapacity must be a power of two and larger than the largest packet.
+//
+
+public PacketRing(InputStream pSource, IngestInputStream pIngestStream,
+                                                                int pCapacity)
+{
+
+    source = pSource; ingestStream = pIngestStream;
+
+    capacity = pCapacity; mask = pCapacity - 1;
+
+    buffer = ByteBuffer.allocate(capacity);
+    ring = buffer.array();
+
+    view = new PacketView(ring, mask);
+
+}//end of PacketRing::PacketRing (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::fill
+//
+// Transfers all bytes waiting in the source to the ring without blocking, up
+// to the free space in the ring.
+//
+// Returns the number of bytes transferred.
+//
+
+public int fill() throws IOException
+{
+
+    int free = capacity - count;
+
+    if (free == 0) {return(0);}
+
+    int avail = source.available();
+
+    if (avail <= 0) {return(0);}
+
+    int n = Math.min(avail, free), total = 0;
+
+    //at most two reads are required, one to the end of the array and one
+    //from the start of the array after wrapping around
+
+    while (total < n){
+
+        int tail = (head + count) & mask;
+
+        int chunk = Math.min(n - total, capacity - tail);
+
+        int c = source.read(ring, tail, chunk);
+
+        if (c <= 0) {break;}
+
+        count += c; total += c;
+
+    }
+
+    return(total);
+
+}//end of PacketRing::fill
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::waitForBytes
+//
+// Waits until pCount bytes are in the ring or pTimeOut milliseconds have
+// passed.
+//
+// Returns true if the bytes are available, false otherwise.
+//
+
+public boolean waitForBytes(int pCount, int pTimeOut) throws IOException
+{
+
+    if (count >= pCount) {return(true);}
+
+    fill();
+
+    if (count >= pCount) {return(true);}
+
+    if (ingestStream != null){
+        ingestStream.waitForBytes(pCount - count, pTimeOut);
+        fill();
+        return(count >= pCount);
+    }
+
+    long deadline = System.currentTimeMillis() + pTimeOut;
+
+    while (count < pCount && System.currentTimeMillis() < deadline){
+        try {Thread.sleep(10);} catch (InterruptedException e) {}
+        fill();
+    }
+
+    return(count >= pCount);
+
+}//end of PacketRing::waitForBytes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::startsWithHeader
+//
+// Returns true if the next bytes in the ring are a packet header.
+//
+
+public boolean startsWithHeader()
+{
+
+    if (count < HEADER_SIZE) {return(false);}
+
+    return(view.setBase(head).getInt(0) == HEADER);
+
+}//end of PacketRing::startsWithHeader
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::skipToHeader
+//
+// Discards bytes until the next packet header is at the start of the ring.
+// If no header is found, all bytes are discarded except for the last few
+// which may be the start of a header which has not been fully received.
+//
+// To speed the search, eight bytes at a time are checked for the first
+// header byte. Only the positions where it is found are checked for the
+// remaining header bytes.
+//
+// Returns the number of bytes discarded.
+//
+
+public int skipToHeader()
+{
+
+    int pos = 0, last = count - HEADER_SIZE;
+
+    while (pos <= last){
+
+        int index = (head + pos) & mask;
+
+        //check eight bytes at a time while they do not wrap past the end of
+        //the array -- a zero byte in x marks a possible first header byte
+
+        if (index + 8 <= capacity && pos + 8 <= count){
+
+            long x = buffer.getLong(index) ^ FIRST_HEADER_BYTES;
+
+            if (((x - LOW_BITS) & ~x & HIGH_BITS) == 0){
+                pos += 8;
+                continue;
+            }
+
+        }
+
+        //check each of the next eight positions individually
+
+        int end = Math.min(pos + 8, last + 1);
+
+        for (; pos < end; pos++){
+            if (view.setBase(head + pos).getInt(0) == HEADER){
+                skip(pos);
+                return(pos);
+            }
+        }
+
+    }
+
+    //no header found -- keep the bytes which could begin a partial header
+
+    int discard = Math.max(count - (HEADER_SIZE - 1), 0);
+
+    skip(discard);
+
+    return(discard);
+
+}//end of PacketRing::skipToHeader
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::view
+//
+// Returns a read-only view of the bytes waiting in the ring, starting with
+// the next unread byte. The bytes are not removed -- call skip after the
+// data has been decoded.
+//
+// The same PacketView object is returned on every call, so it is only valid
+// until the next call.
+//
+
+public PacketView view()
+{
+
+    return(view.setBase(head));
+
+}//end of PacketRing::view
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::skip
+//
+// Removes up to pCount bytes from the ring without copying them.
+//
+// Returns the number of bytes removed.
+//
+
+@Override
+public long skip(long pCount)
+{
+
+    int n = (int)Math.min(pCount, count);
+
+    head = (head + n) & mask; count -= n;
+
+    return(n);
+
+}//end of PacketRing::skip
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::available
+//
+// Transfers any bytes waiting in the source into the ring and returns the
+// number of bytes in the ring.
+//
+
+@Override
+public int available() throws IOException
+{
+
+    fill();
+
+    return(count);
+
+}//end of PacketRing::available
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::read
+//
+// Reads a single byte. See read(byte[], int, int) for details.
+//
+
+@Override
+public int read() throws IOException
+{
+
+    if (count == 0 && blockingFill() < 0) {return(-1);}
+
+    int b = ring[head] & 0xff;
+
+    skip(1);
+
+    return(b);
+
+}//end of PacketRing::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::read
+//
+// Copies up to pLength bytes from the ring into pBuffer. If the ring is
+// empty, blocks on the source in the same manner as reading directly from
+// the socket.
+//
+// Returns the number of bytes copied or -1 if the source has closed.
+//
+
+@Override
+public int read(byte[] pBuffer, int pOffset, int pLength) throws IOException
+{
+
+    if (pLength == 0) {return(0);}
+
+    if (count == 0 && blockingFill() < 0) {return(-1);}
+
+    int n = Math.min(pLength, count);
+
+    int first = Math.min(n, capacity - head);
+
+    System.arraycopy(ring, head, pBuffer, pOffset, first);
+    System.arraycopy(ring, 0, pBuffer, pOffset + first, n - first);
+
+    skip(n);
+
+    return(n);
+
+}//end of PacketRing::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::blockingFill
+//
+// Reads into the empty ring from the source, blocking until at least one byte
+// is received or the source times out.
+//
+// Returns the number of bytes read or -1 if the source has closed.
+//
+
+private int blockingFill() throws IOException
+{
+
+    head = 0;
+
+    int c = source.read(ring, 0, capacity);
+
+    if (c > 0) {count = c;}
+
+    return(c);
+
+}//end of PacketRing::blockingFill
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketRing::close
+//
+
+@Override
+public void close() throws IOException
+{
+
+    source.close();
+
+}//end of PacketRing::close
+//-----------------------------------------------------------------------------
+
+}//end of class PacketRing
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
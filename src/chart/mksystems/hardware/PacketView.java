@@ -0,0 +1,127 @@
+/******************************************************************************
+* Title: PacketView.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class lets the packet handlers decode a packet directly from the
+* PacketRing which holds it without first copying it to another buffer.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class PacketView
+//
+// Provides read-only access to the bytes of a packet where they lie in a
+// PacketRing. Offsets are relative to the start of the view and wrap around
+// the end of the ring. Multi-byte values are MSB first as sent by the remotes.
+//
+
+public class PacketView{
+
+    byte[] ring;
+    int mask;
+    int base;
+
+//-----------------------------------------------------------------------------
+// PacketView::PacketView (constructor)
+//
+
+PacketView(byte[] pRing, int pMask)
+{
+
+    ring = pRing; mask = pMask;
+
+}//end of PacketView::PacketView (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketView::setBase
+//
+// Positions the view at pBase in the ring and returns the view.
+//
+
+PacketView setBase(int pBase)
+{
+
+    base = pBase & mask;
+
+    return(this);
+
+}//end of PacketView::setBase
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketView::get
+//
+// Returns the byte at pOffset.
+//
+
+public byte get(int pOffset)
+{
+
+    return(ring[(base + pOffset) & mask]);
+
+}//end of PacketView::get
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketView::getShort
+//
+// Returns the signed two byte value at pOffset.
+//
+
+public int getShort(int pOffset)
+{
+
+    return((short)((ring[(base + pOffset) & mask] << 8)
+                            | (ring[(base + pOffset + 1) & mask] & 0xff)));
+
+}//end of PacketView::getShort
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketView::getUnsignedShort
+//
+// Returns the unsigned two byte value at pOffset.
+//
+
+public int getUnsignedShort(int pOffset)
+{
+
+    return(((ring[(base + pOffset) & mask] & 0xff) << 8)
+                            | (ring[(base + pOffset + 1) & mask] & 0xff));
+
+}//end of PacketView::getUnsignedShort
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PacketView::getInt
+//
+// Returns the four byte value at pOffset.
+//
+
+public int getInt(int pOffset)
+{
+
+    return((ring[(base + pOffset) & mask] << 24)
+                    | ((ring[(base + pOffset + 1) & mask] & 0xff) << 16)
+                    | ((ring[(base + pOffset + 2) & mask] & 0xff) << 8)
+                    | (ring[(base + pOffset + 3) & mask] & 0xff));
+
+}//end of PacketView::getInt
+//-----------------------------------------------------------------------------
+
+}//end of class PacketView
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
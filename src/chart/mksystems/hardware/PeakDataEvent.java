@@ -0,0 +1,75 @@
+/******************************************************************************
+* Title: PeakDataEvent.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the raw values decoded from one Peak Data packet received
+* from a UT board.
+*
+* The values are decoded by the thread reading from the board and stored
+* here, then applied to the gates by the thread collecting the data. The
+* objects are created once and reused so that no allocation occurs for each
+* packet.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class PeakDataEvent
+//
+
+public class PeakDataEvent extends Object{
+
+    static final int MAX_CHANNELS = 4;
+    static final int MAX_GATES = 10;
+
+    int encoder1, encoder2;
+
+    //number of channel sections successfully decoded from the packet
+    int numberOfChannels;
+
+    //value returned by the decoder -- greater than zero if successful
+    int result;
+
+    int[] channel = new int[MAX_CHANNELS];
+    int[] numberOfGates = new int[MAX_CHANNELS];
+
+    int[][] peakFlags = new int[MAX_CHANNELS][MAX_GATES];
+    int[][] peak = new int[MAX_CHANNELS][MAX_GATES];
+    int[][] peakFlightTime = new int[MAX_CHANNELS][MAX_GATES];
+    int[][] peakTrack = new int[MAX_CHANNELS][MAX_GATES];
+
+    //only valid if the channel is a wall channel
+    boolean[] hasWallData = new boolean[MAX_CHANNELS];
+    int[] wallMaxPeak = new int[MAX_CHANNELS];
+    int[] wallMaxTrack = new int[MAX_CHANNELS];
+    int[] wallMinPeak = new int[MAX_CHANNELS];
+    int[] wallMinTrack = new int[MAX_CHANNELS];
+
+//-----------------------------------------------------------------------------
+// PeakDataEvent::clear
+//
+// Prepares the event for reuse.
+//
+
+public void clear()
+{
+
+    numberOfChannels = 0; result = 0;
+
+}//end of PeakDataEvent::clear
+//-----------------------------------------------------------------------------
+
+}//end of class PeakDataEvent
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
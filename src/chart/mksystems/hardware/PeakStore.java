@@ -0,0 +1,297 @@
+/******************************************************************************
+* Title: PeakStore.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the most recent peak data for every gate of every channel
+* in flat primitive arrays, one entry per gate.
+*
+* Each gate is assigned a global id when the store is built; the id is simply
+* the gate's position when all the gates of all the channels are counted in
+* order. The UTBoards write decoded peak data into the arrays by id and
+* Hardware.collectAnalogData reads it back by stepping through the ids, so
+* neither side needs to visit the Channel and UTGate objects for each value.
+*
+* The gate and channel settings used while collecting data are mirrored here
+* as well. The UTGate and Channel objects update their entries whenever those
+* settings are changed.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import chart.mksystems.stripchart.Threshold;
+import chart.mksystems.stripchart.Trace;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class PeakStore
+//
+
+public class PeakStore extends Object{
+
+    int numberOfGates;
+
+    //the gate and owning channel for each gate id -- used only for the rare
+    //paths such as threshold marking which need the objects themselves
+
+    UTGate[] gates;
+    int[] channelOf;
+
+    //per channel state, indexed by the channel's position in the array
+
+    boolean[] channelEnabled;
+    boolean[] channelActive;    //channel is on and not masked
+
+    //peak data written by the packet decoders
+
+    int[] dataPeak;
+    double[] dataPeakD;
+    int[] peakFlags;
+    int[] peakFlightTime;
+    int[] peakTrack;
+    int[] clockPos;
+    int[] encoder1, encoder2;
+    boolean[] newDataReady;
+
+    //values computed when the data is collected
+
+    double[] wallThickness;
+
+    //gate settings mirrored from the UTGate objects
+
+    int[] channelIndex;
+    int[] peakValue, antiPeakValue;
+    boolean[] wallGate;
+    double[] wallTuningNS;
+    Trace[] traces;
+    Threshold[][] thresholds;
+
+//-----------------------------------------------------------------------------
+// PeakStore::PeakStore (constructor)
+//
+// Assigns a gate id to every gate of every channel in pChannels and creates
+// the arrays to hold their data. Each channel and gate is attached to the
+// store so it can keep its mirrored settings up to date.
+//
+// pChannels may be null, in which case the store will have no gates.
+//
+
+public PeakStore(Channel[] pChannels)
+{
+
+    int nChannels = pChannels == null ? 0 : pChannels.length;
+
+    numberOfGates = 0;
+
+    for (int ch = 0; ch < nChannels; ch++){
+        numberOfGates += pChannels[ch].getNumberOfGates();
+    }
+
+    gates = new UTGate[numberOfGates];
+    channelOf = new int[numberOfGates];
+
+    channelEnabled = new boolean[nChannels];
+    channelActive = new boolean[nChannels];
+
+    dataPeak = new int[numberOfGates];
+    dataPeakD = new double[numberOfGates];
+    peakFlags = new int[numberOfGates];
+    peakFlightTime = new int[numberOfGates];
+    peakTrack = new int[numberOfGates];
+    clockPos = new int[numberOfGates];
+    encoder1 = new int[numberOfGates];
+    encoder2 = new int[numberOfGates];
+    newDataReady = new boolean[numberOfGates];
+
+    wallThickness = new double[numberOfGates];
+
+    channelIndex = new int[numberOfGates];
+    peakValue = new int[numberOfGates];
+    antiPeakValue = new int[numberOfGates];
+    wallGate = new boolean[numberOfGates];
+    wallTuningNS = new double[numberOfGates];
+    traces = new Trace[numberOfGates];
+    thresholds = new Threshold[numberOfGates][];
+
+    int id = 0;
+
+    for (int ch = 0; ch < nChannels; ch++){
+
+        pChannels[ch].attachPeakStore(this, ch);
+
+        int nGates = pChannels[ch].getNumberOfGates();
+
+        for (int g = 0; g < nGates; g++){
+            gates[id] = pChannels[ch].getGate(g);
+            channelOf[id] = ch;
+            gates[id].attachPeakStore(this, id);
+            id++;
+        }
+
+    }
+
+}//end of PeakStore::PeakStore (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakStore::storeNewData
+//
+// Stores the new peak data for gate pId and sets its newDataReady flag true.
+//
+// pDataPeak is the peak data (either a min or a max).
+//
+// The encoder1 parameter is the entry encoder or the carriage encoder
+// depending on unit type.
+//
+// The encoder2 parameter is the exit encoder or the rotational encoder
+// depending on unit type.
+//
+
+public void storeNewData(int pId, int pDataPeak, int pPeakFlags,
+        int pPeakFlightTime, int pPeakTrack, int pClockPos, int pEncoder1,
+                                                                int pEncoder2)
+{
+
+    dataPeak[pId] = pDataPeak;
+    dataPeakD[pId] = 0;
+
+    peakFlags[pId] = pPeakFlags;
+    peakFlightTime[pId] = pPeakFlightTime;
+    peakTrack[pId] = pPeakTrack;
+    clockPos[pId] = pClockPos;
+
+    encoder1[pId] = pEncoder1; encoder2[pId] = pEncoder2;
+
+    newDataReady[pId] = true;
+
+}//end of PeakStore::storeNewData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakStore::storeNewDataD
+//
+// Stores the new peak data for gate pId and sets its newDataReady flag true.
+//
+// pDataPeakD is the peak data for signals which are a double, such as the
+// wall thickness.
+//
+
+public void storeNewDataD(int pId, double pDataPeakD, int pPeakTrack,
+                                                                int pClockPos)
+{
+
+    dataPeakD[pId] = pDataPeakD;
+
+    peakTrack[pId] = pPeakTrack;
+    clockPos[pId] = pClockPos;
+
+    newDataReady[pId] = true;
+
+}//end of PeakStore::storeNewDataD
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakStore::prepareData
+//
+// Prepares the data of gate pId for collection. For wall gates, the wall
+// thickness is computed and converted to a chart height position which is
+// stored in dataPeak.
+//
+// Note: Any calculation in this function should only use a single peak data
+//  variable to avoid glitches when another thread is writing to the variable.
+//
+
+public void prepareData(int pId, HardwareVars hdwVs)
+{
+
+    newDataReady[pId] = false; // clear the flag until new data is available
+
+    if (wallGate[pId]){
+
+        //convert nanosecond time span to distance
+        //dataPeakD is the only variable possibly changed by peak data updates
+        double wall = dataPeakD[pId] * hdwVs.nSPerDataPoint *
+                            (hdwVs.velocityNS + wallTuningNS[pId])
+                                            / (hdwVs.numberOfMultiples * 2);
+
+        wallThickness[pId] = wall;
+
+        //convert distance to a chart height position
+        dataPeak[pId] = (int)((wall - hdwVs.nominalWall)
+                      / hdwVs.wallChartScale) + hdwVs.nominalWallChartPosition;
+
+    }
+
+}//end of PeakStore::prepareData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakStore::prepareInactiveData
+//
+// Sets the data of gate pId to the opposite of the peak value so that it will
+// be overridden by data from any other active channel -- this is because the
+// peak data is kept from all channels tied to any one trace.
+//
+// This method should be used when the owning channel is inactive.
+//
+
+public void prepareInactiveData(int pId)
+{
+
+    newDataReady[pId] = false; // clear the flag until new data is available
+
+    dataPeak[pId] = antiPeakValue[pId];
+    dataPeakD[pId] = antiPeakValue[pId];
+
+}//end of PeakStore::prepareInactiveData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakStore::setChannelState
+//
+// Updates the enabled and active state for channel pChannel.
+//
+
+void setChannelState(int pChannel, boolean pEnabled, boolean pActive)
+{
+
+    channelEnabled[pChannel] = pEnabled;
+    channelActive[pChannel] = pActive;
+
+}//end of PeakStore::setChannelState
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PeakStore::setGateSettings
+//
+// Updates the settings mirrored from gate pId.
+//
+
+void setGateSettings(int pId, int pChannelIndex, int pPeakValue,
+                int pAntiPeakValue, boolean pWallGate, double pWallTuningNS,
+                                    Trace pTrace, Threshold[] pThresholds)
+{
+
+    channelIndex[pId] = pChannelIndex;
+    peakValue[pId] = pPeakValue;
+    antiPeakValue[pId] = pAntiPeakValue;
+    wallGate[pId] = pWallGate;
+    wallTuningNS[pId] = pWallTuningNS;
+    traces[pId] = pTrace;
+    thresholds[pId] = pThresholds;
+
+}//end of PeakStore::setGateSettings
+//-----------------------------------------------------------------------------
+
+}//end of class PeakStore
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,388 @@
+/******************************************************************************
+* Title: ReplaySimulator.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class plays back a file recorded by StreamCapture in place of a
+* connection to a board. Like the other simulators, it is substituted for
+* the board's Socket and passes the bytes to the board through the piped
+* streams set up by Simulator.
+*
+* The bytes received from the board during the capture are sent to the host
+* in the same blocks. The host's commands are not interpreted; instead, each
+* block is held back until the host has sent as many bytes as it had when the
+* block was received during the capture so that a response is never seen
+* before the request which caused it. If the host does not send the expected
+* bytes within HOST_WAIT_TIMEOUT, the block is sent anyway and the count is
+* brought into step -- this allows replay to continue if the host sends
+* different commands than it did during the capture.
+*
+* If originalTiming is true, each block is also held back until the time at
+* which it was received during the capture, measured from the creation of the
+* simulator. Otherwise, the blocks are sent as fast as the host reads them.
+*
+* When the end of the file is reached, nothing more is sent to the host.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.concurrent.locks.LockSupport;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ReplaySimulator
+//
+// See notes at top of page.
+//
+
+public class ReplaySimulator extends Simulator{
+
+    //longest time in milliseconds a block is held back waiting for the host
+    static final int HOST_WAIT_TIMEOUT = 2000;
+
+    static final int FILE_BUFFER_SIZE = 65536;
+
+    String captureFilename;
+    boolean originalTiming;
+
+    DataInputStream capture;
+    byte[] block = new byte[FILE_BUFFER_SIZE];
+
+    long startNanos;
+
+    //bytes sent by the host during the capture before the next block
+    long hostBytesExpected = 0;
+    //bytes sent by the host during the replay, counted by the drain thread
+    volatile long hostBytesSent = 0;
+    //added to hostBytesSent when the count is brought into step
+    long hostBytesAdjustment = 0;
+
+    public int hostWaitTimeOuts = 0;
+    public volatile boolean endOfCapture = false;
+
+    volatile boolean running = false;
+    Thread feedThread, drainThread;
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::ReplaySimulator (constructor)
+//
+// Plays back capture file pCaptureFilename. If pOriginalTiming is true, the
+// data is sent at the times it was received during the capture, otherwise as
+// fast as the host reads it.
+//
+
+public ReplaySimulator(InetAddress pIPAddress, int pPort,
+        String pCaptureFilename, boolean pOriginalTiming)
+                                                        throws SocketException
+{
+
+    super(pIPAddress, pPort, "");
+
+    captureFilename = pCaptureFilename;
+    originalTiming = pOriginalTiming;
+
+    startNanos = System.nanoTime();
+
+}//end of ReplaySimulator::ReplaySimulator (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::init
+//
+// Opens the capture file and starts the threads which send the data to the
+// host and read the bytes sent by the host.
+//
+// Throws IOException if the file cannot be opened or is not a capture file.
+//
+
+public void init() throws IOException
+{
+
+    capture = openCapture(captureFilename);
+
+    running = true;
+
+    feedThread = new Thread(this::feed, "Replay Feed " + ipAddr);
+    feedThread.setDaemon(true);
+
+    drainThread = new Thread(this::drain, "Replay Drain " + ipAddr);
+    drainThread.setDaemon(true);
+
+    drainThread.start();
+    feedThread.start();
+
+}//end of ReplaySimulator::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::openCapture (static)
+//
+// Opens capture file pFilename, reads the header, and returns a stream
+// positioned at the first block.
+//
+// Throws IOException if the file cannot be opened or is not a capture file.
+//
+
+static DataInputStream openCapture(String pFilename) throws IOException
+{
+
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+                        new FileInputStream(pFilename), FILE_BUFFER_SIZE));
+
+    try{
+
+        if (!in.readUTF().equals(StreamCapture.MAGIC)
+                                || in.readInt() != StreamCapture.VERSION){
+            throw new IOException(pFilename + " is not a capture file.");
+        }
+
+        in.readUTF();   //board name
+        in.readLong();  //start time
+
+    }
+    catch(IOException e){
+        in.close();
+        throw e;
+    }
+
+    return(in);
+
+}//end of ReplaySimulator::openCapture
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::readReceivedBytes (static)
+//
+// Returns all of the bytes received from the board in capture file
+// pFilename, without the blocks sent by the host.
+//
+
+public static byte[] readReceivedBytes(String pFilename) throws IOException
+{
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (DataInputStream in = openCapture(pFilename)){
+
+        byte[] buffer = new byte[FILE_BUFFER_SIZE];
+
+        while (true){
+
+            byte type; int count;
+
+            try{
+                type = in.readByte();
+                in.readLong();
+                count = in.readInt();
+                if (count > buffer.length) {buffer = new byte[count];}
+                in.readFully(buffer, 0, count);
+            }
+            catch(EOFException e){
+                break;
+            }
+
+            if (type == StreamCapture.RECEIVED){
+                bytes.write(buffer, 0, count);
+            }
+
+        }
+
+    }
+
+    return(bytes.toByteArray());
+
+}//end of ReplaySimulator::readReceivedBytes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::feed
+//
+// Sends each block received during the capture to the host when allowed.
+// Run by feedThread.
+//
+
+private void feed()
+{
+
+    try{
+
+        while (running){
+
+            byte type; long time; int count;
+
+            try{
+                type = capture.readByte();
+                time = capture.readLong();
+                count = capture.readInt();
+                if (count > block.length) {block = new byte[count];}
+                capture.readFully(block, 0, count);
+            }
+            catch(EOFException e){
+                break;
+            }
+
+            if (type == StreamCapture.SENT){
+                hostBytesExpected += count;
+                continue;
+            }
+
+            waitForHost();
+
+            if (originalTiming) {waitUntil(startNanos + time);}
+
+            if (!running) {break;}
+
+            byteOut.write(block, 0, count);
+            byteOut.flush();
+
+        }
+
+    }
+    catch(IOException e){
+        if (running) {logSevere(e.getMessage() + " - Error: 260");}
+    }
+    finally{
+        endOfCapture = true;
+        try {capture.close();} catch(IOException e) { }
+    }
+
+}//end of ReplaySimulator::feed
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::waitForHost
+//
+// Waits until the host has sent hostBytesExpected bytes. If they are not
+// sent within HOST_WAIT_TIMEOUT, the count is brought into step so that the
+// following blocks are not held back by the missing bytes.
+//
+
+private void waitForHost()
+{
+
+    long deadline = System.currentTimeMillis() + HOST_WAIT_TIMEOUT;
+
+    while (running
+            && hostBytesSent + hostBytesAdjustment < hostBytesExpected){
+
+        if (System.currentTimeMillis() > deadline){
+            hostBytesAdjustment = hostBytesExpected - hostBytesSent;
+            hostWaitTimeOuts++;
+            return;
+        }
+
+        waitSleep(1);
+
+    }
+
+}//end of ReplaySimulator::waitForHost
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::waitUntil
+//
+// Waits until System.nanoTime reaches pNanos.
+//
+
+private void waitUntil(long pNanos)
+{
+
+    long remaining;
+
+    while (running && (remaining = pNanos - System.nanoTime()) > 0){
+        LockSupport.parkNanos(Math.min(remaining, 1000000));
+    }
+
+}//end of ReplaySimulator::waitUntil
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::drain
+//
+// Reads and counts the bytes sent by the host so that the host is never
+// blocked by a full pipe. Run by drainThread.
+//
+// The pipe is polled rather than read with a blocking read because a read
+// from an empty pipe fails if the last thread to write to it has ended.
+//
+
+private void drain()
+{
+
+    try{
+
+        while (running){
+
+            int available = byteIn.available();
+
+            if (available <= 0) {waitSleep(1); continue;}
+
+            int count = byteIn.read(
+                            inBuffer, 0, Math.min(available, inBuffer.length));
+
+            if (count > 0) {hostBytesSent += count;}
+
+        }
+
+    }
+    catch(IOException e){
+        if (running) {logSevere(e.getMessage() + " - Error: 347");}
+    }
+
+}//end of ReplaySimulator::drain
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::waitSleep
+//
+// Sleeps for pTime milliseconds.
+//
+
+private void waitSleep(int pTime)
+{
+
+    try {Thread.sleep(pTime);} catch (InterruptedException e) { }
+
+}//end of ReplaySimulator::waitSleep
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ReplaySimulator::close
+//
+// Stops the replay threads.
+//
+
+@Override
+public synchronized void close() throws IOException
+{
+
+    running = false;
+
+    if (feedThread != null) {feedThread.interrupt();}
+    if (drainThread != null) {drainThread.interrupt();}
+
+    super.close();
+
+}//end of ReplaySimulator::close
+//-----------------------------------------------------------------------------
+
+}//end of class ReplaySimulator
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,153 @@
+/******************************************************************************
+* Title: SPSCRing.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class is a lock-free queue for passing events from exactly one
+* producer thread to exactly one consumer thread.
+*
+* All event objects are created when the ring is constructed and are reused,
+* so no objects are allocated while running. The producer claims the next
+* free slot, fills in the event, then publishes it. The consumer peeks at the
+* oldest published event, handles it, then releases the slot for reuse.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SPSCRing
+//
+
+public class SPSCRing<E> extends Object{
+
+    E[] slots;
+    int mask;
+
+    //head is only advanced by the consumer, tail only by the producer
+    AtomicLong head = new AtomicLong(0);
+    AtomicLong tail = new AtomicLong(0);
+
+//-----------------------------------------------------------------------------
+// SPSCRing::SPSCRing (constructor)
+//
+// pCapacity must be a power of two. Each slot is filled with an event object
+// created by pFactory.
+//
+
+@SuppressWarnings("unchecked")
+public SPSCRing(int pCapacity, Supplier<E> pFactory)
+{
+
+    slots = (E[])new Object[pCapacity];
+    mask = pCapacity - 1;
+
+    for (int i = 0; i < pCapacity; i++) {slots[i] = pFactory.get();}
+
+}//end of SPSCRing::SPSCRing (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SPSCRing::claim
+//
+// Returns the next free event for the producer to fill in or null if the
+// ring is full. The event is not visible to the consumer until publish is
+// called.
+//
+// Only call from the producer thread.
+//
+
+public E claim()
+{
+
+    long t = tail.get();
+
+    if (t - head.get() >= slots.length) {return(null);}
+
+    return(slots[(int)t & mask]);
+
+}//end of SPSCRing::claim
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SPSCRing::publish
+//
+// Makes the event last returned by claim visible to the consumer.
+//
+// Only call from the producer thread.
+//
+
+public void publish()
+{
+
+    tail.lazySet(tail.get() + 1);
+
+}//end of SPSCRing::publish
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SPSCRing::peek
+//
+// Returns the oldest published event or null if the ring is empty. The event
+// remains in the ring until release is called.
+//
+// Only call from the consumer thread.
+//
+
+public E peek()
+{
+
+    long h = head.get();
+
+    if (h == tail.get()) {return(null);}
+
+    return(slots[(int)h & mask]);
+
+}//end of SPSCRing::peek
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SPSCRing::release
+//
+// Returns the event last returned by peek to the producer for reuse.
+//
+// Only call from the consumer thread.
+//
+
+public void release()
+{
+
+    head.lazySet(head.get() + 1);
+
+}//end of SPSCRing::release
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SPSCRing::size
+//
+// Returns the number of published events waiting to be consumed.
+//
+
+public int size()
+{
+
+    return((int)(tail.get() - head.get()));
+
+}//end of SPSCRing::size
+//-----------------------------------------------------------------------------
+
+}//end of class SPSCRing
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,450 @@
+/******************************************************************************
+* Title: StreamCapture.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class records the raw bytes passing through a board's socket to a
+* capture file so that the session can later be played back through a
+* ReplaySimulator.
+*
+* The bytes received from the remote and the bytes sent by the host are both
+* recorded, in the order in which they were read or written, each block with
+* the time since the capture was opened. The bytes sent by the host are used
+* during replay to hold back each response until the host has sent the
+* request which caused it.
+*
+* Each board records to its own file named with the board name and the time
+* the capture was opened:
+*
+*   UT 3 ~ 2026-10-16 09-15-42.cap
+*
+* File format (all values MSB first):
+*
+*   header: MAGIC, format version (int), board name (UTF), start time in
+*           milliseconds since the epoch (long)
+*
+*   then any number of blocks:
+*       RECEIVED or SENT (byte), nanoseconds since start (long),
+*       byte count (int), the bytes
+*
+* The file ends after the last complete block; a partial block left by a
+* program crash is ignored by the reader.
+*
+* If the file cannot be written, the error is logged and capturing stops
+* without affecting communication with the board.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.hardware;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class StreamCapture
+//
+// See notes at top of page.
+//
+
+public class StreamCapture extends Object{
+
+    public static final String MAGIC = "Board Stream Capture";
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".cap";
+
+    public static final byte RECEIVED = 1;
+    public static final byte SENT = 2;
+
+    static final int FILE_BUFFER_SIZE = 65536;
+
+    String filename;
+    DataOutputStream file;
+    long startNanos;
+
+//-----------------------------------------------------------------------------
+// StreamCapture::StreamCapture (constructor)
+//
+
+StreamCapture(String pFilename)
+{
+
+    filename = pFilename;
+
+}//end of StreamCapture::StreamCapture (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StreamCapture::open (static)
+//
+// Creates a capture file for board pBoardName in folder pFolder and returns
+// the capture, or returns null if the file cannot be created.
+//
+
+static StreamCapture open(String pFolder, String pBoardName)
+{
+
+    String time =
+            new SimpleDateFormat("yyyy-MM-dd HH-mm-ss").format(new Date());
+
+    StreamCapture capture = new StreamCapture(
+        new File(pFolder, pBoardName + " ~ " + time + EXTENSION).getPath());
+
+    try{
+        capture.init(pBoardName);
+    }
+    catch(IOException e){
+        capture.logSevere(e.getMessage() + " - Error: 117");
+        return(null);
+    }
+
+    return(capture);
+
+}//end of StreamCapture::open
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StreamCapture::findLatest (static)
+//
+// Returns the path of the most recent capture file for board pBoardName in
+// folder pFolder, or null if there is none. The file names sort by time.
+//
+
+static String findLatest(String pFolder, String pBoardName)
+{
+
+    String prefix = pBoardName + " ~ ";
+
+    File[] files = new File(pFolder).listFiles((dir, name) ->
+                        name.startsWith(prefix) && name.endsWith(EXTENSION));
+
+    if (files == null || files.length == 0) {return(null);}
+
+    File latest = files[0];
+
+    for (File f : files){
+        if (f.getName().compareTo(latest.getName()) > 0) {latest = f;}
+    }
+
+    return(latest.getPath());
+
+}//end of StreamCapture::findLatest
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StreamCapture::init
+//
+// Creates the capture file and writes the header for board pBoardName.
+//
+
+void init(String pBoardName) throws IOException
+{
+
+    new File(filename).getAbsoluteFile().getParentFile().mkdirs();
+
+    file = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(filename), FILE_BUFFER_SIZE));
+
+    file.writeUTF(MAGIC);
+    file.writeInt(VERSION);
+    file.writeUTF(pBoardName);
+    file.writeLong(System.currentTimeMillis());
+
+    startNanos = System.nanoTime();
+
+}//end of StreamCapture::init
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StreamCapture::record
+//
+// Records pCount bytes from pBytes starting at pOffset as a block of type
+// pType, RECEIVED or SENT.
+//
+
+synchronized void record(byte pType, byte[] pBytes, int pOffset, int pCount)
+{
+
+    if (file == null || pCount <= 0) {return;}
+
+    try{
+        file.writeByte(pType);
+        file.writeLong(System.nanoTime() - startNanos);
+        file.writeInt(pCount);
+        file.write(pBytes, pOffset, pCount);
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 197");
+        closeFile();
+    }
+
+}//end of StreamCapture::record
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StreamCapture::wrapInput
+//
+// Returns a stream which reads from pIn and records the bytes read as
+// received.
+//
+
+InputStream wrapInput(InputStream pIn)
+{
+
+    return(new CaptureInputStream(pIn, this));
+
+}//end of StreamCapture::wrapInput
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StreamCapture::wrapOutput
+//
+// Returns a stream which writes to pOut and records the bytes written as
+// sent.
+//
+
+OutputStream wrapOutput(OutputStream pOut)
+{
+
+    return(new CaptureOutputStream(pOut, this));
+
+}//end of StreamCapture::wrapOutput
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StreamCapture::close
+//
+// Writes any buffered blocks and closes the capture file. Further blocks are
+// ignored.
+//
+
+synchronized void close()
+{
+
+    closeFile();
+
+}//end of StreamCapture::close
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StreamCapture::closeFile
+//
+// Closes the capture file if it is open. The caller must hold the lock on
+// this object.
+//
+
+private void closeFile()
+{
+
+    if (file == null) {return;}
+
+    try{
+        file.close();
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 265");
+    }
+
+    file = null;
+
+}//end of StreamCapture::closeFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// StreamCapture::logSevere
+//
+// Logs pMessage with level SEVERE using the Java logger.
+//
+
+void logSevere(String pMessage)
+{
+
+    Logger.getLogger(getClass().getName()).log(Level.SEVERE, pMessage);
+
+}//end of StreamCapture::logSevere
+//-----------------------------------------------------------------------------
+
+}//end of class StreamCapture
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class CaptureInputStream
+//
+// Passes through the bytes read from a stream and records them in a
+// StreamCapture.
+//
+
+class CaptureInputStream extends FilterInputStream{
+
+    StreamCapture capture;
+
+//-----------------------------------------------------------------------------
+// CaptureInputStream::CaptureInputStream (constructor)
+//
+
+CaptureInputStream(InputStream pIn, StreamCapture pCapture)
+{
+
+    super(pIn);
+
+    capture = pCapture;
+
+}//end of CaptureInputStream::CaptureInputStream (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// CaptureInputStream::read
+//
+
+@Override
+public int read() throws IOException
+{
+
+    int b = in.read();
+
+    if (b >= 0) {capture.record(StreamCapture.RECEIVED,
+                                        new byte[] {(byte)b}, 0, 1);}
+
+    return(b);
+
+}//end of CaptureInputStream::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// CaptureInputStream::read
+//
+
+@Override
+public int read(byte[] pBuffer, int pOffset, int pLength) throws IOException
+{
+
+    int count = in.read(pBuffer, pOffset, pLength);
+
+    capture.record(StreamCapture.RECEIVED, pBuffer, pOffset, count);
+
+    return(count);
+
+}//end of CaptureInputStream::read
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// CaptureInputStream::skip
+//
+// Skipped bytes are read so that they are recorded.
+//
+
+@Override
+public long skip(long pCount) throws IOException
+{
+
+    byte[] skipped = new byte[(int)Math.min(pCount, 8192)];
+
+    int count = read(skipped, 0, skipped.length);
+
+    return(Math.max(count, 0));
+
+}//end of CaptureInputStream::skip
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// CaptureInputStream::markSupported
+//
+// Marking is not supported as bytes read again would be recorded twice.
+//
+
+@Override
+public boolean markSupported()
+{
+
+    return(false);
+
+}//end of CaptureInputStream::markSupported
+//-----------------------------------------------------------------------------
+
+}//end of class CaptureInputStream
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class CaptureOutputStream
+//
+// Passes through the bytes written to a stream and records them in a
+// StreamCapture.
+//
+
+class CaptureOutputStream extends FilterOutputStream{
+
+    StreamCapture capture;
+
+//-----------------------------------------------------------------------------
+// CaptureOutputStream::CaptureOutputStream (constructor)
+//
+
+CaptureOutputStream(OutputStream pOut, StreamCapture pCapture)
+{
+
+    super(pOut);
+
+    capture = pCapture;
+
+}//end of CaptureOutputStream::CaptureOutputStream (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// CaptureOutputStream::write
+//
+
+@Override
+public void write(int pByte) throws IOException
+{
+
+    out.write(pByte);
+
+    capture.record(StreamCapture.SENT, new byte[] {(byte)pByte}, 0, 1);
+
+}//end of CaptureOutputStream::write
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// CaptureOutputStream::write
+//
+// FilterOutputStream would write the bytes one at a time, so this is
+// overridden to pass them on in one write.
+//
+
+@Override
+public void write(byte[] pBuffer, int pOffset, int pLength) throws IOException
+{
+
+    out.write(pBuffer, pOffset, pLength);
+
+    capture.record(StreamCapture.SENT, pBuffer, pOffset, pLength);
+
+}//end of CaptureOutputStream::write
+//-----------------------------------------------------------------------------
+
+}//end of class CaptureOutputStream
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -71,10 +71,16 @@ package chart.mksystems.hardware;
 
 import chart.Log;
 import chart.mksystems.inifile.IniFile;
+import chart.mksystems.metrics.Counter;
+import chart.mksystems.metrics.Metrics;
 import chart.mksystems.stripchart.Map2D;
 import chart.mksystems.tools.SwissArmyKnife;
 import java.io.*;
 import java.net.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.swing.*;
 
 //-----------------------------------------------------------------------------
@@ -91,6 +97,9 @@ public class UTBoard extends Board{
     boolean fpgaLoaded = false;
     String fpgaCodeFilename;
     String dspCodeFilename;
+    DSPCodeImage dspCodeImage;
+    int dspCodeWordsPerStatusCheck, dspCodeStatusChecksOutstanding;
+    volatile int statusPacketCount = 0;
     double nSPerDataPoint, uSPerDataPoint;
 
     public boolean recordMapDataEnabled;
@@ -107,6 +116,29 @@ public class UTBoard extends Board{
     int mapTDCCodeIgnoreTimer = 0;
     boolean dataBufferIsEnabled = false;
 
+    //dataBufferIndex is copied here after each map packet is stored so other
+    //threads can safely read the data up to that point; mapRunNumber is
+    //incremented each time the buffer is reset for a new run
+
+    volatile int publishedDataBufferIndex = 0;
+    volatile int mapRunNumber = 0;
+
+    //when the wall map is saved incrementally, the saver asks for the data it
+    //has already saved to be discarded so the buffer only has to hold the
+    //revolutions not yet saved -- the request holds the run number in the
+    //upper half and the number of values in the lower half; it is zero when
+    //no request is waiting and MAP_DISCARD_IN_PROGRESS while being applied;
+    //mapDataDiscarded is the number of values removed from the front of the
+    //buffer during the current run
+
+    final AtomicLong mapDiscardRequest = new AtomicLong(0);
+    volatile int mapDataDiscarded = 0;
+    static final long MAP_DISCARD_IN_PROGRESS = -1;
+
+    //if greater than zero, the size used for dataBuffer when the wall map is
+    //saved incrementally
+    int incrementalDataBufferSize;
+
     static final int MAP_TDC_IGNORE_TIMER_RESET = 50;
 
         //on startup, the UT boards each load a default rep rate from the
@@ -124,7 +156,9 @@ public class UTBoard extends Board{
     HardwareVars hdwVs;
     String jobFileFormat, mainFileFormat;
 
-    int dspMessageSentCounter = 0, dspMessageAckCounter = 0;
+    //the Ack counter is incremented by the reader thread if one is running
+    final AtomicInteger dspMessageSentCounter = new AtomicInteger(0);
+    final AtomicInteger dspMessageAckCounter = new AtomicInteger(0);
 
     //ASCAN_MAX_HEIGHT and SIGNAL_SCALE should be changed to variables
     //which can be initialized and or adjusted
@@ -158,6 +192,9 @@ public class UTBoard extends Board{
     static int ASCAN_FIFO_SIZE = 25; //fifo is used for smoothing - larger
                                      //number allows for more smoothing
     int aScanFIFOIndex = 0;
+    //number of FIFO entries, from the first, included in the running sums
+    //held by aScanBuffer
+    int aScanSumCount = 0;
 
     boolean udpResponseFlag = false;
 
@@ -181,6 +218,17 @@ public class UTBoard extends Board{
     boolean peakDataRcvd = true;
     boolean peakDataPacketProcessed = false;
 
+    //peak data is decoded into this event unless a reader thread is running,
+    //in which case the events are passed through peakEventRing
+    PeakDataEvent peakDataEvent = new PeakDataEvent();
+    SPSCRing<PeakDataEvent> peakEventRing = null;
+
+    PeakStore peakStore = null;
+
+    //packets received of each type, indexed by packet ID
+    Counter[] packetCounters;
+    Counter bytesReceivedCounter, reSyncCounter;
+
     boolean dspStatusMessageRcvd = false;
 
     int dbug = 0; //debug mks - remove this
@@ -196,118 +244,6 @@ public class UTBoard extends Board{
     double minThickTossThreshold = Double.MIN_VALUE;
     int minThickTossCount = 0;
 
-    /*
-    // 5Mhz center pass, 6 order, 31 tap 4Mhz & 6 Mhz cutoff
-    int[] firCoef = {
-             7757,
-            12219,
-            14341,
-            13208,
-             8662,
-             1441,
-            -6914,
-            -14407,
-            -19073,
-            -19522,
-            -15352,
-            -7327,
-             2761,
-            12516,
-            19550,
-            22108,
-            19550,
-            12516,
-             2761,
-            -7327,
-            -15352,
-            -19522,
-            -19073,
-            -14407,
-            -6914,
-             1441,
-             8662,
-            13208,
-            14341,
-            12219,
-             7757
-        };
-
-    */
-    /*
-    //filter 2
-    int[] firCoef = {
-             -333,
-             -486,
-            -1021,
-            -1939,
-            -3133,
-            -4372,
-            -5303,
-            -5496,
-            -4515,
-            -2024,
-             2093,
-             7617,
-            13912,
-            19932,
-            24352,
-            25991,
-            24352,
-            19932,
-            13912,
-             7617,
-             2093,
-            -2024,
-            -4515,
-            -5496,
-            -5303,
-            -4372,
-            -3133,
-            -1939,
-            -1021,
-             -486,
-             -333
-             };
-     *
-     */
-
-    //filter 5
-    int[] firCoef = {
-              374,
-              478,
-              540,
-              537,
-              451,
-              267,
-              -20,
-             -406,
-             -877,
-            -1406,
-            -1957,
-            -2491,
-            -2963,
-            -3335,
-            -3572,
-            29428,
-            -3572,
-            -3335,
-            -2963,
-            -2491,
-            -1957,
-            -1406,
-             -877,
-             -406,
-              -20,
-              267,
-              451,
-              537,
-              540,
-              478,
-              374
-             };
-
-    int firBuf[];
-
     //this class holds information for a channel on the board
     class BoardChannel{
 
@@ -316,6 +252,7 @@ public class UTBoard extends Board{
         Channel logicalChannel;
         int numberOfGates = 0;
         UTGate[] gates;
+        int[] peakIds;  //the id of each gate in the peak store
 
         byte dspChip;
         byte dspCore1;
@@ -328,6 +265,8 @@ public class UTBoard extends Board{
         byte bufStart0, bufStart1, bufStart2;
 
         int aScanSmoothing = 1;
+        //applied to the AScan on the host, null if none
+        volatile FIRFilter aScanFilter = null;
         int rejectLevel;
         boolean isWallChannel=false;
 
@@ -366,6 +305,16 @@ public class UTBoard extends Board{
     static final int WALL_MAP_PACKET_DATA_SIZE = 4002;
     static final int WALL_MAP_PACKET_DATA_SIZE_INTS = 2001;
 
+    //must be a power of two and larger than the largest packet
+    static final int PACKET_RING_SIZE = 65536;
+
+    //milliseconds allowed for all DSP cores to answer after being released
+    //from reset
+    static final int DSP_START_TIMEOUT = 5000;
+
+    //the progress of the board through the startup sequence
+    final BoardStartup startup = new BoardStartup();
+
     //the hardware uses a 4 byte unsigned integer for MAX_DELAY_COUNT - Java
     //doesn't do unsigned easily, so the max value is limited to the maximum
     //positive value Java allows for a signed integer just to make the Java side
@@ -639,8 +588,6 @@ public class UTBoard extends Board{
     //number of loops to wait for response before timeout
     static int FPGA_LOAD_TIMEOUT = 200;
 
-    boolean reSynced;
-
     //Error Counters ----------------------
 
     //track number of "No Response to Peak Data Request" occurrances
@@ -706,12 +653,9 @@ public void init()
         logSevere(e.getMessage() + " - Error: 531");
     }
 
-    //FIR filter buffer -- same length as number of filter taps
-    firBuf = new int[firCoef.length];
-
     //aScan holds an aScan data set for transfer to the display object
     aScan = new AScan(ASCAN_BUFFER_SIZE);
-    //aScanBuffer holds data while it is being processed
+    //aScanBuffer holds the running sums of the data sets in aScanFIFO
     aScanBuffer = new AScan(ASCAN_BUFFER_SIZE);
 
     //aScanFIFO holds multiple data sets which can then be averaged to create
@@ -731,9 +675,66 @@ public void init()
     //read the configuration file and create/setup the charting/control elements
     configure(configFile);
 
+    setupMetrics();
+
 }//end of UTBoard::init
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// UTBoard::setupMetrics
+//
+// Looks up the metrics updated as packets are processed and registers gauges
+// for the depth of the packet ring and peak event queue.
+//
+// The packet counters are placed in an array indexed by packet ID so that
+// counting a packet is a single array access and add. Packet types without
+// their own counter are counted as "other".
+//
+
+private void setupMetrics()
+{
+
+    String prefix = boardName + " ";
+
+    packetCounters = new Counter[256];
+
+    Arrays.fill(packetCounters, Metrics.counter(prefix + "other packets"));
+
+    packetCounters[GET_PEAK_DATA_CMD & 0xff] = packetCounters[
+        GET_PEAK_DATA4_CMD & 0xff] = Metrics.counter(prefix + "peak packets");
+
+    packetCounters[GET_ASCAN_CMD & 0xff] =
+                                    Metrics.counter(prefix + "AScan packets");
+
+    packetCounters[GET_STATUS_CMD & 0xff] =
+                                    Metrics.counter(prefix + "status packets");
+
+    packetCounters[MESSAGE_DSP_CMD & 0xff] =
+                            Metrics.counter(prefix + "DSP message packets");
+
+    packetCounters[GET_WALL_MAP_CMD & 0xff] =
+                                Metrics.counter(prefix + "wall map packets");
+
+    bytesReceivedCounter = Metrics.counter(prefix + "bytes received");
+
+    reSyncCounter = Metrics.counter(prefix + "resyncs");
+
+    //the counts are read without synchronization, which is acceptable for
+    //viewing
+
+    Metrics.gauge(prefix + "packet ring bytes", () -> {
+        PacketRing ring = packetRing;
+        return(ring != null ? ring.count : 0);
+    });
+
+    Metrics.gauge(prefix + "peak event queue", () -> {
+        SPSCRing<PeakDataEvent> ring = peakEventRing;
+        return(ring != null ? ring.size() : 0);
+    });
+
+}//end of UTBoard::setupMetrics
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // UTBoard::setupBoardChannels
 //
@@ -883,7 +884,8 @@ public synchronized void connect()
         //displays message on bottom panel of IDE
         logger.logMessage("Connecting to UT board " + ipAddrS + "...\n");
 
-        if (!simulate) {socket = new Socket(ipAddr, 23);}
+        if (!simulate) {socket = openSocket(ipAddr, 23);}
+        else if (isReplaying()) {socket = createReplaySimulator(ipAddr, 23);}
         else {
             UTSimulator utSimulator = new UTSimulator(
                      ipAddr, 23, mainFileFormat, simulationDataSourceFilePath);
@@ -898,9 +900,9 @@ public synchronized void connect()
         //wait for data - this prevents program lock up when no data is ready
         socket.setSoTimeout(250);
 
-        // the buffer size is not changed here as the default ends up being
-        // large enough - use this code if it needs to be increased
-        //socket.setReceiveBufferSize(10240 or as needed);
+        // the buffer sizes and TCP_NODELAY are set by openSocket as
+        // specified in the config file - the default buffer sizes are
+        // usually large enough
 
         //allow verification that the hinted size is actually used
         logger.logMessage("UT " + ipAddrS + " receive buffer size: " +
@@ -910,13 +912,7 @@ public synchronized void connect()
         logger.logMessage("UT " + ipAddrS + " send buffer size: " +
                                         socket.getSendBufferSize() + "...\n");
 
-        out = new PrintWriter(socket.getOutputStream(), true);
-
-        in = new BufferedReader(new InputStreamReader(
-                                            socket.getInputStream()));
-
-        byteOut = new DataOutputStream(socket.getOutputStream());
-        byteIn = new DataInputStream(socket.getInputStream());
+        openStreams();
 
     }
     catch (UnknownHostException e) {
@@ -939,6 +935,11 @@ public synchronized void connect()
         logSevere(e.getMessage() + " - Error: 748");
     }
 
+    //all further data is read in bulk through the ring
+    enablePacketRing(PACKET_RING_SIZE);
+
+    startup.advance(BoardStartup.Stage.CONNECTED);
+
     initRemote(true);
 
     notifyAll(); //wake up all threads that are waiting for this to complete
@@ -959,6 +960,10 @@ private void initRemote(boolean pLoadFPGA)
 
     initFPGA(); //setup the registers in the UT board FPGA
 
+    if ((getRemoteData(GET_STATUS_CMD, true) & FPGA_LOADED_FLAG) != 0) {
+        startup.advance(BoardStartup.Stage.FPGA_LOADED);
+    }
+
     //ask the board for its chassis and board address switch settngs
     getChassisSlotAddressFromRemote();
 
@@ -971,24 +976,32 @@ private void initRemote(boolean pLoadFPGA)
 
     chassisSlotAddr = chassisAddr + ":" + slotAddr;
 
+    //the code file is read again in case it has been changed, it is only
+    //parsed if the contents differ from those already loaded by any board
+    dspCodeImage = null;
+
+    boolean dspLoaded = true;
+
     loadDSPCode(1, 1); //send the code to DSP 1, Core A (this also loads Core B)
-    verifyDSPCode(1, 1); //verify the checksum of the code in the DSP
+    dspLoaded &= verifyDSPCode(1, 1); //verify the checksum of the code
     loadDSPCode(1, 3); //send the code to DSP 1, Core C (this also loads Core D)
-    verifyDSPCode(1, 3); //verify the checksum of the code in the DSP
+    dspLoaded &= verifyDSPCode(1, 3); //verify the checksum of the code
     loadDSPCode(2, 1); //send the code to DSP 2, Core A (this also loads Core B)
-    verifyDSPCode(2, 1); //verify the checksum of the code in the DSP
+    dspLoaded &= verifyDSPCode(2, 1); //verify the checksum of the code
     loadDSPCode(2, 3); //send the code to DSP 2, Core C (this also loads Core D)
-    verifyDSPCode(2, 3); //verify the checksum of the code in the DSP
+    dspLoaded &= verifyDSPCode(2, 3); //verify the checksum of the code
+
+    if (dspLoaded) {startup.advance(BoardStartup.Stage.DSP_LOADED);}
 
     //release FPGA internals from reset (low = no reset)
     //release DSP Global reset so HPI bus can be used (high = no reset)
     //release DSPs A,B,C,D resets (low = reset)
     resetShadow = writeFPGAReg(RESET_REG, (byte)0x3e);
 
-    //sleep for a bit to allow DSPs to start up
-    waitSleep(1000);
-
-    logAllDSPStatus();
+    //wait for the DSPs to start up
+    if (waitForDSPsRunning()){
+        startup.advance(BoardStartup.Stage.DSP_RUNNING);
+    }
 
     //enable sampling - FPGA has control of the HPI bus to transfer A/D data
     setState(0, 1);
@@ -1058,6 +1071,9 @@ public void resetForNextRun()
     inspectionStopLocation = 0;
 
     dataBufferIndex = 0;
+    publishedDataBufferIndex = 0;
+    mapDataDiscarded = 0;
+    mapRunNumber++;
     prevCtrlCodeIndex = -1;
     if(map2D != null) { map2D.resetAll(); }
 
@@ -1169,6 +1185,7 @@ public void loadFPGA()
     try {
 
         sendBytes(LOAD_FPGA_CMD); //send command to initiate loading
+        flushOutbound();
 
         logger.logMessage("UT " + ipAddrS + " loading FPGA..." + "\n");
 
@@ -1401,14 +1418,8 @@ public void warmReset()
     //release DSPs A,B,C,D resets (low = reset)
     resetShadow = writeFPGAReg(RESET_REG, (byte)0x3e);
 
-    //sleep for a bit to allow DSPs to start up
-    waitSleep(1000);
-
-    logDSPStatus(1, 1, true); logDSPStatus(1, 2, true);
-    logDSPStatus(1, 3, true); logDSPStatus(1, 4, true);
-
-    logDSPStatus(2, 1, true); logDSPStatus(2, 2, true);
-    logDSPStatus(2, 3, true); logDSPStatus(2, 4, true);
+    //wait for the DSPs to start up
+    waitForDSPsRunning();
 
     //enable sampling - FPGA has control of the HPI bus to transfer A/D data
     setState(0, 1);
@@ -1561,9 +1572,188 @@ public void setIndexOfLastDataPointInDataBuffer(int pIndex)
 
     dataBufferIndex = pIndex;
 
+    publishedDataBufferIndex = dataBufferIndex;
+
 }//end of UTBoard::setIndexOfLastDataPointInDataBuffer
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// UTBoard::getPublishedDataBufferIndex
+//
+// Returns the index of the last value stored in dataBuffer + 1 as of the end
+// of the last map packet. Unlike getIndexOfLastDataPointInDataBuffer, this is
+// safe to call from any thread -- all values before the returned index are
+// visible to the calling thread.
+//
+
+public int getPublishedDataBufferIndex()
+{
+
+    return(publishedDataBufferIndex);
+
+}//end of UTBoard::getPublishedDataBufferIndex
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::getMapRunNumber
+//
+// Returns a number which changes each time the data buffer is reset for a new
+// run. This allows other threads to detect that the buffer has been reset.
+//
+
+public int getMapRunNumber()
+{
+
+    return(mapRunNumber);
+
+}//end of UTBoard::getMapRunNumber
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::useIncrementalDataBuffer
+//
+// Replaces dataBuffer with one of the size set by "Incremental Data Buffer
+// Size" in the configuration file. When the wall map is saved incrementally,
+// the saver discards each revolution once it has been saved so the buffer
+// only has to hold the data not yet saved rather than an entire piece.
+//
+// Must be called before any map data is collected and before references to
+// the buffer are handed out by getDataBuffer.
+//
+
+void useIncrementalDataBuffer()
+{
+
+    if (dataBuffer == null || incrementalDataBufferSize <= 0) {return;}
+
+    if (incrementalDataBufferSize >= dataBuffer.length) {return;}
+
+    dataBuffer = new short[incrementalDataBufferSize];
+
+}//end of UTBoard::useIncrementalDataBuffer
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::requestMapDataDiscard
+//
+// Asks for the first pCount values of the data buffer to be discarded. The
+// request is carried out by the thread processing the map packets the next
+// time a map packet arrives -- the remaining data is moved to the front of
+// the buffer and getMapDataDiscarded is increased by pCount.
+//
+// pRunNumber must be the value of getMapRunNumber for the data being
+// discarded; if the buffer is reset for a new run first, the request is
+// ignored.
+//
+// Returns false if a previous request has not yet been carried out, in which
+// case nothing is done.
+//
+
+boolean requestMapDataDiscard(int pRunNumber, int pCount)
+{
+
+    long request = ((long)pRunNumber << 32) | (pCount & 0xffffffffL);
+
+    return(mapDiscardRequest.compareAndSet(0, request));
+
+}//end of UTBoard::requestMapDataDiscard
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::isMapDataDiscardPending
+//
+// Returns true if a request made by requestMapDataDiscard has not yet been
+// carried out. The data in the buffer must not be accessed while a request is
+// pending as it may be moved at any time.
+//
+
+boolean isMapDataDiscardPending()
+{
+
+    return(mapDiscardRequest.get() != 0);
+
+}//end of UTBoard::isMapDataDiscardPending
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::cancelMapDataDiscard
+//
+// Withdraws any request made by requestMapDataDiscard. If the request is
+// already being carried out, waits for it to finish.
+//
+
+void cancelMapDataDiscard()
+{
+
+    long request = mapDiscardRequest.get();
+
+    if (request != MAP_DISCARD_IN_PROGRESS && request != 0){
+        if (mapDiscardRequest.compareAndSet(request, 0)) {return;}
+    }
+
+    while (mapDiscardRequest.get() != 0) {waitSleep(1);}
+
+}//end of UTBoard::cancelMapDataDiscard
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::getMapDataDiscarded
+//
+// Returns the number of values discarded from the front of the data buffer
+// during the current run. The value stored in dataBuffer[i] was the value
+// received at position i + getMapDataDiscarded() in the run.
+//
+
+int getMapDataDiscarded()
+{
+
+    return(mapDataDiscarded);
+
+}//end of UTBoard::getMapDataDiscarded
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::applyMapDataDiscard
+//
+// Carries out any request made by requestMapDataDiscard. Called by the thread
+// processing the map packets so the buffer and its indices are never moved
+// while that thread is using them.
+//
+
+private void applyMapDataDiscard()
+{
+
+    long request = mapDiscardRequest.get();
+
+    if (request == 0 || request == MAP_DISCARD_IN_PROGRESS) {return;}
+
+    if (!mapDiscardRequest.compareAndSet(request, MAP_DISCARD_IN_PROGRESS)){
+        return;
+    }
+
+    int runNumber = (int)(request >> 32);
+    int count = (int)request;
+
+    if (runNumber == mapRunNumber && count > 0 && count <= dataBufferIndex){
+
+        System.arraycopy(dataBuffer, count, dataBuffer, 0,
+                                                    dataBufferIndex - count);
+
+        dataBufferIndex -= count;
+
+        prevCtrlCodeIndex = Math.max(prevCtrlCodeIndex - count, -1);
+
+        mapDataDiscarded += count;
+
+        publishedDataBufferIndex = dataBufferIndex;
+
+    }
+
+    mapDiscardRequest.set(0);
+
+}//end of UTBoard::applyMapDataDiscard
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // UTBoard::setDataBufferIsEnabled
 //
@@ -1896,6 +2086,23 @@ void setAScanSmoothing(int pChannel, int pAScanSmoothing)
 }//end of UTBoard::setAScanSmoothing
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// UTBoard::setAScanFilter
+//
+// Sets the FIR filter to be applied to the AScan data on the host. The values
+// in pFilterValues are in the format returned by Channel.loadFilter. If
+// pFilterValues is null or contains no coefficients, no filter is applied.
+//
+
+void setAScanFilter(int pChannel, int[] pFilterValues)
+{
+
+    bdChs[pChannel].aScanFilter =
+                        FIRFilter.create(pFilterValues, ASCAN_SAMPLE_SIZE);
+
+}//end of UTBoard::setAScanFilter
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // UTBoard::setRejectLevel
 //
@@ -2066,6 +2273,8 @@ public boolean readRAM(int pDSPChip, int pDSPCore, int pRAMType,
                 (byte)((pAddress >> 8) & 0xff),(byte)(pAddress & 0xff),
                 (byte)(pCount & 0xff));
 
+    flushOutbound(); //the request must not wait in the queue
+
     // wait until processDSPMessage reaches the answer packet from the remote
     // and processes it
 
@@ -2123,6 +2332,8 @@ void readRAMDSP(int pDSPChip, int pDSPCore, int pRAMType,
                 (byte)(pPage |= ((pRAMType == 1) ? 0x10 : 0x00)),
                 (byte)((pAddress >> 8) & 0xff),(byte)(pAddress & 0xff));
 
+    flushOutbound(); //the request must not wait in the queue
+
     // wait until processDSPMessage reaches the answer packet from the remote
     // and processes it
 
@@ -2183,6 +2394,8 @@ int getDSPRamChecksum(int pDSPChip, int pDSPCore, int pRAMType,
                 (byte)((pBlockSize >> 8) & 0xff),(byte)(pBlockSize & 0xff)
                 );
 
+    flushOutbound(); //the request must not wait in the queue
+
     // wait until processDSPMessage reaches the answer packet from the remote
     // and processes it
 
@@ -2231,6 +2444,8 @@ void readNextRAMDSP(int pDSPChip, int pDSPCore, byte[] pRetBuffer)
 
     sendBytes(READ_NEXT_DSP_CMD, (byte)pDSPChip, (byte)pDSPCore);
 
+    flushOutbound(); //the request must not wait in the queue
+
     // wait until processDSPMessage reaches the answer packet from the remote
     // and processes it
 
@@ -2252,12 +2467,21 @@ void readNextRAMDSP(int pDSPChip, int pDSPCore, byte[] pRetBuffer)
 // core C HPI bus.  Loading into cores A & C makes the code also available to
 // cores B & D since cores A & B / C & D share the same program memory.
 //
-// The writeDPSRam function is used to write each code word.  This is not
-// very efficient and could be improved by use of a block write function.  Since
-// the buffer in the remote device can be overrun, the code loading is pause
-// every 100 words while a status byte is retreived from the remote device.
-// Since the loading is not resumed until the remote device processes and
-// responds to the status request, it serves as a handshake.
+// The file is parsed once into a DSPCodeImage which is shared by all boards
+// and cores -- see getDSPCodeImage.
+//
+// The first word of each contiguous block is written with writeDSPRam style
+// packets to set the address; the rest of the block is written with
+// writeNextDSPRam style packets as the remote increments the address itself.
+//
+// Since the buffer in the remote device can be overrun, a status request is
+// added after every dspCodeWordsPerStatusCheck words. Each group of words and
+// its status request is built in a buffer and sent with a single write. As
+// the remote does not respond to the status request until it has processed
+// the words ahead of it, the responses serve as a handshake: the next group
+// is not sent while dspCodeStatusChecksOutstanding requests are still
+// unanswered. With more than one outstanding, the remote always has the next
+// group waiting while the response for the previous one travels back.
 //
 // The format of the hex file is that produced by the Texas Instruments
 // hex500.exe program using the following command line (or similar):
@@ -2280,264 +2504,198 @@ void readNextRAMDSP(int pDSPChip, int pDSPCore, byte[] pRetBuffer)
 void loadDSPCode(int pDSPChip, int pDSPCore)
 {
 
-    FileInputStream inputStream = null;
-    int packetCnt = 0;
+    DSPCodeImage image = getDSPCodeImage();
 
-    String core;
-    if (pDSPCore == 1) {core = "A & B";}
-    else if (pDSPCore == 3) {core = "C & D";}
-    else {core = "";}
+    if (image == null) {return;}
 
     logger.logMessage("UT " + chassisSlotAddr + " loading DSP code for" + "\n"
-            + "    Chip " + pDSPChip + " Cores " + core + "\n");
-
-    try {
-        inputStream = new FileInputStream("DSP\\" + dspCodeFilename);
-
-        int c;
-        int n3, n2, n1, n0;
-        int address = 0, value = 0, place = 3;
+            + "    Chip " + pDSPChip + " Cores " + getCoreNames(pDSPCore)
+            + "\n");
 
-        while ((c = inputStream.read()) != -1) {
+    //room for a group of words, each possibly with an address, plus the
+    //status request
 
-            if (c == 2) {continue;} //catch ctrl-B file start marker - skip it
+    byte[] buffer = new byte[dspCodeWordsPerStatusCheck * 13 + 6];
 
-            if (c == 3) {break;} //catch the ctrl-C file end marker - exit
+    int length = 0, words = 0;
+    int firstStatusCount = statusPacketCount, statusRequests = 0;
 
-            if (c == '\r' || c == '\n' || c == ',' || c == ' ') {continue;}
+    for (int b = 0; b < image.getNumberOfBlocks(); b++){
 
-            // catch new address flag
-            if (c == '$') {
+        int address = image.getBlockAddress(b);
 
-                inputStream.read(); //read and ignore the 'A'
+        for (int i = 0; i < image.getBlockLength(b); i++){
 
-                //read next four characters to create new address value
-                n3 = fromHex(inputStream.read());
-                n2 = fromHex(inputStream.read());
-                n1 = fromHex(inputStream.read());
-                n0 = fromHex(inputStream.read());
+            int value = image.getWord(b, i);
 
-               address =
-                    (int)((n3<<12) & 0xf000) +
-                    (int)((n2<<8) & 0xf00) +
-                    (int)((n1<<4) & 0xf0) +
-                    (int)(n0 & 0xf);
+            //write to shared program memory page 0 -- the address is only
+            //sent with the first word of the block
 
+            if (i == 0){
+                length = putPacket(buffer, length, WRITE_DSP_CMD,
+                    (byte)pDSPChip, (byte)pDSPCore, (byte)0x10,
+                    (byte)((address >> 8) & 0xff), (byte)(address & 0xff),
+                    (byte)((value >> 8) & 0xff), (byte)(value & 0xff));
             }
             else{
+                length = putPacket(buffer, length, WRITE_NEXT_DSP_CMD,
+                    (byte)pDSPChip, (byte)pDSPCore,
+                    (byte)((value >> 8) & 0xff), (byte)(value & 0xff));
+            }
 
-                //if this part reached, must be a digit for a character so add
-                //it into value, using the place count to specify the shift
-
-                c = fromHex(c);
-
-                if (place == 3) {value += (int)((c<<12) & 0xf000);}
-                else if (place == 2) {value += (int)((c<<8)  & 0xf00);}
-                else if (place == 1) {value += (int)((c<<4) & 0xf0);}
-                else{
-
-                    //fourth character converted, add it in and write word
-
-                    value += (int)(c & 0xf);
-
-                    //write to shared program memory page 0
-                    writeDSPRam(pDSPChip, pDSPCore, 1, 0, address++, value);
-
-                    //request and wait for a status flag ever so often to make
-                    //sure the remote's buffer is not overrun
-                    if(packetCnt++ >= 100){
-                        getRemoteData(GET_STATUS_CMD, true);
-                        packetCnt = 0;
-                    }
+            if (++words < dspCodeWordsPerStatusCheck) {continue;}
 
-                    place = 3; value = 0; //start over for next word
+            sendDSPCodeGroup(buffer, length, firstStatusCount,
+                                                            statusRequests++);
 
-                    continue; //skip the decrement below
-                    }
+            length = 0; words = 0;
 
-                //can't decrement in the if statements because they will do the
-                //dec even if the test fails
-                place--;
+        }
+    }
 
-                }
+    if (words > 0){
+        sendDSPCodeGroup(
+                    buffer, length, firstStatusCount, statusRequests++);
+    }
 
-        }//while ((c =
-    }// try
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 1960");
-        logger.logMessage(
-                    "Error opening DSP code file " + dspCodeFilename + "\n");
+    //wait until the remote has processed all of the code
 
-    }
-    finally {
-        if (inputStream != null) {
-            try{inputStream.close();}catch(IOException e){}
-        }
-    }// finally
+    waitForStatusPackets(firstStatusCount + statusRequests);
 
 }//end of UTBoard::loadDSPCode
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// UTBoard::verifyDSPCode
-//
-// Verifies that the DSP code has been loaded into the DSP.  Returns true if
-// no errors, false otherwise.
-//
-// See the loadDSPCode function for more details.
+// UTBoard::sendDSPCodeGroup
 //
-// This function verifies the code by calculating checksums for contiguous
-// blocks and then comparing with the checksum reported by the remote device
-// for those specified blocks.
+// Adds a status request to the group of DSP code packets in pBuffer and sends
+// them once fewer than dspCodeStatusChecksOutstanding of the pRequestNumber
+// status requests already sent have been answered. The first of those
+// requests was sent when statusPacketCount was pFirstStatusCount.
 //
 
-boolean verifyDSPCode(int pDSPChip, int pDSPCore)
+private void sendDSPCodeGroup(byte[] pBuffer, int pLength,
+                                    int pFirstStatusCount, int pRequestNumber)
 {
 
-    boolean success = true;
-
-    FileInputStream inputStream = null;
-    int packetCnt = 0;
-
-    int blockCount = 0; //count the number of contiguous code blocks
-    int byteCount = 0; //count the number of bytes in the block
-    int checksum = 0;
-
-    String core;
-    if (pDSPCore == 1) {
-        core = "A & B";
-    }else if (pDSPCore == 3) {
-        core = "C & D";
-    }else {
-        core = "";
-    }
-
-    logger.logMessage("UT " + chassisSlotAddr + " verifying DSP code for" + "\n"
-    + "    Chip " + pDSPChip + " Cores " + core + "\n");
+    pLength = putPacket(pBuffer, pLength, GET_STATUS_CMD);
 
-    byte[] buffer = new byte[2];
-
-    try {
-        inputStream = new FileInputStream("DSP\\" + dspCodeFilename);
+    waitForStatusPackets(pFirstStatusCount + pRequestNumber
+                                        - dspCodeStatusChecksOutstanding + 1);
 
-        int c;
-        int n3, n2, n1, n0;
-        int address = 0, value = 0, place = 3;
+    sendBuffer(pBuffer, pLength);
 
-        while ((c = inputStream.read()) != -1) {
-
-            if (c == 2) {continue;} //catch ctrl-B file start marker - skip it
+}//end of UTBoard::sendDSPCodeGroup
+//-----------------------------------------------------------------------------
 
-            if (c == 3) {break;} //catch the ctrl-C file end marker - exit
+//-----------------------------------------------------------------------------
+// UTBoard::waitForStatusPackets
+//
+// Processes packets from the remote until statusPacketCount has reached
+// pCount. Returns early if no packet is received within the time out so that
+// a remote which is not responding does not stall the startup.
+//
 
-            if (c == '\r' || c == '\n' || c == ',' || c == ' ') {continue;}
+private void waitForStatusPackets(int pCount)
+{
 
-            // catch new address flag
-            if (c == '$') {
+    //compare the difference so the count may wrap around
 
-                inputStream.read(); //read and ignore the 'A'
+    while (statusPacketCount - pCount < 0){
+        if (processDataPackets(true, TIMEOUT) == -1) {return;}
+    }
 
-                //read next four characters to create new address value
-                n3 = fromHex(inputStream.read());
-                n2 = fromHex(inputStream.read());
-                n1 = fromHex(inputStream.read());
-                n0 = fromHex(inputStream.read());
+}//end of UTBoard::waitForStatusPackets
+//-----------------------------------------------------------------------------
 
-                //each time the address is changed, verify the checksum for the
-                //previous block by comparing with the checksum from the remote
+//-----------------------------------------------------------------------------
+// UTBoard::getDSPCodeImage
+//
+// Returns the parsed contents of the DSP code file, loading it if this has not
+// yet been done since initRemote was called. Returns null if the file cannot
+// be read.
+//
 
-                //request the checksum for the current block as stored in the
-                //DSP skip if the block size is 0
-                if (byteCount > 0){
+DSPCodeImage getDSPCodeImage()
+{
 
-                    checksum &= 0xffff; //only use lower word of checksum
+    if (dspCodeImage != null) {return(dspCodeImage);}
 
-                    int remoteChecksum = getDSPRamChecksum(pDSPChip, pDSPCore,
-                                                1, 0, address, byteCount, true);
+    try {
+        dspCodeImage = DSPCodeImage.load("DSP\\" + dspCodeFilename);
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 2441");
+        logger.logMessage(
+                    "Error opening DSP code file " + dspCodeFilename + "\n");
+    }
 
-                    //compare the local and remote checksums
-                    if (checksum != remoteChecksum){
-                        logger.logMessage(
-                            "UT " + chassisSlotAddr + " DSP code error"
-                            + "\n" + "    Chip " + pDSPChip + " Cores " + core
-                            + "  Block: " + blockCount + "\n");
-                            success = false;
-                    }
-                }// if (byteCount > 0)
+    return(dspCodeImage);
 
-                blockCount++; checksum = 0; byteCount = 0; //new block
+}//end of UTBoard::getDSPCodeImage
+//-----------------------------------------------------------------------------
 
-                //point to new address
-                address =
-                    (int)((n3<<12) & 0xf000) +
-                    (int)((n2<<8) & 0xf00) +
-                    (int)((n1<<4) & 0xf0) +
-                    (int)(n0 & 0xf);
+//-----------------------------------------------------------------------------
+// UTBoard::getCoreNames
+//
+// Returns the names of the cores which share the program memory loaded via
+// core pDSPCore.
+//
 
-            }
-            else{
+String getCoreNames(int pDSPCore)
+{
 
-                //if this part reached, must be a digit for a character so add
-                //it into value, using the place count to specify the shift
+    if (pDSPCore == 1) {return("A & B");}
+    else if (pDSPCore == 3) {return("C & D");}
+    else {return("");}
 
-                c = fromHex(c);
+}//end of UTBoard::getCoreNames
+//-----------------------------------------------------------------------------
 
-                if (place == 3) {value += (int)((c<<12) & 0xf000);}
-                else if (place == 2) {value += (int)((c<<8)  & 0xf00);}
-                else if (place == 1) {value += (int)((c<<4) & 0xf0);}
-                else{
+//-----------------------------------------------------------------------------
+// UTBoard::verifyDSPCode
+//
+// Verifies that the DSP code has been loaded into the DSP.  Returns true if
+// no errors, false otherwise.
+//
+// See the loadDSPCode function for more details.
+//
+// This function verifies the code by comparing the checksum of each
+// contiguous block, which is computed when the code file is parsed, with the
+// checksum reported by the remote device for that block.
+//
 
-                    //fourth character converted, add it in and write word
-                    value += (int)(c & 0xf);
-                    //track the number of bytes and the checksum
-                    byteCount++; checksum += value;
+boolean verifyDSPCode(int pDSPChip, int pDSPCore)
+{
 
-                    place = 3; value = 0; //start over for next word
+    boolean success = true;
 
-                    continue; //skip the decrement below
-                    }
+    String core = getCoreNames(pDSPCore);
 
-                //can't decrement in the if statements because they will do the
-                //dec even if the test fails
-                place--;
+    logger.logMessage("UT " + chassisSlotAddr + " verifying DSP code for" + "\n"
+    + "    Chip " + pDSPChip + " Cores " + core + "\n");
 
-            }
-        }//while ((c =
+    DSPCodeImage image = getDSPCodeImage();
 
-        //validate the last block -- when the last byte is read from the code
-        //file, the above loop will exit with a possible partial block -- check
-        //that last block here
-        //request the checksum for the current block as stored in the DSP
-        //skip if the block size is 0
-        if (byteCount > 0){
+    if (image == null) {return(false);}
 
-            checksum &= 0xffff; //only use lower word of checksum
+    for (int b = 0; b < image.getNumberOfBlocks(); b++){
 
-            int remoteChecksum = getDSPRamChecksum(pDSPChip, pDSPCore, 1, 0,
-                                                     address, byteCount, true);
+        //request the checksum for the block as stored in the DSP
 
-            //compare the local and remote checksums
-            if (checksum != remoteChecksum){
-                logger.logMessage("UT " + chassisSlotAddr + " DSP code error"
-                         + "\n" + "    Chip " + pDSPChip + " Cores " + core
-                         + "  Block: " + blockCount + "\n");
-                        success = false;
-                        }
+        int remoteChecksum = getDSPRamChecksum(pDSPChip, pDSPCore, 1, 0,
+                    image.getBlockAddress(b), image.getBlockLength(b), true);
 
-        }// if (byteCount > 0)
-    }// try
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 2126");
-        logger.logMessage(
-                    "Error opening DSP code file " + dspCodeFilename + "\n");
-        success = false;
+        //compare the local and remote checksums
+        if (image.getBlockChecksum(b) != remoteChecksum){
+            logger.logMessage(
+                "UT " + chassisSlotAddr + " DSP code error"
+                + "\n" + "    Chip " + pDSPChip + " Cores " + core
+                + "  Block: " + (b + 1) + "\n");
+            success = false;
+        }
 
     }
-    finally {
-        if (inputStream != null) {
-            try{inputStream.close();}catch(IOException e){}
-        }
-    }// finally
 
     return(success);
 
@@ -2557,163 +2715,52 @@ boolean verifyDSPCode(int pDSPChip, int pDSPCore)
 void verifyDSPCode2(int pDSPChip, int pDSPCore)
 {
 
-    FileInputStream inputStream = null;
     int packetCnt = 0;
 
-    String core;
-    if (pDSPCore == 1) {core = "A & B";}
-    else if (pDSPCore == 3) {core = "C & D";}
-    else {core = "";}
+    String core = getCoreNames(pDSPCore);
 
     logger.logMessage("UT " + chassisSlotAddr + " verifying DSP code for" + "\n"
             + "    Chip " + pDSPChip + " Cores " + core + "\n");
 
-    byte[] buffer = new byte[2];
-
-    try {
-        inputStream = new FileInputStream("DSP\\" + dspCodeFilename);
-
-        int c;
-        int n3, n2, n1, n0;
-        int address = 0, value = 0, place = 3;
-
-        while ((c = inputStream.read()) != -1) {
-
-            if (c == 2) {continue;} //catch ctrl-B file start marker - skip it
+    DSPCodeImage image = getDSPCodeImage();
 
-            if (c == 3) {break;} //catch the ctrl-C file end marker - exit
+    if (image == null) {return;}
 
-            if (c == '\r' || c == '\n' || c == ',' || c == ' ') {continue;}
-
-            // catch new address flag
-            if (c == '$') {
-
-                inputStream.read(); //read and ignore the 'A'
-
-                //read next four characters to create new address value
-                n3 = fromHex(inputStream.read());
-                n2 = fromHex(inputStream.read());
-                n1 = fromHex(inputStream.read());
-                n0 = fromHex(inputStream.read());
-
-               address =
-                    (int)((n3<<12) & 0xf000) +
-                    (int)((n2<<8) & 0xf00) +
-                    (int)((n1<<4) & 0xf0) +
-                    (int)(n0 & 0xf);
-
-            }
-            else{
-
-                //if this part reached, must be a digit for a character so add
-                //it into value, using the place count to specify the shift
-
-                c = fromHex(c);
+    byte[] buffer = new byte[2];
 
-                if (place == 3) {value += (int)((c<<12) & 0xf000);}
-                else if (place == 2) {value += (int)((c<<8)  & 0xf00);}
-                else if (place == 1) {value += (int)((c<<4) & 0xf0);}
-                else{
+    for (int b = 0; b < image.getNumberOfBlocks(); b++){
 
-                    //fourth character converted, add it in and write word
+        int address = image.getBlockAddress(b);
 
-                    value += (int)(c & 0xf);
+        for (int i = 0; i < image.getBlockLength(b); i++){
 
-                    //read from shared program memory page 0
-                    readRAMDSP(
-                            pDSPChip, pDSPCore, 1, 0, address++, buffer, true);
+            //read from shared program memory page 0
+            readRAMDSP(pDSPChip, pDSPCore, 1, 0, address++, buffer, true);
 
-                    int memValue = (int)((buffer[0]<<8) & 0xff00)
+            int memValue = (int)((buffer[0]<<8) & 0xff00)
                                                      + (int)(buffer[1] & 0xff);
 
-                    //compare the value read from memory with the code from file
-                    if (value != memValue) {
-                        logger.logMessage(
-                         "UT " + chassisSlotAddr + " DSP code error"
-                         + "\n" + "    Chip " + pDSPChip + " Cores " + core
-                         + "  Address: " + (address-1) + "\n");
-                    }
-
-                    //request and wait for a status flag ever so often to make
-                    //sure the remote's buffer is not overrun
-                    if(packetCnt++ >= 100){
-                        getRemoteData(GET_STATUS_CMD, true);
-                        packetCnt = 0;
-                    }
-
-                    place = 3; value = 0; //start over for next word
-
-                    continue; //skip the decrement below
-                }
-
-                //can't decrement in the if statements because they will do the
-                //dec even if the test fails
-                place--;
+            //compare the value read from memory with the code from file
+            if (image.getWord(b, i) != memValue) {
+                logger.logMessage(
+                 "UT " + chassisSlotAddr + " DSP code error"
+                 + "\n" + "    Chip " + pDSPChip + " Cores " + core
+                 + "  Address: " + (address-1) + "\n");
+            }
 
+            //request and wait for a status flag ever so often to make
+            //sure the remote's buffer is not overrun
+            if(packetCnt++ >= 100){
+                getRemoteData(GET_STATUS_CMD, true);
+                packetCnt = 0;
             }
-        }//while ((c =
-    }// try
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 2259");
-        logger.logMessage(
-                    "Error opening DSP code file " + dspCodeFilename + "\n");
 
-    }
-    finally {
-        if (inputStream != null) {
-            try{inputStream.close();}catch(IOException e){}
         }
-    }// finally
+    }
 
 }//end of UTBoard::verifyDSPCode2
 //-----------------------------------------------------------------------------
 
-//-----------------------------------------------------------------------------
-// UTBoard::fromHex
-//
-// Converts a hex character to decimal.
-//
-
-int fromHex(int pChar)
-{
-
-    if (pChar == '0') {return 0;}
-    else
-    if (pChar == '1') {return 1;}
-    else
-    if (pChar == '2') {return 2;}
-    else
-    if (pChar == '3') {return 3;}
-    else
-    if (pChar == '4') {return 4;}
-    else
-    if (pChar == '5') {return 5;}
-    else
-    if (pChar == '6') {return 6;}
-    else
-    if (pChar == '7') {return 7;}
-    else
-    if (pChar == '8') {return 8;}
-    else
-    if (pChar == '9') {return 9;}
-    else
-    if (pChar == 'a' || pChar == 'A') {return 10;}
-    else
-    if (pChar == 'b' || pChar == 'B') {return 11;}
-    else
-    if (pChar == 'c' || pChar == 'C') {return 12;}
-    else
-    if (pChar == 'd' || pChar == 'D') {return 13;}
-    else
-    if (pChar == 'e' || pChar == 'E') {return 14;}
-    else
-    if (pChar == 'f' || pChar == 'F') {return 15;}
-    else
-        {return 0;}
-
-}//end of UTBoard::fromHex
-//-----------------------------------------------------------------------------
-
 //-----------------------------------------------------------------------------
 // UTBoard::sendHardwareDelay
 //
@@ -3078,6 +3125,15 @@ public void linkLogicalChannel(int pChannel, Channel pLogicalChannel,
 
     bdChs[pChannel].gates = pGates;
 
+    //the peak data for the gates is written directly to the peak store
+    peakStore = pLogicalChannel.peakStore;
+
+    bdChs[pChannel].peakIds = new int[pNumberOfGates];
+
+    for (int i = 0; i < pNumberOfGates; i++){
+        bdChs[pChannel].peakIds[i] = pGates[i].peakId;
+    }
+
 }//end of UTBoard::linkLogicalChannel
 //-----------------------------------------------------------------------------
 
@@ -3461,6 +3517,69 @@ public void logAllDSPStatus()
 }//end of UTBoard::logAllDSPStatus
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// UTBoard::waitForDSPsRunning
+//
+// Requests and logs the status of every DSP core, repeating the request for
+// each core until it answers. A core can only answer once it is running, so
+// this is used rather than a fixed delay after the cores are released from
+// reset. Cores which have not answered within DSP_START_TIMEOUT milliseconds
+// are given up on.
+//
+// Returns true if every core answered.
+//
+
+boolean waitForDSPsRunning()
+{
+
+    long deadline = System.nanoTime() + DSP_START_TIMEOUT * 1000000L;
+
+    boolean allRunning = true;
+
+    for (int chip = 1; chip <= 2; chip++){
+        for (int core = 1; core <= 4; core++){
+
+            if (!waitForDSPStatus(chip, core, deadline)){
+                logger.logMessage("UT " + chassisSlotAddr + " Chip: " + chip
+                            + " Core: " + core + " is not running" + "\n");
+                allRunning = false;
+            }
+        }
+    }
+
+    return(allRunning);
+
+}//end of UTBoard::waitForDSPsRunning
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::waitForDSPStatus
+//
+// Requests and logs the status of the specified core until it answers or
+// System.nanoTime passes pDeadline. At least one request is always made.
+//
+// Returns true if the core answered.
+//
+
+private boolean waitForDSPStatus(int pDSPChip, int pDSPCore, long pDeadline)
+{
+
+    do{
+
+        dspStatusMessageRcvd = false;
+
+        if (logDSPStatusHelper(pDSPChip, pDSPCore, true)
+                                            && dspStatusMessageRcvd){
+            return(true);
+        }
+
+    }while(System.nanoTime() - pDeadline < 0);
+
+    return(false);
+
+}//end of UTBoard::waitForDSPStatus
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // UTBoard::logDSPStatus
 //
@@ -3611,7 +3730,7 @@ public void sendMessageToDSP(byte... pBytes)
 
     sendBytes(pBytes);
 
-    dspMessageSentCounter++;
+    dspMessageSentCounter.incrementAndGet();
 
 }//end of UTBoard::sendMessageToDSP
 //-----------------------------------------------------------------------------
@@ -3626,46 +3745,161 @@ public void sendMessageToDSP(byte... pBytes)
 public void clearDSPMessageAndAckCounters()
 {
 
-    dspMessageSentCounter = 0; dspMessageAckCounter = 0;
+    dspMessageSentCounter.set(0); dspMessageAckCounter.set(0);
+
+}//end of UTBoard::clearDSPMessageAndAckCounters
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::checkDSPAckCountVsMessageCount
+//
+// Compares the number of DSP messages sent to the number of DSP ack packets
+// received and returns true if they match and false if not.
+//
+
+public boolean checkDSPAckCountVsMessageCount()
+{
+
+    return(dspMessageSentCounter.get() == dspMessageAckCounter.get());
+
+}//end of UTBoard::checkDSPAckCountVsMessageCount
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::compareDSPAckCountToMessageCount
+//
+// Compares the number of DSP messages to the number of DSP ack packets
+// received and logs an error if they differ. Resets both counts.
+//
+
+public void compareDSPAckCountToMessageCount()
+{
+
+    int sent = dspMessageSentCounter.getAndSet(0);
+    int acks = dspMessageAckCounter.getAndSet(0);
+
+    if(sent != acks) {
+        logger.logMessage(
+              "UT " + chassisSlotAddr + " ~ " + ipAddrS + " has sent "
+            + sent + " DSP messages but has received " +
+              acks + " ACK packets.\n");
+    }
+
+}//end of UTBoard::compareDSPAckCountToMessageCount
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::waitForDSPAcks
+//
+// Processes packets from the remote until an Ack has been received for every
+// DSP message sent. Returns early if no packet is received within the time
+// out so that a remote which has stopped responding does not stall the
+// caller.
+//
+// If a reader thread owns the socket, it counts the Acks and this method only
+// waits for the count to match, returning early if it does not change within
+// the time out.
+//
+
+void waitForDSPAcks()
+{
+
+    if (!isPacketThread()){
+
+        flushOutbound(); //the messages must not wait in the queue
+
+        int acks = dspMessageAckCounter.get(), count = 0;
+
+        while (!checkDSPAckCountVsMessageCount()){
+            waitSleep(10);
+            if (acks != dspMessageAckCounter.get()){
+                acks = dspMessageAckCounter.get(); count = 0;
+            }
+            else if (count++ >= TIMEOUT) {return;}
+        }
+
+        return;
+    }
+
+    while (!checkDSPAckCountVsMessageCount()){
+        if (processDataPackets(true, TIMEOUT) == -1) {return;}
+    }
 
-}//end of UTBoard::clearDSPMessageAndAckCounters
+}//end of UTBoard::waitForDSPAcks
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// UTBoard::checkDSPAckCountVsMessageCount
+// UTBoard::confirmDSPAcks
 //
-// Compares the number of DSP messages sent to the number of DSP ack packets
-// received and returns true if they match and false if not.
+// Processes the packets available from the remote until an Ack has been
+// received for every DSP message sent or about 300 ms have passed, then logs
+// a message if any Acks are missing. The message and Ack counters are then
+// cleared.
+//
+// If a reader thread owns the socket, it processes the packets and counts the
+// Acks, so this method only waits for the count.
+//
+// Used after sending changes made by the user, for which the counters should
+// be cleared before the first change is sent.
 //
 
-public boolean checkDSPAckCountVsMessageCount()
+public void confirmDSPAcks()
 {
 
-    return(dspMessageSentCounter == dspMessageAckCounter);
+    //the messages must not wait in the queue
+    flushOutbound();
 
-}//end of UTBoard::checkDSPAckCountVsMessageCount
+    //process packets until expected number of acks received or time out
+
+    int count = 0;
+    while(!checkDSPAckCountVsMessageCount() && count++ < 10){
+        waitSleep(30);
+        if (isPacketThread()) {processAllAvailableDataPackets(false);}
+    }
+
+    //check to see if each message received and ACK
+    compareDSPAckCountToMessageCount();
+
+}//end of UTBoard::confirmDSPAcks
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// UTBoard::compareDSPAckCountToMessageCount
+// UTBoard::initializeChannels
 //
-// Compares the number of DSP messages to the number of DSP ack packets
-// received and logs an error if they differ. Resets both counts.
+// Sets up the channels in pChannels, all of which must be attached to this
+// board.
+//
+// Rather than waiting for the DSPs to acknowledge the settings for each
+// channel in turn, the settings for all of the channels are collected and
+// sent to the remote with as few writes as possible. The Acks are then
+// processed as they arrive until one has been received for every message.
+// The remote handles the messages in order, so each channel is still enabled
+// only after its settings have been applied.
+//
+// Each board's channels may be set up on a different thread at the same
+// time as those of other boards.
 //
 
-public void compareDSPAckCountToMessageCount()
+public void initializeChannels(List<Channel> pChannels)
 {
 
-    if(dspMessageSentCounter != dspMessageAckCounter) {
-        logger.logMessage(
-              "UT " + chassisSlotAddr + " ~ " + ipAddrS + " has sent "
-            + dspMessageSentCounter + " DSP messages but has received " +
-              dspMessageAckCounter + " ACK packets.\n");
+    clearDSPMessageAndAckCounters();
+
+    beginBatch();
+
+    try{
+        for (Channel channel : pChannels) {channel.initialize(false);}
+    }
+    finally{
+        endBatch();
     }
 
-    dspMessageSentCounter = 0; dspMessageAckCounter = 0;
+    waitForDSPAcks();
 
-}//end of UTBoard::compareDSPAckCountToMessageCount
+    //check to see if each message received an ACK
+    compareDSPAckCountToMessageCount();
+
+}//end of UTBoard::initializeChannels
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -4050,7 +4284,8 @@ public void getPeakDataFromDSP(int pChannel)
 public void driveSimulation()
 {
 
-    if (simulate && socket != null) {
+    //a replay simulator runs its own threads and needs no driving
+    if (simulate && socket instanceof UTSimulator) {
         ((UTSimulator)socket).processDataPackets(false);
     }
 
@@ -4082,6 +4317,12 @@ void configure(IniFile pConfigFile)
     dspCodeFilename = pConfigFile.readString(
                         "Hardware", "UT DSP Code Filename", "not specified");
 
+    dspCodeWordsPerStatusCheck = Math.max(1, pConfigFile.readInt(
+               "Hardware", "UT DSP Code Words Per Status Check", 100));
+
+    dspCodeStatusChecksOutstanding = Math.max(1, pConfigFile.readInt(
+               "Hardware", "UT DSP Code Status Checks Outstanding", 2));
+
     inBuffer = new byte[RUNTIME_PACKET_SIZE];
     outBuffer = new byte[RUNTIME_PACKET_SIZE];
 
@@ -4129,6 +4370,9 @@ void configureExtended(IniFile pConfigFile)
 
     if(dataBufferSize > 0){ dataBuffer = new short[dataBufferSize]; }
 
+    incrementalDataBufferSize =
+            pConfigFile.readInt(section, "Incremental Data Buffer Size", 0);
+
     nSPerDataPoint = pConfigFile.readDouble(section, "nS per Data Point", 15.0);
     uSPerDataPoint = nSPerDataPoint / 1000;
 
@@ -4230,98 +4474,102 @@ public int getType()
 public int processOneDataPacket(boolean pWaitForPkt, int pTimeOut)
 {
 
-    if (byteIn == null) {return -1;}  //do nothing if the port is closed
+    //do nothing if the port is closed or another thread is reading packets
+    if (packetRing == null || !isPacketThread()) {return -1;}
 
     try{
 
-        //wait a while for a packet if parameter is true
-        if (pWaitForPkt){
-            timeOutWFP = 0;
-            while(byteIn.available() < 7 && timeOutWFP++ < pTimeOut){
-                waitSleep(10);
-            }
-        }
+        //wait a while for a packet if parameter is true -- the available
+        //bytes are pulled into the ring in bulk
+        if (pWaitForPkt) {packetRing.waitForBytes(7, pTimeOut * 10);}
 
         //wait until 7 bytes are available - this should be the 4 header bytes,
         //the packet identifier, the DSP chip identifier, and the DSP core
         //identifier
-        if (byteIn.available() < 7) {return -1;}
-
-        //read the bytes in one at a time so that if an invalid byte is
-        //encountered it won't corrupt the next valid sequence in the case
-        //where it occurs within 3 bytes of the invalid byte
+        if (packetRing.available() < 7) {return -1;}
 
-        //check each byte to see if the first four create a valid header
-        //if not, jump to resync which deletes bytes until a valid first header
-        //byte is reached
+        //if the ring does not begin with a valid header, resync by scanning
+        //the ring for the next header -- only the bytes preceding that header
+        //are lost so the packet can still be processed if it has arrived
 
-        //if the reSynced flag is true, the buffer has been resynced and an 0xaa
-        //byte has already been read from the buffer so it shouldn't be read
-        //again
-
-        //after a resync, the function exits without processing any packets
-
-        if (!reSynced){
-            //look for the 0xaa byte unless buffer just resynced
-            byteIn.read(inBuffer, 0, 1);
-            if (inBuffer[0] != (byte)0xaa) {reSync(); return 0;}
+        if (!packetRing.startsWithHeader()){
+            reSync();
+            if (packetRing.count < 7) {return 0;}
         }
-        else {reSynced = false;}
 
-        byteIn.read(inBuffer, 0, 1);
-        if (inBuffer[0] != (byte)0x55) {reSync(); return 0;}
-        byteIn.read(inBuffer, 0, 1);
-        if (inBuffer[0] != (byte)0xbb) {reSync(); return 0;}
-        byteIn.read(inBuffer, 0, 1);
-        if (inBuffer[0] != (byte)0x66) {reSync(); return 0;}
-
-        //read in the packet identifier and the dsp chip and core identifiers
-        byteIn.read(inBuffer, 0, 3);
+        PacketView header = packetRing.view();
 
         //store the ID of the packet (the packet type)
-        pktID = inBuffer[0];
+        pktID = header.get(4);
 
         //store the ID of the chip associated with this packet
-        pktDSPChipID = inBuffer[1];
+        pktDSPChipID = header.get(5);
 
         //store the ID of the core associated with this packet
-        pktDSPCoreID = inBuffer[2];
+        pktDSPCoreID = header.get(6);
+
+        packetRing.skip(7);
 
         //reset the DSP message details -- will get set by processDSPMessage
         //if the packet is a DSP message response
 
         dspMsgID = DSP_NULL_MSG_CMD; dspMsgCoreID = DSP_NULL_CORE;
 
-        if ( pktID == GET_STATUS_CMD) {return processRabbitStatusPacket();}
+        int count = processPacketByID();
 
-        if ( pktID == GET_ASCAN_CMD) {return processAScanPacket();}
-
-        if ( pktID == READ_DSP_CMD || pktID == READ_NEXT_DSP_CMD) {
-            return processReadDSPPacket();
+        if (count > 0){
+            packetCounters[pktID & 0xff].increment();
+            bytesReceivedCounter.add(count + 7);
         }
 
-        if ( pktID == READ_DSP_BLOCK_CMD) {return processReadDSPBlockPacket();}
+        return(count);
+
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 3453");
+    }
+
+    return 0;
 
-        if ( pktID == MESSAGE_DSP_CMD) {return processDSPMessage();}
+}//end of UTBoard::processOneDataPacket
+//-----------------------------------------------------------------------------
 
-        if ( pktID == GET_PEAK_DATA_CMD) {return processPeakDataPacket(1);}
+//-----------------------------------------------------------------------------
+// UTBoard::processPacketByID
+//
+// Processes the packet following the header according to its packet ID.
+//
+// Returns the value described in processOneDataPacket.
+//
 
-        if ( pktID == GET_PEAK_DATA4_CMD) {return processPeakDataPacket(4);}
+private int processPacketByID() throws IOException
+{
 
-        if ( pktID == GET_WALL_MAP_CMD) {return processWallMapPacket();}
+    if ( pktID == GET_STATUS_CMD) {return processRabbitStatusPacket();}
 
-        if ( pktID == GET_DSP_RAM_BLOCK_CHECKSUM) {
-            return processGetDSPRamChecksumPacket();
-        }
+    if ( pktID == GET_ASCAN_CMD) {return processAScanPacket();}
 
+    if ( pktID == READ_DSP_CMD || pktID == READ_NEXT_DSP_CMD) {
+        return processReadDSPPacket();
     }
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 3453");
+
+    if ( pktID == READ_DSP_BLOCK_CMD) {return processReadDSPBlockPacket();}
+
+    if ( pktID == MESSAGE_DSP_CMD) {return processDSPMessage();}
+
+    if ( pktID == GET_PEAK_DATA_CMD) {return processPeakDataPacket(1);}
+
+    if ( pktID == GET_PEAK_DATA4_CMD) {return processPeakDataPacket(4);}
+
+    if ( pktID == GET_WALL_MAP_CMD) {return processWallMapPacket();}
+
+    if ( pktID == GET_DSP_RAM_BLOCK_CHECKSUM) {
+        return processGetDSPRamChecksumPacket();
     }
 
     return 0;
 
-}//end of UTBoard::processOneDataPacket
+}//end of UTBoard::processPacketByID
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -4338,6 +4586,10 @@ public int processOneDataPacket(boolean pWaitForPkt, int pTimeOut)
 public int processDataPacketsUntilPeakPacket()
 {
 
+    //if the reader thread is handling the packets, apply the next queued peak
+    //data if there is one
+    if (peakEventRing != null) {return(applyNextPeakDataEvent());}
+
     int x = 0;
 
     //this flag will be set true if a Peak Data packet is processed
@@ -4356,6 +4608,52 @@ public int processDataPacketsUntilPeakPacket()
 }//end of UTBoard::processDataPacketsUntilPeakPacket
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// UTBoard::applyNextPeakDataEvent
+//
+// Applies the oldest peak data event queued by the reader thread.
+//
+// Returns 1 if an event was applied, -1 if none were waiting.
+//
+
+int applyNextPeakDataEvent()
+{
+
+    PeakDataEvent event = peakEventRing.peek();
+
+    if (event == null) {return -1;}
+
+    applyPeakData(event);
+
+    peakEventRing.release();
+
+    peakDataPacketProcessed = true;
+
+    return 1;
+
+}//end of UTBoard::applyNextPeakDataEvent
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::startReaderThread
+//
+// Creates the queue for passing peak data to the collection thread and starts
+// the reader thread.
+//
+
+@Override
+public void startReaderThread()
+{
+
+    if (packetRing == null || readerThread != null) {return;}
+
+    peakEventRing = new SPSCRing<>(EVENT_RING_SIZE, PeakDataEvent::new);
+
+    super.startReaderThread();
+
+}//end of UTBoard::startReaderThread
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // UTBoard::processAllAvailableDataPackets
 //
@@ -4473,28 +4771,21 @@ private void handleDSPMessageErrors()
 //-----------------------------------------------------------------------------
 // UTBoard::reSync
 //
-// Clears bytes from the socket buffer until 0xaa byte reached which signals
-// the *possible* start of a new valid packet header or until the buffer is
-// empty.
-//
-// If an 0xaa byte is found, the flag reSynced is set true so that other
-// functions will know that an 0xaa byte has already been removed from the
-// stream, signalling the possible start of a new packet header.
+// Discards bytes from the packet ring until a valid packet header is reached
+// or only a possible partial header remains.
 //
-// There is a special case where a 0xaa is found just before the valid 0xaa
-// which starts a new packet - the first 0xaa is the last byte of the previous
-// packet.  In this case, the next packet will be lost as well.  This should
-// happen rarely.
+// The ring is scanned for the full four byte header, so only the bytes
+// preceding the next valid header are lost. A stray 0xaa byte just before a
+// valid header does not cause the following packet to be lost.
 //
 
 public void reSync()
 {
 
-    reSynced = false;
-
     //track the number of times this function is called, even if a resync is not
     //successful - this will track the number of sync errors
     reSyncCount++;
+    reSyncCounter.increment();
 
     //store info pertaining to what preceded the reSync - these values will be
     //overwritten by the next reSync, so they only reflect the last error
@@ -4504,15 +4795,7 @@ public void reSync()
     reSyncDSPChip = pktDSPChipID; reSyncDSPCore = pktDSPCoreID;
     reSyncPktID = pktID; reSyncDSPMsgID = dspMsgID;
 
-    try{
-        while (byteIn.available() > 0) {
-            byteIn.read(inBuffer, 0, 1);
-            if (inBuffer[0] == (byte)0xaa) {reSynced = true; break;}
-            }
-        }
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 3573");
-    }
+    packetRing.skipToHeader();
 
 }//end of UTBoard::reSync
 //-----------------------------------------------------------------------------
@@ -4760,7 +5043,7 @@ private int processDSPAckMessage()
             waitSleep(10);
             }
         if (byteIn.available() >= 1) {
-            dspMessageAckCounter++;
+            dspMessageAckCounter.incrementAndGet();
             return byteIn.read(inBuffer, 0, 1);
         }
         }// try
@@ -4779,34 +5062,28 @@ private int processDSPAckMessage()
 // Transfers data from an AScan data packet to a class array.  The data is
 // first stored in a FIFO so multiple samples can be averaged for smoothing.
 //
+// Rather than summing all the data sets in the FIFO for each packet, running
+// sums are kept in aScanBuffer: the data set being replaced in the FIFO is
+// subtracted and the new one added. The sums are only computed from scratch
+// when the amount of smoothing changes.
+//
 // Returns number of bytes retrieved from the socket.
 //
 
 public int processAScanPacket()
 {
 
-    int x;
-
     //allow another request packet to be transmitted now that the return
     //packet for the previous request has been received
     aScanRcvd = true;
 
-    try{
-        timeOutProcess = 0;
-        while(timeOutProcess++ < TIMEOUT){
-            if (byteIn.available() >= 804) {break;}
-            waitSleep(10);
-            }
-        if ((x = byteIn.available()) >= 804) {byteIn.read(inBuffer, 0, 804);}
-        else
-            {return 0;}
-        }// try
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 3832");
-    }
+    if (!waitForNumberOfBytes(804)) {return 0;}
+
+    //the data is decoded in place from the ring
+    PacketView v = packetRing.view();
 
     //get the board channel from the packet for the aScan data set
-    int channel = inBuffer[0];
+    int channel = v.get(0);
     if (channel < 0) {channel = 0;} if (channel > 3) {channel = 3;}
 
     int aScanSmoothing = bdChs[channel].aScanSmoothing;
@@ -4815,113 +5092,89 @@ public int processAScanPacket()
     aScanFIFOIndex++;
     if (aScanFIFOIndex >= aScanSmoothing) {aScanFIFOIndex = 0;}
 
+    if (aScanSmoothing != aScanSumCount) {sumAScanFIFO(aScanSmoothing);}
+
+    AScan fifo = aScanFIFO[aScanFIFOIndex];
+    int[] sums = aScanBuffer.buffer;
+
+    //remove the data set being replaced from the sums
+
+    aScanBuffer.interfaceCrossingPosition -= fifo.interfaceCrossingPosition;
+
+    for (int i=0; i<ASCAN_SAMPLE_SIZE; i++) {sums[i] -= fifo.buffer[i];}
+
     //get the aScan range associated with this data set - this should be used
     //for the display because when the range is being changed, the value the
     //host currently has may not be what was used by the DSP due to pipeline
     //latency in the connection
 
-    aScanFIFO[aScanFIFOIndex].range = inBuffer[1];
+    fifo.range = v.get(1);
 
     //get the location where the interface crossed the interface gate
 
-    aScanFIFO[aScanFIFOIndex].interfaceCrossingPosition =
-            (int)((inBuffer[2]<<8) & 0xff00) + (int)(inBuffer[3] & 0xff);
+    fifo.interfaceCrossingPosition = v.getUnsignedShort(2);
 
     //the interface crossing position returned by the DSP is relative to the
     //start of the sample buffer stored by the FPGA - the FPGA delays by
     //hardwareDelay number of samples from the initial pulse before recording,
     //add this back in to make the crossing value relative to the initial pulse
-    aScanFIFO[aScanFIFOIndex].interfaceCrossingPosition += hardwareDelay;
-
-    for (int i = 0; i < firBuf.length; i++) {firBuf[i] = 0;}
+    fifo.interfaceCrossingPosition += hardwareDelay;
 
     //transfer the bytes to the int array - allow for sign extension
     //400 words from 800 bytes, MSB first
     //the +4 shifts past the leading info bytes
-    //the +5 points to the LSB (would be +1 without the shift)
+
+    int rejectLevel = bdChs[channel].rejectLevel;
+    Channel logicalChannel = bdChs[channel].logicalChannel;
+    boolean linearize = logicalChannel.linearizationEnabled;
 
     for (int i=0; i<ASCAN_SAMPLE_SIZE; i++){
 
-        int raw, filtered = 0;
+        int raw;
 
-         raw =
-           (int)((int)(inBuffer[i*2+4]<<8) + (inBuffer[(i*2)+5] & 0xff));
+        raw = v.getShort(i*2+4);
 
-        if (raw > 0 && raw < bdChs[channel].rejectLevel) {raw = raw % 10;}
-        else if (raw < 0 && raw > -bdChs[channel].rejectLevel) {raw = raw % 10;}
+        if (raw > 0 && raw < rejectLevel) {raw = raw % 10;}
+        else if (raw < 0 && raw > -rejectLevel) {raw = raw % 10;}
 
-        if (bdChs[channel].logicalChannel.linearizationEnabled){
-            raw = bdChs[channel].logicalChannel.applyLinearization(raw);
-        }
+        if (linearize) {raw = logicalChannel.applyLinearization(raw);}
 
         raw *= ASCAN_SCALE;
 
-        boolean filterActive = false;
-
-        if (filterActive){
-
-            //apply FIR filtering
+        fifo.buffer[i] = raw;
 
-            //shift the old samples and insert the newest
-            for(int n = firBuf.length-1; n>0; n--) {firBuf[n] = firBuf[n-1];}
-            firBuf[0] = raw;
-
-            //calculate the new filtered output value
-            for(int n=0; n<firCoef.length; n++){
-                filtered += firCoef[n] * firBuf[n];
-            }
-
-            filtered /= 290000;
+        }// for (int i=0; i<ASCAN_SAMPLE_SIZE; i++)
 
-            }
-        else{
-            filtered = raw; //no filtering applied
-            }
+    //remove the packet from the ring now that it has been decoded
+    packetRing.skip(804);
 
-        aScanFIFO[aScanFIFOIndex].buffer[i] = filtered;
+    FIRFilter filter = bdChs[channel].aScanFilter;
 
-        }// for (int i=0; i<ASCAN_SAMPLE_SIZE; i++)
+    if (filter != null) {filter.apply(fifo.buffer, ASCAN_SAMPLE_SIZE);}
 
-    // the display thread can be accessing the aScan buffer at any time, so
-    // prepare all the data in the aScanBuffer first - transferring from
-    // the aScanBuffer to aScan is not visible because the data is nearly
-    // identical each time when the transfer occurs
+    //add the new data set to the sums
 
     //transfer the range to the aScan object as is
-    aScanBuffer.range = aScanFIFO[aScanFIFOIndex].range;
+    aScanBuffer.range = fifo.range;
     //the interfaceCrossingPosition gets averaged
-    aScanBuffer.interfaceCrossingPosition = 0;
+    aScanBuffer.interfaceCrossingPosition += fifo.interfaceCrossingPosition;
     //the data samples get averaged
-    for (int i=0; i<ASCAN_SAMPLE_SIZE; i++) {aScanBuffer.buffer[i] = 0;}
-
-    for (int i=0; i<aScanSmoothing; i++){
-
-        //sum the interface crossing position from each dataset
-        aScanBuffer.interfaceCrossingPosition +=
-                                        aScanFIFO[i].interfaceCrossingPosition;
-
-        //sum all datasets in the fifo
-        for (int j=0; j<ASCAN_SAMPLE_SIZE; j++){
-            aScanBuffer.buffer[j] += aScanFIFO[i].buffer[j];
-        }
-
-    }//for (int i=0; i< aScanSmoothing; i++)
+    for (int i=0; i<ASCAN_SAMPLE_SIZE; i++) {sums[i] += fifo.buffer[i];}
 
+    // the display thread can be accessing the aScan buffer at any time, so
+    // all the data is prepared in aScanBuffer first - transferring from
+    // the aScanBuffer to aScan is not visible because the data is nearly
+    // identical each time when the transfer occurs
 
-    // transfer from aScanBuffer to aScan now that most calculations are done
     //divide values by the number of samples summed from the FIFO to get average
 
     //transfer the range to the aScan object as is
     aScan.range = aScanBuffer.range;
 
-    int t;
-
     aScan.interfaceCrossingPosition =
                         aScanBuffer.interfaceCrossingPosition / aScanSmoothing;
     for (int i=0; i<ASCAN_SAMPLE_SIZE; i++) {
-        t = aScanBuffer.buffer[i] / aScanSmoothing;
-        //t = aScanBuffer.buffer[i]; //debug mks see line above --  -- don't scale the average as DSP does not
-        aScan.buffer[i] = t;
+        aScan.buffer[i] = sums[i] / aScanSmoothing;
         }
 
     //signal that new aScan data is available
@@ -4933,20 +5186,53 @@ public int processAScanPacket()
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// UTBoard::processPeakData
+// UTBoard::sumAScanFIFO
+//
+// Sets the running sums in aScanBuffer to the sums of the first pCount data
+// sets in aScanFIFO.
+//
+
+private void sumAScanFIFO(int pCount)
+{
+
+    int[] sums = aScanBuffer.buffer;
+
+    aScanBuffer.interfaceCrossingPosition = 0;
+    for (int i=0; i<ASCAN_SAMPLE_SIZE; i++) {sums[i] = 0;}
+
+    for (int i=0; i<pCount; i++){
+
+        aScanBuffer.interfaceCrossingPosition +=
+                                        aScanFIFO[i].interfaceCrossingPosition;
+
+        int[] buffer = aScanFIFO[i].buffer;
+
+        for (int j=0; j<ASCAN_SAMPLE_SIZE; j++) {sums[j] += buffer[j];}
+
+    }
+
+    aScanSumCount = pCount;
+
+}//end of UTBoard::sumAScanFIFO
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::decodePeakData
 //
-// Extracts the peak data from a packet.
+// Extracts the raw peak data from a packet and stores it in pEvent. The data
+// is decoded in place from the packet ring. The values are applied to the
+// gates later by applyPeakData.
 //
 // Parameter pNumberOfChannels is the number of channels expected in the
 // packet. Any board channel which is not active have an empty data group
 // returned by the Rabbit.
 //
-// Parameter pBufPtr points to the next byte to be read from the packet.
-//
-// Returns a number greater than zero if a packet successfully extracted.
+// Returns a number greater than zero if a packet successfully extracted. If
+// an error occurs, the channels decoded before the error are still stored in
+// pEvent.
 //
 
-public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
+int decodePeakData(PeakDataEvent pEvent, int pNumberOfChannels)
 {
 
     int x;
@@ -4957,13 +5243,15 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
     for (int h=0; h < pNumberOfChannels; h++){
 
         //get next two bytes -- channel number and number of gates for section
-        if (readBytes(2) == 0) {return(0);}
+        if (!waitForNumberOfBytes(2)) {return(0);}
+
+        PacketView v = packetRing.view();
 
-         x = 0;
+        x = 0;
 
         //retrieve the board channel 0-3
         //this channel number refers to the analog channels on the board
-        int channel = inBuffer[x++];
+        int channel = v.get(x++);
 
         // if the channel number is illegal, bail out - the code will resync to
         // toss the unused bytes still in the socket -- note that -1 designates
@@ -4972,10 +5260,12 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
         if ((channel < 0 || channel > NUMBER_OF_BOARD_CHANNELS-1)
              && channel != -1) {return x;}
 
-        int numberOfGates = inBuffer[x++]; //number of gates for the channel
+        int numberOfGates = v.get(x++); //number of gates for the channel
+
+        packetRing.skip(x);
+
+        if (channel == -1) continue; //skip inactive channel
 
-        if (channel == -1) continue; //skip inactive channel    
-        
         // if the gate count is illegal, bail out - the code will resync to
         // toss the unused bytes still in the socket
 
@@ -4984,32 +5274,92 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
         // calculate the number of data bytes for the channel
         int numberDataBytes = numberOfGates * PEAK_DATA_BYTES_PER_GATE;
 
+        boolean isWallChannel = bdChs[channel].isWallChannel;
+
         //add extra for wall data if the specified channel has such
-        if (bdChs[channel].isWallChannel){
+        if (isWallChannel){
             numberDataBytes += PEAK_DATA_BYTES_FOR_WALL;
         }
 
-        //read bytes for the channel
-        if (readBytes(numberDataBytes) == 0) {return(0);}
+        //wait for bytes for the channel -- they are decoded in place
+        if (!waitForNumberOfBytes(numberDataBytes)) {return(0);}
+
+        v = packetRing.view();
+
+        int n = pEvent.numberOfChannels;
+
+        pEvent.channel[n] = channel;
+        pEvent.numberOfGates[n] = numberOfGates;
+
+        x = 0;
+
+        //cast to short used to force sign extension for signed values -- some
+        //of the wall values may never be negative, but they are handled as
+        //signed for the sake of consistency
+
+        for (int i=0; i < numberOfGates; i++){
+            pEvent.peakFlags[n][i] = v.getUnsignedShort(x); x += 2;
+            pEvent.peak[n][i] = v.getShort(x); x += 2;
+            pEvent.peakFlightTime[n][i] = v.getUnsignedShort(x); x += 2;
+            pEvent.peakTrack[n][i] = v.getUnsignedShort(x); x += 2;
+        }
+
+        // StartNum, StartDen, EndNum, and EndDen for the max and min walls
+        // are skipped as they are no longer used
+
+        pEvent.hasWallData[n] = isWallChannel;
+
+        if (isWallChannel){
+            pEvent.wallMaxPeak[n] = v.getShort(x);
+            pEvent.wallMaxTrack[n] = v.getShort(x + 10);
+            pEvent.wallMinPeak[n] = v.getShort(x + 12);
+            pEvent.wallMinTrack[n] = v.getShort(x + 22);
+        }
+
+        packetRing.skip(numberDataBytes);
+
+        pEvent.numberOfChannels++;
+
+    }// for (int h=0; h < pNumberOfChannels; h++)
+
+    return 1;
+
+}//end of UTBoard::decodePeakData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTBoard::applyPeakData
+//
+// Applies the peak data decoded from a packet to the gates of each channel.
+//
+// This must be called by the thread collecting the data as it modifies
+// values which that thread uses.
+//
+
+public void applyPeakData(PeakDataEvent pEvent)
+{
+
+    //process each channel section decoded from the packet
+
+    for (int h=0; h < pEvent.numberOfChannels; h++){
+
+        int channel = pEvent.channel[h];
+        int numberOfGates = pEvent.numberOfGates[h];
 
         int peakFlags;
         int peak;
         int peakFlightTime;
         int peakTrack;
 
-        x = 0;
-
         for (int i=0; i < numberOfGates; i++){
 
-            peakFlags =
-               (int)((inBuffer[x++]<<8) & 0xff00) + (int)(inBuffer[x++] & 0xff);
+            peakFlags = pEvent.peakFlags[h][i];
 
             //did gate receive the host specified number of consecutive hits?
             boolean hitCountMet;
             hitCountMet = (peakFlags & HIT_COUNT_MET) != 0;
 
-            //cast to short used to force sign extension for signed values
-            peak = (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++]&0xff);
+            peak = pEvent.peak[h][i];
 
             //if the signal is below the reject level, squash it down to 10%
             if (peak < bdChs[channel].rejectLevel) {peak %= 10;}
@@ -5050,8 +5400,7 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
             //NOTE: the FPGA should really subtract the 0x8000 instead of doing
             //it here!
 
-            peakFlightTime =
-               (int)((inBuffer[x++]<<8) & 0xff00) + (int)(inBuffer[x++] & 0xff);
+            peakFlightTime = pEvent.peakFlightTime[h][i];
 
             peakFlightTime -= 0x8000;
 
@@ -5060,8 +5409,7 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
             //position while linear position is read from the control board
             //encoder data
 
-            peakTrack =
-               (int)((inBuffer[x++]<<8) & 0xff00) + (int)(inBuffer[x++] & 0xff);
+            peakTrack = pEvent.peakTrack[h][i];
 
             //debug mks
 
@@ -5113,9 +5461,9 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
 
             peak *= SIGNAL_SCALE; //scale signal up or down
 
-            bdChs[channel].gates[i].storeNewData(peak, 0, 0, 0,
+            peakStore.storeNewData(bdChs[channel].peakIds[i], peak,
                     peakFlags, peakFlightTime, peakTrack, clockPos,
-                    pEncoder1, pEncoder2);
+                    pEvent.encoder1, pEvent.encoder2);
 
             //if the channel has been configured to modify the wall, then save
             //the data so that it can be used to modify the wall elsewhere
@@ -5128,34 +5476,16 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
 
         }// for (int i=0; i < numberOfGates; i++)
 
-        if (bdChs[channel].isWallChannel){
-
-            //cast to short used to force sign extension for signed values
-            //some of these values may never be negative, but they are handled
-            //as signed for the sake of consistency
+        if (pEvent.hasWallData[h]){
 
             // Note that StartNum, StartDen, EndNum, and EndDen are no longer
             // used as the fractional math has been abandonded.
             // See Git commit tag VersionWithFractionalMathForThickness in the
             // Java and DSP code archives for version which used fractional math.
 
-            int wallMaxPeak =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
-
-            int wallMaxStartNum =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
-
-            int wallMaxStartDen =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
-
-            int wallMaxEndNum =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
+            int wallMaxPeak = pEvent.wallMaxPeak[h];
 
-            int wallMaxEndDen =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
-
-            int wallMaxTrack =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
+            int wallMaxTrack = pEvent.wallMaxTrack[h];
 
             double maxThickness = (double)wallMaxPeak;
 
@@ -5181,7 +5511,7 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
 
             //store the max peak - overwrites info saved for this gate above
             //debug mks - gates[1] should use wallStartGate specified by user
-            bdChs[channel].gates[1].storeNewDataD(
+            peakStore.storeNewDataD(bdChs[channel].peakIds[1],
                                          maxThickness, wallMaxTrack, clockPos);
             
             //output as analog signal if enabled
@@ -5189,29 +5519,9 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
                 outputWallThicknessOnAnalogOutput(channel, maxThickness);
             }
                         
-            // Note that StartNum, StartDen, EndNum, and EndDen are no longer
-            // used as the fractional math has been abandonded.
-            // See Git commit tag VersionWithFractionalMathForThickness in the
-            // Java and DSP code archives for version which used fractional
-            // math.
+            int wallMinPeak = pEvent.wallMinPeak[h];
 
-            int wallMinPeak =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
-
-            int wallMinStartNum =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
-
-            int wallMinStartDen =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
-
-            int wallMinEndNum =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
-
-            int wallMinEndDen =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
-
-            int wallMinTrack =
-                 (short)((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
+            int wallMinTrack = pEvent.wallMinTrack[h];
 
             double minThickness = (double)wallMinPeak;
 
@@ -5250,7 +5560,7 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
 
             //store the min peak - overwrites info saved for this gate above
             //debug mks - gates[2] should use the wallEndGate specified by user
-            bdChs[channel].gates[2].storeNewDataD(
+            peakStore.storeNewDataD(bdChs[channel].peakIds[2],
                                          minThickness, wallMinTrack, clockPos);
 
             //output as analog signal if enabled
@@ -5262,18 +5572,17 @@ public int processPeakData(int pNumberOfChannels, int pEncoder1, int pEncoder2)
             //debug mks -- sets max wall to min wall since max wall is so
             //screwed up at Tejas
             //store the max peak - overwrites info saved for this gate above
-            bdChs[channel].gates[1].storeNewDataD(
+            peakStore.storeNewDataD(bdChs[channel].peakIds[1],
                                          minThickness, wallMinTrack, clockPos);
             //debug mks end
             
             
-        }// if (bdChs[channel].isWallChannel)
+        }// if (pEvent.hasWallData[h])
 
-    }// for (int h=0; h < pNumberOfChannels; h++)
 
-    return 1;
+    }// for (int h=0; h < pNumberOfChannels; h++)
 
-}//end of UTBoard::processPeakData
+}//end of UTBoard::applyPeakData
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -5327,6 +5636,9 @@ public void outputWallThicknessOnAnalogOutput(int pChannel, double pValue)
 // Parameter pNumberOfChannels is the number of channels expected in the
 // packet.
 //
+// If a reader thread is running, the decoded data is queued for the data
+// collection thread to apply. Otherwise it is applied immediately.
+//
 // Returns a number greater than zero if a packet successfully extracted.
 //
 
@@ -5341,34 +5653,55 @@ public int processPeakDataPacket(int pNumberOfChannels)
 
     int x;
 
-    //read packet number, status, encoder 1, encoder 2
-    if (readBytes(10) == 0) {return(0);}
+    //wait for packet number, status, encoder 1, encoder 2
+    if (!waitForNumberOfBytes(10)) {return(0);}
+
+    PeakDataEvent event = peakDataEvent;
+
+    //if queueing for the collection thread, wait for a free event
+    if (peakEventRing != null){
+        while ((event = peakEventRing.claim()) == null){
+            if (!readerActive) {return(0);}
+            waitSleep(1);
+        }
+    }
+
+    event.clear();
+
+    PacketView v = packetRing.view();
 
     x = 0;
 
-    pktNumber = (int)inBuffer[x++];
-    status = (int)inBuffer[x++];
+    pktNumber = (int)v.get(x++);
+    status = (int)v.get(x++);
 
     //get the position of encoder 1
     //this is the entry encoder or the carriage encoder depending on unit type
     //note that not all systems use the encoder 1 value in this packet -- in
     //many configurations the UT boards do not know the encoder values
 
-    int encoder1 =
-         ((inBuffer[x++]<<24) & 0xff000000) +  ((inBuffer[x++]<<16) & 0xff0000)
-          + ((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
+    event.encoder1 = v.getInt(x); x += 4;
 
     //get the position of encoder 2
     //this is the entry encoder or the carriage encoder depending on unit type
     //note that not all systems use the encoder 2 value in this packet -- in
     //many configurations the UT boards do not know the encoder values
 
-    int encoder2 =
-          ((inBuffer[x++]<<24) & 0xff000000) + ((inBuffer[x++]<<16) & 0xff0000)
-           + ((inBuffer[x++]<<8) & 0xff00) + (inBuffer[x++] & 0xff);
+    event.encoder2 = v.getInt(x); x += 4;
+
+    packetRing.skip(x);
 
     //extract the peak info for each gate of each channel
-    x = processPeakData(pNumberOfChannels, encoder1, encoder2);
+    x = decodePeakData(event, pNumberOfChannels);
+
+    event.result = x;
+
+    if (peakEventRing != null){
+        peakEventRing.publish();
+        return(x);
+    }
+
+    applyPeakData(event);
 
     //flag that a Peak Data packet has been processed and the data is ready
     peakDataPacketProcessed = true;
@@ -5392,7 +5725,12 @@ public int processPeakDataPacket(int pNumberOfChannels)
 public int processRabbitStatusPacket()
 {
 
-    return (readBytes(2));
+    int count = readBytes(2);
+
+    //count the responses for the handshake used by loadDSPCode
+    statusPacketCount++;
+
+    return(count);
 
 }//end of UTBoard::processRabbitStatusPacket
 //-----------------------------------------------------------------------------
@@ -5409,53 +5747,53 @@ public int processRabbitStatusPacket()
 public int processWallMapPacket()
 {
 
-    try{
-
-        //wait a bit for the full packet, bail out if it times out
-        //that will cause a resync and a tossed packet
-        if (!waitForNumberOfBytes(WALL_MAP_PACKET_DATA_SIZE)){
-            return(0);
-        }
+    //wait a bit for the full packet, bail out if it times out
+    //that will cause a resync and a tossed packet
+    if (!waitForNumberOfBytes(WALL_MAP_PACKET_DATA_SIZE)){
+        return(0);
+    }
 
-        //read in the packet count and the status byte
-        byteIn.read(inBuffer, 0, 2);
+    //drop any data already saved by the incremental map saver
+    applyMapDataDiscard();
 
-        packetCount = inBuffer[0];
+    //the data is decoded in place from the ring
+    PacketView v = packetRing.view();
 
-        for (int i = 0; i < (WALL_MAP_PACKET_DATA_SIZE_INTS - 1); i++){
+    //get the packet count -- the status byte follows
+    packetCount = v.get(0);
 
-            byteIn.read(inBuffer, 0, 2);
+    for (int i = 0; i < (WALL_MAP_PACKET_DATA_SIZE_INTS - 1); i++){
 
-            int value =
-              (int)((inBuffer[0]<<8) & 0xff00) + (int)(inBuffer[1] & 0xff);
+        int value = v.getUnsignedShort(2 + i*2);
 
-            //if control code flag set, handle code embedded in the data
-            if ((value & MAP_CONTROL_CODE_FLAG) != 0) {
-                value = handleMapDataControlCode(value);
-            }
+        //if control code flag set, handle code embedded in the data
+        if ((value & MAP_CONTROL_CODE_FLAG) != 0) {
+            value = handleMapDataControlCode(value);
+        }
 
-            //only store if data buffer is enabled
+        //only store if data buffer is enabled
 
-            if(dataBufferIsEnabled){
+        if(dataBufferIsEnabled){
 
-                //only store if value is not an ignored control code
-                if ((value & MAP_IGNORE_DETECTION) != MAP_IGNORE_DETECTION){
-                    dataBuffer[dataBufferIndex++] = (short)value;
-                }
+            //only store if value is not an ignored control code
+            if ((value & MAP_IGNORE_DETECTION) != MAP_IGNORE_DETECTION){
+                dataBuffer[dataBufferIndex++] = (short)value;
+            }
 
-                if (dataBufferIndex == dataBuffer.length){
-                    dataBufferIndex = dataBuffer.length-1;
-                }
+            if (dataBufferIndex == dataBuffer.length){
+                dataBufferIndex = dataBuffer.length-1;
             }
+        }
 
-            mapTDCCodeIgnoreTimer--; //don't care if goes negative
+        mapTDCCodeIgnoreTimer--; //don't care if goes negative
 
-        }
-    }//try
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 4674");
     }
 
+    //make the new data available to other threads
+    if(dataBufferIsEnabled) { publishedDataBufferIndex = dataBufferIndex; }
+
+    packetRing.skip(WALL_MAP_PACKET_DATA_SIZE);
+
     return(WALL_MAP_PACKET_DATA_SIZE); //number of bytes read from the socket
 
 }//end of UTBoard::processWallMapPacket
@@ -6063,6 +6401,8 @@ String toHexString(int pValue)
 public void shutDown()
 {
 
+    stopReaderThread();
+
     //shut down pulser operations by placing everything into reset
     //place FPGA internals in reset (active high), DSPs in reset (active low)
     resetShadow = writeFPGAReg(RESET_REG, (byte)0x01);
@@ -6080,6 +6420,8 @@ public void shutDown()
         logSevere(e.getMessage() + " - Error: 4509");
     }
 
+    closeCapture();
+
 }//end of UTBoard::shutDown
 //-----------------------------------------------------------------------------
 
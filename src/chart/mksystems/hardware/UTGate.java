@@ -105,26 +105,18 @@ public class UTGate extends BasicGate{
     TraceData traceData;
     public Threshold[] thresholds;
     public int plotStyle;
-    public int clockPos;
 
-    public int dataPeak; //used for channels without min and max peaks
-    public int dataMaxPeak;  //used for channels with min and max peaks
-    public int dataMinPeak;  //used for channels with minand max peaks
+    //the peak data for the gate is held in the peak store at index peakId --
+    //see the PeakStore class for details
 
-    public double dataPeakD; //used for channels without min and max peaks (double)
-    public double dataMaxPeakD;  //used for channels with min and max peaks (double)
-    public double dataMinPeakD;  //used for channels with minand max peaks (double)
+    PeakStore peakStore;
+    int peakId;
 
     double wallTuning = 0, wallTuningNS = 0;
 
     public void setWallTuning(double pVal){
-                    wallTuning = pVal; wallTuningNS = wallTuning / 1000.0; }
-
-    double wallThickness;
-
-    int peakFlags;  //any flags associated with the peak
-    int peakFlightTime; //the time of flight to the peak (for UT)
-    int peakTrack; //encoder tracking information
+                    wallTuning = pVal; wallTuningNS = wallTuning / 1000.0;
+                    updatePeakStore(); }
 
     //these peak variables are used to capture peak data for display on or near
     //the AScan display -- they show peaks that occurred between captures of the
@@ -138,11 +130,6 @@ public class UTGate extends BasicGate{
     public ArrayList<String> flawGateProcessList, iFaceProcessList;
     public ArrayList<String> wallGateProcessList;
 
-    // The encoder1 parameter is the entry encoder or the carriage encoder
-    // depending on unit type.
-    // The encoder2 parameter is the exit encoder or the rotational encoder
-    // depending on unit type.
-    int encoder1, encoder2;
 
     SyncedInteger gateHitCount;
     SyncedInteger gateMissCount;
@@ -234,69 +221,6 @@ public void init()
 }//end of UTGate::init
 //-----------------------------------------------------------------------------
 
-//-----------------------------------------------------------------------------
-// UTGate::storeNewData
-//
-// Stores the new data value and sets the newDataReadyFlag true.
-//
-// pDataPeak is the peak data (either a min or a max) for signals which
-// only have one peak.
-//
-// pDataMaxPeak and pDataMinPeak are for signals which have both a min and a
-// max peak, such as a Wall thickness signal. //debug mks - remove this?
-//
-// The encoder1 parameter is the entry encoder or the carriage encoder
-// depending on unit type.
-//
-// The encoder2 parameter is the exit encoder or the rotational encoder
-// depending on unit type.
-//
-
-public void storeNewData(int pDataPeak, int pDataMaxPeak, int pDataMinPeak,
-        double pDataPeakD, int dPeakFlags, int dPeakFlightTime, int dPeakTrack,
-        int pClockPos, int pEncoder1, int pEncoder2)
-{
-
-    dataPeak = pDataPeak;
-    dataMaxPeak = pDataMaxPeak; //debug mks - remove all references to this?
-    dataMinPeak = pDataMinPeak; //debug mks - remove all references to this?
-
-    dataPeakD = pDataPeakD;
-
-    peakFlags = dPeakFlags;
-    peakFlightTime = dPeakFlightTime;
-    peakTrack = dPeakTrack;
-    clockPos = pClockPos;
-
-    encoder1 = pEncoder1; encoder2 = pEncoder2;
-
-    newDataReady = true;
-
-}//end of UTGate::storeNewData
-//-----------------------------------------------------------------------------
-
-//-----------------------------------------------------------------------------
-// UTGate::storeNewDataD
-//
-// Stores the new data value and sets the newDataReadyFlag true.
-//
-// pDataPeakD is the peak data (either a min or a max) for signals which
-// only have one peak which is a double.
-//
-
-public void storeNewDataD(double pDataPeakD, int dPeakTrack, int pClockPos)
-{
-
-    dataPeakD = pDataPeakD;
-
-    peakTrack = dPeakTrack;
-    clockPos = pClockPos;
-
-    newDataReady = true;
-
-}//end of UTGate::storeNewDataD
-//-----------------------------------------------------------------------------
-
 //-----------------------------------------------------------------------------
 // UTGate::storeNewAScanPeak
 //
@@ -509,7 +433,7 @@ public SyncedInteger getFlags()
 public int getCurrentDataPeak()
 {
 
-    return(dataPeak);
+    return(peakStore.dataPeak[peakId]);
     
 }//end of UTGate::getCurrentDataPeak
 //-----------------------------------------------------------------------------
@@ -518,39 +442,18 @@ public int getCurrentDataPeak()
 // UTGate::getNewData
 //
 // This function prepares data for access. The data value(s) can be accessed in
-// public member variables in this class.  The pointer gatePtr in hdwVs will be
-// set to point to this instance so those members can be accessed.
+// the gate's entries in the peak store.  The pointer gatePtr in hdwVs will be
+// set to point to this instance.
 //
-// Note: Any calculation in this function should only use a single peak data
-//  variable to avoid glitches when another thread is writing to the variable.
-//  Multiple calculations are okay, so long as each only depends on a single
-//  peak value.
-//
-// WIP MKS -- this function needs to return the peak data after calculation
-// rather than the calling function accessing the dataPeak (and others)
-// directly after making this call.
+// See PeakStore::prepareData for more info.
 //
 
 public void getNewData(HardwareVars hdwVs)
 {
 
-    newDataReady = false; // clear the flag until new data is available
-
     hdwVs.gatePtr = this; // pass back a pointer to this instance
 
-    //if the gate is a wall gate, convert the data to chart height position
-    if (isWallStartGate || isWallEndGate){
-
-        //convert nanosecond time span to distance
-        //dataPeakD is the only variable possibly changed by peak data updates
-        wallThickness = dataPeakD * hdwVs.nSPerDataPoint *
-            (hdwVs.velocityNS + wallTuningNS) / (hdwVs.numberOfMultiples * 2);
-
-        //convert distance to a chart height position
-        dataPeak = (int)((wallThickness - hdwVs.nominalWall)
-                      / hdwVs.wallChartScale) + hdwVs.nominalWallChartPosition;
-
-    }
+    peakStore.prepareData(peakId, hdwVs);
 
 }//end of UTGate::getNewData
 //-----------------------------------------------------------------------------
@@ -569,18 +472,49 @@ public void getNewData(HardwareVars hdwVs)
 public void getInactiveData(HardwareVars hdwVs)
 {
 
-    newDataReady = false; // clear the flag until new data is available
-
     hdwVs.gatePtr = this; // pass back a pointer to this instance
 
-    dataPeak = antiPeakValue;
-    dataMaxPeak = antiPeakValue;
-    dataMinPeak = peakValue;
-    dataPeakD = antiPeakValue;
+    peakStore.prepareInactiveData(peakId);
 
 }//end of UTGate::getInactiveData
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// UTGate::attachPeakStore
+//
+// Sets the peak store which holds the data for this gate and the gate's id
+// in that store. The gate's settings are copied to the store.
+//
+
+void attachPeakStore(PeakStore pPeakStore, int pPeakId)
+{
+
+    peakStore = pPeakStore; peakId = pPeakId;
+
+    updatePeakStore();
+
+}//end of UTGate::attachPeakStore
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// UTGate::updatePeakStore
+//
+// Copies the settings used while collecting data to the peak store. Should
+// be called whenever any of those settings are changed.
+//
+
+void updatePeakStore()
+{
+
+    if (peakStore == null) {return;}
+
+    peakStore.setGateSettings(peakId, channelIndex, peakValue, antiPeakValue,
+                    isWallStartGate || isWallEndGate, wallTuningNS, tracePtr,
+                                                                thresholds);
+
+}//end of UTGate::updatePeakStore
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // UTGate::getDefaultData
 //
@@ -870,6 +804,8 @@ public void setMaxMin(boolean pOn, boolean pForceUpdate)
         antiPeakValue = Integer.MAX_VALUE;
     }
 
+    updatePeakStore();
+
     //update the flags to reflect the change
     setFlags(pForceUpdate);
 
@@ -910,6 +846,8 @@ public void setWallStart(boolean pOn)
 
     isWallStartGate = pOn;
 
+    updatePeakStore();
+
     //update the flags to reflect the change
     setFlags(true);
 
@@ -948,6 +886,8 @@ public void setWallEnd(boolean pOn)
 
     isWallEndGate = pOn;
 
+    updatePeakStore();
+
     //update the flags to reflect the change
     setFlags(true);
 
@@ -1318,6 +1258,8 @@ public void linkPlotters(int pChartGroup, int pChart, int pTrace,
 
         tracePtr.setHeadNum(headNum);
 
+        updatePeakStore();
+
     }
 
 }//end of UTGate::linkPlotters
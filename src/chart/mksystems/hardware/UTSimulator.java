@@ -31,8 +31,10 @@
 package chart.mksystems.hardware;
 
 import chart.mksystems.inifile.IniFile;
+import chart.mksystems.stripchart.SegmentFileConverter;
 import java.io.*;
 import java.net.*;
+import java.nio.charset.Charset;
 
 //-----------------------------------------------------------------------------
 
@@ -593,16 +595,15 @@ public void prepareNextSimulationDataSetFromFiles()
 
     }while(!fileExists);
     
-    FileInputStream fileInputStream = null;
-    InputStreamReader inputStreamReader = null;
     BufferedReader traceSimData = null;
 
     try{
 
-        fileInputStream = new FileInputStream(dataSetFilename);
-        inputStreamReader = new InputStreamReader(fileInputStream);
+        //segment files saved in the binary format are converted to text as
+        //the simulators parse the data series from the text
 
-        traceSimData = new BufferedReader(inputStreamReader);
+        traceSimData = SegmentFileConverter.openAsText(dataSetFilename,
+                                    Charset.defaultCharset().name());
 
         for (BoardChannelSimulator boardChannel : boardChannels) {
             boardChannel.prepareNextSimulationDataSetFromFiles(
@@ -610,16 +611,12 @@ public void prepareNextSimulationDataSetFromFiles()
         }
                 
     }        
-    catch (FileNotFoundException e){
+    catch (IOException e){
         return;
         }
     finally{
         try{if (traceSimData != null) {traceSimData.close();}}
         catch(IOException e){}
-        try{if (inputStreamReader != null) {inputStreamReader.close();}}
-        catch(IOException e){}
-        try{if (fileInputStream != null) {fileInputStream.close();}}
-        catch(IOException e){}
     }
         
     //move to the next data set
@@ -1332,11 +1329,27 @@ void writeDSP()
 //
 // Simulates writing to the next DSP RAM location on a UT board.
 //
+// The remote increments the address set by the last writeDSP, so the data is
+// added to the checksum of the same block as described in writeDSP notes.
+//
 
 void writeNextDSP()
 {
 
-    readBytes(4); //read in the rest of the packet
+    readBytes(5); //read in the rest of the packet, including the checksum
+
+    int x = 0;
+    byte chip = inBuffer[x++];
+    byte core = inBuffer[x++];
+    int data =
+            (int)((inBuffer[x++]<<8) & 0xff00) + ((inBuffer[x++]) & 0xff);
+
+    if (currentBlock == -1 || chip != prevChip || core != prevCore) {return;}
+
+    prevAddress++;
+
+    ramMemoryBlockChecksums[currentBlock].numberBytes++;
+    ramMemoryBlockChecksums[currentBlock].checksum += data;
 
 }//end of UTSimulator::writeNextDSP
 //-----------------------------------------------------------------------------
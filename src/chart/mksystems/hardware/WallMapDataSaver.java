@@ -22,6 +22,7 @@ package chart.mksystems.hardware;
 //-----------------------------------------------------------------------------
 
 import chart.mksystems.inifile.IniFile;
+import java.io.File;
 
 // class WallMapDataSaver
 
@@ -77,6 +78,79 @@ public void saveToFile(String pFilename)
 }//end of WallMapDataSaver::saveToFile
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// WallMapDataSaver::createFileData
+//
+// Returns the contents of the file which would be written by saveToFile.
+// This allows the data to be collected from the boards and the file written
+// later by another thread.
+//
+// Returns null if there is no data or on error.
+//
+// Subclasses should override this method to provide custom functionality
+//
+
+public byte[] createFileData()
+{
+
+    return(null);
+
+}//end of WallMapDataSaver::createFileData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaver::startStreaming
+//
+// Starts saving the map data to a temporary file as it is collected so that
+// finishStreaming can complete the file quickly when the piece is finished.
+//
+// Subclasses should override this method to provide custom functionality
+//
+
+public void startStreaming()
+{
+
+
+}//end of WallMapDataSaver::startStreaming
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaver::setStreamingActive
+//
+// Enables or disables incremental saving. Should be set true when an
+// inspection begins and false when inspection mode is exited. Any partially
+// saved data is discarded when set false.
+//
+// Subclasses should override this method to provide custom functionality
+//
+
+public void setStreamingActive(boolean pState)
+{
+
+
+}//end of WallMapDataSaver::setStreamingActive
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaver::finishStreaming
+//
+// Completes the temporary file saved incrementally during the inspection and
+// returns it. The caller is responsible for deleting the file.
+//
+// Returns null if incremental saving is not in use or failed, in which case
+// createFileData should be used instead.
+//
+// Subclasses should override this method to provide custom functionality
+//
+
+public File finishStreaming()
+{
+
+    return(null);
+
+}//end of WallMapDataSaver::finishStreaming
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // WallMapDataSaver::loadFromFile
 //
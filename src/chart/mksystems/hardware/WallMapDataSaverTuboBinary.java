@@ -33,6 +33,26 @@
 *
 * The Tubo document also specifies that fMotionPulseLen must be 0.5".
 *
+* Incremental Saving
+*
+* If startStreaming is called, a thread checks the map buffers during each
+* inspection and appends each revolution to a temporary file as soon as all
+* boards have collected it. When the piece is finished, finishStreaming only
+* has to add the last few revolutions, the header, and the locations which
+* depend on the final revolution count. The temporary file is then copied to
+* the map folders.
+*
+* Missing TDC codes are repaired as the data arrives using the average
+* revolution size so far rather than the average for the entire piece, so a
+* borderline revolution may occasionally be treated differently than when
+* the file is created all at once.
+*
+* Once saved, the revolutions are discarded from the front of each board's
+* map buffer. The buffer then only has to hold the data not yet saved, so it
+* may be made much smaller than a full piece with "Incremental Data Buffer
+* Size" in the board's configuration. Since the data is gone, the map cannot
+* be saved by createFileData if incremental saving fails part way through.
+*
 * Open Source Policy:
 *
 * This source code is Public Domain and free to any interested party.  Any
@@ -52,11 +72,19 @@ import chart.mksystems.tools.EndianTools;
 import chart.mksystems.tools.WORD;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -136,6 +164,33 @@ public class WallMapDataSaverTuboBinary extends WallMapDataSaver{
     DataOutputStream outFile;
     DataInputStream inFile;
 
+    //incremental saving -- see notes at top of page
+
+    static final int STREAM_IDLE = 0;
+    static final int STREAM_ACTIVE = 1;
+    static final int STREAM_FINISHED = 2;
+
+    //milliseconds between checks of the map buffers for new revolutions
+    static final int STREAM_INTERVAL = 100;
+
+    //the number of revolutions required before the average revolution size is
+    //trusted for detecting missing TDC codes
+    static final int STREAM_MIN_REVS_FOR_REPAIR = 10;
+
+    //saved data is not discarded from a map buffer until at least this
+    //fraction of the buffer can be freed so the unsaved data is moved rarely
+    static final int STREAM_DISCARD_DIVISOR = 4;
+
+    Thread streamThread = null;
+    boolean streamingActive = false;
+    int streamState = STREAM_IDLE;
+    File streamFile = null;
+    FileChannel streamChannel = null;
+    ByteBuffer streamRevBuffer;
+    short[] streamBlock;
+    int streamHeaderSize;
+    int streamRevsWritten;
+
     //NOTE: These variables are named oddly to match those used by Tuboscope's
     //Wall Map Viewer program code.
 
@@ -450,9 +505,879 @@ private void copyLastDataPointIndicesToMappingBoards(Integer pEndIndices[])
 //
 // Writes all header data and the data in the UTBoards to file pFilename.
 //
+// The size of the file is known once the revolutions have been counted, so
+// the file is mapped into memory and filled directly by writeToBuffer.
+//
+
+@Override
+public synchronized void saveToFile(String pFilename)
+{
+
+    if (isMapDataDiscarded()) {return;}
+
+    try{
+
+        byte[] header = prepareToSave();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(pFilename),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+
+            MappedByteBuffer buffer = channel.map(
+                FileChannel.MapMode.READ_WRITE, 0, calculateFileSize(header));
+
+            writeToBuffer(buffer, header);
+
+            buffer.force();
+
+        }
+
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 448");
+    }
+
+}//end of WallMapDataSaverTuboBinary::saveToFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::createFileData
+//
+// Returns the contents of the file which would be written by saveToFile.
+//
+// Returns null on error.
+//
+
+@Override
+public synchronized byte[] createFileData()
+{
+
+    if (isMapDataDiscarded()) {return(null);}
+
+    try{
+
+        byte[] header = prepareToSave();
+
+        byte[] bytes = new byte[calculateFileSize(header)];
+
+        writeToBuffer(ByteBuffer.wrap(bytes), header);
+
+        return(bytes);
+
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 448");
+        return(null);
+    }
+
+}//end of WallMapDataSaverTuboBinary::createFileData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::prepareToSave
+//
+// Collects the job info, analyzes and repairs the data in the UTBoards, and
+// returns the file header.
+//
+
+private byte[] prepareToSave() throws IOException
+{
+
+    //collect job info into local variables
+    setUpJobInfo();
+
+    for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+        mapSourceBoard.setUpForSavingData();
+    }
+
+    //find start/stop, count revolutions, repair missing control codes, etc.
+    //must be done before saveHeader as the header needs some of that info
+
+    analyzeAndRepairData();
+
+    calculateDistanceInspectedAndAvgHelix();
+
+    return(createHeader());
+
+}//end of WallMapDataSaverTuboBinary::prepareToSave
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::createHeader
+//
+// Returns the file header. The size of the header never changes as all
+// strings are stored in fixed length fields.
+//
+
+private byte[] createHeader() throws IOException
+{
+
+    ByteArrayOutputStream header = new ByteArrayOutputStream(1024);
+
+    try{
+        outFile = new DataOutputStream(header);
+        saveHeader();
+        outFile.flush();
+    }
+    finally{
+        outFile = null;
+    }
+
+    return(header.toByteArray());
+
+}//end of WallMapDataSaverTuboBinary::createHeader
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::calculateFileSize
+//
+// Returns the size of the file with header pHeader. The revolutions must
+// already have been counted by prepareToSave.
+//
+
+private int calculateFileSize(byte[] pHeader)
+{
+
+    return(pHeader.length + leastNumberOfRevs * calculateRevolutionSize());
+
+}//end of WallMapDataSaverTuboBinary::calculateFileSize
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::calculateRevolutionSize
+//
+// Returns the number of bytes in each revolution of the file.
+//
+// Each revolution has a sample count for each board, the location, an unused
+// word, the unused cross areas, and NUMBER_SLICES_PER_REV slices of one
+// sample from each board.
+//
+
+private int calculateRevolutionSize()
+{
+
+    return(mapSourceBoards.length * 2 + 2 + 2 + fCrossArea.length * 4
+                        + NUMBER_SLICES_PER_REV * mapSourceBoards.length * 2);
+
+}//end of WallMapDataSaverTuboBinary::calculateRevolutionSize
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::writeToBuffer
+//
+// Writes header pHeader and all revolutions to pBuffer which must be exactly
+// the size returned by calculateFileSize.
+//
+// The output is identical to that of saveToStream, but the samples for each
+// revolution are converted straight from the data buffers into an array of
+// shorts which is then stored in pBuffer with a single bulk put.
+//
+
+private void writeToBuffer(ByteBuffer pBuffer, byte[] pHeader)
+{
+
+    pBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    pBuffer.put(pHeader);
+
+    short[] block = new short[NUMBER_SLICES_PER_REV * mapSourceBoards.length];
+
+    for (int i = 0; i < leastNumberOfRevs; i++){
+
+        //find endpoints of the next revolution in the databuffer, etc.
+        prepareToExtractNextRevolutionFromDataBuffer();
+
+        writeRevolution(pBuffer, i, block);
+
+    }
+
+}//end of WallMapDataSaverTuboBinary::writeToBuffer
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::writeRevolution
+//
+// Writes revolution number pRevolutionNumber to pBuffer using pBlock to hold
+// the samples. The endpoints of the revolution in each data buffer must
+// already have been found.
+//
+
+private void writeRevolution(ByteBuffer pBuffer, int pRevolutionNumber,
+                                                                short[] pBlock)
+{
+
+    //see saveRevolution for notes on the sample count
+    for (int j = 0; j < mapSourceBoards.length; j++){
+        pBuffer.putShort((short)mostNumberOfSamplesPerRev);
+    }
+
+    nXloc = (short)(pRevolutionNumber * avgCalculatedHelix / fMotionPulseLen);
+    pBuffer.putShort(nXloc);
+
+    pBuffer.putShort((short)nMotionBusNotUsed.value);
+
+    for (int j = 0; j < fCrossArea.length; j++){
+        pBuffer.putInt(Float.floatToIntBits(fCrossArea[j]));
+    }
+
+    fillRevolutionBlock(pBlock);
+
+    pBuffer.asShortBuffer().put(pBlock);
+    pBuffer.position(pBuffer.position() + pBlock.length * 2);
+
+}//end of WallMapDataSaverTuboBinary::writeRevolution
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::fillRevolutionBlock
+//
+// Fills pBlock with the NUMBER_SLICES_PER_REV slices of the current
+// revolution, each slice holding one sample from each board.
+//
+// This matches writeWallReadingsForRevolution: real samples alternate with
+// tweaked copies (see "Sample Double Simulation Note 1"), a board which runs
+// out of samples repeats its last value, and the slices after the largest
+// sample count are filled with PADDING_VALUE.
+//
+
+private void fillRevolutionBlock(short[] pBlock)
+{
+
+    int numBoards = mapSourceBoards.length;
+
+    int numSlices = Math.max(0,
+                   Math.min(mostNumberOfSamplesPerRev, NUMBER_SLICES_PER_REV));
+
+    for (int j = 0; j < numBoards; j++){
+
+        MapSourceBoard board = mapSourceBoards[j];
+        short[] dataBuffer = board.dataBuffer;
+        int index = board.sampleIndex;
+        int end = board.revEndIndex;
+        int value = 0;
+        int k = j;
+
+        for (int i = 0; i < numSlices; i++, k += numBoards){
+
+            if (index < end){
+                if ((i % 2) == 0){
+                    value = convertTOFToWall(dataBuffer[index++]);
+                }
+                else if ((value & 0x02) != 0){
+                    value ^= 0x01;
+                }
+            }
+
+            pBlock[k] = (short)value;
+
+        }
+
+        board.sampleIndex = index;
+
+        for (int i = numSlices; i < NUMBER_SLICES_PER_REV; i++){
+            pBlock[k] = (short)PADDING_VALUE;
+            k += numBoards;
+        }
+
+    }
+
+}//end of WallMapDataSaverTuboBinary::fillRevolutionBlock
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::convertTOFToWall
+//
+// Returns the wall thickness in thousandths of an inch for time of flight
+// pTOF.
+//
+
+private static int convertTOFToWall(int pTOF)
+{
+
+    double lWall = (pTOF * 0.015 * .233) / 2;
+
+    return((int)(lWall * 1000));
+
+}//end of WallMapDataSaverTuboBinary::convertTOFToWall
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::startStreaming
+//
+// Starts the thread which saves the revolutions to a temporary file as they
+// are collected. Nothing is saved until setStreamingActive(true) is called.
+//
+
+@Override
+public void startStreaming()
+{
+
+    if (streamThread != null) {return;}
+
+    streamThread = new Thread(() -> {
+        while (true){
+            try{
+                Thread.sleep(STREAM_INTERVAL);
+            }
+            catch(InterruptedException e){
+                return;
+            }
+            processStream(false);
+        }
+    }, "Wall Map Streamer");
+
+    streamThread.setDaemon(true);
+    streamThread.start();
+
+}//end of WallMapDataSaverTuboBinary::startStreaming
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::setStreamingActive
+//
+// Enables or disables incremental saving. When disabled, any partially saved
+// file is discarded.
+//
+
+@Override
+public synchronized void setStreamingActive(boolean pState)
+{
+
+    streamingActive = pState;
+
+    if (!streamingActive){
+        discardStream();
+        streamState = STREAM_FINISHED;
+    }
+
+}//end of WallMapDataSaverTuboBinary::setStreamingActive
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::processStream
+//
+// Finds the revolutions added to the map buffers since the last call,
+// repairs missing TDC codes, and appends each revolution collected by all
+// boards to the temporary file.
+//
+// A new file is started when the map buffers are reset for a new run. If
+// pFinal is true, all revolutions found are checked even if there are not
+// yet enough to calculate a reliable average.
+//
+// On error, the temporary file is discarded and incremental saving is
+// abandoned for the rest of the run.
+//
+// Nothing is done while a board has yet to discard the data saved by the
+// last call as the data may be moved at any time. If pFinal is true, any
+// such discard is cancelled instead.
+//
+
+private synchronized void processStream(boolean pFinal)
+{
+
+    if (!streamingActive) {return;}
+
+    for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+        if (pFinal) {mapSourceBoard.utBoard.cancelMapDataDiscard();}
+        else if (mapSourceBoard.utBoard.isMapDataDiscardPending()) {return;}
+    }
+
+    //a new run has been started if any buffer has been reset
+
+    for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+        if (mapSourceBoard.utBoard.getMapRunNumber()
+                                           != mapSourceBoard.streamRunNumber){
+            discardStream();
+            for (MapSourceBoard board : mapSourceBoards) {board.resetStream();}
+            streamState = STREAM_IDLE;
+            break;
+        }
+    }
+
+    try{
+
+        if (streamState == STREAM_IDLE){
+            if (!isStreamDataAvailable()) {return;}
+            openStream();
+        }
+
+        if (streamState != STREAM_ACTIVE) {return;}
+
+        for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+            mapSourceBoard.streamDiscarded =
+                                mapSourceBoard.utBoard.getMapDataDiscarded();
+            scanForStreamCodes(mapSourceBoard);
+            repairStreamRevolutions(mapSourceBoard, pFinal);
+        }
+
+        writeStreamRevolutions();
+
+        if (!pFinal) {discardSavedStreamData();}
+
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 1021");
+        discardStream();
+        streamState = STREAM_FINISHED;
+    }
+
+}//end of WallMapDataSaverTuboBinary::processStream
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::isStreamDataAvailable
+//
+// Returns true if any board has stored map data for the current run.
+//
+
+private boolean isStreamDataAvailable()
+{
+
+    for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+        if (mapSourceBoard.utBoard.getPublishedDataBufferIndex() > 0){
+            return(true);
+        }
+    }
+
+    return(false);
+
+}//end of WallMapDataSaverTuboBinary::isStreamDataAvailable
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::openStream
+//
+// Creates the temporary file and reserves space for the header which is
+// written by finishStreaming.
+//
+
+private void openStream() throws IOException
+{
+
+    streamFile = File.createTempFile("Wall Map ", ".tmp");
+    streamFile.deleteOnExit();
+
+    streamChannel = FileChannel.open(streamFile.toPath(),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+    streamHeaderSize = createHeader().length;
+    streamChannel.position(streamHeaderSize);
+
+    streamRevBuffer = ByteBuffer.allocate(calculateRevolutionSize());
+    streamRevBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+    streamBlock = new short[NUMBER_SLICES_PER_REV * mapSourceBoards.length];
+
+    streamRevsWritten = 0;
+
+    streamState = STREAM_ACTIVE;
+
+}//end of WallMapDataSaverTuboBinary::openStream
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::discardStream
+//
+// Closes and deletes the temporary file, if any.
+//
+
+private void discardStream()
+{
+
+    try{
+        if (streamChannel != null) {streamChannel.close();}
+    }
+    catch(IOException e){}
+
+    streamChannel = null;
+
+    if (streamFile != null) {streamFile.delete();}
+
+    streamFile = null;
+
+}//end of WallMapDataSaverTuboBinary::discardStream
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::scanForStreamCodes
+//
+// Records the position of each control code stored in the data buffer of
+// pMapSourceBoard since the last scan.
+//
+
+private void scanForStreamCodes(MapSourceBoard pMapSourceBoard)
+{
+
+    short[] dataBuffer = pMapSourceBoard.dataBuffer;
+
+    int end = pMapSourceBoard.utBoard.getPublishedDataBufferIndex()
+                                            + pMapSourceBoard.streamDiscarded;
+
+    for (int i = pMapSourceBoard.streamScanIndex; i < end; i++){
+        if ((dataBuffer[pMapSourceBoard.toBufferIndex(i)]
+                                    & UTBoard.MAP_CONTROL_CODE_FLAG) != 0){
+            pMapSourceBoard.insertStreamCode(
+                                        pMapSourceBoard.streamCodeCount, i);
+        }
+    }
+
+    if (end > pMapSourceBoard.streamScanIndex){
+        pMapSourceBoard.streamScanIndex = end;
+    }
+
+}//end of WallMapDataSaverTuboBinary::scanForStreamCodes
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::repairStreamRevolutions
+//
+// Checks each complete revolution of pMapSourceBoard not yet checked and
+// splits any revolution which is much larger than average with a TDC code.
+// See repairMissingTDCCodes for details.
+//
+// As with calculateAvgNumSamplesPerRev, the average is calculated by
+// dividing the samples by one less than the number of revolutions. Checking
+// is delayed until STREAM_MIN_REVS_FOR_REPAIR revolutions have been
+// collected unless pFinal is true.
+//
+
+private void repairStreamRevolutions(MapSourceBoard pMapSourceBoard,
+                                                                boolean pFinal)
+{
+
+    int numRevs = pMapSourceBoard.streamCodeCount - 1;
+
+    if (!pFinal && numRevs < STREAM_MIN_REVS_FOR_REPAIR) {return;}
+
+    int avgNumSamplesPerRev = 0;
+
+    if (numRevs > 1){
+        avgNumSamplesPerRev = (pMapSourceBoard.getStreamCode(numRevs)
+                        - pMapSourceBoard.streamFirstCode) / (numRevs - 1);
+    }
+
+    int triggerLevel = (int)(avgNumSamplesPerRev * 1.75);
+
+    while (pMapSourceBoard.streamRevsChecked < numRevs){
+
+        int rev = pMapSourceBoard.streamRevsChecked;
+        int start = pMapSourceBoard.getStreamCode(rev) + 1;
+        int end = pMapSourceBoard.getStreamCode(rev + 1);
+
+        if (avgNumSamplesPerRev > 0 && (end - start) > triggerLevel
+                                                     && (end - start) >= 10){
+
+            splitRevWithTDCCode(pMapSourceBoard,
+                                    pMapSourceBoard.toBufferIndex(start),
+                                    pMapSourceBoard.toBufferIndex(end));
+
+            pMapSourceBoard.insertStreamCode(rev + 1, (start + end) / 2);
+            numRevs++;
+
+            //both halves are complete and need not be checked again
+            pMapSourceBoard.streamRevsChecked += 2;
+
+        }
+        else{
+            pMapSourceBoard.streamRevsChecked++;
+        }
+
+    }
+
+}//end of WallMapDataSaverTuboBinary::repairStreamRevolutions
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::writeStreamRevolutions
+//
+// Appends to the temporary file each revolution which has been checked for
+// all boards.
+//
+// The location of each revolution depends on the final revolution count, so
+// it is written as zero and replaced by finishStreaming.
+//
+
+private void writeStreamRevolutions() throws IOException
+{
+
+    int available = Integer.MAX_VALUE;
+
+    for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+        available = Math.min(available, mapSourceBoard.streamRevsChecked);
+    }
+
+    while (streamRevsWritten < available){
+
+        prepareStreamRevolution(streamRevsWritten);
+
+        streamRevBuffer.clear();
+        writeRevolution(streamRevBuffer, 0, streamBlock);
+        streamRevBuffer.flip();
+
+        while (streamRevBuffer.hasRemaining()){
+            streamChannel.write(streamRevBuffer);
+        }
+
+        streamRevsWritten++;
+
+    }
+
+}//end of WallMapDataSaverTuboBinary::writeStreamRevolutions
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::discardSavedStreamData
+//
+// Asks each board to discard the data of the revolutions already saved once
+// at least 1 / STREAM_DISCARD_DIVISOR of its buffer can be freed. The value
+// before the control code which starts the next revolution is kept so that
+// code never moves to the start of the buffer where UTBoard would not set
+// its flags.
+//
+// The stop flag of each control code discarded is checked first as it is
+// still needed by countStreamRevolutions. Only the most recent code can have
+// its flags changed by UTBoard, and it is never discarded.
+//
+
+private void discardSavedStreamData()
+{
+
+    for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+
+        int keep = streamRevsWritten;
+
+        if (keep <= mapSourceBoard.streamCodeBase) {continue;}
+
+        int count = mapSourceBoard.toBufferIndex(
+                                mapSourceBoard.getStreamCode(keep) - 1);
+
+        if (count < mapSourceBoard.dataBuffer.length / STREAM_DISCARD_DIVISOR){
+            continue;
+        }
+
+        for (int i = Math.max(1, mapSourceBoard.streamCodeBase);
+                       i < keep && mapSourceBoard.streamStopCode < 0; i++){
+            int code = mapSourceBoard.dataBuffer[
+               mapSourceBoard.toBufferIndex(mapSourceBoard.getStreamCode(i))];
+            if ((code & UTBoard.MAP_STOP_CODE_FLAG) != 0){
+                mapSourceBoard.streamStopCode = i;
+            }
+        }
+
+        if (mapSourceBoard.utBoard.requestMapDataDiscard(
+                                    mapSourceBoard.streamRunNumber, count)){
+            mapSourceBoard.dropStreamCodes(keep);
+        }
+
+    }
+
+}//end of WallMapDataSaverTuboBinary::discardSavedStreamData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::isMapDataDiscarded
+//
+// Returns true if any board has discarded map data during the current run
+// after it was saved incrementally. The buffers then no longer hold the
+// entire piece and cannot be used to create the file.
+//
+
+private boolean isMapDataDiscarded()
+{
+
+    for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+        if (mapSourceBoard.utBoard.getMapDataDiscarded() > 0){
+            logSevere("Map data already discarded by incremental saving."
+                                                    + " - Error: 1023");
+            return(true);
+        }
+    }
+
+    return(false);
+
+}//end of WallMapDataSaverTuboBinary::isMapDataDiscarded
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::prepareStreamRevolution
+//
+// Sets up the endpoints of revolution pRevolutionNumber in each data buffer
+// using the control codes found by scanForStreamCodes. This is the
+// equivalent of calculateNumberSamplesInRev.
+//
+
+private void prepareStreamRevolution(int pRevolutionNumber)
+{
+
+    mostNumberOfSamplesPerRev = Integer.MIN_VALUE;
+
+    for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+
+        int start = mapSourceBoard.toBufferIndex(
+                    mapSourceBoard.getStreamCode(pRevolutionNumber) + 1);
+        int end = mapSourceBoard.toBufferIndex(
+                    mapSourceBoard.getStreamCode(pRevolutionNumber + 1));
+
+        mapSourceBoard.sampleIndex = start;
+        mapSourceBoard.revEndIndex = end;
+
+        int sampleCount = end - start - 1;
+        mapSourceBoard.numSamplesInRev = sampleCount;
+
+        if (sampleCount > mostNumberOfSamplesPerRev) {
+            mostNumberOfSamplesPerRev = sampleCount;
+        }
+
+    }
+
+    //see "Sample Double Simulation Note 2"
+    mostNumberOfSamplesPerRev *= 2;
+
+}//end of WallMapDataSaverTuboBinary::prepareStreamRevolution
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::countStreamRevolutions
+//
+// Counts the revolutions for each board up to the first stop code as is done
+// by calculateRevCount, dropping the last revolution. Stores the least number
+// of revolutions of any board in leastNumberOfRevs.
+//
+// The stop code may already have been found by discardSavedStreamData if the
+// data containing it has been discarded.
+//
+
+private void countStreamRevolutions()
+{
+
+    leastNumberOfRevs = Integer.MAX_VALUE;
+    avgNumberOfRevs = 0;
+
+    for (MapSourceBoard mapSourceBoard : mapSourceBoards) {
+
+        int revCount = 0;
+
+        int stopCode = mapSourceBoard.streamStopCode;
+
+        for (int i = Math.max(1, mapSourceBoard.streamCodeBase);
+                    i < mapSourceBoard.streamCodeCount && stopCode < 0; i++){
+            int code = mapSourceBoard.dataBuffer[
+               mapSourceBoard.toBufferIndex(mapSourceBoard.getStreamCode(i))];
+            if ((code & UTBoard.MAP_STOP_CODE_FLAG) != 0) {stopCode = i;}
+        }
+
+        //codes before the stop code less the dropped revolution
+        if (stopCode > 0) {revCount = stopCode - 1;}
+
+        mapSourceBoard.numRevs = revCount;
+        if (revCount < leastNumberOfRevs) { leastNumberOfRevs = revCount; }
+        avgNumberOfRevs += revCount;
+
+    }
+
+    avgNumberOfRevs = avgNumberOfRevs / mapSourceBoards.length;
+
+}//end of WallMapDataSaverTuboBinary::countStreamRevolutions
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::finishStreaming
+//
+// Completes the temporary file saved during the inspection by writing any
+// remaining revolutions, the header, and the location of each revolution,
+// and then removing any revolutions past the end of the inspection.
+//
+// Returns the file, which the caller must delete when done, or null if
+// incremental saving was not active or failed. The map buffers are not
+// altered other than by TDC code repair, so createFileData can still be
+// used if null is returned.
+//
 
 @Override
-public void saveToFile(String pFilename)
+public synchronized File finishStreaming()
+{
+
+    if (streamState != STREAM_ACTIVE) {return(null);}
+
+    //add any data collected since the last check
+    processStream(true);
+
+    if (streamState != STREAM_ACTIVE) {return(null);}
+
+    File file = null;
+
+    try{
+
+        setUpJobInfo();
+
+        countStreamRevolutions();
+
+        if (leastNumberOfRevs > streamRevsWritten){
+            throw new IOException("Incremental map file is incomplete.");
+        }
+
+        calculateDistanceInspectedAndAvgHelix();
+
+        byte[] header = createHeader();
+
+        if (header.length != streamHeaderSize){
+            throw new IOException("Incremental map header size changed.");
+        }
+
+        streamChannel.write(ByteBuffer.wrap(header), 0);
+
+        //fill in the location of each revolution
+
+        int revolutionSize = calculateRevolutionSize();
+        int locationOffset = mapSourceBoards.length * 2;
+
+        ByteBuffer location = ByteBuffer.allocate(2);
+        location.order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < leastNumberOfRevs; i++){
+            location.clear();
+            location.putShort((short)(i * avgCalculatedHelix / fMotionPulseLen));
+            location.flip();
+            streamChannel.write(location, streamHeaderSize
+                             + (long)i * revolutionSize + locationOffset);
+        }
+
+        streamChannel.truncate(
+                   streamHeaderSize + (long)leastNumberOfRevs * revolutionSize);
+
+        streamChannel.force(true);
+        streamChannel.close();
+        streamChannel = null;
+
+        file = streamFile;
+        streamFile = null;
+
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 1022");
+        discardStream();
+    }
+
+    streamState = STREAM_FINISHED;
+
+    return(file);
+
+}//end of WallMapDataSaverTuboBinary::finishStreaming
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// WallMapDataSaverTuboBinary::saveToStream
+//
+// Writes all header data and the data in the UTBoards to pOut one value at a
+// time. The stream is closed when done.
+//
+// This was the original method of writing the file. It is much slower than
+// saveToFile, but is kept as the reference used to verify that writeToBuffer
+// creates identical output.
+//
+
+void saveToStream(OutputStream pOut) throws IOException
 {
 
     try{
@@ -480,9 +1405,7 @@ public void saveToFile(String pFilename)
 
         //testing mks end
 
-        outFile =
-              new DataOutputStream(new BufferedOutputStream(
-              new FileOutputStream(pFilename)));
+        outFile = new DataOutputStream(new BufferedOutputStream(pOut));
 
         //find start/stop, count revolutions, repair missing control codes, etc.
         //must be done before saveHeader as the header needs some of that info
@@ -497,16 +1420,16 @@ public void saveToFile(String pFilename)
         //save all data from all revolutions
         saveRevolutions();
 
-    }
-    catch(IOException e){
-        logSevere(e.getMessage() + " - Error: 448");
+        outFile.flush();
+
     }
     finally{
-        try{if (outFile != null) {outFile.close();}}
+        try{if (outFile != null) {outFile.close();} else {pOut.close();}}
         catch(IOException e){}
+        outFile = null;
     }
 
-}//end of WallMapDataSaverTuboBinary::saveToFile
+}//end of WallMapDataSaverTuboBinary::saveToStream
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -1177,8 +2100,7 @@ private void translateSample(int pIndex, WORD[] pValues)
 
     int TOF = mapSourceBoards[pIndex].
             dataBuffer[mapSourceBoards[pIndex].sampleIndex++];
-    double lWall = (TOF * 0.015 * .233) / 2;
-    pValues[pIndex].value = (int)(lWall * 1000);    
+    pValues[pIndex].value = convertTOFToWall(TOF);
         
 }//end of WallMapDataSaverTuboBinary::translateSample
 //-----------------------------------------------------------------------------
@@ -69,8 +69,9 @@ public void init()
 
     configure(configFile);
 
-    xmlBaseURL = "raw:XMLNoHeader//" + moduleIPAddress +
-                                                    "/state.xml?relayState=";
+    createDispatcher();
+
+    xmlBasePath = "/state.xml?relayState=";
 
 }//end of WebRelay_X_WR_1R12::init
 //-----------------------------------------------------------------------------
@@ -93,16 +94,22 @@ public void init()
 public void setRelayState(int pWhichRelay, int pState, String pPulseDuration)
 {
 
-    String controlURL;
+    String controlPath;
 
     if (pState == RELAY_PULSE && Double.parseDouble(pPulseDuration) > 0){
-        controlURL = xmlBaseURL + pState + "&pulseTime=" + pPulseDuration;
+        controlPath = xmlBasePath + pState + "&pulseTime=" + pPulseDuration;
     }
     else{
-        controlURL = xmlBaseURL + pState;
+        controlPath = xmlBasePath + pState;
     }
 
-    connectSendGetRequestClose(controlURL, true);
+    //each pulse must be sent, so pulses are not replaced by later commands
+    if (pState == RELAY_PULSE){
+        sendUncoalescedCommand(controlPath, true);
+    }
+    else{
+        sendCommand("relay", controlPath, true);
+    }
 
 }//end of WebRelay_X_WR_1R12::setRelayState
 //-----------------------------------------------------------------------------
@@ -123,17 +130,17 @@ public void setRelayState(int pWhichRelay, int pState, String pPulseDuration)
 public void pulseRelay(int pWhichRelay, String pPulseDuration)
 {
 
-    String controlURL;
+    String controlPath;
 
     if (Double.parseDouble(pPulseDuration) > 0){
-        controlURL = xmlBaseURL + RELAY_PULSE + "&pulseTime=" + pPulseDuration;
+        controlPath = xmlBasePath + RELAY_PULSE + "&pulseTime=" + pPulseDuration;
     }
     else{
-        controlURL = xmlBaseURL + RELAY_PULSE;
+        controlPath = xmlBasePath + RELAY_PULSE;
 
     }
 
-    connectSendGetRequestClose(controlURL, true);
+    sendUncoalescedCommand(controlPath, true);
 
 }//end of WebRelay_X_WR_1R12::pulseRelay
 //-----------------------------------------------------------------------------
@@ -77,9 +77,11 @@ public void init()
     
     configure(configFile);
 
-    xmlBaseURL = "raw:XMLNoHeader//" + moduleIPAddress + "/state.xml?";
+    createDispatcher();
+
+    xmlBasePath = "/state.xml?";
     
-    xmlBaseURLSuffix = "&noReply=1";
+    xmlBasePathSuffix = "&noReply=1";
   
     setOutput(0, 4.0); //initialize at 4mA
     
@@ -119,21 +121,24 @@ public void flipAnalogOutput(int pWhichOutput)
 // Valid values for pOutputNum are 0-3. These will be converted to 1-4
 // before transmitting to the module.
 //
-//  "raw:XMLNoHeader//" + moduleIPAddress + "/state.xml?an1State=1";
+//  "/state.xml?an1State=1";
+//
+// The value is sent by the dispatcher thread. If a previous value for the
+// output has not yet been sent, it is replaced by this one.
 //
 
 @Override
 public void setOutput(int pOutputNum, double pValue)
 {
         
-    String controlURL;
+    String controlPath;
     
     channels[pOutputNum].outputValue = pValue;
     
-    controlURL = xmlBaseURL + "an" + (pOutputNum+1) + "State=" + 
-                               decimalFormat.format(pValue) + xmlBaseURLSuffix;
+    controlPath = xmlBasePath + "an" + (pOutputNum+1) + "State=" + 
+                              decimalFormat.format(pValue) + xmlBasePathSuffix;
 
-    connectSendGetRequestClose(controlURL, false);
+    sendCommand("an" + (pOutputNum+1), controlPath, false);
 
 }//end of X_317_AnalogOutputModule::setOutput
 //-----------------------------------------------------------------------------
@@ -145,44 +150,46 @@ public void setOutput(int pOutputNum, double pValue)
 // ready to send a new data point.
 //
 // If ready, alternates between setting output pOutputNum's value to the
-// min or the max so both are represented.
+// min or the max so both are represented. The module is ready if the last
+// value sent for the output has been taken by the dispatcher thread, which
+// limits the rate to one every delayBetweenAccesses.
 //
 // Valid values for pOutputNum are 0-3. These will be converted to 1-4
 // before transmitting to the module.
 //
-//  "raw:XMLNoHeader//" + moduleIPAddress + "/state.xml?an1State=1";
+//  "/state.xml?an1State=1";
 //
 
 @Override
 public void setOutputWithMinMaxPeakHold(int pOutputNum, double pValue)
 {
         
-    String controlURL;
+    String controlPath;
     
     IOModuleChannel ch = channels[pOutputNum];
     
     if (pValue > ch.maxValue){ ch.maxValue = pValue; }
     if (pValue < ch.minValue){ ch.minValue = pValue; }
 
-     //do nothing if send recently performed
-    if (recentConnectionMade) { return; }
+    String key = "an" + (pOutputNum+1);
+
+     //do nothing if previous value not yet sent
+    if (dispatcher == null || dispatcher.isPending(key)) { return; }
     
     //alternate between sending min and max values
     ch.outputValue = ch.minMaxFlip ? ch.minValue : ch.maxValue;
 
-    controlURL = xmlBaseURL + "an" + (pOutputNum+1) + "State=" + 
-                        decimalFormat.format(ch.outputValue)+xmlBaseURLSuffix;
+    controlPath = xmlBasePath + "an" + (pOutputNum+1) + "State=" + 
+                       decimalFormat.format(ch.outputValue)+xmlBasePathSuffix;
 
-    if (connectSendGetRequestClose(controlURL, false) != null){ 
+    sendCommand(key, controlPath, false);
 
-      //if send successful, clear the min/max value and flip to opposite        
-        
-      if(ch.minMaxFlip){ ch.minValue = Double.MAX_VALUE; }
-      else { ch.maxValue = Double.MIN_VALUE; }
-      
-      ch.minMaxFlip = !ch.minMaxFlip;
-        
-    }
+    //clear the min/max value and flip to opposite
+
+    if(ch.minMaxFlip){ ch.minValue = Double.MAX_VALUE; }
+    else { ch.maxValue = Double.MIN_VALUE; }
+
+    ch.minMaxFlip = !ch.minMaxFlip;
 
 }//end of X_317_AnalogOutputModule::setOutputWithMinMaxPeakHold
 //-----------------------------------------------------------------------------
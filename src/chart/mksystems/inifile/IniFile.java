@@ -28,29 +28,83 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 //-----------------------------------------------------------------------------
-// class Parameters
+// class IniSection
 //
-// This class is used to wrap variables for use as parameters in function calls.
+// This class holds the index entries for one section of an IniFile.
+//
+// The start index is the position in the buffer of the line containing the
+// section name while the end index is the position of the line containing the
+// next section name or the size of the buffer if this is the last section.
+//
+// The keys are stored in lower case as the key search is not case sensitive.
+// The position of each key's line is stored relative to the start of the
+// section so that inserting a line in one section only requires the start and
+// end indices of the following sections to be adjusted.
+//
+
+class IniSection{
+
+    int start;
+    int end;
+
+    HashMap<String, IniEntry> keys = new HashMap<>();
+
+}//end of class IniSection
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// class IniEntry
+//
+// This class holds the index entry for one key=value line of an IniFile.
+//
+// The value text is extracted when the entry is created. The int, double, and
+// color values are converted from the text the first time each is requested
+// and then reused until the value is changed.
+//
+
+class IniEntry{
+
+    int offset;         //line position relative to the start of the section
+    String value;
+
+    boolean intParsed, intValid;
+    int intValue;
+
+    boolean doubleParsed, doubleValid;
+    double doubleValue;
+
+    Color colorValue;
+
+//-----------------------------------------------------------------------------
+// IniEntry::IniEntry (constructor)
 //
 
-class Parameters{
+public IniEntry(int pOffset, String pValue)
+{
+
+    offset = pOffset; value = pValue;
 
-    int keyIndex;
-    int sectionIndex;
+}//end of IniEntry::IniEntry (constructor)
+//-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// Parameters::Parameters (constructor)
+// IniEntry::setValue
+//
+// Sets the value text and discards any converted values.
 //
 
-public Parameters()
+void setValue(String pValue)
 {
 
-    keyIndex = 0;
+    value = pValue;
+
+    intParsed = false; doubleParsed = false; colorValue = null;
 
-}//end of Parameters::Parameters
+}//end of IniEntry::setValue
 //-----------------------------------------------------------------------------
 
-}//end of class Parameters
+}//end of class IniEntry
 //-----------------------------------------------------------------------------
 //-----------------------------------------------------------------------------
 
@@ -116,7 +170,24 @@ static public MColor fromString(String pString)
 static public MColor fromString(String pString, Color pDefault)
 {
 
-    Color match = pDefault;
+    MColor color = parse(pString);
+
+    return(color != null ? color : new MColor(pDefault));
+
+}//end of MColor::fromString (static)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MColor::parse (static)
+//
+// Creates a color to match that defined by pString in the same manner as
+// fromString. If an error occurs parsing the string, returns null.
+//
+
+static public MColor parse(String pString)
+{
+
+    Color match = null;
     boolean exit = false;
 
     pString = pString.toUpperCase();
@@ -181,7 +252,7 @@ static public MColor fromString(String pString, Color pDefault)
     if (exit) {return(new MColor(match));}
 
     //string does not name a standard color so assume it is rrr,ggg,bbb format
-    //if a format error occurs, return the default color
+    //if a format error occurs, return null
 
     String rgb; int lRed; int lGreen; int lBlue;
 
@@ -190,13 +261,13 @@ static public MColor fromString(String pString, Color pDefault)
     try{
         //extract red value and convert to integer
         comma = pString.indexOf(',');
-        if (comma == -1) {return(new MColor(pDefault));}
+        if (comma == -1) {return(null);}
         rgb = pString.substring(0, comma).trim();
         lRed = Integer.valueOf(rgb);
 
         //extract green value and convert to integer
         prevComma = comma; comma = pString.indexOf(',', prevComma+1);
-        if (comma == -1) {return(new MColor(pDefault));}
+        if (comma == -1) {return(null);}
         rgb = pString.substring(prevComma+1, comma).trim();
         lGreen = Integer.valueOf(rgb);
 
@@ -207,8 +278,8 @@ static public MColor fromString(String pString, Color pDefault)
 
     }
     catch(NumberFormatException e){
-        //format error so return default color
-        return(new MColor(pDefault));
+        //format error so return null
+        return(null);
     }
 
     //correct illegal values
@@ -219,7 +290,7 @@ static public MColor fromString(String pString, Color pDefault)
     //create a new MColor from the rgb values
     return(new MColor(lRed, lGreen, lBlue));
 
-}//end of MColor::fromString (static)
+}//end of MColor::parse (static)
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -298,6 +369,11 @@ static public String toString(Color pColor)
 //       Machine discards the object from memory - it is not done when the
 //       object seems to be discarded in code.
 //
+// The sections and keys are indexed in hash maps when the file is loaded so
+// that values can be found without searching the buffer. The index is kept up
+// to date as values are written. The file is only written by save() if a
+// value has actually been changed since it was loaded or last saved.
+//
 
 public class IniFile extends Object{
 
@@ -307,6 +383,15 @@ public class IniFile extends Object{
     public String filename;
     private boolean modified;
 
+    //index of the sections and keys in the buffer -- sectionMap holds the
+    //first occurrence of each section name while sectionList holds every line
+    //which starts with '[' in the order they appear in the buffer; the index
+    //is rebuilt when indexValid is false
+
+    private HashMap<String, IniSection> sectionMap;
+    private ArrayList<IniSection> sectionList;
+    private boolean indexValid = false;
+
     DecimalFormat[] DecimalFormats;
     
 //-----------------------------------------------------------------------------
@@ -383,6 +468,8 @@ public void init() throws IOException
              + "and UTF-16BE (Unicode big endian).");
         buffer.add("");
 
+        modified = true; //file does not exist so it must be created by save()
+
     }
     catch(IOException e){
         logSevere(e.getMessage() + " - Error: 346");
@@ -394,18 +481,41 @@ public void init() throws IOException
         if (fileInputStream != null) {fileInputStream.close();}
     }
 
+    buildIndex();
+
 }//end of IniFile::init
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
 // IniFile::save
 //
-// Writes the buffer contents to the file.
+// Writes the buffer contents to the file if any value has been changed since
+// the file was loaded or last saved.
 //
 
 public void save()
 {
 
+    if (!modified) {return;}
+
+    forceSave();
+
+}//end of IniFile::save
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFile::forceSave
+//
+// Writes the buffer contents to the file whether or not anything has been
+// changed.
+//
+
+public void forceSave()
+{
+
+    //if the ini file was never loaded, there is nothing to save
+    if (buffer == null) {return;}
+
     //create a buffered writer stream
 
     FileOutputStream fileOutputStream = null;
@@ -432,6 +542,8 @@ public void save()
 
         out.flush();
 
+        modified = false;
+
     }
     catch(IOException e){
         logSevere(e.getMessage() + " - Error: 394");
@@ -445,7 +557,7 @@ public void save()
         catch(IOException e){}
     }
 
-}//end of IniFile::save
+}//end of IniFile::forceSave
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -455,13 +567,16 @@ public void save()
 // All future saves using save() will use that format until it is changed
 // again.
 //
+// The file is always saved as its format on disk may differ from pFileFormat
+// even if no values have been changed.
+//
 
 public void setFileFormatAndSave(String pFileFormat)
 {
 
     fileFormat = pFileFormat;
     
-    save();
+    forceSave();
     
 }//end of IniFile::setFileFormatAndSave
 //-----------------------------------------------------------------------------
@@ -483,6 +598,7 @@ public void removeAllLinesWhichStartsWith(String pPrefix)
 
         if (((String)i.next()).startsWith(pPrefix)){
             i.remove();
+            modified = true; indexValid = false;
         }
         
     }
@@ -491,120 +607,180 @@ public void removeAllLinesWhichStartsWith(String pPrefix)
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// IniFile::getValue
+// IniFile::buildIndex
 //
-// Returns a string containing the value for pSection and pKey.
+// Creates the index of the sections and keys in the buffer.
 //
-// Parameter pParams.keyIndex will be set to the index position in buffer of
-// the line containing the pKey string.
+// Every line which starts with '[' ends the section before it. The name of a
+// section is the part of the line from the '[' through the first ']' -- any
+// text after that on the line is ignored as it always has been. If a section
+// name appears more than once, only the first occurrence is used.
 //
-// Parameter pParams.sectionIndex will be set to the index position in buffer of
-// the line containing the pSection string.
-//
-// If no matching Section/Key could be found or if the value is blank, the
-// string returns empty and pParams.keyIndex and pParams.sectionIndex will be
-// set to -1.  If the section was found but not the key, pParams.sectionIndex
-// will be set to the index of the line containing the next section name or to
-// a position beyond the end of the file if the section is the last one in the
-// file. The pParams.sectionIndex value can be used in Vector.add() to insert a
-// new line into the section or to create a new section.
+// A line in a section is a key if it contains an '=' symbol. The key name is
+// the part of the line before the '=' converted to lower case. If a key
+// appears more than once in a section, only the first occurrence is used.
 //
 
-String getValue(String pSection, String pKey, Parameters pParams)
+private void buildIndex()
 {
 
-    //default to -1 in case function returns without finding Section/Key
-    pParams.keyIndex = -1; pParams.sectionIndex = -1;
+    sectionMap = new HashMap<>();
+    sectionList = new ArrayList<>();
 
-    //create the section by concatenating brackets around the parameter
-    String section = "[" + pSection + "]";
+    IniSection section = null;
 
-    ListIterator i;
+    for (int i = 0; i < buffer.size(); i++){
 
-    //search the buffer for the section name
+        String line = buffer.get(i);
 
-    //NOTE: searching each line using startsWith and not worrying about case
-    // sped the search for section up tremendously.  This does mean that the section
-    // name is case-sensitive and there can be no whitespace at the beginning of
-    // a section name.  A 4000 line file was taking more than 10 seconds to process
-    // and now takes a second or less.
+        if (line.startsWith("[")){
 
-    for (i = buffer.listIterator(); i.hasNext(); ) {
+            if (section != null) {section.end = i;}
 
-        //stop if line found containing the section name
-        if ( (((String)i.next()).startsWith(section))) {
+            section = new IniSection();
+            section.start = i;
+            sectionList.add(section);
 
-            //set the index of the line containing the section name
-            pParams.sectionIndex = i.previousIndex();
+            int bracket = line.indexOf(']');
 
-        break;
-        }
-    }
+            if (bracket != -1){
+                String name = line.substring(0, bracket + 1);
+                if (!sectionMap.containsKey(name)) {
+                    sectionMap.put(name, section);
+                }
+            }
 
-    //if match not found, section not found so return empty string - both
-    //pParams.keyIndex and pParams.sectionIndex will be -1
-    if (pParams.sectionIndex == -1) {return("");}
+            continue;
+        }
 
-    //search the section for the key - if another section is found before finding
-    //the key, then return empty string and the index of the section entry
-    //add '=' to the search phrase to make sure a partial match will fail
+        if (section != null) {addKeyToIndex(section, i, line);}
 
-    String key = pKey.toLowerCase() + "=";
-    StringBuilder line = new StringBuilder(200);
+    }
 
-    int matchIndex = -1;
+    if (section != null) {section.end = buffer.size();}
 
-    while(i.hasNext()) {
+    indexValid = true;
 
-        line.setLength(0);
+}//end of IniFile::buildIndex
+//-----------------------------------------------------------------------------
 
-        line.append(((String)i.next()).toLowerCase());
+//-----------------------------------------------------------------------------
+// IniFile::addKeyToIndex
+//
+// Adds the key on pLine at buffer position pIndex to the index of pSection.
+// Nothing is added if pLine is not a key=value line or if the key is already
+// in the section.
+//
 
-        //if a new section name is found before the key is found, the key is not
-        //in the section being searched so return empty string
-        try {
-            if (line.charAt(0) == '['){
-                //return the index of the line containing the next section name
-                pParams.sectionIndex = i.previousIndex();
-                return("");
-            }
-        }
-        catch(IndexOutOfBoundsException e){} //ignore this error
+private void addKeyToIndex(IniSection pSection, int pIndex, String pLine)
+{
 
-        //stop when line found containing the key name - index of key must be 0 to
-        //insure that a partial match is not made
-        if ((matchIndex = line.indexOf(key)) == 0) {break;}
+    //the line is converted to lower case before looking for the '=' so that
+    //the value is extracted in the same manner as when the buffer was searched
 
-    }
+    String line = pLine.toLowerCase();
 
-    //if match not found, key not found so return empty string
-    if (matchIndex != 0){
-        //return index at the end of the buffer
-        pParams.sectionIndex = buffer.size();
-        return("");
-    }
+    int indexOfEqual = line.indexOf('=');
 
-    int indexOfEqual;
+    if (indexOfEqual == -1) {return;}
 
-    //look for '=' symbol, if not found then return empty string
-    if ( (indexOfEqual = line.indexOf("=")) == -1) {return("");}
+    String key = line.substring(0, indexOfEqual);
 
-    //return the part of the line after the '=' sign - on error return empty string
-    try{
-        //set return parameters to reflect the line found to contain the key
-        pParams.keyIndex = i.previousIndex();
+    if (pSection.keys.containsKey(key)) {return;}
 
-        return(((String)buffer.get(pParams.keyIndex)).substring(indexOfEqual + 1));
+    String value;
 
+    try{
+        value = pLine.substring(indexOfEqual + 1);
     }
     catch(StringIndexOutOfBoundsException e){
-        pParams.keyIndex = -1;
-        return("");
+        return;
     }
 
+    pSection.keys.put(key, new IniEntry(pIndex - pSection.start, value));
+
+}//end of IniFile::addKeyToIndex
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFile::getSection
+//
+// Returns the index entry for pSection or null if it is not in the buffer.
+//
+// NOTE: the section name is case-sensitive and there can be no whitespace at
+// the beginning of a section name in the file.
+//
+
+private IniSection getSection(String pSection)
+{
+
+    if (!indexValid) {buildIndex();}
+
+    return(sectionMap.get("[" + pSection + "]"));
+
+}//end of IniFile::getSection
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFile::getEntry
+//
+// Returns the index entry for pSection and pKey or null if either is not
+// found. The key search is not case-sensitive.
+//
+
+private IniEntry getEntry(String pSection, String pKey)
+{
+
+    IniSection section = getSection(pSection);
+
+    if (section == null) {return(null);}
+
+    return(section.keys.get(pKey.toLowerCase()));
+
+}//end of IniFile::getEntry
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// IniFile::getValue
+//
+// Returns a string containing the value for pSection and pKey.
+//
+// If no matching Section/Key could be found or if the value is blank, the
+// string returns empty.
+//
+
+String getValue(String pSection, String pKey)
+{
+
+    IniEntry entry = getEntry(pSection, pKey);
+
+    if (entry == null) {return("");}
+
+    return(entry.value);
+
 }//end of IniFile::getValue
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// IniFile::insertLine
+//
+// Inserts pLine into the buffer at position pIndex and shifts the positions
+// of all sections which follow to match.
+//
+
+private void insertLine(int pIndex, String pLine)
+{
+
+    buffer.add(pIndex, pLine);
+
+    for (IniSection section : sectionList){
+        if (section.start >= pIndex) {section.start++;}
+        if (section.end >= pIndex) {section.end++;}
+    }
+
+}//end of IniFile::insertLine
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // IniFile::readInt
 //
@@ -618,25 +794,26 @@ public int readInt(String pSection, String pKey, int pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
-    //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    //get the entry associated with pSection and PKey
+    IniEntry entry = getEntry(pSection, pKey);
 
     //if Section/Key not found, return the default
-    if (valueText.equals("")) {return(pDefault);}
-
-    int value;
+    if (entry == null || entry.value.equals("")) {return(pDefault);}
 
     //try to convert the remainder of the string after the '=' symbol to an
-    //integer if an error occurs, return the default value
+    //integer if an error occurs, return the default value -- the result is
+    //saved so the conversion is only done once
 
-    try{
-        value = Integer.parseInt(valueText);
+    if (!entry.intParsed){
+        try{
+            entry.intValue = Integer.parseInt(entry.value);
+            entry.intValid = true;
+        }
+        catch(NumberFormatException e){entry.intValid = false;}
+        entry.intParsed = true;
     }
-    catch(NumberFormatException e){return(pDefault);}
 
-    return(value);
+    return(entry.intValid ? entry.intValue : pDefault);
 
 }//end of IniFile::readInt
 //-----------------------------------------------------------------------------
@@ -654,25 +831,26 @@ public double readDouble(String pSection, String pKey, double pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
-    //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    //get the entry associated with pSection and PKey
+    IniEntry entry = getEntry(pSection, pKey);
 
     //if Section/Key not found, return the default
-    if (valueText.equals("")) {return(pDefault);}
-
-    double value;
+    if (entry == null || entry.value.equals("")) {return(pDefault);}
 
     //try to convert the remainder of the string after the '=' symbol to a double
-    //if an error occurs, return the default value
+    //if an error occurs, return the default value -- the result is saved so
+    //the conversion is only done once
 
-    try{
-        value = Double.parseDouble(valueText);
+    if (!entry.doubleParsed){
+        try{
+            entry.doubleValue = Double.parseDouble(entry.value);
+            entry.doubleValid = true;
+        }
+        catch(NumberFormatException e){entry.doubleValid = false;}
+        entry.doubleParsed = true;
     }
-    catch(NumberFormatException e){return(pDefault);}
 
-    return(value);
+    return(entry.doubleValid ? entry.doubleValue : pDefault);
 
 }//end of IniFile::readDouble
 //-----------------------------------------------------------------------------
@@ -690,15 +868,24 @@ public Color readColor(String pSection, String pKey, Color pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
-    //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    //get the entry associated with pSection and PKey
+    IniEntry entry = getEntry(pSection, pKey);
 
     //if Section/Key not found, return the default
-    if (valueText.equals("")) {return(pDefault);}
+    if (entry == null || entry.value.equals("")) {return(pDefault);}
+
+    //the converted color is saved only if the text is a valid color as the
+    //result for an invalid color depends on pDefault
+
+    if (entry.colorValue != null) {return(entry.colorValue);}
 
-    return(MColor.fromString(valueText, pDefault));
+    MColor color = MColor.parse(entry.value);
+
+    if (color == null) {return(new MColor(pDefault));}
+
+    entry.colorValue = color;
+
+    return(color);
 
 }//end of IniFile::readColor
 //-----------------------------------------------------------------------------
@@ -716,10 +903,8 @@ public String readString(String pSection, String pKey, String pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
     //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    String valueText = getValue(pSection, pKey);
 
     //if Section/Key not found, return the default
     if (valueText.equals("")) {
@@ -746,10 +931,8 @@ public boolean readBoolean(String pSection, String pKey, boolean pDefault)
     //if the ini file was never loaded from memory, return the default
     if (buffer == null) {return pDefault;}
 
-    Parameters params = new Parameters();
-
     //get the value associated with pSection and PKey
-    String valueText = getValue(pSection, pKey, params);
+    String valueText = getValue(pSection, pKey);
 
     //if Section/Key not found, return the default
     if (valueText.equals("")){return(pDefault);}
@@ -776,39 +959,77 @@ public boolean readBoolean(String pSection, String pKey, boolean pDefault)
 // This is a helper function for writeInteger, writeDouble, writeString, etc.
 //
 // The modified flag will be set true so that the data buffer will be saved to
-// disk when this object is discarded.
+// disk by save() unless pNewEntry matches the existing line.
 //
 
 private void writeValue(String pSection, String pKey, String pNewEntry)
 {
 
-    modified = true; //force data to be saved when this object is discarded
+    IniSection section = getSection(pSection);
 
-    Parameters params = new Parameters();
+    if (section != null){
 
-    //use the getValue function to search for the section and key and retrieve
-    //the index positions in the buffer of the section and key via params
-    getValue(pSection, pKey, params);
+        IniEntry entry = section.keys.get(pKey.toLowerCase());
 
-    if (params.keyIndex != -1){
+        if (entry != null){
 
-        //if the section/key was found, replace the line with the new key=value line
-        buffer.set(params.keyIndex, pNewEntry);
+            //if the section/key was found, replace the line with the new
+            //key=value line
 
-    }
-    else
-    if (params.sectionIndex != -1){
+            int index = section.start + entry.offset;
+
+            if (buffer.get(index).equals(pNewEntry)) {return;}
+
+            modified = true;
+
+            buffer.set(index, pNewEntry);
+
+            section.keys.remove(pKey.toLowerCase());
+            addKeyToIndex(section, index, pNewEntry);
+
+        }
+        else{
+
+            //if section found but not key, add new key=value line to end of
+            //section
+
+            modified = true;
+
+            int index = section.end;
 
-        //if section found but not key, add new key=value line to end of section
-        buffer.add(params.sectionIndex, pNewEntry);
+            insertLine(index, pNewEntry);
+            addKeyToIndex(section, index, pNewEntry);
+
+        }
 
     }
     else{
 
         //if section not found, add section and newkey=value line to end of file
-        buffer.add("[" + pSection + "]");
+
+        modified = true;
+
+        String name = "[" + pSection + "]";
+
+        buffer.add(name);
         buffer.add(pNewEntry);
 
+        //a section name containing a ']' would be indexed by only part of the
+        //name, so the index is rebuilt in that case to keep it consistent
+
+        if (name.indexOf(']') != name.length() - 1) {
+            indexValid = false;
+            return;
+        }
+
+        section = new IniSection();
+        section.start = buffer.size() - 2;
+        section.end = buffer.size();
+        sectionList.add(section);
+        sectionMap.put(name, section);
+
+        addKeyToIndex(section, section.start + 1, pNewEntry);
+
     }
 
 }//end of IniFile::writeValue
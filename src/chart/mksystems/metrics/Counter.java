@@ -0,0 +1,162 @@
+/******************************************************************************
+* Title: Counter.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class counts events, such as packets or bytes received. The total is
+* shown along with the rate over the interval between snapshots.
+*
+* The count is kept in a LongAdder so that it can be increased by any number
+* of threads without locking and without the threads contending for a single
+* memory location.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Counter
+//
+// See notes at top of page.
+//
+
+public class Counter extends Metric{
+
+    final LongAdder count = new LongAdder();
+
+//-----------------------------------------------------------------------------
+// Counter::Counter (constructor)
+//
+
+Counter(String pName)
+{
+
+    super(pName);
+
+}//end of Counter::Counter (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Counter::increment
+//
+
+public void increment()
+{
+
+    count.increment();
+
+}//end of Counter::increment
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Counter::add
+//
+
+public void add(long pAmount)
+{
+
+    count.add(pAmount);
+
+}//end of Counter::add
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Counter::get
+//
+
+public long get()
+{
+
+    return(count.sum());
+
+}//end of Counter::get
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Counter::sample
+//
+
+@Override
+long[] sample()
+{
+
+    return(new long[] {count.sum()});
+
+}//end of Counter::sample
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Counter::addColumnNames
+//
+
+@Override
+void addColumnNames(List<String> pNames)
+{
+
+    pNames.add(name);
+    pNames.add(name + " /s");
+
+}//end of Counter::addColumnNames
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Counter::addValues
+//
+
+@Override
+void addValues(long[] pCurrent, long[] pPrevious, double pSeconds,
+                                                        List<String> pValues)
+{
+
+    pValues.add(Long.toString(pCurrent[0]));
+    pValues.add(Metrics.format(getRate(pCurrent, pPrevious, pSeconds)));
+
+}//end of Counter::addValues
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Counter::describe
+//
+
+@Override
+String describe(long[] pCurrent, long[] pPrevious, double pSeconds)
+{
+
+    return(name + ": " + pCurrent[0] + " ("
+        + Metrics.format(getRate(pCurrent, pPrevious, pSeconds)) + "/s)");
+
+}//end of Counter::describe
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Counter::getRate
+//
+// Returns the count per second over the interval of pSeconds between
+// samples pPrevious and pCurrent.
+//
+
+private double getRate(long[] pCurrent, long[] pPrevious, double pSeconds)
+{
+
+    if (pPrevious == null || pSeconds <= 0) {return(0);}
+
+    return((pCurrent[0] - pPrevious[0]) / pSeconds);
+
+}//end of Counter::getRate
+//-----------------------------------------------------------------------------
+
+}//end of class Counter
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
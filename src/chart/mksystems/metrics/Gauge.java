@@ -0,0 +1,146 @@
+/******************************************************************************
+* Title: Gauge.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds a value which goes up and down, such as the depth of a
+* queue. The value is either set by the owner whenever it changes or, if a
+* supplier is given, read from the supplier when a snapshot is taken so that
+* nothing at all is done by the owner's thread.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.metrics;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Gauge
+//
+// See notes at top of page.
+//
+
+public class Gauge extends Metric{
+
+    volatile long value = 0;
+    volatile LongSupplier supplier = null;
+
+//-----------------------------------------------------------------------------
+// Gauge::Gauge (constructor)
+//
+
+Gauge(String pName)
+{
+
+    super(pName);
+
+}//end of Gauge::Gauge (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Gauge::set
+//
+
+public void set(long pValue)
+{
+
+    value = pValue;
+
+}//end of Gauge::set
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Gauge::setSupplier
+//
+// The value will be read from pSupplier when needed. Pass null to use the
+// value set by set instead.
+//
+
+public void setSupplier(LongSupplier pSupplier)
+{
+
+    supplier = pSupplier;
+
+}//end of Gauge::setSupplier
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Gauge::get
+//
+
+public long get()
+{
+
+    LongSupplier s = supplier;
+
+    return(s != null ? s.getAsLong() : value);
+
+}//end of Gauge::get
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Gauge::sample
+//
+
+@Override
+long[] sample()
+{
+
+    return(new long[] {get()});
+
+}//end of Gauge::sample
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Gauge::addColumnNames
+//
+
+@Override
+void addColumnNames(List<String> pNames)
+{
+
+    pNames.add(name);
+
+}//end of Gauge::addColumnNames
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Gauge::addValues
+//
+
+@Override
+void addValues(long[] pCurrent, long[] pPrevious, double pSeconds,
+                                                        List<String> pValues)
+{
+
+    pValues.add(Long.toString(pCurrent[0]));
+
+}//end of Gauge::addValues
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Gauge::describe
+//
+
+@Override
+String describe(long[] pCurrent, long[] pPrevious, double pSeconds)
+{
+
+    return(name + ": " + pCurrent[0]);
+
+}//end of Gauge::describe
+//-----------------------------------------------------------------------------
+
+}//end of class Gauge
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,318 @@
+/******************************************************************************
+* Title: Histogram.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class records the distribution of values such as latencies or queue
+* depths so that the median, the 99th percentile, and the maximum can be
+* shown for each interval rather than just an average which hides stalls.
+*
+* As in an HDR histogram, the buckets are spaced logarithmically with a fixed
+* number of linear sub-buckets in each power of two. Values below 32 each
+* have their own bucket; above that, each bucket covers 1/16 of its power of
+* two, so any value is known to within about 6% using 960 buckets for the
+* full range of a long. Finding the bucket takes a few shifts and no search.
+*
+* Each bucket is a counter in an AtomicLongArray, so values can be recorded
+* by any number of threads without locking. A sample copies the counters;
+* the values recorded while the copy is being made may or may not be
+* included, which is of no consequence for statistics.
+*
+* Values are recorded in raw units, such as nanoseconds, and divided by the
+* display scale for viewing. Use Metrics.timer for histograms of times.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Histogram
+//
+// See notes at top of page.
+//
+
+public class Histogram extends Metric{
+
+    //number of linear sub-buckets in each power of two above LINEAR_LIMIT
+    static final int SUB_BUCKETS = 16;
+    static final int SUB_BUCKET_BITS = 4;
+
+    //values below this each have their own bucket
+    static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+
+    static final int NUMBER_OF_BUCKETS = (63 - SUB_BUCKET_BITS) * SUB_BUCKETS
+                                                                + SUB_BUCKETS;
+
+    final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    final AtomicLong sum = new AtomicLong(0);
+
+    final String unit;
+    final double scale;
+
+//-----------------------------------------------------------------------------
+// Histogram::Histogram (constructor)
+//
+// The values are divided by pScale and shown with pUnit.
+//
+
+Histogram(String pName, String pUnit, double pScale)
+{
+
+    super(pName);
+
+    unit = pUnit; scale = pScale;
+
+}//end of Histogram::Histogram (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::record
+//
+// Records pValue. Negative values are recorded as zero.
+//
+
+public void record(long pValue)
+{
+
+    if (pValue < 0) {pValue = 0;}
+
+    counts.incrementAndGet(getIndex(pValue));
+
+    sum.addAndGet(pValue);
+
+}//end of Histogram::record
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::recordSince
+//
+// Records the time in nanoseconds since pStartTime, which was read from
+// System.nanoTime.
+//
+
+public void recordSince(long pStartTime)
+{
+
+    record(System.nanoTime() - pStartTime);
+
+}//end of Histogram::recordSince
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::getIndex (static)
+//
+// Returns the index of the bucket for pValue, which must not be negative.
+//
+
+static int getIndex(long pValue)
+{
+
+    if (pValue < LINEAR_LIMIT) {return((int)pValue);}
+
+    //shift the value so that its highest set bit is at the top of the
+    //sub-bucket range, the shift then selects the power of two
+
+    int shift = (63 - Long.numberOfLeadingZeros(pValue)) - SUB_BUCKET_BITS;
+
+    return(shift * SUB_BUCKETS + (int)(pValue >>> shift));
+
+}//end of Histogram::getIndex
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::getHighestValue (static)
+//
+// Returns the largest value which is placed in bucket pIndex.
+//
+
+static long getHighestValue(int pIndex)
+{
+
+    if (pIndex < LINEAR_LIMIT) {return(pIndex);}
+
+    int shift = pIndex / SUB_BUCKETS - 1;
+    long top = pIndex % SUB_BUCKETS + SUB_BUCKETS;
+
+    return(((top + 1) << shift) - 1);
+
+}//end of Histogram::getHighestValue
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::sample
+//
+// Returns the bucket counts followed by the sum of all values.
+//
+
+@Override
+long[] sample()
+{
+
+    long[] sample = new long[NUMBER_OF_BUCKETS + 1];
+
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {sample[i] = counts.get(i);}
+
+    sample[NUMBER_OF_BUCKETS] = sum.get();
+
+    return(sample);
+
+}//end of Histogram::sample
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::addColumnNames
+//
+
+@Override
+void addColumnNames(List<String> pNames)
+{
+
+    String suffix = unit.isEmpty() ? "" : " " + unit;
+
+    pNames.add(name + " count");
+    pNames.add(name + " mean" + suffix);
+    pNames.add(name + " p50" + suffix);
+    pNames.add(name + " p99" + suffix);
+    pNames.add(name + " max" + suffix);
+
+}//end of Histogram::addColumnNames
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::addValues
+//
+// Adds the count, mean, median, 99th percentile, and maximum of the values
+// recorded between samples pPrevious and pCurrent.
+//
+
+@Override
+void addValues(long[] pCurrent, long[] pPrevious, double pSeconds,
+                                                        List<String> pValues)
+{
+
+    long count = getCount(pCurrent, pPrevious);
+
+    pValues.add(Long.toString(count));
+    pValues.add(Metrics.format(getMean(pCurrent, pPrevious, count)));
+    pValues.add(Metrics.format(
+                        getPercentile(pCurrent, pPrevious, count, 0.50)));
+    pValues.add(Metrics.format(
+                        getPercentile(pCurrent, pPrevious, count, 0.99)));
+    pValues.add(Metrics.format(
+                        getPercentile(pCurrent, pPrevious, count, 1.0)));
+
+}//end of Histogram::addValues
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::describe
+//
+
+@Override
+String describe(long[] pCurrent, long[] pPrevious, double pSeconds)
+{
+
+    long count = getCount(pCurrent, pPrevious);
+
+    String suffix = unit.isEmpty() ? "" : " " + unit;
+
+    return(name + ": n=" + count
+      + " p50=" + Metrics.format(
+                        getPercentile(pCurrent, pPrevious, count, 0.50))
+      + " p99=" + Metrics.format(
+                        getPercentile(pCurrent, pPrevious, count, 0.99))
+      + " max=" + Metrics.format(
+                        getPercentile(pCurrent, pPrevious, count, 1.0))
+      + suffix);
+
+}//end of Histogram::describe
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::getCount
+//
+// Returns the number of values recorded between samples pPrevious and
+// pCurrent.
+//
+
+private long getCount(long[] pCurrent, long[] pPrevious)
+{
+
+    long count = 0;
+
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++){
+        count += pCurrent[i] - (pPrevious != null ? pPrevious[i] : 0);
+    }
+
+    return(count);
+
+}//end of Histogram::getCount
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::getMean
+//
+// Returns the mean of the pCount values recorded between samples pPrevious
+// and pCurrent, divided by the display scale.
+//
+
+private double getMean(long[] pCurrent, long[] pPrevious, long pCount)
+{
+
+    if (pCount == 0) {return(0);}
+
+    long total = pCurrent[NUMBER_OF_BUCKETS]
+                    - (pPrevious != null ? pPrevious[NUMBER_OF_BUCKETS] : 0);
+
+    return(total / (double)pCount / scale);
+
+}//end of Histogram::getMean
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Histogram::getPercentile
+//
+// Returns the value below or at which fraction pFraction of the pCount values
+// recorded between samples pPrevious and pCurrent fall, divided by the display
+// scale. A pFraction of 1.0 returns the maximum.
+//
+// The highest value of the bucket is returned, so the result may be up to
+// about 6% high.
+//
+
+private double getPercentile(long[] pCurrent, long[] pPrevious, long pCount,
+                                                            double pFraction)
+{
+
+    if (pCount == 0) {return(0);}
+
+    long rank = Math.max(1, (long)Math.ceil(pFraction * pCount));
+
+    long total = 0;
+
+    for (int i = 0; i < NUMBER_OF_BUCKETS; i++){
+        total += pCurrent[i] - (pPrevious != null ? pPrevious[i] : 0);
+        if (total >= rank) {return(getHighestValue(i) / scale);}
+    }
+
+    return(getHighestValue(NUMBER_OF_BUCKETS - 1) / scale);
+
+}//end of Histogram::getPercentile
+//-----------------------------------------------------------------------------
+
+}//end of class Histogram
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,115 @@
+/******************************************************************************
+* Title: Metric.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This is the parent class for the counters, gauges, and histograms kept in
+* the Metrics registry.
+*
+* A metric is updated by the threads doing the work without locking. To view
+* or log the metric, its cumulative state is sampled into a long array by
+* MetricsSnapshot. The values for the interval between two snapshots, such as
+* a rate or the percentiles of the values recorded in the interval, are then
+* computed from the two samples. Since no reset is ever done, any number of
+* viewers and loggers can each use their own intervals.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.metrics;
+
+import java.util.List;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Metric
+//
+// See notes at top of page.
+//
+
+public abstract class Metric extends Object{
+
+    final String name;
+
+//-----------------------------------------------------------------------------
+// Metric::Metric (constructor)
+//
+
+Metric(String pName)
+{
+
+    name = pName;
+
+}//end of Metric::Metric (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metric::getName
+//
+
+public String getName()
+{
+
+    return(name);
+
+}//end of Metric::getName
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metric::sample
+//
+// Returns the cumulative state of the metric.
+//
+
+abstract long[] sample();
+
+//end of Metric::sample
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metric::addColumnNames
+//
+// Adds the names of the columns written by addValues to pNames.
+//
+
+abstract void addColumnNames(List<String> pNames);
+
+//end of Metric::addColumnNames
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metric::addValues
+//
+// Adds the values for the interval of pSeconds between samples pPrevious and
+// pCurrent to pValues. pPrevious is null if there was no earlier sample.
+//
+
+abstract void addValues(long[] pCurrent, long[] pPrevious, double pSeconds,
+                                                        List<String> pValues);
+
+//end of Metric::addValues
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metric::describe
+//
+// Returns a single line showing the values for the interval of pSeconds
+// between samples pPrevious and pCurrent. pPrevious is null if there was no
+// earlier sample.
+//
+
+abstract String describe(long[] pCurrent, long[] pPrevious, double pSeconds);
+
+//end of Metric::describe
+//-----------------------------------------------------------------------------
+
+}//end of class Metric
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
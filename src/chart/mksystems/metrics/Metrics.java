@@ -0,0 +1,162 @@
+/******************************************************************************
+* Title: Metrics.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class is the registry of the counters, gauges, and histograms which
+* track the data acquisition and display pipeline: packets and bytes received
+* from each board, resyncs, the time taken by each data collection cycle and
+* chart frame, the save queue, and so on.
+*
+* A metric is created the first time its name is requested and the same
+* object is returned for every later request, so an object which is rebuilt,
+* such as a board after a reconnect, continues the same metric. Each name
+* must only be used for one type of metric.
+*
+* The metrics should be looked up once when the owning object is set up and
+* the reference kept; looking one up is a map access, while updating one is
+* only an atomic add. No locks are taken by the threads updating the metrics.
+*
+* Use snapshot to read all metrics for viewing or logging. See
+* MetricsSnapshot and MetricsLogger.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.metrics;
+
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class Metrics
+//
+// See notes at top of page.
+//
+
+public class Metrics extends Object{
+
+    static final ConcurrentHashMap<String, Metric> registry =
+                                                    new ConcurrentHashMap<>();
+
+//-----------------------------------------------------------------------------
+// Metrics::counter (static)
+//
+// Returns the counter named pName, creating it if necessary.
+//
+
+public static Counter counter(String pName)
+{
+
+    return((Counter)registry.computeIfAbsent(pName, n -> new Counter(n)));
+
+}//end of Metrics::counter
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metrics::gauge (static)
+//
+// Returns the gauge named pName, creating it if necessary.
+//
+
+public static Gauge gauge(String pName)
+{
+
+    return((Gauge)registry.computeIfAbsent(pName, n -> new Gauge(n)));
+
+}//end of Metrics::gauge
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metrics::gauge (static)
+//
+// Returns the gauge named pName, creating it if necessary, with its value to
+// be read from pSupplier. Any previous supplier is replaced.
+//
+
+public static Gauge gauge(String pName, LongSupplier pSupplier)
+{
+
+    Gauge gauge = gauge(pName);
+
+    gauge.setSupplier(pSupplier);
+
+    return(gauge);
+
+}//end of Metrics::gauge
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metrics::histogram (static)
+//
+// Returns the histogram named pName, creating it if necessary. The values
+// will be shown without scaling.
+//
+
+public static Histogram histogram(String pName)
+{
+
+    return((Histogram)registry.computeIfAbsent(
+                                        pName, n -> new Histogram(n, "", 1)));
+
+}//end of Metrics::histogram
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metrics::timer (static)
+//
+// Returns the histogram named pName, creating it if necessary, for times
+// recorded in nanoseconds and shown in microseconds.
+//
+
+public static Histogram timer(String pName)
+{
+
+    return((Histogram)registry.computeIfAbsent(
+                                    pName, n -> new Histogram(n, "us", 1000)));
+
+}//end of Metrics::timer
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metrics::snapshot (static)
+//
+// Returns a sample of every metric, sorted by name.
+//
+
+public static MetricsSnapshot snapshot()
+{
+
+    return(new MetricsSnapshot(new TreeMap<>(registry).values()));
+
+}//end of Metrics::snapshot
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Metrics::format (static)
+//
+// Returns pValue as text with one decimal place. A period is always used for
+// the decimal point so that the value can be written to a CSV file.
+//
+
+static String format(double pValue)
+{
+
+    return(String.format(Locale.ROOT, "%.1f", pValue));
+
+}//end of Metrics::format
+//-----------------------------------------------------------------------------
+
+}//end of class Metrics
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
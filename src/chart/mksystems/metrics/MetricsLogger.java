@@ -0,0 +1,313 @@
+/******************************************************************************
+* Title: MetricsLogger.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class periodically writes the values of all metrics to a CSV file so
+* that a missed indication can later be matched with any stall in the data
+* acquisition or display at that time.
+*
+* Each line holds the time followed by the values for the interval since the
+* previous line. A new file is started each day, when the file grows larger
+* than MAX_FILE_SIZE, or when the set of metrics changes, such as when a board
+* is connected, so that every file has a single header line. Only the newest
+* files are kept; older files are deleted.
+*
+* The files are named with the time they were started:
+*
+*   Metrics ~ 2026-10-16 09-15-42.csv
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class MetricsLogger
+//
+// See notes at top of page.
+//
+
+public class MetricsLogger extends Thread{
+
+    static final String FILE_PREFIX = "Metrics ~ ";
+    static final String EXTENSION = ".csv";
+
+    static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+
+    String folder;
+    int interval;
+    int filesToKeep;
+
+    BufferedWriter file = null;
+    long fileSize;
+    String fileDay;
+    List<String> columnNames;
+
+    MetricsSnapshot previous = null;
+
+    final SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
+    final SimpleDateFormat timeFormat =
+                                    new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    final SimpleDateFormat nameFormat =
+                                    new SimpleDateFormat("yyyy-MM-dd HH-mm-ss");
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::MetricsLogger (constructor)
+//
+// Writes a line to a file in pFolder every pInterval seconds, keeping the
+// newest pFilesToKeep files.
+//
+
+public MetricsLogger(String pFolder, int pInterval, int pFilesToKeep)
+{
+
+    super("Metrics Logger");
+
+    folder = pFolder;
+    interval = Math.max(pInterval, 1);
+    filesToKeep = Math.max(pFilesToKeep, 1);
+
+    setDaemon(true);
+
+}//end of MetricsLogger::MetricsLogger (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::shutDown
+//
+// Stops the thread. The current file is closed by the thread.
+//
+
+public void shutDown()
+{
+
+    interrupt();
+
+}//end of MetricsLogger::shutDown
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::run
+//
+
+@Override
+public void run()
+{
+
+    previous = Metrics.snapshot();
+
+    try{
+
+        while (!isInterrupted()){
+
+            Thread.sleep(interval * 1000L);
+
+            MetricsSnapshot snapshot = Metrics.snapshot();
+
+            try{
+                writeLine(snapshot);
+            }
+            catch(IOException e){
+                logSevere(e.getMessage() + " - Error: 133");
+                closeFile();
+            }
+
+            previous = snapshot;
+
+        }
+
+    }
+    catch(InterruptedException e){
+        //thread is being stopped
+    }
+    finally{
+        closeFile();
+    }
+
+}//end of MetricsLogger::run
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::writeLine
+//
+// Writes the values for the interval since the previous snapshot, starting
+// a new file if necessary.
+//
+
+private void writeLine(MetricsSnapshot pSnapshot) throws IOException
+{
+
+    Date date = new Date(pSnapshot.wallTime);
+
+    List<String> names = pSnapshot.getColumnNames();
+
+    if (file == null || fileSize > MAX_FILE_SIZE
+                                    || !dayFormat.format(date).equals(fileDay)
+                                    || !names.equals(columnNames)){
+        startFile(date, names);
+    }
+
+    StringBuilder line = new StringBuilder(timeFormat.format(date));
+
+    for (String value : pSnapshot.getValues(previous)){
+        line.append(',').append(value);
+    }
+
+    write(line);
+
+}//end of MetricsLogger::writeLine
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::startFile
+//
+// Closes the current file, deletes the oldest files if there are too many,
+// and starts a new file with a header line of "Time" and pNames.
+//
+
+private void startFile(Date pDate, List<String> pNames) throws IOException
+{
+
+    closeFile();
+
+    new File(folder).mkdirs();
+
+    deleteOldFiles();
+
+    File f = new File(folder, FILE_PREFIX + nameFormat.format(pDate)
+                                                                + EXTENSION);
+
+    file = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(f), StandardCharsets.UTF_8));
+
+    fileSize = 0;
+    fileDay = dayFormat.format(pDate);
+    columnNames = pNames;
+
+    StringBuilder line = new StringBuilder("Time");
+
+    for (String name : pNames) {line.append(',').append(quote(name));}
+
+    write(line);
+
+}//end of MetricsLogger::startFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::write
+//
+// Writes pLine followed by a line separator and flushes the file so that the
+// line is not lost if the program stops.
+//
+
+private void write(StringBuilder pLine) throws IOException
+{
+
+    pLine.append(System.lineSeparator());
+
+    file.write(pLine.toString());
+    file.flush();
+
+    fileSize += pLine.length();
+
+}//end of MetricsLogger::write
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::deleteOldFiles
+//
+// Deletes the oldest metrics files so that there is room for one more file
+// without exceeding filesToKeep. The names sort by time.
+//
+
+private void deleteOldFiles()
+{
+
+    File[] files = new File(folder).listFiles((dir, name) ->
+                    name.startsWith(FILE_PREFIX) && name.endsWith(EXTENSION));
+
+    if (files == null || files.length < filesToKeep) {return;}
+
+    Arrays.sort(files);
+
+    for (int i = 0; i <= files.length - filesToKeep; i++) {files[i].delete();}
+
+}//end of MetricsLogger::deleteOldFiles
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::closeFile
+//
+
+private void closeFile()
+{
+
+    if (file == null) {return;}
+
+    try{
+        file.close();
+    }
+    catch(IOException e){
+        logSevere(e.getMessage() + " - Error: 263");
+    }
+
+    file = null;
+
+}//end of MetricsLogger::closeFile
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::quote (static)
+//
+// Returns pText quoted for a CSV file if it contains a comma or quote.
+//
+
+static String quote(String pText)
+{
+
+    if (pText.indexOf(',') < 0 && pText.indexOf('"') < 0) {return(pText);}
+
+    return("\"" + pText.replace("\"", "\"\"") + "\"");
+
+}//end of MetricsLogger::quote
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsLogger::logSevere
+//
+// Logs pMessage with level SEVERE using the Java logger.
+//
+
+void logSevere(String pMessage)
+{
+
+    Logger.getLogger(getClass().getName()).log(Level.SEVERE, pMessage);
+
+}//end of MetricsLogger::logSevere
+//-----------------------------------------------------------------------------
+
+}//end of class MetricsLogger
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
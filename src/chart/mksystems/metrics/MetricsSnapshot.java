@@ -0,0 +1,169 @@
+/******************************************************************************
+* Title: MetricsSnapshot.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds a sample of every metric in the registry taken at one
+* time. The values for the interval since an earlier snapshot, such as rates
+* and percentiles, are computed by comparing the two snapshots. A metric
+* which is not in the earlier snapshot is shown with its totals since it was
+* created.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class MetricsSnapshot
+//
+// See notes at top of page.
+//
+
+public class MetricsSnapshot extends Object{
+
+    //time of the snapshot from System.nanoTime and System.currentTimeMillis
+    public final long time;
+    public final long wallTime;
+
+    final ArrayList<Metric> metrics;
+    final HashMap<Metric, long[]> samples;
+
+//-----------------------------------------------------------------------------
+// MetricsSnapshot::MetricsSnapshot (constructor)
+//
+// Samples each metric in pMetrics.
+//
+
+MetricsSnapshot(Collection<Metric> pMetrics)
+{
+
+    time = System.nanoTime();
+    wallTime = System.currentTimeMillis();
+
+    metrics = new ArrayList<>(pMetrics);
+    samples = new HashMap<>();
+
+    for (Metric m : metrics) {samples.put(m, m.sample());}
+
+}//end of MetricsSnapshot::MetricsSnapshot (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsSnapshot::getColumnNames
+//
+// Returns the names of the columns returned by getValues.
+//
+
+public List<String> getColumnNames()
+{
+
+    ArrayList<String> names = new ArrayList<>();
+
+    for (Metric m : metrics) {m.addColumnNames(names);}
+
+    return(names);
+
+}//end of MetricsSnapshot::getColumnNames
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsSnapshot::getValues
+//
+// Returns the values of all metrics for the interval since snapshot
+// pPrevious, which may be null.
+//
+
+public List<String> getValues(MetricsSnapshot pPrevious)
+{
+
+    ArrayList<String> values = new ArrayList<>();
+
+    double seconds = getSeconds(pPrevious);
+
+    for (Metric m : metrics){
+        m.addValues(samples.get(m), getPreviousSample(pPrevious, m),
+                                                            seconds, values);
+    }
+
+    return(values);
+
+}//end of MetricsSnapshot::getValues
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsSnapshot::getText
+//
+// Returns the values of all metrics for the interval since snapshot
+// pPrevious, which may be null, with one line for each metric.
+//
+
+public String getText(MetricsSnapshot pPrevious)
+{
+
+    StringBuilder text = new StringBuilder();
+
+    double seconds = getSeconds(pPrevious);
+
+    if (pPrevious != null){
+        text.append("Last ").append(Metrics.format(seconds))
+                                                .append(" seconds\n");
+    }
+
+    for (Metric m : metrics){
+        text.append(m.describe(samples.get(m),
+                        getPreviousSample(pPrevious, m), seconds)).append("\n");
+    }
+
+    return(text.toString());
+
+}//end of MetricsSnapshot::getText
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsSnapshot::getSeconds
+//
+// Returns the seconds since snapshot pPrevious, or 0 if it is null.
+//
+
+private double getSeconds(MetricsSnapshot pPrevious)
+{
+
+    if (pPrevious == null) {return(0);}
+
+    return((time - pPrevious.time) / 1e9);
+
+}//end of MetricsSnapshot::getSeconds
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MetricsSnapshot::getPreviousSample
+//
+// Returns the sample of pMetric in snapshot pPrevious, or null if pPrevious
+// is null or does not include it.
+//
+
+private long[] getPreviousSample(MetricsSnapshot pPrevious, Metric pMetric)
+{
+
+    return(pPrevious != null ? pPrevious.samples.get(pMetric) : null);
+
+}//end of MetricsSnapshot::getPreviousSample
+//-----------------------------------------------------------------------------
+
+}//end of class MetricsSnapshot
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -87,7 +87,8 @@ public class Settings extends Object implements ActionListener, ItemListener {
     //This is the version of the format used to save the data for a segment which
     //holds data for an inspected piece.
     //version 1.0 saved with the "Threshold" tag misspelled as "Theshold"
-    public static String SEGMENT_DATA_VERSION = "1.1";
+    //version 1.2 files are saved in binary form -- see SegmentDataWriter
+    public static String SEGMENT_DATA_VERSION = "1.2";
 
     //This is the format used for non-job files such as those in the root
     //program folder, presets, config files, etc. -- older files were in UTF-16LE
@@ -103,6 +104,10 @@ public class Settings extends Object implements ActionListener, ItemListener {
     public String currentJobName;
     public String currentJobPrimaryPath, currentJobBackupPath;
     public String reportsPath, mapFilesPath;
+
+    //if not empty, the pipeline metrics are logged to files in this folder
+    public String metricsPath = "";
+    public int metricsLogInterval, metricsFilesToKeep;
     public String primaryDataPath;
     public String backupDataPath;
 
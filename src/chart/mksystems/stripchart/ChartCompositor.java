@@ -0,0 +1,312 @@
+/******************************************************************************
+* Title: ChartCompositor.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the contents of a ChartCanvas in an off-screen image so
+* that scrolling the chart does not require copying the entire canvas for
+* every new data point.
+*
+* The image is twice the width of the canvas. The canvas is shown from the
+* image starting at the origin, which moves one pixel to the right each time
+* the chart scrolls left. The plotters draw using a Graphics2D translated by
+* the origin, so they use the same coordinates as they would on the canvas.
+*
+* When the origin reaches the middle of the image, the right half is copied
+* to the left half and the origin is moved back to zero. This is the only
+* copy required, and it is made once for every canvas width of scrolling
+* rather than once for every pixel. Scrolling in reverse works the same way
+* in the opposite direction.
+*
+* The image is copied to the screen by present with a single drawImage call.
+* No more than one copy is made per display refresh period no matter how fast
+* data arrives; any drawing since the last copy is shown by the next call to
+* present after the period has elapsed.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.stripchart;
+
+import java.awt.DisplayMode;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ChartCompositor
+//
+// See notes at top of page.
+//
+
+class ChartCompositor extends Object{
+
+    static final int DEFAULT_REFRESH_RATE = 60;
+
+    BufferedImage image = null;
+    int width = 0, height = 0;
+
+    //the x position in the image of the left edge of the canvas
+    int origin = 0;
+
+    //the graphics object used by the plotters -- translated by origin
+    Graphics2D plotG2 = null;
+
+    //true if the image has been drawn on since last copied to the screen
+    boolean dirty = false;
+
+    long framePeriodNS;
+    long lastPresentTime = 0;
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::ChartCompositor (constructor)
+//
+
+public ChartCompositor()
+{
+
+    framePeriodNS = 1000000000L / getRefreshRate();
+
+}//end of ChartCompositor::ChartCompositor (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::isReady
+//
+// Returns true if the image exists and matches pWidth and pHeight.
+//
+
+boolean isReady(int pWidth, int pHeight)
+{
+
+    return(image != null && pWidth == width && pHeight == height);
+
+}//end of ChartCompositor::isReady
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::beginRender
+//
+// Prepares the image for the canvas to be completely redrawn at size pWidth
+// by pHeight. The image is recreated if the size has changed and the origin
+// is reset to zero. The graphics object is always recreated as the old one
+// is still translated by the previous origin.
+//
+// Returns the graphics object to draw with.
+//
+
+Graphics2D beginRender(int pWidth, int pHeight)
+{
+
+    if (pWidth < 1) {pWidth = 1;}
+    if (pHeight < 1) {pHeight = 1;}
+
+    disposeGraphics();
+
+    if (!isReady(pWidth, pHeight)){
+        width = pWidth; height = pHeight;
+        image = createImage(width * 2, height);
+    }
+
+    origin = 0;
+
+    return(getGraphics());
+
+}//end of ChartCompositor::beginRender
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::getGraphics
+//
+// Returns the graphics object for drawing on the canvas area of the image.
+// The same object is returned until the image is recreated so that all
+// plotters see the translation changes made by scroll.
+//
+
+Graphics2D getGraphics()
+{
+
+    if (plotG2 == null){
+        plotG2 = image.createGraphics();
+        plotG2.translate(origin, 0);
+        plotG2.setClip(0, 0, width, height);
+    }
+
+    dirty = true;
+
+    return(plotG2);
+
+}//end of ChartCompositor::getGraphics
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::scroll
+//
+// Scrolls the canvas contents by pShift pixels, which must be -1 to scroll
+// left or 1 to scroll right. pG2 must be the object returned by getGraphics.
+//
+// The column uncovered on the far side is left unchanged; the caller should
+// erase it as it would after copyArea.
+//
+
+void scroll(Graphics2D pG2, int pShift)
+{
+
+    origin -= pShift;
+    pG2.translate(-pShift, 0);
+
+    if (origin == width){
+        //move the right half to the left half
+        copyHalf(width, 0);
+        origin = 0;
+        pG2.translate(-width, 0);
+    }
+    else
+    if (origin < 0){
+        //move the left half to the right half
+        copyHalf(0, width);
+        origin = width - 1;
+        pG2.translate(width, 0);
+    }
+
+    pG2.setClip(0, 0, width, height);
+
+}//end of ChartCompositor::scroll
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::copyHalf
+//
+// Copies the canvas width of the image starting at pFrom to pTo.
+//
+
+private void copyHalf(int pFrom, int pTo)
+{
+
+    Graphics2D g2 = image.createGraphics();
+
+    g2.copyArea(pFrom, 0, width, height, pTo - pFrom, 0);
+
+    g2.dispose();
+
+}//end of ChartCompositor::copyHalf
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::draw
+//
+// Draws the canvas area of the image on pG at 0,0.
+//
+
+void draw(Graphics pG)
+{
+
+    if (image == null) {return;}
+
+    pG.drawImage(image, 0, 0, width, height,
+                                    origin, 0, origin + width, height, null);
+
+    dirty = false;
+    lastPresentTime = System.nanoTime();
+
+}//end of ChartCompositor::draw
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::isPresentDue
+//
+// Returns true if the image has changed since last drawn on the screen and
+// at least one display refresh period has passed.
+//
+
+boolean isPresentDue()
+{
+
+    return(dirty && System.nanoTime() - lastPresentTime >= framePeriodNS);
+
+}//end of ChartCompositor::isPresentDue
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::disposeGraphics
+//
+
+private void disposeGraphics()
+{
+
+    if (plotG2 != null) {plotG2.dispose();}
+
+    plotG2 = null;
+
+}//end of ChartCompositor::disposeGraphics
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::createImage
+//
+// Creates an image compatible with the screen, or a standard image if there
+// is no screen.
+//
+
+private static BufferedImage createImage(int pWidth, int pHeight)
+{
+
+    if (!GraphicsEnvironment.isHeadless()){
+        try{
+            GraphicsConfiguration gc = GraphicsEnvironment
+                .getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                                                    .getDefaultConfiguration();
+            return(gc.createCompatibleImage(
+                                    pWidth, pHeight, Transparency.OPAQUE));
+        }
+        catch(HeadlessException e){}
+    }
+
+    return(new BufferedImage(pWidth, pHeight, BufferedImage.TYPE_INT_RGB));
+
+}//end of ChartCompositor::createImage
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCompositor::getRefreshRate (static)
+//
+// Returns the refresh rate of the default screen or DEFAULT_REFRESH_RATE if
+// it is not known.
+//
+
+static int getRefreshRate()
+{
+
+    try{
+        if (!GraphicsEnvironment.isHeadless()){
+            DisplayMode mode = GraphicsEnvironment
+                .getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                                                            .getDisplayMode();
+            if (mode.getRefreshRate()
+                                != DisplayMode.REFRESH_RATE_UNKNOWN){
+                return(mode.getRefreshRate());
+            }
+        }
+    }
+    catch(HeadlessException e){}
+
+    return(DEFAULT_REFRESH_RATE);
+
+}//end of ChartCompositor::getRefreshRate
+//-----------------------------------------------------------------------------
+
+}//end of class ChartCompositor
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
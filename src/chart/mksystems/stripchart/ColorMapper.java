@@ -9,6 +9,11 @@
 * values. Each subclass provides different rules and mappings for the
 * translation.
 *
+* As mapping a value to a Color is slow and creates a new object each time,
+* the color for every value in the range is calculated once and stored in a
+* table of packed RGB values which can be written directly into an image's
+* pixel array. See mapIntegerToRGB.
+*
 * Open Source Policy:
 *
 * This source code is Public Domain and free to any interested party.  Any
@@ -36,6 +41,13 @@ public class ColorMapper extends Object{
     protected float hue, saturation, brightness;
     protected boolean invertHue;
 
+    //packed RGB value for each value from valueBase to valueTop -- created
+    //when first needed as the subclass must be fully constructed
+    private int[] colorTable = null;
+
+    //ranges larger than this are mapped directly rather than with a table
+    static final int MAX_COLOR_TABLE_SIZE = 1 << 20;
+
 //-----------------------------------------------------------------------------
 // ColorMapper::ColorMapper (constructor)
 //
@@ -115,6 +127,97 @@ public Color mapIntegerToColor(int pValue)
 }//end of ColorMapper::mapIntegerToColor
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ColorMapper::mapIntegerToRGB
+//
+// Translates pValue to a packed RGB value as returned by Color.getRGB.
+//
+// The value is looked up in a table created on the first call, so
+// subclasses need only override mapIntegerToColor. Values outside the range
+// are clipped to the range ends.
+//
+
+public int mapIntegerToRGB(int pValue)
+{
+
+    int[] table = getColorTable();
+
+    if (table == null) {return(mapIntegerToColor(pValue).getRGB());}
+
+    if (pValue < valueBase) {pValue = valueBase;}
+    if (pValue > valueTop) {pValue = valueTop;}
+
+    return(table[pValue - valueBase]);
+
+}//end of ColorMapper::mapIntegerToRGB
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ColorMapper::mapIntegersToRGB
+//
+// Translates pCount values from pValues starting at pValuesStart into packed
+// RGB values stored in pPixels starting at pPixelsStart, advancing
+// pPixelsStep for each value. This allows a column to be written directly
+// into an image's pixel array.
+//
+
+public void mapIntegersToRGB(int[] pValues, int pValuesStart, int pCount,
+                            int[] pPixels, int pPixelsStart, int pPixelsStep)
+{
+
+    int[] table = getColorTable();
+
+    int p = pPixelsStart;
+
+    for (int i = pValuesStart; i < pValuesStart + pCount; i++){
+
+        int value = pValues[i];
+
+        if (table == null){
+            pPixels[p] = mapIntegerToColor(value).getRGB();
+        }
+        else{
+            if (value < valueBase) {value = valueBase;}
+            if (value > valueTop) {value = valueTop;}
+            pPixels[p] = table[value - valueBase];
+        }
+
+        p += pPixelsStep;
+
+    }
+
+}//end of ColorMapper::mapIntegersToRGB
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ColorMapper::getColorTable
+//
+// Returns the table of packed RGB values for the range, creating it if
+// necessary. Returns null if the range is too large for a table.
+//
+
+private int[] getColorTable()
+{
+
+    if (colorTable != null) {return(colorTable);}
+
+    int size = valueTop - valueBase + 1;
+
+    if (size < 1 || size > MAX_COLOR_TABLE_SIZE) {return(null);}
+
+    int[] table = new int[size];
+
+    for (int i = 0; i < size; i++){
+        table[i] = mapIntegerToColor(valueBase + i).getRGB();
+    }
+
+    colorTable = table;
+
+    return(colorTable);
+
+}//end of ColorMapper::getColorTable
+//-----------------------------------------------------------------------------
+
 }//end of class ColorMapper
 //-----------------------------------------------------------------------------
 //-----------------------------------------------------------------------------
@@ -42,6 +42,12 @@ public class Map3D extends Plotter{
     int verticalOffset, verticalSize;
     int minY, maxY;
 
+    MapColumnRaster mapRaster = new MapColumnRaster();
+
+    //used by paintComponent to draw all repainted columns at once
+    boolean repainting = false;
+    int repaintColumnCount, repaintRasterX, repaintPixPtr;
+
 //-----------------------------------------------------------------------------
 // Map3D::Map3D (constructor)
 //
@@ -251,7 +257,7 @@ private int plotColumn(Graphics2D pG2, PlotVars pVars, Map3DDatum pMap3DDatum)
         //if this is the lead plotter, shift chart left and erase right slice
         if (leadPlotter){
             //scroll the screen 1 pixel to the left
-            pG2.copyArea(1, 0, canvas.getWidth(), canvas.getHeight(), -1, 0);
+            scrollCanvas(pG2, -1);
             //erase the line at the far right
             pG2.setColor(backgroundColor);
             pG2.drawLine(canvasXLimit, 0, canvasXLimit, canvas.getHeight());
@@ -310,29 +316,25 @@ private int plotColumn(Graphics2D pG2, PlotVars pVars, Map3DDatum pMap3DDatum)
     //if the drawData flag is false, exit having only drawn decorations
     if (!pVars.drawData) {return(lastPlotted);}
 
-    //draw the map data
+    //draw the map data -- the colors for the column are written into the
+    //raster and drawn with one call; when repainting, all of the columns are
+    //drawn together by paintComponent
 
-    int y;
+    mapRaster.setSize(canvas.getWidth(), pMap3DDatum.newDataColumn.length);
 
-    for (int i = 0; i < pMap3DDatum.newDataColumn.length; i++){
+    //on program startup the colorMapper hasn't been set yet so the raster
+    //fills the column with the background color
 
-        //translate data value to color -- on program startup the colorMapper
-        //hasn't been set yet so just paint the background color
+    int x = mapRaster.storeColumn(
+              pMap3DDatum.newDataColumn, colorMapper, backgroundColor.getRGB());
 
-        if(colorMapper != null){
-            pG2.setColor(
-                colorMapper.mapIntegerToColor(pMap3DDatum.newDataColumn[i]));
-        }
-        else{
-            pG2.setColor(backgroundColor);
+    if (repainting){
+        if (repaintColumnCount++ == 0){
+            repaintRasterX = x; repaintPixPtr = pVars.pixPtr;
         }
-
-        //apply vertical offset
-        y = i + minY;
-
-        //draw each pixel of the column
-        pG2.drawLine(pVars.pixPtr, y, pVars.pixPtr, y);
-
+    }
+    else{
+        mapRaster.drawColumn(pG2, x, pVars.pixPtr, minY);
     }
 
     return(lastPlotted);
@@ -397,6 +399,10 @@ public void paintComponent(Graphics2D pG2)
 
     int stop = canvasXLimit-10;
 
+    //plotColumn stores the map data in the raster for drawing after the loop
+
+    repainting = true; repaintColumnCount = 0;
+
     for (int i = 0; i < stop; i++){
 
         map3DData.getDataAtRepaintPoint(map3DDatum);
@@ -409,6 +415,14 @@ public void paintComponent(Graphics2D pG2)
         plotColumn(pG2, repaintVs, map3DDatum);
     }
 
+    //draw the map data for all columns -- this is done after the
+    //decorations so the map covers them as when each column is plotted
+
+    repainting = false;
+
+    mapRaster.drawColumns(
+                pG2, repaintRasterX, repaintColumnCount, repaintPixPtr, minY);
+
 }//end of Map3D::paintComponent
 //-----------------------------------------------------------------------------
 
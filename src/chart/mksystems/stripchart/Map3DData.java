@@ -5,16 +5,13 @@
 *
 * Purpose:
 *
-* This class handles data for a 3D map. It has synchronized functions (or other
-* protection mechanisms) to allow data to be inserted by one thread and read
-* for display by a different thread.
+* This class handles data for a 3D map. It allows data to be inserted by one
+* thread and read for display by a different thread without locking -- see
+* PlotterData for details.
 *
 * Only two threads should access this class -- a producer thread which adds
 * or removes data and a consumer thread which reads data.
 *
-* All methods which alter the flagBuffer should be synchronized. Those that
-* only read it do not have to be synchronized.
-*
 * Open Source Policy:
 *
 * This source code is Public Domain and free to any interested party.  Any
@@ -76,19 +73,14 @@ public void init()
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// Map3DData::resetAll
-//
-// Resets everything back to default values.
+// Map3DData::resetData
 //
-// Insertion and extraction related pointers all set to 0. Plotting will
-// begin after insertionPoint moves twice, which will allow extractionPoint to
-// move once -- it only moves and returns data if the next position shows
-// DATA_VALID flag. This sequence allows good data to placed at index 0, so
-// the first time data is extracted it will have valid data in index 0 and
-// index 1.
+// Sets the insertion point back to the start of the buffer and clears the
+// data and flags. Called by the producer thread to carry out a reset request
+// -- see PlotterData::resetAll.
 //
 // Note 1:
-// Resets everything back to default values. The first column of data is set
+// The first column of data is set
 // to the min value if peakDirection == MAX or the max value if peakDirection
 // == MIN. This means the least worst data is in the first column so if the
 // map is advanced before data is inserted, that data will be drawn until actual
@@ -96,10 +88,10 @@ public void init()
 //
 
 @Override
-synchronized public void resetAll()
+protected void resetData()
 {
 
-    super.resetAll();
+    super.resetData();
 
     //reset the entire buffer to DEFAULT_DATA
 
@@ -129,7 +121,7 @@ synchronized public void resetAll()
         mapDataBuffer[0][i] = firstColumnDefault;
     }
 
-}//end of Map3DData::resetAll
+}//end of Map3DData::resetData
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -198,7 +190,7 @@ public boolean storeDataAtInsertionPoint(int pData[])
 //
 
 @Override
-synchronized void setFlags(int pPosition, int pMask)
+void setFlags(int pPosition, int pMask)
 {
 
     flagBuffer[pPosition] |= pMask;
@@ -214,7 +206,7 @@ synchronized void setFlags(int pPosition, int pMask)
 //
 
 @Override
-synchronized void clearFlags(int pPosition, int pMask)
+void clearFlags(int pPosition, int pMask)
 {
 
     flagBuffer[pPosition] &= pMask;
@@ -225,8 +217,8 @@ synchronized void clearFlags(int pPosition, int pMask)
 //-----------------------------------------------------------------------------
 // Map3DData::getNewData
 //
-// If the DATA_ERASED flag for the current extractionPoint data position is
-// set, the extractionPoint is decremented and the column of data at that
+// If the data at the current extractionPoint data position has been erased,
+// the extractionPoint is decremented and the column of data at that
 // position is returned as newDataColumn while the data at the previous position
 // is returned as prevDataClumn in pDatum.
 //
@@ -238,16 +230,16 @@ synchronized void clearFlags(int pPosition, int pMask)
 // can respond to any data erasures, the newData* and prevData* may
 // not reflect the expected values.
 //
-// If the DATA_VALID flag is set on the next buffer position, the
+// If new data has been added at the next buffer position, the
 // extractionPoint is incremented and the data at that position is returned
 // as newData* while the data at the previous position is returned as prevData*
 // in pDatum.
 //
-// The check for DATA_ERASED always overrides the check for DATA_VALID. If data
+// The check for erased data always overrides the check for new data. If data
 // is erased and then new data inserted before the consumer thread can react,
 // the consumer thread will get all the erasure notices before forward reading
 // of new data is resumed. This ensures that plotting can be reversed as far
-// as the data was erased.
+// as the data was erased. See PlotterData::getDirection.
 //
 // Returns:
 //
@@ -260,50 +252,35 @@ synchronized void clearFlags(int pPosition, int pMask)
 // the previous position.
 //
 
-synchronized public int getNewData(Map3DDatum pDatum)
+public int getNewData(Map3DDatum pDatum)
 {
 
-    if ((flagBuffer[extractionPoint] & DATA_ERASED) != 0){
+    int direction = getDirection();
 
-        clearFlags(extractionPoint, CLEAR_DATA_ERASED);
+    if (direction == NO_NEW_DATA) {return(NO_NEW_DATA);}
 
-        pDatum.prevDataColumn = mapDataBuffer[extractionPoint];
+    pDatum.prevDataColumn = mapDataBuffer[extractionPoint];
 
+    if (direction == REVERSE){
         retractExtractionPoint();
-
         segmentLength--;
-
-        pDatum.newDataColumn = mapDataBuffer[extractionPoint];
-
-        pDatum.flags = flagBuffer[extractionPoint];
-
-        return(REVERSE);
-
     }
-
-    if ((flagBuffer[lookAhead] & DATA_VALID) != 0){
-
-        pDatum.prevDataColumn = mapDataBuffer[extractionPoint];
-
+    else{
         advanceExtractionPoint();
-
         segmentLength++;
+    }
 
-        pDatum.newDataColumn = mapDataBuffer[extractionPoint];
-
-        pDatum.flags = flagBuffer[extractionPoint];
-
-        return(FORWARD);
+    pDatum.newDataColumn = mapDataBuffer[extractionPoint];
 
-    }
+    pDatum.flags = flagBuffer[extractionPoint];
 
-    return(NO_NEW_DATA);
+    return(direction);
 
 }//end of Map3DData::getNewData
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// Map3DData::advanceInsertionPoint
+// Map3DData::moveInsertionPoint
 //
 // Moves the insertion point forward one buffer position and makes the
 // necessary preparations to the previous and new locations.
@@ -322,17 +299,17 @@ synchronized public int getNewData(Map3DDatum pDatum)
 //
 
     @Override
-    synchronized public void advanceInsertionPoint()
+    protected void moveInsertionPoint()
 {
 
-    super.advanceInsertionPoint();
+    super.moveInsertionPoint();
 
    //copy previous data column to new buffer location -- see notes above
 
     System.arraycopy(mapDataBuffer[prevInsertionPoint], 0,
                         mapDataBuffer[insertionPoint], 0, widthOfDataBuffer);
 
-}//end of Map3DData::advanceInsertionPoint
+}//end of Map3DData::moveInsertionPoint
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -0,0 +1,175 @@
+/******************************************************************************
+* Title: MapColumnRaster.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds the colored columns of a map in an image so they can be
+* drawn with drawImage rather than one pixel at a time.
+*
+* The image is used as a ring: each new column is written at the next x
+* position, wrapping back to zero at the right edge. The pixels are written
+* directly into the image's int array using the ColorMapper's table of RGB
+* values. A single column is drawn with one drawImage call, while a run of
+* columns such as those for a repaint is drawn with one or, if the run wraps
+* around the ring, two calls.
+*
+* The ring should be at least as wide as the canvas so a full repaint fits
+* without overwriting itself.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.stripchart;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class MapColumnRaster
+//
+// See notes at top of page.
+//
+
+class MapColumnRaster extends Object{
+
+    BufferedImage image = null;
+    int[] pixels;
+    int width = 0, height = 0;
+
+    //position in the ring where the next column will be written
+    int nextX = 0;
+
+//-----------------------------------------------------------------------------
+// MapColumnRaster::setSize
+//
+// Sets the ring to hold pWidth columns of pHeight pixels. The image is only
+// recreated if the size has changed, in which case all columns are lost.
+//
+
+void setSize(int pWidth, int pHeight)
+{
+
+    if (pWidth < 1) {pWidth = 1;}
+    if (pHeight < 1) {pHeight = 1;}
+
+    if (image != null && pWidth == width && pHeight == height) {return;}
+
+    width = pWidth; height = pHeight;
+
+    image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+    pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+
+    nextX = 0;
+
+}//end of MapColumnRaster::setSize
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MapColumnRaster::storeColumn
+//
+// Writes the colors for the values in pColumn into the next column of the
+// ring and returns the x position of that column. If pColorMapper is null,
+// the column is filled with pBackgroundRGB.
+//
+// Values past the height of the ring are ignored.
+//
+
+int storeColumn(int[] pColumn, ColorMapper pColorMapper, int pBackgroundRGB)
+{
+
+    int x = nextX;
+
+    if (++nextX == width) {nextX = 0;}
+
+    int count = Math.min(pColumn.length, height);
+
+    if (pColorMapper != null){
+        pColorMapper.mapIntegersToRGB(pColumn, 0, count, pixels, x, width);
+    }
+    else{
+        for (int i = 0, p = x; i < count; i++, p += width){
+            pixels[p] = pBackgroundRGB;
+        }
+    }
+
+    return(x);
+
+}//end of MapColumnRaster::storeColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MapColumnRaster::drawColumn
+//
+// Draws the column at ring position pX with its top at pDestX, pDestY.
+//
+
+void drawColumn(Graphics2D pG2, int pX, int pDestX, int pDestY)
+{
+
+    pG2.drawImage(image, pDestX, pDestY, pDestX + 1, pDestY + height,
+                                        pX, 0, pX + 1, height, null);
+
+}//end of MapColumnRaster::drawColumn
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MapColumnRaster::drawColumns
+//
+// Draws pCount columns starting at ring position pX with the first at
+// pDestX, pDestY. If the columns wrap around the end of the ring, they are
+// drawn in two parts.
+//
+
+void drawColumns(Graphics2D pG2, int pX, int pCount, int pDestX, int pDestY)
+{
+
+    if (pCount <= 0) {return;}
+
+    if (pCount > width) {pCount = width;}
+
+    int firstPart = Math.min(pCount, width - pX);
+
+    pG2.drawImage(image, pDestX, pDestY, pDestX + firstPart, pDestY + height,
+                                    pX, 0, pX + firstPart, height, null);
+
+    int secondPart = pCount - firstPart;
+
+    if (secondPart > 0){
+        pG2.drawImage(image, pDestX + firstPart, pDestY,
+                            pDestX + pCount, pDestY + height,
+                            0, 0, secondPart, height, null);
+    }
+
+}//end of MapColumnRaster::drawColumns
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// MapColumnRaster::clear
+//
+// Fills the ring with pBackgroundRGB.
+//
+
+void clear(int pBackgroundRGB)
+{
+
+    if (pixels != null) {Arrays.fill(pixels, pBackgroundRGB);}
+
+    nextX = 0;
+
+}//end of MapColumnRaster::clear
+//-----------------------------------------------------------------------------
+
+}//end of class MapColumnRaster
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
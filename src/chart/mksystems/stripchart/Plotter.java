@@ -81,10 +81,6 @@ public class Plotter extends Object{
     public boolean leadPlotter = false;
     public boolean trailPlotter = false;
 
-    public double prevLinearPos = Double.MIN_VALUE;
-    public int prevAmplitude = Integer.MIN_VALUE;
-    public int prevClockPos = -1;
-
     PlotterHdwVars hdwVs;
     PlotterGlobals plotterGlobals;
     PlotVars plotVs, repaintVs;
@@ -95,6 +91,7 @@ public class Plotter extends Object{
     public int peakChannel;
 
     JPanel canvas;
+    ChartCompositor compositor = null;
     int canvasXLimit;
     int canvasYLimit;
     double inchesPerPixel;
@@ -253,6 +250,46 @@ public void setCanvas(JPanel pCanvas)
 }//end of Plotter::setCanvas
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Plotter::setCompositor
+//
+// Stores a pointer to the compositor which holds the canvas image. If set,
+// the canvas is scrolled by the compositor rather than by copying it.
+//
+
+void setCompositor(ChartCompositor pCompositor)
+{
+
+    compositor = pCompositor;
+
+}//end of Plotter::setCompositor
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// Plotter::scrollCanvas
+//
+// Scrolls the canvas one pixel left if pShift is -1 or one pixel right if
+// pShift is 1. The column uncovered on the far side must then be erased by
+// the caller.
+//
+// If the canvas is held by a compositor, pG2 must have been obtained from
+// it.
+//
+
+void scrollCanvas(Graphics2D pG2, int pShift)
+{
+
+    if (compositor != null){
+        compositor.scroll(pG2, pShift);
+    }
+    else{
+        pG2.copyArea(pShift < 0 ? 1 : 0, 0,
+                            canvas.getWidth(), canvas.getHeight(), pShift, 0);
+    }
+
+}//end of Plotter::scrollCanvas
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Plotter::getDataSourceBoardChassis
 //
@@ -380,6 +417,21 @@ public int[] getFlagBuffer()
 }//end of Plotter::getFlagBuffer
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Plotter::addSegmentStats
+//
+// Adds the flags and values of the last segment to pStats. See
+// PlotterData::addSegmentStats.
+//
+// Should be overridden by subclasses.
+//
+
+public void addSegmentStats(SegmentStats pStats)
+{
+
+}//end of Plotter::addSegmentStats
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Plotter::getTitle
 //
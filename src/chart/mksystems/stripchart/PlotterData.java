@@ -6,14 +6,25 @@
 * Purpose:
 *
 * This class handles data for a Plotter object such as a Trace, Map2D, Map3D,
-* etc. It has synchronized functions (or other protection mechanisms) to allow
-* data to be inserted by one thread and read for display by a different thread.
+* etc. It allows data to be inserted by one thread and read for display by a
+* different thread without the reading thread waiting on a lock.
 *
 * Only two threads should access this class -- a producer thread which adds
 * or removes data and a consumer thread which reads data.
 *
-* All methods which alter the flagBuffer should be synchronized. Those that
-* only read it do not have to be synchronized.
+* The producer owns the insertion point and the consumer owns the extraction
+* point. The producer stores the data and flags for a position and then
+* publishes the new position count in the volatile insertionSeq, so the
+* consumer always sees the finished data for every position it reads. When
+* data is erased, the producer lowers rewindSeq to the position erased to;
+* the consumer backs up to that point before it reads forward again.
+*
+* The segment marks and resetAll are called from the GUI thread while the
+* producer is running. Rather than altering the flagBuffer or the insertion
+* point themselves, they post a request in the atomic requests field which the
+* producer carries out the next time it advances the insertion point, so no
+* thread ever waits on a lock. When the data is reset, the producer increases
+* resetCount; the consumer resets its own pointers when it sees the change.
 *
 * Open Source Policy:
 *
@@ -32,7 +43,10 @@ package chart.mksystems.stripchart;
 import chart.Viewer;
 import chart.Xfer;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 // class PlotterData
 //
@@ -58,6 +72,40 @@ public class PlotterData extends Object{
     int insertionPoint, prevInsertionPoint;
     int extractionPoint, lookAhead, lookBehind;
 
+    // insertionSeq and lookAheadSeq count the moves of insertionPoint and
+    // lookAhead without wrapping at the end of the buffer so that the two
+    // can be compared -- insertionSeq is written only by the producer thread
+    // and lookAheadSeq only by the consumer thread
+
+    volatile long insertionSeq;
+    long lookAheadSeq;
+
+    // rewindSeq is the lowest insertionSeq reached by erasing data which the
+    // consumer thread has not yet backed up to, or NO_REWIND if none
+
+    final AtomicLong rewindSeq = new AtomicLong(NO_REWIND);
+
+    static final long NO_REWIND = Long.MAX_VALUE;
+
+    // requests made by other threads which the producer thread carries out
+    // the next time it advances the insertion point -- see postRequest; the
+    // positions for the segment marks are recorded before the request is
+    // posted
+
+    final AtomicInteger requests = new AtomicInteger(0);
+    int segmentStartRequestIndex, segmentEndRequestIndex;
+    volatile Thread producerThread = null;
+
+    static final int RESET_REQUEST = 1;
+    static final int SEGMENT_START_REQUEST = 2;
+    static final int SEGMENT_END_REQUEST = 4;
+
+    // resetCount is increased by the producer thread each time the data is
+    // reset -- the consumer thread resets its pointers when it sees the change
+
+    volatile int resetCount;
+    int consumerResetCount;
+
     int repaintPoint;
 
     int segmentLength;
@@ -95,7 +143,6 @@ public class PlotterData extends Object{
     static final int TRIM_CLOCK_MASK = 0x1ff;
     static final int CLEAR_THRESHOLD_MASK = 0xffff01ff;
     static final int TRIM_THRESHOLD_MASK = 0x7f;
-    static final int CLEAR_DATA_ERASED = ~DATA_ERASED;
 
     // style of plot constants
 
@@ -161,25 +208,212 @@ public void init()
 // the first time data is extracted it will have valid data in index 0 and
 // index 1.
 //
+// The reset is made by the producer thread the next time it advances the
+// insertion point, once it has finished the position it was filling -- see
+// postRequest. The consumer thread returns no new data until then.
+//
+
+public void resetAll()
+{
+
+    //reset segment end pointers
+    lastSegmentStartIndex = -1; lastSegmentEndIndex = -1;
+
+    postRequest(RESET_REQUEST);
+
+}//end of PlotterData::ResetAll
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::resetData
+//
+// Sets the insertion point back to the start of the buffer. Called by the
+// producer thread to carry out a reset request.
+//
+// Should be overridden by subclasses which should first call this method
+// and then clear their data buffers.
+//
 
-synchronized public void resetAll()
+protected void resetData()
 {
 
     insertionPoint = 0;
+
+    rewindSeq.set(NO_REWIND);
+
+    insertionSeq = 0;
+
+}//end of PlotterData::resetData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::resetExtraction
+//
+// Sets the extraction related pointers back to the start of the buffer once
+// the producer thread has reset the data. pResetCount is the value of
+// resetCount for that reset.
+//
+// This method should only be called by the consumer thread.
+//
+
+void resetExtraction(int pResetCount)
+{
+
     extractionPoint = 0;
     lookAhead = 0;
     lookBehind = 0;
     repaintPoint = 0;
 
-    //reset segment end pointers
-    lastSegmentStartIndex = -1; lastSegmentEndIndex = -1;
+    lookAheadSeq = 0;
 
-}//end of PlotterData::ResetAll
+    consumerResetCount = pResetCount;
+
+}//end of PlotterData::resetExtraction
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::postRequest
+//
+// Posts pRequest to be carried out by the producer thread the next time it
+// advances the insertion point. A reset replaces any segment marks still
+// waiting as they would be meaningless afterwards.
+//
+// If no producer thread has advanced the insertion point yet, as when data is
+// being loaded for viewing, or if this is the producer thread, the request is
+// carried out at once.
+//
+
+void postRequest(int pRequest)
+{
+
+    int request, next;
+
+    do{
+        request = requests.get();
+        next = (pRequest == RESET_REQUEST) ? pRequest : request | pRequest;
+    }while(!requests.compareAndSet(request, next));
+
+    Thread producer = producerThread;
+
+    if (producer == null || producer == Thread.currentThread()){
+        int pending = requests.get();
+        placeSegmentMarks(pending);
+        finishRequests(pending);
+    }
+
+}//end of PlotterData::postRequest
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::placeSegmentMarks
+//
+// Sets the separator flags for the segment marks in pPending at the positions
+// recorded with the requests. If a reset is also pending, the start mark is
+// placed by finishRequests after the reset has been made.
+//
+// This method should only be called by the producer thread.
+//
+
+void placeSegmentMarks(int pPending)
+{
+
+    if ((pPending & SEGMENT_END_REQUEST) != 0){
+        flagBuffer[segmentEndRequestIndex] |= SEGMENT_END_SEPARATOR;
+    }
+
+    if ((pPending & (SEGMENT_START_REQUEST | RESET_REQUEST))
+                                                    == SEGMENT_START_REQUEST){
+        flagBuffer[segmentStartRequestIndex] |= SEGMENT_START_SEPARATOR;
+    }
+
+}//end of PlotterData::placeSegmentMarks
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::finishRequests
+//
+// Makes the reset in pPending if there is one, then clears the requests in
+// pPending. The reset is published in resetCount before the request is
+// cleared so that the consumer thread sees it as soon as it sees the request
+// is no longer pending.
+//
+// This method should only be called by the producer thread.
+//
+
+void finishRequests(int pPending)
+{
+
+    if ((pPending & RESET_REQUEST) != 0){
+
+        resetData();
+
+        if ((pPending & SEGMENT_START_REQUEST) != 0){
+            flagBuffer[segmentStartRequestIndex] |= SEGMENT_START_SEPARATOR;
+        }
+
+        resetCount++;
+
+    }
+
+    int request;
+
+    do{
+        request = requests.get();
+    }while(!requests.compareAndSet(request, request & ~pPending));
+
+}//end of PlotterData::finishRequests
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::getInsertionIndex
+//
+// Returns the position the producer thread is filling as last published in
+// insertionSeq, or 0 if a reset is waiting to be made. For use by threads
+// other than the producer thread.
+//
+
+int getInsertionIndex()
+{
+
+    if ((requests.get() & RESET_REQUEST) != 0) {return(0);}
+
+    return((int)Math.floorMod(insertionSeq, (long)sizeOfDataBuffer));
+
+}//end of PlotterData::getInsertionIndex
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
 // PlotterData::advanceInsertionPoint
 //
+// Moves the insertion point forward one buffer position -- see
+// moveInsertionPoint.
+//
+// Any requests posted by other threads are carried out -- the segment marks
+// are placed before the position is handed to the consumer thread and a reset
+// is made after it has been.
+//
+// This method should only be called by the producer thread.
+//
+
+public void advanceInsertionPoint()
+{
+
+    if (producerThread == null) {producerThread = Thread.currentThread();}
+
+    int pending = requests.get();
+
+    if (pending != 0) {placeSegmentMarks(pending);}
+
+    moveInsertionPoint();
+
+    if (pending != 0) {finishRequests(pending);}
+
+}//end of PlotterData::advanceInsertionPoint
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::moveInsertionPoint
+//
 // Moves the insertion point forward one buffer position.
 //
 // Should be overridden by subclasses which should first call this method
@@ -189,10 +423,14 @@ synchronized public void resetAll()
 // it may be used by the consumer thread -- even if it is nothing more than a
 // copy of the previous data. Note that the IN_PROCESS flag is left set.
 //
+// The new position is then published in insertionSeq, so the flags and data
+// stored at the previous location are visible to the consumer thread before
+// it can read them.
+//
 // This method should only be called by the producer thread.
 //
 
-synchronized public void advanceInsertionPoint()
+protected void moveInsertionPoint()
 {
 
     //lastValidPoint is always one spot behind the one being filled with data;
@@ -208,14 +446,14 @@ synchronized public void advanceInsertionPoint()
     insertionPoint++;
     if (insertionPoint == sizeOfDataBuffer) {insertionPoint = 0;}
 
-    //clear all flags for the new position except DATA_ERASED so that the
-    //consumer thread will see that the data was once erased even if the
-    //producer thread adds new data before the consumer thread can respond to
-    //the erasure
+    //clear all flags for the new position -- any erasure of this position
+    //not yet seen by the consumer thread is tracked by rewindSeq
 
-    flagBuffer[insertionPoint] &= DATA_ERASED;
+    flagBuffer[insertionPoint] = CLEAR_ALL_FLAGS;
 
-}//end of PlotterData::advanceInsertionPoint
+    insertionSeq++;
+
+}//end of PlotterData::moveInsertionPoint
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -239,6 +477,8 @@ protected void advanceExtractionPoint()
     lookAhead++;
     if (lookAhead == sizeOfDataBuffer) {lookAhead = 0;}
 
+    lookAheadSeq++;
+
 }//end of PlotterData::advanceExtractionPoint
 //-----------------------------------------------------------------------------
 
@@ -263,9 +503,64 @@ protected void retractExtractionPoint()
     lookBehind--;
     if (lookBehind < 0) {lookBehind = sizeOfDataBuffer - 1;}
 
+    lookAheadSeq--;
+
 }//end of PlotterData::retractExtractionPoint
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// PlotterData::getDirection
+//
+// Determines which way the extraction point should be moved to follow the
+// producer thread. Used by the getNewData methods of subclasses.
+//
+// If the data at the extraction point has been erased, the extraction point
+// must be backed up until it is before the erased data. This always
+// overrides moving forward -- if data is erased and then new data inserted
+// before the consumer thread can react, the consumer thread will back up as
+// far as the data was erased before forward reading of new data is resumed.
+//
+// Once the extraction point is before the erased data, rewindSeq is cleared
+// unless the producer thread has erased further in the meantime.
+//
+// Returns:
+//
+//  NO_NEW_DATA -- no data has been added or erased since the last move
+//  FORWARD -- new data has been added
+//  REVERSE -- data at current position has been erased
+//
+// This method should only be called by the consumer thread.
+//
+
+protected int getDirection()
+{
+
+    //while a reset is waiting for the producer thread, the old data is no
+    //longer returned
+    if ((requests.get() & RESET_REQUEST) != 0) {return(NO_NEW_DATA);}
+
+    int count = resetCount;
+
+    if (count != consumerResetCount) {resetExtraction(count);}
+
+    long rewind;
+
+    while ((rewind = rewindSeq.get()) != NO_REWIND){
+
+        //back up while the extraction point is at or past the erased data
+        if (lookAheadSeq > rewind) {return(REVERSE);}
+
+        if (rewindSeq.compareAndSet(rewind, NO_REWIND)) {break;}
+
+    }
+
+    if (lookAheadSeq < insertionSeq) {return(FORWARD);}
+
+    return(NO_NEW_DATA);
+
+}//end of PlotterData::getDirection
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // PlotterData::eraseDataAtInsertionPoint
 //
@@ -274,23 +569,21 @@ protected void retractExtractionPoint()
 // Moves the insertion point backward one buffer position and makes the
 // necessary preparations to the previous and new locations.
 //
-// Only the DATA_ERASED flag is left set (if it was set by the data having
-// been previously erased) for the current position.
-// Only the DATA_ERASED flag is set for the erased position.
+// All flags are cleared for the current position. Only the DATA_ERASED flag
+// is set for the erased position.
+//
+// rewindSeq is lowered to the new position before the position is published
+// so that the consumer thread will back up to the farthest data erasure point
+// even if the producer thread adds new data before the consumer thread can
+// respond to the erasure.
 //
 // This method should only be called by the producer thread.
 //
 
-synchronized public void eraseDataAtInsertionPoint()
+public void eraseDataAtInsertionPoint()
 {
 
-    //clear all flags for the new position except DATA_ERASED so that the
-    //consumer thread will see that the data was once erased even if the
-    //producer thread adds removes more data or adds new data before the
-    //consumer thread can respond to the erasure -- this allows the consumer
-    //thread to fully erase back to the farthest data erasure point
-
-    flagBuffer[insertionPoint] &= DATA_ERASED;
+    flagBuffer[insertionPoint] = CLEAR_ALL_FLAGS;
 
     // back up the insertionPoint
     insertionPoint--;
@@ -300,6 +593,17 @@ synchronized public void eraseDataAtInsertionPoint()
     //clearing the IN_PROCESS flag will force the old data to be overwritten
     flagBuffer[insertionPoint] = DATA_ERASED;
 
+    long seq = insertionSeq - 1;
+
+    long rewind;
+
+    do{
+        rewind = rewindSeq.get();
+        if (seq >= rewind) {break;}
+    }while(!rewindSeq.compareAndSet(rewind, seq));
+
+    insertionSeq = seq;
+
 }//end of PlotterData::eraseDataAtInsertionPoint
 //-----------------------------------------------------------------------------
 
@@ -310,7 +614,7 @@ synchronized public void eraseDataAtInsertionPoint()
 // flags.
 //
 
-synchronized void setFlags(int pPosition, int pMask)
+void setFlags(int pPosition, int pMask)
 {
 
     flagBuffer[pPosition] |= pMask;
@@ -325,7 +629,7 @@ synchronized void setFlags(int pPosition, int pMask)
 // flags.
 //
 
-synchronized void clearFlags(int pPosition, int pMask)
+void clearFlags(int pPosition, int pMask)
 {
 
     flagBuffer[pPosition] &= pMask;
@@ -344,15 +648,7 @@ synchronized void clearFlags(int pPosition, int pMask)
 public boolean newDataIsReady()
 {
 
-    if ( ((flagBuffer[extractionPoint] & DATA_ERASED) != 0)
-            ||
-         ((flagBuffer[lookAhead] & DATA_VALID) != 0)) {
-
-        return (true);
-    }
-    else {
-        return (false);
-    }
+    return(getDirection() != NO_NEW_DATA);
 
 }//end of PlotterData::newDataIsReady
 //-----------------------------------------------------------------------------
@@ -368,7 +664,7 @@ public boolean newDataIsReady()
 // degrees, or any other angular measurement.
 //
 
-synchronized public void storeClockAtInsertionPoint(int pClock)
+public void storeClockAtInsertionPoint(int pClock)
 {
 
     flagBuffer[insertionPoint] &= CLEAR_CLOCK_MASK; //erase old value
@@ -391,7 +687,7 @@ synchronized public void storeClockAtInsertionPoint(int pClock)
 // After adding 2, only the lower 7 bits are stored.
 //
 
-synchronized public void storeThresholdAtInsertionPoint(int pThreshold)
+public void storeThresholdAtInsertionPoint(int pThreshold)
 {
 
     flagBuffer[insertionPoint] &= CLEAR_THRESHOLD_MASK; //erase old value
@@ -427,7 +723,7 @@ synchronized public void storeThresholdAtInsertionPoint(int pThreshold)
 //  the data collection / position tracking thread to set the flag bit.
 
 
-synchronized public void placeEndMaskMarker()
+public void placeEndMaskMarker()
 {
 
     flagBuffer[insertionPoint] |= END_MASK_MARK;
@@ -443,17 +739,21 @@ synchronized public void placeEndMaskMarker()
 // This function should be called whenever a new segment is to start - each
 // segment could represent a piece being monitored, a time period, etc.
 //
+// The separator flag is set by the producer thread the next time it advances
+// the insertion point -- see postRequest.
+//
 
-synchronized public void markSegmentStart()
+public void markSegmentStart()
 {
 
     segmentLength = 0;
 
-    //set flag to display a separator bar at the start of the segment
-    flagBuffer[insertionPoint] |= SEGMENT_START_SEPARATOR;
-
     //record the buffer start position of the last segment
-    lastSegmentStartIndex = insertionPoint;
+    lastSegmentStartIndex = getInsertionIndex();
+
+    //request a separator bar be displayed at the start of the segment
+    segmentStartRequestIndex = lastSegmentStartIndex;
+    postRequest(SEGMENT_START_REQUEST);
 
 }//end of PlotterData::markSegmentStart
 //-----------------------------------------------------------------------------
@@ -474,15 +774,19 @@ synchronized public void markSegmentStart()
 // This function should be called whenever a new segment is to end - each
 // segment could represent a piece being monitored, a time period, etc.
 //
+// The separator flag is set by the producer thread the next time it advances
+// the insertion point -- see postRequest.
+//
 
-synchronized public void markSegmentEnd()
+public void markSegmentEnd()
 {
 
-    //set flag to display a separator bar at the end of the segment
-    flagBuffer[insertionPoint] |= SEGMENT_END_SEPARATOR;
-
     //record the buffer end position of the last segment
-    lastSegmentEndIndex = insertionPoint;
+    lastSegmentEndIndex = getInsertionIndex();
+
+    //request a separator bar be displayed at the end of the segment
+    segmentEndRequestIndex = lastSegmentEndIndex;
+    postRequest(SEGMENT_END_REQUEST);
 
 }//end of PlotterData::markSegmentEnd
 //-----------------------------------------------------------------------------
@@ -510,6 +814,56 @@ public boolean segmentStarted()
 }//end of PlotterData::segmentStarted
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// PlotterData::addSegmentStats
+//
+// Adds the flags and values of the valid data points of the last segment to
+// pStats. If the segment start and end have been marked, the positions
+// between them are used; this is the case when the segment is being saved.
+// Otherwise, as when the segment has been loaded from a file, the positions
+// from the start of the buffer to the last valid data point are used.
+//
+
+public void addSegmentStats(SegmentStats pStats)
+{
+
+    int start = lastSegmentStartIndex, end = lastSegmentEndIndex;
+
+    if (start < 0 || end < 0) {start = 0; end = getDataWidth() + 1;}
+
+    int i = start;
+
+    while (i != end){
+
+        int flags = flagBuffer[i];
+
+        if ((flags & DATA_VALID) != 0){
+            if ((flags & THRESHOLD_MASK) != 0) {pStats.flagCount++;}
+            addValueStats(i, pStats);
+        }
+
+        //increment to next buffer slot, wrap around as buffer is circular
+        if (++i == sizeOfDataBuffer) {i = 0;}
+
+    }
+
+}//end of PlotterData::addSegmentStats
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::addValueStats
+//
+// Adds the value(s) stored at buffer position pIndex to pStats.
+//
+// Should be overridden by subclasses.
+//
+
+void addValueStats(int pIndex, SegmentStats pStats)
+{
+
+}//end of PlotterData::addValueStats
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Plotter::getDataWidth
 //
@@ -556,6 +910,183 @@ public int getDataBufferWidth()
 }//end of Plotter::getDataBufferWidth
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// PlotterData::copySeries
+//
+// Copies the values of a series read from a binary segment file into pBuffer,
+// ORing pDataModifier1 with each value.
+//
+// The same checks are made as when the values are parsed from a text file.
+// If pValues is null, no data was saved for the series and nothing is copied.
+//
+// Returns the number of values copied.
+//
+
+int copySeries(int[] pValues, String pStartTag, int[] pBuffer,
+                                      int pDataModifier1) throws IOException
+{
+
+    if (pValues == null) {return(0);}
+
+    //catch buffer overflow -- the text loader requires at least one empty
+    //slot after the data
+
+    if (pValues.length >= pBuffer.length) {
+        throw new IOException(
+             "The file could not be read - too much data for " + pStartTag
+                                         + " at data point " + pBuffer.length);
+    }
+
+    for (int i = 0; i < pValues.length; i++){
+        pBuffer[i] = pValues[i] | pDataModifier1;
+    }
+
+    return(pValues.length);
+
+}//end of PlotterData::copySeries
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::copySeries
+//
+// Copies the values of a series read from a binary segment file into the
+// two dimensional pBuffer, ORing pDataModifier1 with each value. The values
+// were saved one row after another.
+//
+// Returns the number of rows copied.
+//
+
+int copySeries(int[] pValues, String pStartTag, int[][] pBuffer,
+                                      int pDataModifier1) throws IOException
+{
+
+    if (pValues == null || pBuffer.length == 0) {return(0);}
+
+    int width = pBuffer[0].length;
+
+    int rows = width == 0 ? 0 : pValues.length / width;
+
+    if (rows >= pBuffer.length || rows * width != pValues.length) {
+        throw new IOException(
+             "The file could not be read - too much data for " + pStartTag
+                                           + " at data point " + rows);
+    }
+
+    int v = 0;
+
+    for (int i = 0; i < rows; i++){
+        for (int j = 0; j < width; j++){
+            pBuffer[i][j] = pValues[v++] | pDataModifier1;
+        }
+    }
+
+    return(rows);
+
+}//end of PlotterData::copySeries
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::saveDataSeries
+//
+// Saves the values in pBuffer from lastSegmentStartIndex up to
+// lastSegmentEndIndex to pOut as a data series which can be read by
+// loadDataSeries. The series is preceded by the pStartTag line and followed
+// by an "[End of Set]" line.
+//
+// If pOut is a SegmentDataWriter, the values are stored in binary form.
+// Otherwise they are written as text, one value per line.
+//
+
+void saveDataSeries(BufferedWriter pOut, String pStartTag, int[] pBuffer)
+                                                            throws IOException
+{
+
+    pOut.write(pStartTag); pOut.newLine();
+
+    int i = lastSegmentStartIndex;
+
+    if (pOut instanceof SegmentDataWriter){
+
+        SegmentDataWriter out = (SegmentDataWriter)pOut;
+
+        out.startSeries();
+
+        while (i != lastSegmentEndIndex){
+            out.writeValue(pBuffer[i]);
+            //increment to next buffer slot, wrap around as buffer is circular
+            if (++i == sizeOfDataBuffer) {i = 0;}
+        }
+
+        out.endSeries();
+
+    }
+    else{
+
+        while (i != lastSegmentEndIndex){
+            pOut.write(Integer.toString(pBuffer[i]));
+            pOut.newLine();
+            //increment to next buffer slot, wrap around as buffer is circular
+            if (++i == sizeOfDataBuffer) {i = 0;}
+        }
+
+    }
+
+    pOut.write("[End of Set]"); pOut.newLine();
+
+}//end of PlotterData::saveDataSeries
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// PlotterData::saveData2DArraySeries
+//
+// Saves the rows of pBuffer from lastSegmentStartIndex up to
+// lastSegmentEndIndex to pOut in the same manner as saveDataSeries. The
+// values of each row are saved one after another.
+//
+
+void saveData2DArraySeries(BufferedWriter pOut, String pStartTag,
+                                          int[][] pBuffer) throws IOException
+{
+
+    pOut.write(pStartTag); pOut.newLine();
+
+    int i = lastSegmentStartIndex;
+
+    if (pOut instanceof SegmentDataWriter){
+
+        SegmentDataWriter out = (SegmentDataWriter)pOut;
+
+        out.startSeries();
+
+        while (i != lastSegmentEndIndex){
+            for (int j = 0; j < widthOfDataBuffer; j++){
+                out.writeValue(pBuffer[i][j]);
+            }
+            //increment to next buffer slot, wrap around as buffer is circular
+            if (++i == sizeOfDataBuffer) {i = 0;}
+        }
+
+        out.endSeries();
+
+    }
+    else{
+
+        while (i != lastSegmentEndIndex){
+            for (int j = 0; j < widthOfDataBuffer; j++){
+                pOut.write(Integer.toString(pBuffer[i][j]));
+                pOut.newLine();
+            }
+            //increment to next buffer slot, wrap around as buffer is circular
+            if (++i == sizeOfDataBuffer) {i = 0;}
+        }
+
+    }
+
+    pOut.write("[End of Set]"); pOut.newLine();
+
+}//end of PlotterData::saveData2DArraySeries
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // PlotterData::loadDataSeries
 //
@@ -607,9 +1138,18 @@ public String loadDataSeries(BufferedReader pIn, String pLastLine,
            "The file could not be read - section not found for " + pStartTag);
     }
 
-    //scan the first part of the section and parse its entries
+    //for binary files, the values are not in the text but are retrieved from
+    //the reader; the text following the tag will be the end of set tag
 
     int i = 0;
+
+    if (pIn instanceof SegmentDataReader){
+        i = copySeries(((SegmentDataReader)pIn).getSeriesForLastLine(),
+                                          pStartTag, pBuffer, pDataModifier1);
+    }
+
+    //scan the first part of the section and parse its entries
+
     success = false;
     while ((line = pIn.readLine()) != null){
 
@@ -702,9 +1242,18 @@ public String loadData2DArraySeries(BufferedReader pIn, String pLastLine,
            "The file could not be read - section not found for " + pStartTag);
     }
 
-    //scan the first part of the section and parse its entries
+    //for binary files, the values are not in the text but are retrieved from
+    //the reader; the text following the tag will be the end of set tag
 
     int i = 0; int j = 0;
+
+    if (pIn instanceof SegmentDataReader){
+        i = copySeries(((SegmentDataReader)pIn).getSeriesForLastLine(),
+                                          pStartTag, pBuffer, pDataModifier1);
+    }
+
+    //scan the first part of the section and parse its entries
+
     success = false;
     while ((line = pIn.readLine()) != null){
 
@@ -0,0 +1,421 @@
+/******************************************************************************
+* Title: SegmentDataReader.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class reads the binary form of a segment data file as created by
+* SegmentDataWriter. See that class for a description of the format.
+*
+* The text of the file is returned line by line by readLine so the segment
+* can be loaded by the same code used for text files. When
+* PlotterData.loadDataSeries finds a series start tag, it retrieves the
+* values for the series with getSeriesForLastLine rather than parsing them
+* from the text.
+*
+* A reader can be reopened to load the same segment again without decoding
+* the file again; the new reader shares the series values, which are never
+* modified once decoded.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.stripchart;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentDataReader
+//
+
+public class SegmentDataReader extends BufferedReader{
+
+    //the values of each series keyed by the index of the text line holding
+    //the series start tag
+
+    HashMap<Integer, int[]> series;
+
+    String text;
+
+    int linesRead = 0;
+
+//-----------------------------------------------------------------------------
+// SegmentDataReader::SegmentDataReader (constructor)
+//
+
+private SegmentDataReader(String pText, HashMap<Integer, int[]> pSeries)
+{
+
+    super(new StringReader(pText));
+
+    text = pText; series = pSeries;
+
+}//end of SegmentDataReader::SegmentDataReader (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataReader::readLine
+//
+// Returns the next line of the text and counts the lines read so the series
+// for each series start tag can be found.
+//
+
+@Override
+public String readLine() throws IOException
+{
+
+    String line = super.readLine();
+
+    if (line != null) {linesRead++;}
+
+    return(line);
+
+}//end of SegmentDataReader::readLine
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataReader::getSeriesForLastLine
+//
+// Returns the values of the series whose start tag is on the line last
+// returned by readLine or null if there is no series for that line.
+//
+
+public int[] getSeriesForLastLine()
+{
+
+    return(getSeriesForLine(linesRead - 1));
+
+}//end of SegmentDataReader::getSeriesForLastLine
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataReader::getSeriesForLine
+//
+// Returns the values of the series whose start tag is on text line pLine
+// (zero based) or null if there is no series for that line.
+//
+
+public int[] getSeriesForLine(int pLine)
+{
+
+    return(series.get(pLine));
+
+}//end of SegmentDataReader::getSeriesForLine
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataReader::reopen
+//
+// Returns a new reader for the same segment, positioned at the start of the
+// text.
+//
+
+public SegmentDataReader reopen()
+{
+
+    return(new SegmentDataReader(text, series));
+
+}//end of SegmentDataReader::reopen
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataReader::getSizeInMemory
+//
+// Returns the approximate number of bytes of memory used by the decoded
+// text and series.
+//
+
+public long getSizeInMemory()
+{
+
+    long size = text.length() * 2L;
+
+    for (int[] values : series.values()) {size += values.length * 4L;}
+
+    return(size);
+
+}//end of SegmentDataReader::getSizeInMemory
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataReader::isSegmentData (static)
+//
+// Returns true if pFilename is a binary segment data file.
+//
+
+public static boolean isSegmentData(String pFilename) throws IOException
+{
+
+    try (InputStream in = new FileInputStream(pFilename)){
+
+        byte[] id = new byte[SegmentDataWriter.FILE_ID.length];
+
+        int count = 0, n;
+
+        while (count < id.length
+                        && (n = in.read(id, count, id.length - count)) != -1){
+            count += n;
+        }
+
+        if (count < id.length) {return(false);}
+
+        for (int i = 0; i < id.length; i++){
+            if (id[i] != SegmentDataWriter.FILE_ID[i]) {return(false);}
+        }
+
+        return(true);
+
+    }
+
+}//end of SegmentDataReader::isSegmentData
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataReader::open (static)
+//
+// Returns a reader for segment data file pFilename. If the file is in the
+// binary format, a SegmentDataReader is returned. Otherwise the file is
+// opened as a text file in format pFileFormat and a BufferedReader is
+// returned.
+//
+
+public static BufferedReader open(String pFilename, String pFileFormat)
+                                                            throws IOException
+{
+
+    if (isSegmentData(pFilename)){
+        return(open(Files.readAllBytes(new File(pFilename).toPath())));
+    }
+
+    return(new BufferedReader(new InputStreamReader(new BufferedInputStream(
+                            new FileInputStream(pFilename)), pFileFormat)));
+
+}//end of SegmentDataReader::open
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataReader::open (static)
+//
+// Decodes the binary segment data in pBytes and returns a reader for it.
+//
+// Throws IOException if the data is not valid.
+//
+
+public static SegmentDataReader open(byte[] pBytes) throws IOException
+{
+
+    try{
+
+        //verify the checksum before decoding anything
+
+        if (pBytes.length < SegmentDataWriter.FILE_ID.length + 12){
+            throw new IOException(
+                        "The file could not be read - file is too short.");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(pBytes, 0, pBytes.length - 4);
+
+        SegmentDecoder in = new SegmentDecoder(pBytes);
+
+        in.position = pBytes.length - 4;
+
+        if (in.readInt() != (int)crc.getValue()){
+            throw new IOException(
+                      "The file could not be read - checksum error.");
+        }
+
+        in.position = 0;
+
+        for (int i = 0; i < SegmentDataWriter.FILE_ID.length; i++){
+            if (pBytes[in.position++] != SegmentDataWriter.FILE_ID[i]){
+                throw new IOException(
+                       "The file could not be read - not a segment file.");
+            }
+        }
+
+        int version = in.readInt();
+
+        if (version > SegmentDataWriter.FORMAT_VERSION){
+            throw new IOException("The file could not be read - format"
+                          + " version " + version + " is not supported.");
+        }
+
+        int textLength = in.readInt();
+        String text = new String(pBytes, in.position, textLength,
+                                                    StandardCharsets.UTF_8);
+        in.position += textLength;
+
+        int numberOfSeries = in.readVarInt();
+
+        HashMap<Integer, int[]> series = new HashMap<>(numberOfSeries * 2);
+
+        for (int i = 0; i < numberOfSeries; i++){
+
+            int lineIndex = in.readVarInt();
+            int[] values = new int[in.readVarInt()];
+
+            int count = 0;
+
+            while (count < values.length){
+                count = in.readChunk(values, count);
+            }
+
+            series.put(lineIndex, values);
+
+        }
+
+        return(new SegmentDataReader(text, series));
+
+    }
+    catch(RuntimeException e){
+        //index out of bounds, bad counts, etc.
+        throw new IOException("The file could not be read - corrupt data.");
+    }
+
+}//end of SegmentDataReader::open
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentDataReader
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentDecoder
+//
+// Reads the values from the bytes of a binary segment data file. The bytes
+// are accessed directly as this is much faster than using a stream for the
+// millions of varints in a large file.
+//
+// An ArrayIndexOutOfBoundsException is thrown if the data ends early.
+//
+
+class SegmentDecoder{
+
+    byte[] bytes;
+    int position = 0;
+
+//-----------------------------------------------------------------------------
+// SegmentDecoder::SegmentDecoder (constructor)
+//
+
+SegmentDecoder(byte[] pBytes)
+{
+
+    bytes = pBytes;
+
+}//end of SegmentDecoder::SegmentDecoder (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDecoder::readInt
+//
+// Reads a big endian int.
+//
+
+int readInt()
+{
+
+    int value = ((bytes[position] & 0xff) << 24)
+                | ((bytes[position + 1] & 0xff) << 16)
+                | ((bytes[position + 2] & 0xff) << 8)
+                | (bytes[position + 3] & 0xff);
+
+    position += 4;
+
+    return(value);
+
+}//end of SegmentDecoder::readInt
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDecoder::readVarInt
+//
+// Reads an unsigned varint.
+//
+
+int readVarInt()
+{
+
+    int value = 0;
+
+    for (int shift = 0; shift < 35; shift += 7){
+
+        byte b = bytes[position++];
+
+        value |= (b & 0x7f) << shift;
+
+        if (b >= 0) {return(value);}
+
+    }
+
+    throw new IllegalStateException("varint too long");
+
+}//end of SegmentDecoder::readVarInt
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDecoder::readChunk
+//
+// Decodes one chunk of a series, storing the values in pValues starting at
+// pIndex.
+//
+// Returns the index following the last value stored.
+//
+
+int readChunk(int[] pValues, int pIndex)
+{
+
+    int count = readVarInt();
+    int length = readVarInt();
+
+    int end = position + length;
+
+    if (count == 0 || pIndex + count > pValues.length){
+        throw new IllegalStateException("bad chunk count");
+    }
+
+    int value = 0;
+
+    for (int i = 0; i < count; i++){
+
+        int zigzag = readVarInt();
+        int delta = (zigzag >>> 1) ^ -(zigzag & 1);
+
+        value = (i == 0) ? delta : value + delta;
+
+        pValues[pIndex++] = value;
+
+    }
+
+    if (position != end){
+        throw new IllegalStateException("bad chunk length");
+    }
+
+    return(pIndex);
+
+}//end of SegmentDecoder::readChunk
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentDecoder
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,394 @@
+/******************************************************************************
+* Title: SegmentDataWriter.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class creates the binary form of a segment data file.
+*
+* The segment is written exactly as for the text format -- section tags,
+* titles, settings, etc. are written using the methods of BufferedWriter.
+* The data series (data sets and flags) are not written as text however;
+* PlotterData.saveDataSeries passes their values to writeValue which encodes
+* them into compact binary chunks. Only the series start tag and the
+* "[End of Set]" tag for each series appear in the text.
+*
+* When all data has been written, getBytes returns the file contents:
+*
+*   4 bytes     "MKSD" file identifier
+*   int         binary format version
+*   int         length of the text in bytes
+*   bytes       the text encoded as UTF-8
+*   varint      number of data series
+*   series...   each series:
+*                   varint  index of the text line holding the series start tag
+*                   varint  number of values in the series
+*                   chunks  each chunk:
+*                               varint  number of values in the chunk
+*                               varint  number of bytes in the chunk
+*                               bytes   the values
+*   int         CRC32 checksum of all preceding bytes
+*
+* In each chunk, the first value is stored as is and each value after that is
+* stored as the difference from the previous value. The values are zigzag
+* encoded so that small negative numbers are small positive numbers and then
+* stored as varints -- seven bits per byte with the top bit set on all bytes
+* except the last. As the data points of a trace usually change little from
+* one point to the next, most values take only one byte.
+*
+* All ints are big endian as written by DataOutputStream.
+*
+* See SegmentDataReader for reading files created by this class.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.stripchart;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentDataWriter
+//
+
+public class SegmentDataWriter extends BufferedWriter{
+
+    public static final byte[] FILE_ID = {'M', 'K', 'S', 'D'};
+    public static final int FORMAT_VERSION = 1;
+
+    //maximum number of values in each chunk of a series
+    static final int CHUNK_SIZE = 4096;
+
+    StringWriter text;
+
+    //used to track the number of lines written to the text
+    int lineCount = 0;
+    int lineCountPosition = 0;
+
+    int numberOfSeries = 0;
+    ByteArrayBuilder seriesBytes = new ByteArrayBuilder(65536);
+
+    //the series and chunk currently being written
+
+    boolean seriesInProgress = false;
+    int seriesLineIndex;
+    int seriesCount;
+    ByteArrayBuilder chunkBytes = new ByteArrayBuilder(CHUNK_SIZE * 2);
+    ByteArrayBuilder seriesChunks = new ByteArrayBuilder(65536);
+    int chunkCount;
+    int prevValue;
+
+//-----------------------------------------------------------------------------
+// SegmentDataWriter::SegmentDataWriter (constructor)
+//
+
+public SegmentDataWriter()
+{
+
+    this(new StringWriter(65536));
+
+}//end of SegmentDataWriter::SegmentDataWriter (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataWriter::SegmentDataWriter (constructor)
+//
+
+private SegmentDataWriter(StringWriter pText)
+{
+
+    super(pText);
+
+    text = pText;
+
+}//end of SegmentDataWriter::SegmentDataWriter (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataWriter::startSeries
+//
+// Begins a new data series. The series start tag should be the last line
+// written to the text before this method is called.
+//
+
+public void startSeries() throws IOException
+{
+
+    if (seriesInProgress) {endSeries();}
+
+    seriesLineIndex = countLines() - 1;
+    seriesCount = 0;
+
+    seriesChunks.reset();
+    chunkBytes.reset();
+    chunkCount = 0; prevValue = 0;
+
+    seriesInProgress = true;
+
+}//end of SegmentDataWriter::startSeries
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataWriter::writeValue
+//
+// Adds pValue to the series begun by startSeries.
+//
+
+public void writeValue(int pValue)
+{
+
+    if (chunkCount == CHUNK_SIZE) {endChunk();}
+
+    //the first value of each chunk is stored as is so each chunk can be
+    //decoded on its own
+
+    int delta = chunkCount == 0 ? pValue : pValue - prevValue;
+
+    chunkBytes.writeVarInt((delta << 1) ^ (delta >> 31)); //zigzag encode
+
+    prevValue = pValue;
+    chunkCount++; seriesCount++;
+
+}//end of SegmentDataWriter::writeValue
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataWriter::endChunk
+//
+// Adds the chunk in progress to the series.
+//
+
+private void endChunk()
+{
+
+    if (chunkCount == 0) {return;}
+
+    seriesChunks.writeVarInt(chunkCount);
+    seriesChunks.writeVarInt(chunkBytes.size());
+    seriesChunks.write(chunkBytes);
+
+    chunkBytes.reset();
+    chunkCount = 0;
+
+}//end of SegmentDataWriter::endChunk
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataWriter::endSeries
+//
+// Completes the series begun by startSeries.
+//
+
+public void endSeries()
+{
+
+    if (!seriesInProgress) {return;}
+
+    endChunk();
+
+    seriesBytes.writeVarInt(seriesLineIndex);
+    seriesBytes.writeVarInt(seriesCount);
+    seriesBytes.write(seriesChunks);
+
+    numberOfSeries++;
+
+    seriesInProgress = false;
+
+}//end of SegmentDataWriter::endSeries
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataWriter::countLines
+//
+// Returns the number of complete lines written to the text so far.
+//
+
+private int countLines() throws IOException
+{
+
+    flush();
+
+    StringBuffer sb = text.getBuffer();
+
+    for (int i = lineCountPosition; i < sb.length(); i++){
+        if (sb.charAt(i) == '\n') {lineCount++;}
+    }
+
+    lineCountPosition = sb.length();
+
+    return(lineCount);
+
+}//end of SegmentDataWriter::countLines
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentDataWriter::getBytes
+//
+// Returns the complete segment data file contents.
+//
+
+public byte[] getBytes() throws IOException
+{
+
+    endSeries();
+
+    flush();
+
+    byte[] textBytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                            textBytes.length + seriesBytes.size() + 64);
+    DataOutputStream out = new DataOutputStream(bytes);
+
+    out.write(FILE_ID);
+    out.writeInt(FORMAT_VERSION);
+    out.writeInt(textBytes.length);
+    out.write(textBytes);
+
+    ByteArrayBuilder count = new ByteArrayBuilder(8);
+    count.writeVarInt(numberOfSeries);
+    out.write(count.buffer, 0, count.size());
+
+    out.write(seriesBytes.buffer, 0, seriesBytes.size());
+
+    out.flush();
+
+    CRC32 crc = new CRC32();
+    byte[] result = bytes.toByteArray();
+    crc.update(result, 0, result.length);
+
+    out.writeInt((int)crc.getValue());
+    out.flush();
+
+    return(bytes.toByteArray());
+
+}//end of SegmentDataWriter::getBytes
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentDataWriter
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class ByteArrayBuilder
+//
+// A simple growable byte array used to build the binary series data without
+// the synchronization overhead of ByteArrayOutputStream.
+//
+
+class ByteArrayBuilder{
+
+    byte[] buffer;
+    int count = 0;
+
+//-----------------------------------------------------------------------------
+// ByteArrayBuilder::ByteArrayBuilder (constructor)
+//
+
+public ByteArrayBuilder(int pInitialSize)
+{
+
+    buffer = new byte[pInitialSize];
+
+}//end of ByteArrayBuilder::ByteArrayBuilder (constructor)
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ByteArrayBuilder::size
+//
+
+int size()
+{
+
+    return(count);
+
+}//end of ByteArrayBuilder::size
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ByteArrayBuilder::reset
+//
+
+void reset()
+{
+
+    count = 0;
+
+}//end of ByteArrayBuilder::reset
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ByteArrayBuilder::ensureCapacity
+//
+// Enlarges the buffer if necessary so that pExtra more bytes will fit.
+//
+
+private void ensureCapacity(int pExtra)
+{
+
+    if (count + pExtra <= buffer.length) {return;}
+
+    byte[] larger = new byte[Math.max(buffer.length * 2, count + pExtra)];
+    System.arraycopy(buffer, 0, larger, 0, count);
+    buffer = larger;
+
+}//end of ByteArrayBuilder::ensureCapacity
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ByteArrayBuilder::writeVarInt
+//
+// Appends pValue as an unsigned varint -- seven bits per byte, least
+// significant first, with the top bit set on all bytes except the last.
+//
+
+void writeVarInt(int pValue)
+{
+
+    ensureCapacity(5);
+
+    while ((pValue & ~0x7f) != 0){
+        buffer[count++] = (byte)((pValue & 0x7f) | 0x80);
+        pValue >>>= 7;
+    }
+
+    buffer[count++] = (byte)pValue;
+
+}//end of ByteArrayBuilder::writeVarInt
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ByteArrayBuilder::write
+//
+// Appends the contents of pSource.
+//
+
+void write(ByteArrayBuilder pSource)
+{
+
+    ensureCapacity(pSource.count);
+
+    System.arraycopy(pSource.buffer, 0, buffer, count, pSource.count);
+
+    count += pSource.count;
+
+}//end of ByteArrayBuilder::write
+//-----------------------------------------------------------------------------
+
+}//end of class ByteArrayBuilder
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
@@ -0,0 +1,173 @@
+/******************************************************************************
+* Title: SegmentFileConverter.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class converts binary segment data files back to the text format used
+* by earlier versions of the program. The text files are identical in layout
+* to those earlier files, with each data point on a separate line, so they
+* can be examined with a text editor or processed by other programs.
+*
+* Usage:
+*
+*   java chart.mksystems.stripchart.SegmentFileConverter
+*                                   [-e <file format>] <input> [<output>]
+*
+*   -e <file format>    text file format such as UTF-8 or UTF-16LE
+*                       (default: UTF-8)
+*   <output>            defaults to the input filename with " ~ text" added
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.stripchart;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentFileConverter
+//
+
+public class SegmentFileConverter extends Object{
+
+//-----------------------------------------------------------------------------
+// SegmentFileConverter::main
+//
+
+public static void main(String[] pArgs)
+{
+
+    String fileFormat = "UTF-8";
+    String input = null, output = null;
+
+    for (int i = 0; i < pArgs.length; i++){
+        if (pArgs[i].equals("-e") && i + 1 < pArgs.length) {
+            fileFormat = pArgs[++i];
+        }
+        else
+        if (input == null) {input = pArgs[i];}
+        else {output = pArgs[i];}
+    }
+
+    if (input == null){
+        System.err.println("Usage: SegmentFileConverter"
+                                + " [-e <file format>] <input> [<output>]");
+        System.exit(1);
+    }
+
+    if (output == null) {output = input + " ~ text";}
+
+    try{
+        convertToText(input, output, fileFormat);
+    }
+    catch(IOException e){
+        System.err.println(input + ": " + e.getMessage());
+        System.exit(1);
+    }
+
+}//end of SegmentFileConverter::main
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileConverter::convertToText
+//
+// Converts binary segment file pInput to text file pOutput written in format
+// pFileFormat.
+//
+
+public static void convertToText(String pInput, String pOutput,
+                                       String pFileFormat) throws IOException
+{
+
+    SegmentDataReader in =
+                SegmentDataReader.open(Files.readAllBytes(Paths.get(pInput)));
+
+    try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                            new FileOutputStream(pOutput), pFileFormat))){
+
+        writeText(in, out);
+
+    }
+
+}//end of SegmentFileConverter::convertToText
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileConverter::writeText
+//
+// Writes the segment read from pIn to pOut in the text format, placing the
+// values of each data series on the lines following its start tag.
+//
+
+public static void writeText(SegmentDataReader pIn, BufferedWriter pOut)
+                                                            throws IOException
+{
+
+    String line;
+
+    while ((line = pIn.readLine()) != null){
+
+        pOut.write(line); pOut.newLine();
+
+        int[] values = pIn.getSeriesForLastLine();
+
+        if (values == null) {continue;}
+
+        for (int value : values){
+            pOut.write(Integer.toString(value)); pOut.newLine();
+        }
+
+    }
+
+}//end of SegmentFileConverter::writeText
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentFileConverter::openAsText
+//
+// Returns a reader for segment data file pFilename which always returns the
+// text format, converting binary files as necessary. Text files are read in
+// format pFileFormat.
+//
+// This is used by code which parses the data series itself rather than
+// loading through PlotterData.
+//
+
+public static BufferedReader openAsText(String pFilename, String pFileFormat)
+                                                            throws IOException
+{
+
+    BufferedReader in = SegmentDataReader.open(pFilename, pFileFormat);
+
+    if (!(in instanceof SegmentDataReader)) {return(in);}
+
+    StringWriter text = new StringWriter(65536);
+
+    try (BufferedWriter out = new BufferedWriter(text)){
+        writeText((SegmentDataReader)in, out);
+    }
+
+    return(new BufferedReader(new StringReader(text.toString())));
+
+}//end of SegmentFileConverter::openAsText
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentFileConverter
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
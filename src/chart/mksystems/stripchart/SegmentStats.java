@@ -0,0 +1,73 @@
+/******************************************************************************
+* Title: SegmentStats.java
+* Date: 10/16/26
+*
+* Purpose:
+*
+* This class holds a summary of the data for a segment of one or more
+* plotters: the number of flagged positions and the smallest and largest
+* values. The values are in the units stored in the plotter data.
+*
+* Open Source Policy:
+*
+* This source code is Public Domain and free to any interested party.  Any
+* person, company, or organization may do with it as they please.
+*
+*/
+
+//-----------------------------------------------------------------------------
+
+package chart.mksystems.stripchart;
+
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
+// class SegmentStats
+//
+// See notes at top of page.
+//
+
+public class SegmentStats extends Object{
+
+    //number of positions at which a threshold flag is set
+    public int flagCount = 0;
+
+    //number of values included in minValue and maxValue
+    public int numberOfValues = 0;
+
+    public int minValue = Integer.MAX_VALUE;
+    public int maxValue = Integer.MIN_VALUE;
+
+//-----------------------------------------------------------------------------
+// SegmentStats::addValue
+//
+// Includes pValue in the smallest and largest values.
+//
+
+public void addValue(int pValue)
+{
+
+    if (pValue < minValue) {minValue = pValue;}
+    if (pValue > maxValue) {maxValue = pValue;}
+
+    numberOfValues++;
+
+}//end of SegmentStats::addValue
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SegmentStats::hasValues
+//
+// Returns true if any values have been added.
+//
+
+public boolean hasValues()
+{
+
+    return(numberOfValues > 0);
+
+}//end of SegmentStats::hasValues
+//-----------------------------------------------------------------------------
+
+}//end of class SegmentStats
+//-----------------------------------------------------------------------------
+//-----------------------------------------------------------------------------
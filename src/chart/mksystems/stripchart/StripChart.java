@@ -24,6 +24,8 @@ import chart.Xfer;
 import chart.mksystems.hardware.Hardware;
 import chart.mksystems.hardware.TraceValueCalculator;
 import chart.mksystems.inifile.IniFile;
+import chart.mksystems.metrics.Histogram;
+import chart.mksystems.metrics.Metrics;
 import chart.mksystems.settings.Settings;
 import java.awt.*;
 import java.awt.event.*;
@@ -214,6 +216,10 @@ void updateString(Graphics2D pG2, String pNewValue, boolean pForceUpdate)
 // This panel is used to draw the profile plot.
 // This class actually does all the work for the StripChart class.
 //
+// The plot is drawn on an off-screen image held by a ChartCompositor which
+// is copied to the screen no more than once per display refresh. See
+// ChartCompositor for details.
+//
 
 class ChartCanvas extends JPanel {
 
@@ -233,10 +239,17 @@ class ChartCanvas extends JPanel {
 
     public BufferedImage imageBuffer;
 
+    ChartCompositor compositor = new ChartCompositor();
+
     int peakChannel;
     double runningValue;
     double minWallTrap;
 
+    //time taken to plot the new data and the number of new data points
+    //waiting for each plot -- shared by all charts
+    static final Histogram frameTimer = Metrics.timer("Chart frame time");
+    static final Histogram backlog = Metrics.histogram("Chart plot backlog");
+
 //-----------------------------------------------------------------------------
 // ChartCanvas::ChartCanvas (constructor)
 //
@@ -345,11 +358,33 @@ public void plotData()
     // are offset in their mounting, the leading trace should always be the
     // lead sensor.
 
+    //if there is no new data, show any drawn but not yet shown
+
+    if (!plotters[leadingPlotter].newDataIsReady()){
+        present();
+        return;
+    }
+
+    long startTime = System.nanoTime();
+    int points = 0;
+
+    //if the canvas image has not been drawn or the size has changed, draw it
+    //from the data buffers before adding the new data
+
+    if (!compositor.isReady(getWidth(), getHeight())) {render();}
+
+    //all plotters draw on the compositor's image with the same graphics
+    //object, as scrolling by the leading plotter moves it for all
+
+    Graphics2D g2 = compositor.getGraphics();
+
     //while there is data to be plotted for the leading trace, plot data for all
     //traces which have data
 
     while (plotters[leadingPlotter].newDataIsReady()){
 
+        points++;
+
         //find the hardware channel which produced the worst case value - this
         //requires that the worst case trace be found - it is assumed that all
         //traces on the chart have the same direction of severity - won't work
@@ -368,7 +403,7 @@ public void plotData()
         //data at the same time
         for (int i = 0; i < numberOfPlotters; i++) {
             if (plotters[i].newDataIsReady()){
-                lastValue = plotters[i].plotNewData((Graphics2D)getGraphics());
+                lastValue = plotters[i].plotNewData(g2);
 
                 //catch the trace with the worst value and record its channel
                 if (plotters[0].higherMoreSevere) {
@@ -388,9 +423,52 @@ public void plotData()
         }// for (int i = 0; i < numberOfPlotters; i++)
     }//while (traces[leadingTrace].newDataReady())
 
+    present();
+
+    backlog.record(points);
+    frameTimer.recordSince(startTime);
+
 }//end of ChartCanvas::plotData
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// ChartCanvas::render
+//
+// Draws the entire canvas on the compositor's image from the data buffers.
+//
+
+private void render()
+{
+
+    paintCanvas(compositor.beginRender(getWidth(), getHeight()));
+
+}//end of ChartCanvas::render
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// ChartCanvas::present
+//
+// Copies the compositor's image to the screen if it has changed and a display
+// refresh period has passed since it was last copied. Otherwise, it will be
+// copied by a later call.
+//
+
+private void present()
+{
+
+    if (!compositor.isPresentDue()) {return;}
+
+    Graphics g = getGraphics();
+
+    if (g == null) {return;}
+
+    compositor.draw(g);
+
+    g.dispose();
+
+}//end of ChartCanvas::present
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // ChartCanvas::trapMinWallThickness
 //
@@ -424,7 +502,14 @@ public void paintComponent(Graphics g)
 
     super.paintComponent(g2); //paint background
 
-    paintCanvas(g2);
+    //redraw the image from the data buffers as settings affecting the display
+    //may have changed, then copy it to the screen
+
+    if (!isVisible()) {return;}
+
+    render();
+
+    compositor.draw(g2);
 
 }//end of ChartCanvas::paintComponent
 //-----------------------------------------------------------------------------
@@ -748,8 +833,11 @@ private void configure(IniFile pConfigFile)
     canvas.addMouseListener(this);
     add(canvas);
 
-    //give all traces a link to their canvas
-    for (int i = 0; i < numberOfPlotters; i++) {plotters[i].setCanvas(canvas);}
+    //give all traces a link to their canvas and its compositor
+    for (int i = 0; i < numberOfPlotters; i++) {
+        plotters[i].setCanvas(canvas);
+        plotters[i].setCompositor(canvas.compositor);
+    }
 
     //give all thresholds a link to their canvas
     for (int i = 0; i < numberOfThresholds; i++) {
@@ -1301,6 +1389,27 @@ public boolean segmentStarted()
 }//end of StripChart::segmentStarted
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// StripChart::getSegmentStats
+//
+// Returns the number of flags and the smallest and largest values of the last
+// segment for all plotters of the chart combined.
+//
+
+public SegmentStats getSegmentStats()
+{
+
+    SegmentStats stats = new SegmentStats();
+
+    for (int i = 0; i < numberOfPlotters; i++) {
+        plotters[i].addSegmentStats(stats);
+    }
+
+    return(stats);
+
+}//end of StripChart::getSegmentStats
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // StripChart::loadSegment
 //
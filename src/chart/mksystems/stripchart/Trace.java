@@ -487,7 +487,7 @@ private int plotPoint(Graphics2D pG2, PlotVars pVars, TraceDatum pTraceDatum)
         //if this is lead Plotter object, shift chart left and erase right slice
         if (leadPlotter){
             //scroll the screen 1 pixel to the left
-            pG2.copyArea(1, 0, canvas.getWidth(), canvas.getHeight(), -1, 0);
+            scrollCanvas(pG2, -1);
             //erase the line at the far right
             pG2.setColor(backgroundColor);
             pG2.drawLine(canvasXLimit, 0, canvasXLimit, canvas.getHeight());
@@ -723,7 +723,7 @@ public int erasePoint(Graphics2D pG2, PlotVars pVars, TraceDatum pTraceDatum)
         //if this is trailing trace, shift the chart right and erase left slice
         if (trailPlotter){
             //scroll the screen 1 pixel to the left
-            pG2.copyArea(0, 0, canvas.getWidth(), canvas.getHeight(), 1, 0);
+            scrollCanvas(pG2, 1);
             //erase the line at the far right
             pG2.setColor(backgroundColor);
             pG2.drawLine(0, 0, 0, canvas.getHeight());
@@ -834,6 +834,21 @@ public int[] getFlagBuffer()
 }//end of Trace::getFlagBuffer
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// Trace::addSegmentStats
+//
+// Adds the flags and values of the last segment to pStats.
+//
+
+@Override
+public void addSegmentStats(SegmentStats pStats)
+{
+
+    traceData.addSegmentStats(pStats);
+
+}//end of Trace::addSegmentStats
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // Trace::getPixXY
 //
@@ -5,16 +5,13 @@
 *
 * Purpose:
 *
-* This class handles data for a trace. It has synchronized functions (or other
-* protection mechanisms) to allow data to be inserted by one thread and read
-* for display by a different thread.
+* This class handles data for a trace. It allows data to be inserted by one
+* thread and read for display by a different thread without locking -- see
+* PlotterData for details.
 *
 * Only two threads should access this class -- a producer thread which adds
 * or removes data and a consumer thread which reads data.
 *
-* All methods which alter the flagBuffer should be synchronized. Those that
-* only read it do not have to be synchronized.
-*
 * Open Source Policy:
 *
 * This source code is Public Domain and free to any interested party.  Any
@@ -82,23 +79,18 @@ public void init()
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// TraceData::resetAll
-//
-// Resets everything back to default values.
+// TraceData::resetData
 //
-// Insertion and extraction related pointers all set to 0. Plotting will
-// begin after insertionPoint moves twice, which will allow extractionPoint to
-// move once -- it only moves and returns data if the next position shows
-// DATA_VALID flag. This sequence allows good data to placed at index 0, so
-// the first time data is extracted it will have valid data in index 0 and
-// index 1.
+// Sets the insertion point back to the start of the buffer and clears the
+// data and flags. Called by the producer thread to carry out a reset request
+// -- see PlotterData::resetAll.
 //
 
 @Override
-synchronized public void resetAll()
+protected void resetData()
 {
 
-    super.resetAll();
+    super.resetData();
 
     if (dataBuffer1 != null) {
         for (int i = 0; i < dataBuffer1.length; i++){
@@ -114,7 +106,7 @@ synchronized public void resetAll()
         }
     }
 
-}//end of TraceData::resetAll
+}//end of TraceData::resetData
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -173,8 +165,8 @@ public boolean storeDataAtInsertionPoint(int pData)
 //-----------------------------------------------------------------------------
 // TraceData::getNewData
 //
-// If the DATA_ERASED flag for the current extractionPoint data position is
-// set, the extractionPoint is decremented and the data at that position is
+// If the data at the current extractionPoint data position has been erased,
+// the extractionPoint is decremented and the data at that position is
 // returned as newData1/2 while the data at the previous position is
 // returned as prevData1/2 in pDatum.
 //
@@ -185,16 +177,16 @@ public boolean storeDataAtInsertionPoint(int pData)
 // can respond to any data erasures, the newData* and prevData* may
 // not reflect the expected values.
 //
-// If the DATA_VALID flag is set on the next buffer position, the
+// If new data has been added at the next buffer position, the
 // extractionPoint is incremented and the data at that position is returned
 // as newData* while the data at the previous position is returned as prevData*
 // in pDatum.
 //
-// The check for DATA_ERASED always overrides the check for DATA_VALID. If data
+// The check for erased data always overrides the check for new data. If data
 // is erased and then new data inserted before the consumer thread can react,
 // the consumer thread will get all the erasure notices before forward reading
 // of new data is resumed. This ensures that plotting can be reversed as far
-// as the data was erased.
+// as the data was erased. See PlotterData::getDirection.
 //
 // Returns:
 //
@@ -206,66 +198,43 @@ public boolean storeDataAtInsertionPoint(int pData)
 // are returned in pDatum along with the data point for the previous position.
 //
 
-synchronized public int getNewData(TraceDatum pDatum)
+public int getNewData(TraceDatum pDatum)
 {
 
-    if ((flagBuffer[extractionPoint] & DATA_ERASED) != 0){
+    int direction = getDirection();
 
-        clearFlags(extractionPoint, CLEAR_DATA_ERASED);
+    if (direction == NO_NEW_DATA) {return(NO_NEW_DATA);}
 
-        pDatum.prevData1 = dataBuffer1[extractionPoint];
+    pDatum.prevData1 = dataBuffer1[extractionPoint];
 
-        if (dataBuffer2 != null){
-            pDatum.prevData2 = dataBuffer2[extractionPoint];
-        }
+    if (dataBuffer2 != null){
+        pDatum.prevData2 = dataBuffer2[extractionPoint];
+    }
 
+    if (direction == REVERSE){
         retractExtractionPoint();
-
         segmentLength--;
-
-        pDatum.newData1 = dataBuffer1[extractionPoint];
-
-        if (dataBuffer2 != null){
-            pDatum.newData2 = dataBuffer2[extractionPoint];
-        }
-
-        pDatum.flags = flagBuffer[extractionPoint];
-
-        return(REVERSE);
-
     }
-
-    if ((flagBuffer[lookAhead] & DATA_VALID) != 0){
-
-        pDatum.prevData1 = dataBuffer1[extractionPoint];
-
-        if (dataBuffer2 != null){
-            pDatum.prevData2 = dataBuffer2[extractionPoint];
-        }
-
+    else{
         advanceExtractionPoint();
-
         segmentLength++;
+    }
 
-        pDatum.newData1 = dataBuffer1[extractionPoint];
-
-        if (dataBuffer2 != null){
-            pDatum.newData2 = dataBuffer2[extractionPoint];
-        }
-
-        pDatum.flags = flagBuffer[extractionPoint];
-
-        return(FORWARD);
+    pDatum.newData1 = dataBuffer1[extractionPoint];
 
+    if (dataBuffer2 != null){
+        pDatum.newData2 = dataBuffer2[extractionPoint];
     }
 
-    return(NO_NEW_DATA);
+    pDatum.flags = flagBuffer[extractionPoint];
+
+    return(direction);
 
 }//end of TraceData::getNewData
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
-// TraceData::advanceInsertionPoint
+// TraceData::moveInsertionPoint
 //
 // Moves the insertion point forward one buffer position and makes the
 // necessary preparations to the previous and new locations.
@@ -284,15 +253,15 @@ synchronized public int getNewData(TraceDatum pDatum)
 //
 
     @Override
-    synchronized public void advanceInsertionPoint()
+    protected void moveInsertionPoint()
 {
 
-    super.advanceInsertionPoint();
+    super.moveInsertionPoint();
 
     //copy previous data to new buffer location -- see notes above
     dataBuffer1[insertionPoint] = dataBuffer1[prevInsertionPoint];
 
-}//end of TraceData::advanceInsertionPoint
+}//end of TraceData::moveInsertionPoint
 //-----------------------------------------------------------------------------
 
 //-----------------------------------------------------------------------------
@@ -401,6 +370,21 @@ public int findMaxValue(int pStart, int pEnd, TraceDatum pPeakInfo)
 }//end of TraceData::findMaxValue
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// TraceData::addValueStats
+//
+// Adds the value stored in dataBuffer1 at position pIndex to pStats.
+//
+
+@Override
+void addValueStats(int pIndex, SegmentStats pStats)
+{
+
+    pStats.addValue(dataBuffer1[pIndex]);
+
+}//end of TraceData::addValueStats
+//-----------------------------------------------------------------------------
+
 //-----------------------------------------------------------------------------
 // TraceData::saveSegment
 //
@@ -426,51 +410,15 @@ public void saveSegment(BufferedWriter pOut) throws IOException
 
     //save all the data and flags in the segment
 
-    int i = lastSegmentStartIndex;
-
-    pOut.write("[Data Set 1]"); pOut.newLine(); //save the first data set
-
-    while (i != lastSegmentEndIndex){
-        pOut.write(Integer.toString(dataBuffer1[i])); //save the data set 1
-        pOut.newLine();
-        //increment to next buffer slot, wrap around because buffer is circular
-        if (++i == sizeOfDataBuffer) {i = 0;}
-    }
-
-    pOut.write("[End of Set]"); pOut.newLine();
+    saveDataSeries(pOut, "[Data Set 1]", dataBuffer1);
 
     //save the second data set if it exists
     //the second data set is only used for certain styles of plotting
     if (dataBuffer2 != null){
-
-        i = lastSegmentStartIndex;
-
-        pOut.write("[Data Set 2]"); pOut.newLine();
-
-        //save the second data set if it exists
-        while (i != lastSegmentEndIndex){
-            pOut.write(Integer.toString(dataBuffer2[i])); //save the data set 2
-            pOut.newLine();
-            //increment to next buffer slot, wrap around as buffer is circular
-            if (++i == sizeOfDataBuffer) {i = 0;}
-        }
-
-        pOut.write("[End of Set]"); pOut.newLine();
-
-    }//if (dataBuffer2 != null)
-
-    i = lastSegmentStartIndex;
-
-    pOut.write("[Flags]"); pOut.newLine(); //save the flags
-
-    while (i != lastSegmentEndIndex){
-        pOut.write(Integer.toString(flagBuffer[i])); //save the flags
-        pOut.newLine();
-        //increment to next buffer slot, wrap around because buffer is circular
-        if (++i == sizeOfDataBuffer) {i = 0;}
+        saveDataSeries(pOut, "[Data Set 2]", dataBuffer2);
     }
 
-    pOut.write("[End of Set]"); pOut.newLine();
+    saveDataSeries(pOut, "[Flags]", flagBuffer);
 
     pOut.newLine(); //blank line
 
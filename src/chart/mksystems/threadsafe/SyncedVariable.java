@@ -25,6 +25,8 @@
 
 package chart.mksystems.threadsafe;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 //-----------------------------------------------------------------------------
 //-----------------------------------------------------------------------------
 // class SyncedVariable
@@ -35,7 +37,14 @@ public class SyncedVariable extends Object{
 
     SyncedVariableSet syncedVariableSet;
 
-    private boolean dataChanged = false;
+    private volatile boolean dataChanged = false;
+
+    //true while the variable is waiting in the manager's change queue
+    private final AtomicBoolean queued = new AtomicBoolean(false);
+
+    //the group reported by the manager when the variable is changed, -1 if
+    //none
+    private int changeGroup = -1;
 
 //-----------------------------------------------------------------------------
 // SyncedVariableSet::SyncedVariable (constructor)
@@ -77,8 +86,12 @@ public void init()
 public synchronized void setDataChangedTrue()
 {
 
+    boolean wasChanged = dataChanged;
+
     dataChanged = true;
-    if (syncedVariableSet != null) {syncedVariableSet.notifyDataChanged();}
+    if (syncedVariableSet != null) {
+        syncedVariableSet.notifyDataChanged(this, !wasChanged);
+    }
 
 }//end of SyncedVariableSet::setDataChangedTrue
 //-----------------------------------------------------------------------------
@@ -91,8 +104,13 @@ public synchronized void setDataChangedTrue()
 
 public synchronized void setDataChangedFalse()
 {
+
+    boolean wasChanged = dataChanged;
+
     dataChanged = false;
-    if (syncedVariableSet != null) {syncedVariableSet.notifyDataUnchanged();}
+    if (syncedVariableSet != null && wasChanged) {
+        syncedVariableSet.notifyDataUnchanged();
+    }
 
 }//end of SyncedVariableSet::setDataChangedFalse
 //-----------------------------------------------------------------------------
@@ -128,6 +146,71 @@ public boolean getDataChangedFlagUnSynced()
 }//end of SyncedVariable::getDataChangedFlagUnSynced
 //-----------------------------------------------------------------------------
 
+//-----------------------------------------------------------------------------
+// SyncedVariable::setChangeGroup
+//
+// Sets the group reported by the manager's collectChanges method when the
+// variable has been changed. Variables which are applied together, such as
+// those sent to the remotes in the same message, should be given the same
+// group. The group must be less than the size of the array passed to
+// collectChanges.
+//
+
+public void setChangeGroup(int pGroup)
+{
+
+    changeGroup = pGroup;
+
+}//end of SyncedVariable::setChangeGroup
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SyncedVariable::getChangeGroup
+//
+
+public int getChangeGroup()
+{
+
+    return(changeGroup);
+
+}//end of SyncedVariable::getChangeGroup
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SyncedVariable::markQueued
+//
+// Marks the variable as waiting in the manager's change queue. Returns true
+// if it was not already waiting, in which case the caller must queue it.
+//
+// IMPORTANT: This unsynchronized method is meant for use only by a
+// SyncedVariableSet object.
+//
+
+boolean markQueued()
+{
+
+    return(queued.compareAndSet(false, true));
+
+}//end of SyncedVariable::markQueued
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SyncedVariable::clearQueued
+//
+// Marks the variable as no longer waiting in the manager's change queue.
+//
+// IMPORTANT: This unsynchronized method is meant for use only by a
+// SyncedVariableSet object.
+//
+
+void clearQueued()
+{
+
+    queued.set(false);
+
+}//end of SyncedVariable::clearQueued
+//-----------------------------------------------------------------------------
+
 
 }//end of class SyncedVariable
 //-----------------------------------------------------------------------------
@@ -13,10 +13,9 @@
 * needs and passes a pointer to each of those objects into the addVariable
 * method of this class.
 *
-* This class maintains a single dataChangedMaster variable that should be set
-* by the SyncedVariables if any have their dataChanged flag set.  Thus, the
-* owner can quickly tell if any data needs to be handled by looking only at the
-* dataChangedMaster variable instead of scanning through each SyncedVariable
+* This class counts the SyncedVariables which have their dataChanged flag set
+* so that the owner can quickly tell if any data needs to be handled by
+* calling getDataChangedMaster instead of scanning through each SyncedVariable
 * checking for changes.
 *
 * All SyncedVariable objects managed by an object of this class should call
@@ -24,13 +23,16 @@
 * They should call notifyDataUnchanged when their changed data has been
 * read and applied by the appropriate object.
 *
-* Any object needing to know if any SyncedVariable in the list has modified
-* data can call getDataChangedMaster which will return true if any managed
-* object has modified data.
+* Each variable is also placed on a queue the first time it is changed after
+* it was last collected, so a variable changed many times is only queued
+* once. The owner can then use collectChanges to find which variables have
+* been changed rather than checking every one. Each variable is given a
+* change group by its owner, usually one for each set of values sent to the
+* remotes together, and collectChanges reports the groups with changes.
 *
-* All methods in this class and the SyncedVariable classes should be
-* synchronized to be sure there is no question about when any operation is
-* thread safe.
+* The counter and queue are lock free, so the threads changing the variables
+* are never blocked by the thread handling the changes. A set whose changes
+* are never collected simply holds each changed variable on the queue once.
 *
 * IMPORTANT:  This class cannot call any synchronized methods in any of the
 *  SyncedVariable objects it controls.  This can cause a thread lock up if
@@ -48,7 +50,9 @@
 package chart.mksystems.threadsafe;
 
 import java.util.ArrayList;
-import java.util.ListIterator;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //-----------------------------------------------------------------------------
 //-----------------------------------------------------------------------------
@@ -58,7 +62,15 @@ import java.util.ListIterator;
 public class SyncedVariableSet extends Object{
 
 
-    private boolean dataChangedMaster = false;
+    //number of variables which have their dataChanged flag set
+    private final AtomicInteger changedCount = new AtomicInteger(0);
+
+    //variables changed since they were last collected
+    private final ConcurrentLinkedQueue<SyncedVariable> changeQueue =
+                                                new ConcurrentLinkedQueue<>();
+
+    //variables returned by collectChanges and not yet released
+    private final ArrayList<SyncedVariable> collected = new ArrayList<>();
 
     private final ArrayList<SyncedVariable> variableList;
 
@@ -93,14 +105,19 @@ public synchronized void addVariable(SyncedVariable pSyncedVariable)
 //-----------------------------------------------------------------------------
 // SyncedVariableSet::notifyDataChanged
 //
-// Sets the dataChangedMaster flag true.  Should be called by any SyncedVariable
-// managed by this object when its data has been modified.
+// Should be called by any SyncedVariable managed by this object when its data
+// has been modified, after its dataChanged flag has been set. If pNewlyChanged
+// is true, the flag was not already set.
+//
+// The variable is queued unless it is already waiting in the queue.
 //
 
-public synchronized void notifyDataChanged()
+public void notifyDataChanged(SyncedVariable pVariable, boolean pNewlyChanged)
 {
 
-    dataChangedMaster = true;
+    if (pNewlyChanged) {changedCount.incrementAndGet();}
+
+    if (pVariable.markQueued()) {changeQueue.add(pVariable);}
 
 }//end of SyncedVariableSet::notifyDataChanged
 //-----------------------------------------------------------------------------
@@ -108,14 +125,14 @@ public synchronized void notifyDataChanged()
 //-----------------------------------------------------------------------------
 // SyncedVariableSet::getDataChangedMaster
 //
-// Returns the dataChangedMaster flag true.  Should be called by object which
-// needs to know if any variable managed by this object has been modified.
+// Returns true if any variable managed by this object has been modified and
+// not yet applied.
 //
 
-public synchronized boolean getDataChangedMaster()
+public boolean getDataChangedMaster()
 {
 
-    return(dataChangedMaster);
+    return(changedCount.get() > 0);
 
 }//end of SyncedVariableSet::getDataChangedMaster
 //-----------------------------------------------------------------------------
@@ -125,51 +142,103 @@ public synchronized boolean getDataChangedMaster()
 //
 // All SyncedVariables managed by this object should call this method when
 // their data becomes unmodified, i.e. any changes have been read and applied as
-// necessary by some external object.
+// necessary by some external object. It should only be called if the
+// variable's dataChanged flag was set.
+//
+
+public void notifyDataUnchanged()
+{
+
+    changedCount.decrementAndGet();
+
+}//end of SyncedVariableSet::notifyDataUnchanged
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SyncedVariableSet::isChangeQueued
 //
-// This method will then check all SyncedVariable objects in its list.  If ALL
-// are unmodifed, then it will set the dataChangedMaster flag to false to show
-// that no modified data is present in any of the SyncedVariables.  If ANY
-// are modified, the master flag is set true.
+// Returns true if any variable has been queued since the changes were last
+// collected.
+//
+
+public boolean isChangeQueued()
+{
+
+    return(!changeQueue.isEmpty());
+
+}//end of SyncedVariableSet::isChangeQueued
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SyncedVariableSet::collectChanges
+//
+// Empties the queue and sets the element of pGroups for the change group of
+// each queued variable which still has changed data; all other elements are
+// set false. Variables which have already been applied by other code or have
+// no change group are skipped. Returns true if any group was set.
+//
+// The owner should then apply the changed variables of each group as before
+// and call releaseChanges. Any collected variable which has not been applied
+// by then is queued again so that it is retried.
 //
 // Note that the unsynchronized version of getDataChanged is called in the
 // SyncedVariable objects.  This is done to avoid thread lockup when another
 // thread happens to be in the SyncedVariable::setValue method which will try
-// to call notifyDataChanged in this class.  Thus, one thread is in this class
-// trying to access getDataChanged method in the variable oject while the other
-// thread is in the variable object trying to access notifyDataChanged in this
-// class -- each thread blocks the other.
+// to call notifyDataChanged in this class.
 //
-// The unsynchonized version works because the flag is atomic and is set
-// by the calling object prior to calling.
+// The unsynchronized version works because the flag is volatile and is set
+// by the variable before it is queued.
 //
 
-public synchronized void notifyDataUnchanged()
+public synchronized boolean collectChanges(boolean[] pGroups)
 {
 
-    boolean someDataChanged = false;
-    ListIterator i;
+    Arrays.fill(pGroups, false);
+
+    boolean anyChanged = false;
 
     SyncedVariable sv;
 
-    int debug = 0;
+    while ((sv = changeQueue.poll()) != null){
+
+        //allow the variable to be queued again if it is changed from here on
+        sv.clearQueued();
 
-    for (i = variableList.listIterator(); i.hasNext(); ){
-        sv = (SyncedVariable)i.next();
+        int group = sv.getChangeGroup();
+
+        if (group < 0 || !sv.getDataChangedFlagUnSynced()) {continue;}
+
+        pGroups[group] = true;
+        anyChanged = true;
+
+        collected.add(sv);
+
+    }
 
-        debug++;
+    return(anyChanged);
 
-        if ( sv.getDataChangedFlagUnSynced()) {
-            someDataChanged = true;
-            break;
+}//end of SyncedVariableSet::collectChanges
+//-----------------------------------------------------------------------------
+
+//-----------------------------------------------------------------------------
+// SyncedVariableSet::releaseChanges
+//
+// Queues again any variable returned by the last call to collectChanges which
+// still has changed data. See collectChanges.
+//
+
+public synchronized void releaseChanges()
+{
+
+    for (SyncedVariable sv : collected){
+        if (sv.getDataChangedFlagUnSynced() && sv.markQueued()) {
+            changeQueue.add(sv);
         }
     }
 
-    //set the master flag true if ANY SyncedVariable flag is true, only set
-    //false if NONE are true
-    dataChangedMaster = someDataChanged;
+    collected.clear();
 
-}//end of SyncedVariableSet::notifyDataUnchanged
+}//end of SyncedVariableSet::releaseChanges
 //-----------------------------------------------------------------------------
 
 }//end of class SyncedVariableSet